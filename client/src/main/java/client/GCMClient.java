@@ -1,27 +1,45 @@
 package client;
 
+import common.dto.ImageStreamRequest;
+import common.dto.MapImageChunk;
 import common.enums.ActionType;
 import common.messaging.Message;
+import common.messaging.codec.BinaryCodec;
 import common.user.User;
 import oscf.AbstractClient;
+import oscf.PayloadCodec;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.SocketException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 /**
  * Singleton client for communication with the GCM server.
- * Uses synchronous request-response pattern via sendRequest().
+ *
+ * Every request is tagged with a request ID that the server copies onto its
+ * response, so many requests can be in flight over the one socket and their
+ * responses may come back in any order. Use sendAsync() to overlap requests,
+ * or sendRequest()/sendMessage() to block for a single response.
  */
 public class GCMClient extends AbstractClient {
 
     private static GCMClient instance;
 
-    // Synchronization state for request-response
-    private boolean busy = false;
-    private boolean awaitResponse = false;
-    private Object lastResponse = null;
+    // Requests waiting for their response, by request ID
+    private final Map<Long, CompletableFuture<Message>> pendingRequests = new ConcurrentHashMap<>();
+    private final AtomicLong nextRequestId = new AtomicLong();
+
+    // Requests whose map images are being streamed, by request ID
+    private final Map<Long, MapImageDownload> imageDownloads = new ConcurrentHashMap<>();
 
     // Current logged-in user
     private volatile User currentUser;
@@ -29,15 +47,43 @@ public class GCMClient extends AbstractClient {
     // Notification listeners for server-pushed messages
     private final List<Consumer<Message>> notificationListeners = new CopyOnWriteArrayList<>();
 
+    /** Binary payloads when the server supports them; Java serialization otherwise. */
+    private static final PayloadCodec BINARY_CODEC = new PayloadCodec() {
+        @Override
+        public int getId() {
+            return BinaryCodec.ID;
+        }
+
+        @Override
+        public void encode(Object msg, OutputStream out) throws IOException {
+            BinaryCodec.encode(msg, out);
+        }
+
+        @Override
+        public Object decode(byte[] payload, int offset, int length) throws IOException {
+            return BinaryCodec.decode(payload, offset, length);
+        }
+    };
+
     // ==================== SINGLETON PATTERN ====================
 
     /**
      * Private constructor - use connect() to create instance.
      */
-    private GCMClient(String host, int port) throws IOException {
+    private GCMClient(String host, int port, boolean framed) throws IOException {
         super(host, port);
+        setFramed(framed);
+        // -Dgcm.codec=java keeps Java serialization, e.g. to compare or debug
+        if (!"java".equalsIgnoreCase(System.getProperty("gcm.codec"))) {
+            setPayloadCodec(BINARY_CODEC);
+        }
+        setHeartbeat(Integer.getInteger("gcm.heartbeat.intervalMs", 10000),
+                Integer.getInteger("gcm.heartbeat.misses", 3));
+        // Image chunks may arrive with their bytes outside the codec
+        setFrameBodies(true);
         openConnection();
-        System.out.println("GCMClient connected to server at " + host + ":" + port);
+        System.out.println("GCMClient connected to server at " + host + ":" + port
+                + (getPayloadCodec() == BINARY_CODEC ? " (binary codec)" : ""));
     }
 
     /**
@@ -48,8 +94,21 @@ public class GCMClient extends AbstractClient {
      * @throws IOException if connection fails
      */
     public static void connect(String host, int port) throws IOException {
+        connect(host, port, true);
+    }
+
+    /**
+     * Connect to the server choosing the wire protocol.
+     *
+     * @param host   Server hostname or IP
+     * @param port   Server port
+     * @param framed true for length-prefixed frames (required by NIO servers),
+     *               false for the legacy object stream
+     * @throws IOException if connection fails
+     */
+    public static void connect(String host, int port, boolean framed) throws IOException {
         if (instance == null) {
-            instance = new GCMClient(host, port);
+            instance = new GCMClient(host, port, framed);
         }
     }
 
@@ -90,79 +149,137 @@ public class GCMClient extends AbstractClient {
 
     /**
      * Handle message received from server.
-     * Notifies waiting sendRequest() call.
+     * Completes the pending request with the same request ID.
      */
     @Override
     protected void handleMessageFromServer(Object msg) {
         System.out.println("GCMClient received: " + msg);
 
-        // Check if this is a server-pushed notification or fire-and-forget response
-        if (msg instanceof Message message) {
-            ActionType action = message.getAction();
-            if (action == ActionType.CATALOG_UPDATED_NOTIFICATION) {
-                for (Consumer<Message> listener : notificationListeners) {
-                    listener.accept(message);
-                }
-                return;
-            }
-            if (action == ActionType.LOGOUT_RESPONSE) {
-                return; // fire-and-forget — don't interfere with request-response flow
+        if (!(msg instanceof Message message)) {
+            System.err.println("Ignoring non-Message object from server: " + msg);
+            return;
+        }
+
+        // Server-pushed notifications carry no request ID
+        if (message.getAction() == ActionType.CATALOG_UPDATED_NOTIFICATION) {
+            for (Consumer<Message> listener : notificationListeners) {
+                listener.accept(message);
             }
+            return;
+        }
+
+        if (message.getAction() == ActionType.MAP_IMAGE_CHUNK) {
+            receiveImageChunk(message);
+            return;
         }
 
-        synchronized (this) {
-            this.lastResponse = msg;
-            this.awaitResponse = false;
-            this.notifyAll();
+        CompletableFuture<Message> pending = pendingRequests.remove(message.getRequestId());
+        if (pending != null) {
+            pending.complete(message);
+        } else if (message.getAction() != ActionType.LOGOUT_RESPONSE) {
+            // LOGOUT_RESPONSE is expected here: quit() sends logout fire-and-forget
+            System.err.println("No pending request for response: " + message);
+        }
+    }
+
+    /**
+     * Image chunks sent as frame bodies carry their bytes after the message
+     * rather than inside it.
+     */
+    @Override
+    protected Object attachFrameBody(Object msg, byte[] body) {
+        if (msg instanceof Message message && message.getMessage() instanceof MapImageChunk chunk) {
+            chunk.setData(body);
+        }
+        return msg;
+    }
+
+    /**
+     * Send a request without waiting for the response.
+     * Any number of requests may be in flight at once.
+     *
+     * @param request The request message to send
+     * @return A future completed with the server's response, or completed
+     *         exceptionally if the request cannot be sent or the connection drops
+     */
+    public CompletableFuture<Message> sendAsync(Message request) {
+        return sendAsync(request, nextRequestId.incrementAndGet());
+    }
+
+    private CompletableFuture<Message> sendAsync(Message request, long requestId) {
+        CompletableFuture<Message> response = new CompletableFuture<>();
+        pendingRequests.put(requestId, response);
+        request.setRequestId(requestId);
+
+        try {
+            sendToServer(request);
+        } catch (IOException e) {
+            pendingRequests.remove(requestId);
+            response.completeExceptionally(e);
+        }
+        return response;
+    }
+
+    /**
+     * Request a map (GET_MAP_DETAILS_REQUEST) or a city with its maps
+     * (GET_CITY_FULL_DETAILS_REQUEST) with the map images streamed in chunks
+     * after the response, so large images neither hold up other requests nor
+     * need to arrive in one piece.
+     *
+     * @param action the details request
+     * @param id     the map or city id
+     * @return the download, giving the response first and the images as they complete
+     */
+    public MapImageDownload requestWithImages(ActionType action, int id) {
+        long requestId = nextRequestId.incrementAndGet();
+        MapImageDownload download = new MapImageDownload();
+        // Registered before sending: chunks may follow the response immediately
+        imageDownloads.put(requestId, download);
+        download.completion().whenComplete((message, error) -> imageDownloads.remove(requestId));
+        download.attach(sendAsync(new Message(action, new ImageStreamRequest(id)), requestId));
+        return download;
+    }
+
+    /**
+     * Hand a chunk to its download and ask the server for the next one.
+     * Chunks of a request nobody waits for any more are not acknowledged, so
+     * the server stops sending them.
+     */
+    private void receiveImageChunk(Message message) {
+        MapImageDownload download = imageDownloads.get(message.getRequestId());
+        if (download == null || !(message.getMessage() instanceof MapImageChunk chunk)) {
+            return;
+        }
+        download.accept(chunk);
+        try {
+            sendToServer(new Message(ActionType.MAP_IMAGE_CHUNK_ACK, chunk.getTransferId()));
+        } catch (IOException e) {
+            download.fail(e);
         }
     }
 
     /**
      * Send a request to the server and wait for response.
-     * This is a synchronous (blocking) call.
+     * This is a synchronous (blocking) call; other threads may have their
+     * own requests in flight at the same time.
      *
      * @param request The request message to send
      * @return The response from server, or null if error
      */
     public Object sendRequest(Object request) {
-        synchronized (this) {
-            // Wait if another request is in progress
-            while (busy) {
-                try {
-                    wait();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    return null;
-                }
-            }
-
-            busy = true;
-            awaitResponse = true;
-            lastResponse = null;
-
-            try {
-                sendToServer(request);
-
-                // Wait for response
-                while (awaitResponse) {
-                    try {
-                        wait();
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        return null;
-                    }
-                }
-
-            } catch (IOException e) {
-                System.err.println("Failed to send message to server: " + e.getMessage());
-                e.printStackTrace();
-                return null;
-            } finally {
-                busy = false;
-                notifyAll();
-            }
+        if (!(request instanceof Message message)) {
+            System.err.println("Only Message requests are supported: " + request);
+            return null;
+        }
 
-            return lastResponse;
+        try {
+            return sendAsync(message).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            System.err.println("Failed to send message to server: " + e.getCause().getMessage());
+            return null;
         }
     }
 
@@ -181,6 +298,21 @@ public class GCMClient extends AbstractClient {
         return null;
     }
 
+    /**
+     * Fail every request still waiting for a response.
+     */
+    private void failPendingRequests(Exception cause) {
+        for (MapImageDownload download : imageDownloads.values()) {
+            download.fail(cause);
+        }
+        for (Long requestId : new ArrayList<>(pendingRequests.keySet())) {
+            CompletableFuture<Message> pending = pendingRequests.remove(requestId);
+            if (pending != null) {
+                pending.completeExceptionally(cause);
+            }
+        }
+    }
+
     // ==================== USER SESSION ====================
 
     /**
@@ -250,6 +382,7 @@ public class GCMClient extends AbstractClient {
     @Override
     protected void connectionClosed() {
         System.out.println("Connection to server closed.");
+        failPendingRequests(new SocketException("Connection to server closed"));
     }
 
     /**
@@ -258,5 +391,6 @@ public class GCMClient extends AbstractClient {
     @Override
     protected void connectionException(Exception exception) {
         System.err.println("Connection error: " + exception.getMessage());
+        failPendingRequests(exception);
     }
 }
\ No newline at end of file
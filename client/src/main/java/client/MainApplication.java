@@ -47,11 +47,13 @@ public class MainApplication extends Application
         primaryStage = stage;
         String host = "20.250.162.225";
         int port = 5555;
+        boolean framed = true;
         var params = getParameters().getRaw();
         if (params.size() >= 1) host = params.get(0);
         if (params.size() >= 2) port = Integer.parseInt(params.get(1));
+        if (params.size() >= 3) framed = !"legacy".equalsIgnoreCase(params.get(2));
         System.out.println("Connecting to " + host + ":" + port);
-        GCMClient.connect(host, port);
+        GCMClient.connect(host, port, framed);
         FXMLLoader loader = new FXMLLoader(
                 MainApplication.class.getResource("/GUI/HomePage.fxml")
         );
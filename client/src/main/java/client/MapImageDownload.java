@@ -0,0 +1,147 @@
+package client;
+
+import common.content.City;
+import common.content.GCMMap;
+import common.dto.MapImageChunk;
+import common.messaging.Message;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+/**
+ * A map or city details request whose map images are streamed.
+ *
+ * The response arrives first with every map's image left out, so the page can
+ * show names, sites and markers straight away. The images follow as
+ * MAP_IMAGE_CHUNK messages. Chunks are assembled here and progress is reported
+ * per map. Once every announced image is complete, the bytes are set on the
+ * response's maps and {@link #completion()} finishes.
+ *
+ * Created by {@link GCMClient#requestWithImages}. Chunks are delivered on the
+ * client's reader thread, so listeners must not block and must hand UI work to
+ * the FX thread.
+ */
+public final class MapImageDownload {
+
+    private final CompletableFuture<Message> completion = new CompletableFuture<>();
+    private volatile CompletableFuture<Message> response;
+    private volatile BiConsumer<Integer, Double> progressListener;
+
+    /** Images being received, by map id; guarded by this. */
+    private final Map<Integer, byte[]> buffers = new HashMap<>();
+    private final Map<Integer, Integer> received = new HashMap<>();
+
+    /** Maps of the response still waiting for their image; null until the response arrives. */
+    private List<GCMMap> expected;
+    private Message responseMessage;
+
+    MapImageDownload() {}
+
+    /**
+     * Called once the request is sent, before any chunk can arrive.
+     */
+    void attach(CompletableFuture<Message> response) {
+        this.response = response;
+        response.whenComplete((message, error) -> {
+            if (error != null) {
+                completion.completeExceptionally(error);
+            } else {
+                responseReceived(message);
+            }
+        });
+    }
+
+    /**
+     * @return the response, whose maps have no image bytes yet
+     */
+    public CompletableFuture<Message> response() {
+        return response;
+    }
+
+    /**
+     * @return the response with every streamed image filled in
+     */
+    public CompletableFuture<Message> completion() {
+        return completion;
+    }
+
+    /**
+     * Sets a listener told (map id, fraction received) after every chunk.
+     */
+    public MapImageDownload onProgress(BiConsumer<Integer, Double> listener) {
+        this.progressListener = listener;
+        return this;
+    }
+
+    void fail(Throwable cause) {
+        completion.completeExceptionally(cause);
+    }
+
+    // ==================== ASSEMBLY ====================
+
+    /**
+     * Copies a chunk into its image. Called on the reader thread.
+     */
+    void accept(MapImageChunk chunk) {
+        byte[] data = chunk.getData();
+        int done;
+        synchronized (this) {
+            byte[] buffer = buffers.computeIfAbsent(chunk.getMapId(), id -> new byte[chunk.getTotalLength()]);
+            if (data != null && chunk.getOffset() + data.length <= buffer.length) {
+                System.arraycopy(data, 0, buffer, chunk.getOffset(), data.length);
+            }
+            done = received.merge(chunk.getMapId(), data != null ? data.length : 0, Integer::sum);
+        }
+
+        BiConsumer<Integer, Double> listener = progressListener;
+        if (listener != null) {
+            listener.accept(chunk.getMapId(), (double) done / Math.max(1, chunk.getTotalLength()));
+        }
+        tryComplete();
+    }
+
+    private void responseReceived(Message message) {
+        List<GCMMap> maps = new ArrayList<>();
+        if (message.getMessage() instanceof GCMMap map) {
+            maps.add(map);
+        } else if (message.getMessage() instanceof City city && city.getMaps() != null) {
+            maps.addAll(city.getMaps());
+        }
+
+        synchronized (this) {
+            responseMessage = message;
+            expected = new ArrayList<>();
+            for (GCMMap map : maps) {
+                if (map.getMapImage() == null && map.getImageLength() > 0) {
+                    expected.add(map);
+                }
+            }
+        }
+        tryComplete();
+    }
+
+    private void tryComplete() {
+        Message done;
+        synchronized (this) {
+            if (expected == null) {
+                return;
+            }
+            for (GCMMap map : expected) {
+                Integer count = received.get(map.getId());
+                if (count == null || count < map.getImageLength()) {
+                    return;
+                }
+            }
+            for (GCMMap map : expected) {
+                map.setMapImage(buffers.remove(map.getId()));
+            }
+            expected.clear();
+            done = responseMessage;
+        }
+        completion.complete(done);
+    }
+}
@@ -1,6 +1,7 @@
 package controllers;
 import client.GCMClient;
 import common.content.GCMMap;
+import common.dto.CatalogChange;
 import common.dto.CatalogFilter;
 import common.dto.CatalogResponse;
 import common.dto.ContentChangeRequest;
@@ -29,7 +30,9 @@ import javafx.stage.Stage;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import common.content.City; // NEW - Fixes "Cannot resolve symbol 'City'"
 import java.util.function.Consumer;
 
@@ -77,6 +80,8 @@ public class CatalogPageController {
     private CatalogResponse lastCatalogResponse;     // Cache the last response for filter cascading
     private boolean isUpdatingComboBoxes = false;    // Flag to prevent recursive updates
     private List<City> catalogCities;
+    private final Map<Integer, Parent> cardsByCityId = new HashMap<>();    // Displayed city cards
+    private final Map<Integer, String> cityNamesById = new HashMap<>();    // Names of the displayed cities
 
     @FXML
     public void initialize() {
@@ -90,10 +95,13 @@ public class CatalogPageController {
         // Listen for server-pushed catalog update notifications
         client.addNotificationListener((common.messaging.Message msg) -> {
             if (msg.getAction() == ActionType.CATALOG_UPDATED_NOTIFICATION) {
+                CatalogChange change = msg.getMessage() instanceof CatalogChange c ? c : null;
                 Platform.runLater(() -> {
                     if (flowPaneCities != null && flowPaneCities.getScene() != null) {
-                        refreshCatalog();
-                        refreshPendingApprovalsCount();
+                        applyCatalogChange(change);
+                        if (change == null || change.isApprovalsChanged()) {
+                            refreshPendingApprovalsCount();
+                        }
                     }
                 });
             }
@@ -127,28 +135,104 @@ public class CatalogPageController {
         Set<Integer> displayedCityIds = new HashSet<>();
 
 
+        Map<Integer, Parent> cardsById = new HashMap<>();
+        Map<Integer, String> namesById = new HashMap<>();
+
         for (GCMMap gcmMap : maps) {
             City city = gcmMap.getCity();
             if (city != null && !displayedCityIds.contains(city.getId())) {
-                try {
-                    FXMLLoader loader = new FXMLLoader(getClass().getResource("/GUI/CityCard.fxml"));
-                    Parent card = loader.load();
-
-                    CityCardController controller = loader.getController();
-                    controller.setData(gcmMap, this);
-
+                Parent card = createCityCard(gcmMap);
+                if (card != null) {
                     cityCards.add(card);
                     displayedCityIds.add(city.getId());
-                } catch (Exception e) {
-                    System.err.println("Error loading city card: " + e.getMessage());
+                    cardsById.put(city.getId(), card);
+                    namesById.put(city.getId(), city.getName());
                 }
             }
         }
         Platform.runLater(() -> {
             flowPaneCities.getChildren().setAll(cityCards);
+            cardsByCityId.clear();
+            cardsByCityId.putAll(cardsById);
+            cityNamesById.clear();
+            cityNamesById.putAll(namesById);
         });
     }
 
+    /**
+     * Apply a server catalog notification.
+     * Only the cards of the cities it names are reloaded; a change we cannot
+     * place (no payload, search results, a city not on the page) reloads everything.
+     */
+    private void applyCatalogChange(CatalogChange change) {
+        if (change != null && change.isContentUnchanged()) {
+            return;
+        }
+        String mapFilter = cbMap.getValue();
+        if (change == null || lastCatalogResponse == null || lastCatalogResponse.isSearchMode()
+                || (mapFilter != null && !mapFilter.isEmpty())) {
+            refreshCatalog();
+            return;
+        }
+
+        String cityFilter = cbCity.getValue();
+        boolean filteredByCity = cityFilter != null && !cityFilter.isEmpty();
+        for (Integer cityId : change.getCityIds()) {
+            if (cardsByCityId.containsKey(cityId)) {
+                refreshCityCard(cityId);
+            } else if (!filteredByCity) {
+                // A city that just got its first map
+                refreshCatalog();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reload a single city's card in place.
+     */
+    private void refreshCityCard(int cityId) {
+        CatalogFilter filter = new CatalogFilter(cityNamesById.get(cityId), null, null);
+        client.sendAsync(new Message(ActionType.GET_CATALOG_REQUEST, filter)).whenComplete((response, error) -> Platform.runLater(() -> {
+            if (error != null || response == null || response.getAction() != ActionType.GET_CATALOG_RESPONSE) {
+                return;
+            }
+            CatalogResponse cityResponse = (CatalogResponse) response.getMessage();
+            GCMMap cityMap = null;
+            for (GCMMap map : cityResponse.getMaps()) {
+                if (map.getCity() != null && map.getCity().getId() == cityId) {
+                    cityMap = map;
+                    break;
+                }
+            }
+            if (cityMap == null) {
+                // Renamed, or its last map is gone - the list itself changed
+                refreshCatalog();
+                return;
+            }
+
+            Parent newCard = createCityCard(cityMap);
+            int index = flowPaneCities.getChildren().indexOf(cardsByCityId.get(cityId));
+            if (newCard != null && index >= 0) {
+                flowPaneCities.getChildren().set(index, newCard);
+                cardsByCityId.put(cityId, newCard);
+            }
+        }));
+    }
+
+    private Parent createCityCard(GCMMap gcmMap) {
+        try {
+            FXMLLoader loader = new FXMLLoader(getClass().getResource("/GUI/CityCard.fxml"));
+            Parent card = loader.load();
+            CityCardController controller = loader.getController();
+            controller.setData(gcmMap, this);
+            return card;
+        } catch (Exception e) {
+            System.err.println("Error loading city card: " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Setup combo box change listeners for cascading filters.
      */
@@ -173,18 +257,15 @@ public class CatalogPageController {
      * Single request replaces the old 4 separate requests!
      */
     private void loadCatalog(String city, String map, String version) {
-        new Thread(() -> {
-            try {
-                CatalogFilter filter = new CatalogFilter(city, map, version);
-                Message request = new Message(ActionType.GET_CATALOG_REQUEST, filter);
-                Message response = (Message) client.sendRequest(request);
-
-                Platform.runLater(() -> handleCatalogResponse(response));
-
-            } catch (Exception e) {
-                Platform.runLater(() -> showAlert("Error", "Failed to load catalog: " + e.getMessage()));
+        CatalogFilter filter = new CatalogFilter(city, map, version);
+        Message request = new Message(ActionType.GET_CATALOG_REQUEST, filter);
+        client.sendAsync(request).whenComplete((response, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                showAlert("Error", "Failed to load catalog: " + error.getMessage());
+            } else {
+                handleCatalogResponse(response);
             }
-        }).start();
+        }));
     }
 
     /**
@@ -596,18 +677,13 @@ public class CatalogPageController {
             return;
         }
 
-        final ActionType finalRequestType = requestType;
-
-        new Thread(() -> {
-            try {
-                Message request = new Message(finalRequestType, null);
-                Message response = (Message) client.sendRequest(request);
-
-                Platform.runLater(() -> updateApprovalButtonCount(response, role));
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        }).start();
+        Message request = new Message(requestType, null);
+        client.sendAsync(request)
+                .thenAccept(response -> Platform.runLater(() -> updateApprovalButtonCount(response, role)))
+                .exceptionally(e -> {
+                    e.printStackTrace();
+                    return null;
+                });
     }
 
     private void updateApprovalButtonCount(Message response, EmployeeRole role) {
@@ -2,6 +2,7 @@ package controllers;
 
 import common.content.City;
 import common.content.GCMMap;
+import common.dto.CatalogChange;
 import common.dto.CatalogFilter;
 import common.dto.CatalogResponse;
 import common.enums.ActionType;
@@ -24,7 +25,9 @@ import javafx.stage.Modality;
 import javafx.stage.Stage;
 import java.io.IOException;
 import java.util.List;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import client.GCMClient;
@@ -57,7 +60,9 @@ public class CityMapsPageController {
     // @FXML private Button btnAddExternalMap;
     // @FXML private Button btnAddCity;
     private boolean isLoading = false;
+    private boolean showingTours = false;
     private SubscriptionStatusDTO subscriptionStatus;
+    private final Map<Integer, Parent> mapCardsById = new HashMap<>();   // Displayed map cards
 
     @FXML private Button btnShowMaps;
     @FXML private Button btnShowTours;
@@ -66,12 +71,20 @@ public class CityMapsPageController {
     public void initialize() {
         applyRolePermissions();
 
-        // Listen for server-pushed notifications to refresh approval counts
+        // Listen for server-pushed notifications to refresh approval counts and changed maps
         GCMClient.getInstance().addNotificationListener((Message msg) -> {
             if (msg.getAction() == ActionType.CATALOG_UPDATED_NOTIFICATION) {
+                CatalogChange change = msg.getMessage() instanceof CatalogChange c ? c : null;
                 Platform.runLater(() -> {
                     if (btnApprovals != null && btnApprovals.getScene() != null) {
-                        refreshPendingApprovalsCount();
+                        if (change == null || change.isApprovalsChanged()) {
+                            refreshPendingApprovalsCount();
+                        }
+                        if (change != null && selectedCity != null
+                                && change.getCityIds().contains(selectedCity.getId())
+                                && !change.getMapIds().isEmpty()) {
+                            refreshChangedMaps(change.getMapIds());
+                        }
                     }
                 });
             }
@@ -107,26 +120,24 @@ public class CityMapsPageController {
         if (isLoading) return; // אם כבר יש טעינה בדרך, אל תתחיל חדשה
 
         isLoading = true;
-        new Thread(() -> {
-            try {
-                CatalogFilter filter = new CatalogFilter(cityName, null, null);
-                Message request = new Message(ActionType.GET_CATALOG_REQUEST, filter);
-                Message response = (Message) GCMClient.getInstance().sendRequest(request);
-
-                Platform.runLater(() -> {
-                        if (response != null && response.getAction() == ActionType.GET_CATALOG_RESPONSE) {
-                            CatalogResponse catalogResponse = (CatalogResponse) response.getMessage();
-                            selectedCity.setMaps(catalogResponse.getMaps());
-                            renderMapCards(selectedCity.getMaps());
-                        }
-
-                        isLoading = false; // שחרור המנעול לאחר העדכון
-                });
-            } catch (Exception e) {
+        CatalogFilter filter = new CatalogFilter(cityName, null, null);
+        Message request = new Message(ActionType.GET_CATALOG_REQUEST, filter);
+        GCMClient.getInstance().sendAsync(request).whenComplete((response, error) -> {
+            if (error != null) {
                 isLoading = false;
-                e.printStackTrace();
+                error.printStackTrace();
+                return;
             }
-        }).start();
+            Platform.runLater(() -> {
+                    if (response.getAction() == ActionType.GET_CATALOG_RESPONSE) {
+                        CatalogResponse catalogResponse = (CatalogResponse) response.getMessage();
+                        selectedCity.setMaps(catalogResponse.getMaps());
+                        renderMapCards(selectedCity.getMaps());
+                    }
+
+                    isLoading = false; // שחרור המנעול לאחר העדכון
+            });
+        });
     }
     private void displayMaps(List<GCMMap> maps) {
         if (maps == null || selectedCity == null) return;
@@ -137,18 +148,14 @@ public class CityMapsPageController {
 
         // 2. הכנת רשימת הכרטיסים ב-Thread הנוכחי (לא ב-UI Thread) כדי לא לתקוע את המסך
         List<Parent> newCards = new java.util.ArrayList<>();
+        Map<Integer, Parent> cardsById = new HashMap<>();
         for (GCMMap map : maps) {
             if (map != null && !seenMapIds.contains(map.getId())) {
-                try {
-                    FXMLLoader loader = new FXMLLoader(getClass().getResource("/GUI/MapCard.fxml"));
-                    Parent card = loader.load();
-                    MapCardController controller = loader.getController();
-                    controller.setData(map);
+                Parent card = createMapCard(map);
+                if (card != null) {
                     newCards.add(card);
                     seenMapIds.add(map.getId());
-
-                } catch (IOException e) {
-                    e.printStackTrace();
+                    cardsById.put(map.getId(), card);
                 }
             }
         }
@@ -157,6 +164,8 @@ public class CityMapsPageController {
         Platform.runLater(() -> {
             if (flowPaneMaps != null) {
                 flowPaneMaps.getChildren().setAll(newCards);
+                mapCardsById.clear();
+                mapCardsById.putAll(cardsById);
                 System.out.println("Displaying " + newCards.size() + " unique maps for " + selectedCity.getName());
             }
         });
@@ -188,21 +197,17 @@ public class CityMapsPageController {
 
         Platform.runLater(() -> {
             flowPaneMaps.getChildren().clear();
+            mapCardsById.clear();
             Set<Integer> seenIds = new HashSet<>();
             List<Parent> newCards = new ArrayList<>();
 
             for (GCMMap map : mapsToDisplay) {
                 if (map != null && !seenIds.contains(map.getId())) {
-                    try {
-                        FXMLLoader loader = new FXMLLoader(getClass().getResource("/GUI/MapCard.fxml"));
-                        Parent card = loader.load();
-                        MapCardController controller = loader.getController();
-                        controller.setData(map);
-
+                    Parent card = createMapCard(map);
+                    if (card != null) {
                         newCards.add(card);
                         seenIds.add(map.getId());
-                    } catch (IOException e) {
-                        e.printStackTrace();
+                        mapCardsById.put(map.getId(), card);
                     }
                 }
             }
@@ -210,6 +215,71 @@ public class CityMapsPageController {
             System.out.println("Rendered " + newCards.size() + " unique maps for " + selectedCity.getName());
         });
     }
+    /**
+     * Reload the cards of maps named in a catalog notification.
+     * Cards of other maps are left as they are; changed maps are replaced in
+     * place, removed maps disappear and new maps are appended.
+     */
+    private void refreshChangedMaps(Set<Integer> changedMapIds) {
+        if (isLoading) return;
+
+        CatalogFilter filter = new CatalogFilter(selectedCity.getName(), null, null);
+        Message request = new Message(ActionType.GET_CATALOG_REQUEST, filter);
+        GCMClient.getInstance().sendAsync(request).whenComplete((response, error) -> Platform.runLater(() -> {
+            if (error != null || response == null || response.getAction() != ActionType.GET_CATALOG_RESPONSE) {
+                return;
+            }
+            List<GCMMap> maps = ((CatalogResponse) response.getMessage()).getMaps();
+            Map<Integer, GCMMap> mapsById = new HashMap<>();
+            for (GCMMap map : maps) {
+                mapsById.putIfAbsent(map.getId(), map);
+            }
+            selectedCity.setMaps(maps);
+
+            boolean appendNew = !showingTours && (txtSearch == null || txtSearch.getText() == null
+                    || txtSearch.getText().isBlank());
+            for (Integer mapId : changedMapIds) {
+                GCMMap map = mapsById.get(mapId);
+                Parent oldCard = mapCardsById.get(mapId);
+                int index = oldCard != null ? flowPaneMaps.getChildren().indexOf(oldCard) : -1;
+
+                if (map == null) {
+                    if (index >= 0) {
+                        flowPaneMaps.getChildren().remove(index);
+                    }
+                    mapCardsById.remove(mapId);
+                    continue;
+                }
+                if (index < 0 && (oldCard != null || !appendNew)) {
+                    continue;   // Not on screen right now (tours view or filtered out)
+                }
+                Parent newCard = createMapCard(map);
+                if (newCard == null) {
+                    continue;
+                }
+                if (index >= 0) {
+                    flowPaneMaps.getChildren().set(index, newCard);
+                } else {
+                    flowPaneMaps.getChildren().add(newCard);
+                }
+                mapCardsById.put(mapId, newCard);
+            }
+        }));
+    }
+
+    private Parent createMapCard(GCMMap map) {
+        try {
+            FXMLLoader loader = new FXMLLoader(getClass().getResource("/GUI/MapCard.fxml"));
+            Parent card = loader.load();
+            MapCardController controller = loader.getController();
+            controller.setData(map);
+            return card;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
     private void loadMaps() {
         Platform.runLater(() -> {
 
@@ -302,6 +372,7 @@ public class CityMapsPageController {
         btnShowMaps.setStyle("-fx-background-color: #3498db; -fx-text-fill: white; -fx-background-radius: 5 5 0 0; -fx-font-weight: bold;");
         btnShowTours.setStyle("-fx-background-color: #ecf0f1; -fx-text-fill: #2c3e50; -fx-background-radius: 5 5 0 0; -fx-border-color: #bdc3c7; -fx-font-weight: bold;");
 
+        showingTours = false;
         if (selectedCity != null && flowPaneMaps != null) {
             displayMaps(selectedCity.getMaps());
         }
@@ -312,6 +383,7 @@ public class CityMapsPageController {
 
         btnShowTours.setStyle("-fx-background-color: #3498db; -fx-text-fill: white; -fx-background-radius: 5 5 0 0; -fx-font-weight: bold;");
         btnShowMaps.setStyle("-fx-background-color: #ecf0f1; -fx-text-fill: #2c3e50; -fx-background-radius: 5 5 0 0; -fx-border-color: #bdc3c7; -fx-font-weight: bold;");
+        showingTours = true;
         if (flowPaneMaps != null) {
             flowPaneMaps.getChildren().clear();
         }
@@ -625,18 +697,13 @@ public class CityMapsPageController {
             return;
         }
 
-        final ActionType finalRequestType = requestType;
-
-        new Thread(() -> {
-            try {
-                Message request = new Message(finalRequestType, null);
-                Message response = (Message) GCMClient.getInstance().sendRequest(request);
-
-                Platform.runLater(() -> updateApprovalButtonCount(response, role));
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        }).start();
+        Message request = new Message(requestType, null);
+        GCMClient.getInstance().sendAsync(request)
+                .thenAccept(response -> Platform.runLater(() -> updateApprovalButtonCount(response, role)))
+                .exceptionally(e -> {
+                    e.printStackTrace();
+                    return null;
+                });
     }
 
     private void updateApprovalButtonCount(Message response, EmployeeRole role) {
@@ -662,36 +729,33 @@ public class CityMapsPageController {
         User user = GCMClient.getInstance().getCurrentUser();
         if (!(user instanceof Client) || btnSubscribe == null) return;
 
-        new Thread(() -> {
-            try {
-                ArrayList<Integer> params = new ArrayList<>();
-                params.add(user.getId());
-                params.add(city.getId());
+        ArrayList<Integer> params = new ArrayList<>();
+        params.add(user.getId());
+        params.add(city.getId());
 
-                Message request = new Message(ActionType.CHECK_SUBSCRIPTION_STATUS_REQUEST, params);
-                Message response = (Message) GCMClient.getInstance().sendRequest(request);
+        Message request = new Message(ActionType.CHECK_SUBSCRIPTION_STATUS_REQUEST, params);
+        GCMClient.getInstance().sendAsync(request).thenAccept(response -> {
+            if (response.getAction() == ActionType.CHECK_SUBSCRIPTION_STATUS_RESPONSE) {
+                SubscriptionStatusDTO status = (SubscriptionStatusDTO) response.getMessage();
+                this.subscriptionStatus = status;
 
-                if (response != null && response.getAction() == ActionType.CHECK_SUBSCRIPTION_STATUS_RESPONSE) {
-                    SubscriptionStatusDTO status = (SubscriptionStatusDTO) response.getMessage();
-                    this.subscriptionStatus = status;
-
-                    Platform.runLater(() -> {
-                        if (status.isActive()) {
-                            DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-                            btnSubscribe.setText("Subscribed until " + dtf.format(status.getExpirationDate()));
-                            btnSubscribe.setStyle("-fx-background-color: #27ae60, white; -fx-background-insets: 0, 2; -fx-background-radius: 5, 3; -fx-text-fill: #27ae60; -fx-font-weight: bold;");
-                        } else {
-                            btnSubscribe.setText(String.format("Subscribe ($%.2f/mo)", status.getPricePerMonth()));
-                            btnSubscribe.setStyle("-fx-background-color: #27ae60; -fx-text-fill: white; -fx-font-weight: bold; -fx-background-radius: 5;");
-                        }
-                        btnSubscribe.setVisible(true);
-                        btnSubscribe.setManaged(true);
-                    });
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
+                Platform.runLater(() -> {
+                    if (status.isActive()) {
+                        DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+                        btnSubscribe.setText("Subscribed until " + dtf.format(status.getExpirationDate()));
+                        btnSubscribe.setStyle("-fx-background-color: #27ae60, white; -fx-background-insets: 0, 2; -fx-background-radius: 5, 3; -fx-text-fill: #27ae60; -fx-font-weight: bold;");
+                    } else {
+                        btnSubscribe.setText(String.format("Subscribe ($%.2f/mo)", status.getPricePerMonth()));
+                        btnSubscribe.setStyle("-fx-background-color: #27ae60; -fx-text-fill: white; -fx-font-weight: bold; -fx-background-radius: 5;");
+                    }
+                    btnSubscribe.setVisible(true);
+                    btnSubscribe.setManaged(true);
+                });
             }
-        }).start();
+        }).exceptionally(e -> {
+            e.printStackTrace();
+            return null;
+        });
     }
 
     @FXML
@@ -195,8 +195,11 @@ public class EditModeController {
 
         new Thread(() -> {
             try {
-                Message request = new Message(ActionType.GET_CITY_FULL_DETAILS_REQUEST, selected.getId());
-                Message response = (Message) client.sendRequest(request);
+                // Editing needs every image, so wait for the streamed images to complete
+                Message response = client.requestWithImages(ActionType.GET_CITY_FULL_DETAILS_REQUEST, selected.getId())
+                        .onProgress((mapId, fraction) -> Platform.runLater(() -> lblStatus.setText(String.format(
+                                "Loading: %s... map images %d%%", selected.getName(), Math.round(fraction * 100)))))
+                        .completion().get();
                 if (response != null && response.getAction() == ActionType.GET_CITY_FULL_DETAILS_RESPONSE) {
                     City fullCity = (City) response.getMessage();
                     Platform.runLater(() -> loadCityData(fullCity));
@@ -24,6 +24,7 @@ import javafx.scene.text.Text;
 import javafx.stage.Stage;
 
 import client.GCMClient;
+import client.MapImageDownload;
 import common.enums.ActionType;
 import common.messaging.Message;
 import javafx.application.Platform;
@@ -57,11 +58,15 @@ public class MapContentPopupController {
             lblMapName.setText(currentMap.getName());
         }
 
-        // Fetch full map details from server (includes image, sites, markers)
+        // Fetch full map details from server; sites and markers come first,
+        // the image follows in chunks and is shown once complete
         new Thread(() -> {
             try {
-                Message request = new Message(ActionType.GET_MAP_DETAILS_REQUEST, currentMap.getId());
-                Message response = (Message) GCMClient.getInstance().sendRequest(request);
+                MapImageDownload download = GCMClient.getInstance()
+                        .requestWithImages(ActionType.GET_MAP_DETAILS_REQUEST, currentMap.getId());
+                download.onProgress((mapId, fraction) -> Platform.runLater(() -> showImageProgress(fraction)));
+                download.completion().thenAccept(full -> Platform.runLater(this::imageReceived));
+                Message response = download.response().get();
 
                 Platform.runLater(() -> {
                     if (response != null && response.getAction() == ActionType.GET_MAP_DETAILS_RESPONSE) {
@@ -138,12 +143,35 @@ public class MapContentPopupController {
             Image image = new Image(new ByteArrayInputStream(imageData));
             imgMapView.setImage(image);
             imgMapView.setVisible(true);
+            if (imagePlaceholder != null) {
+                imagePlaceholder.setVisible(false);
+                imagePlaceholder.setManaged(false);
+            }
+        } else if (currentMap.getImageLength() > 0) {
+            // Still streaming; imageReceived() shows it
+            showImagePlaceholder("Loading Map Image", "Downloading map image...");
         } else {
             // Has access but no image uploaded yet
             showImagePlaceholder("No Image Available", "A map image has not been uploaded yet.");
         }
     }
 
+    private boolean canSeeImage() {
+        return accessLevel == MapAccessLevel.FULL_ACCESS || accessLevel == MapAccessLevel.MAP_PURCHASED;
+    }
+
+    private void showImageProgress(double fraction) {
+        if (!canSeeImage() || lblPlaceholderMessage == null) return;
+        if (currentMap != null && currentMap.getMapImage() != null) return;
+        lblPlaceholderMessage.setText(String.format("Downloading map image... %d%%", Math.round(fraction * 100)));
+    }
+
+    private void imageReceived() {
+        if (!canSeeImage()) return;
+        showMapImage();
+        renderMarkers();
+    }
+
     private void showImagePlaceholder(String title, String message) {
         if (imgMapView != null) {
             imgMapView.setVisible(false);
@@ -8,6 +8,7 @@ import common.messaging.Message;
 import common.purchase.PurchasedMapSnapshot;
 import common.report.ActivityReport;
 import common.report.AllClientsReport;
+import common.report.ServerMetricsReport;
 import common.report.SupportRequestsReport;
 import common.support.SupportTicketRowDTO;
 import javafx.application.Platform;
@@ -72,7 +73,7 @@ public class ReportPageController {
     @FXML private Button btnExportPdf;
 
     // ===== STATE =====
-    private long currentRequestId = 0;
+    private volatile long currentRequestId = 0;
     private String displayedReport = null;
 
     private static final DateTimeFormatter CREATED_FMT =
@@ -88,7 +89,8 @@ public class ReportPageController {
                 "Purchases report",
                 "Users report",
                 "Activity report",
-                "Support Requests report"   // <-- EXACT string used in switch
+                "Support Requests report",   // <-- EXACT string used in switch
+                "Server performance report"
         ));
 
         cmbReportType.getSelectionModel().clearSelection();
@@ -131,7 +133,8 @@ public class ReportPageController {
 
         cmbReportType.valueProperty().addListener((obs, oldV, newV) -> {
             // city selection logic
-            if ("Clients report".equals(newV) || "Support Requests report".equals(newV)) {
+            if ("Clients report".equals(newV) || "Support Requests report".equals(newV)
+                    || "Server performance report".equals(newV)) {
                 cmbCity.getSelectionModel().clearSelection();
             } else {
                 if (cmbCity.getValue() == null && cmbCity.getItems() != null && !cmbCity.getItems().isEmpty()) {
@@ -152,14 +155,15 @@ public class ReportPageController {
         boolean hasReport = report != null && !report.isBlank();
         boolean isClients = "Clients report".equals(report);
         boolean isSupport = "Support Requests report".equals(report);
+        boolean isServer = "Server performance report".equals(report);
 
         boolean supportsDateRange = "Activity report".equals(report) || "Purchases report".equals(report);
 
         dpFrom.setDisable(!supportsDateRange);
         dpTo.setDisable(!supportsDateRange);
 
-        // City should be disabled for Clients + Support Requests
-        boolean needsCity = !(isClients || isSupport);
+        // City should be disabled for Clients + Support Requests + Server performance
+        boolean needsCity = !(isClients || isSupport || isServer);
         cmbCity.setDisable(!hasReport || !needsCity);
 
         boolean cityChosen = cmbCity.getValue() != null;
@@ -188,6 +192,7 @@ public class ReportPageController {
         boolean isActivity = "Activity report".equals(report);
         boolean isPurchases = "Purchases report".equals(report);
         boolean isSupport = "Support Requests report".equals(report);
+        boolean isServer = "Server performance report".equals(report);
 
         lblChooseReport.setVisible(!hasReport);
         lblChooseReport.setManaged(!hasReport);
@@ -201,7 +206,7 @@ public class ReportPageController {
         tableView.setVisible(false);
         tableView.setManaged(false);
 
-        if (isClients || isSupport) {
+        if (isClients || isSupport || isServer) {
             barChart.setVisible(true);
             barChart.setManaged(true);
             barChart.setPrefWidth(285);
@@ -281,6 +286,7 @@ public class ReportPageController {
             case "Activity report" -> generateActivityReport(reqId);
             case "Purchases report" -> generatePurchasesReport(reqId);
             case "Support Requests report" -> generateSupportRequestsReport(reqId);
+            case "Server performance report" -> generateServerMetricsReport(reqId);
             default -> {
                 lblChooseReport.setText("This report is not implemented yet.");
                 lblChooseReport.setVisible(true);
@@ -293,31 +299,51 @@ public class ReportPageController {
     }
 
     // ===== CLIENTS REPORT =====
+
+    /**
+     * Loads the clients report page by page: the first page fills the chart
+     * and the table, and every further page is appended to the table as it
+     * arrives. The table only creates cells for the visible rows. Stops as
+     * soon as another report is chosen.
+     */
     private void generateClientsReport(long reqId) {
         new Thread(() -> {
             try {
-                Message req = new Message(ActionType.GET_ALL_CLIENTS_REPORT_REQUEST, null);
-                Message res = (Message) GCMClient.getInstance().sendRequest(req);
-
-                Platform.runLater(() -> {
-                    if (reqId != currentRequestId) return;
-
-                    if (res != null && res.getAction() == ActionType.GET_ALL_CLIENTS_REPORT_RESPONSE) {
-                        AllClientsReport report = (AllClientsReport) res.getMessage();
-
-                        lblChooseReport.setVisible(false);
-                        lblChooseReport.setManaged(false);
-
-                        setupClientsTableColumns();
-                        setupClientsTableInteractions();
-
-                        fillClientsTable(report);
-                        fillClientsBarChart(report);
-
-                    } else {
-                        showAlert("Error", "Failed to generate clients report.");
+                Integer afterId = null;
+                boolean first = true;
+                do {
+                    ArrayList<Object> page = new ArrayList<>();
+                    page.add(afterId);
+                    page.add(AllClientsReport.PAGE_SIZE);
+                    Message req = new Message(ActionType.GET_ALL_CLIENTS_REPORT_REQUEST, page);
+                    Message res = (Message) GCMClient.getInstance().sendRequest(req);
+
+                    if (res == null || res.getAction() != ActionType.GET_ALL_CLIENTS_REPORT_RESPONSE) {
+                        Platform.runLater(() -> {
+                            if (reqId == currentRequestId) showAlert("Error", "Failed to generate clients report.");
+                        });
+                        return;
                     }
-                });
+                    AllClientsReport report = (AllClientsReport) res.getMessage();
+                    boolean firstPage = first;
+                    Platform.runLater(() -> {
+                        if (reqId != currentRequestId) return;
+
+                        if (firstPage) {
+                            lblChooseReport.setVisible(false);
+                            lblChooseReport.setManaged(false);
+
+                            setupClientsTableColumns();
+                            setupClientsTableInteractions();
+
+                            tableView.setItems(FXCollections.observableArrayList());
+                            fillClientsBarChart(report);
+                        }
+                        appendClientsPage(report);
+                    });
+                    afterId = report.nextAfterId;
+                    first = false;
+                } while (afterId != null && reqId == currentRequestId);
 
             } catch (Exception e) {
                 Platform.runLater(() -> showAlert("Network Error", "Could not generate report: " + e.getMessage()));
@@ -325,12 +351,11 @@ public class ReportPageController {
         }).start();
     }
 
-    private void fillClientsTable(AllClientsReport report) {
+    private void appendClientsPage(AllClientsReport report) {
         if (report == null || report.clientsNewestFirst == null) {
-            tableView.setItems(FXCollections.observableArrayList());
             return;
         }
-        tableView.setItems(FXCollections.observableArrayList(report.clientsNewestFirst));
+        tableView.getItems().addAll(report.clientsNewestFirst);
     }
 
     private void fillClientsBarChart(AllClientsReport report) {
@@ -666,6 +691,174 @@ public class ReportPageController {
     }
 
 
+    // ===== SERVER PERFORMANCE REPORT =====
+    private void generateServerMetricsReport(long reqId) {
+
+        new Thread(() -> {
+            try {
+                Message req = new Message(ActionType.GET_SERVER_METRICS_REQUEST, null);
+                Message res = (Message) GCMClient.getInstance().sendRequest(req);
+
+                Platform.runLater(() -> {
+                    if (reqId != currentRequestId) return;
+
+                    if (res != null && res.getAction() == ActionType.GET_SERVER_METRICS_RESPONSE) {
+
+                        ServerMetricsReport report = (ServerMetricsReport) res.getMessage();
+
+                        lblChooseReport.setVisible(false);
+                        lblChooseReport.setManaged(false);
+
+                        setupServerMetricsTableColumns();
+                        setupServerMetricsTableInteractions(report);
+
+                        tableView.setItems(FXCollections.observableArrayList(
+                                report.rows == null ? List.of() : report.rows));
+                        fillServerMetricsBarChart(report);
+
+                    } else {
+                        String reason = (res != null && res.getMessage() instanceof String msg) ? msg : "";
+                        showAlert("Error", "Failed to load server performance. " + reason);
+                    }
+                });
+
+            } catch (Exception e) {
+                Platform.runLater(() -> showAlert("Network Error", "Could not generate report: " + e.getMessage()));
+            }
+        }).start();
+    }
+
+    private void setupServerMetricsTableColumns() {
+
+        colId.setText("Requests");
+        colUsername.setText("Action");
+        colEmail.setText("Errors / running");
+        colFirstName.setText("p50 / p95 (ms)");
+        colLastName.setText("p99 (ms)");
+        colCreatedAt.setText("Max (ms)");
+
+        colId.setCellValueFactory(data -> {
+            ServerMetricsReport.ActionRow r = (ServerMetricsReport.ActionRow) data.getValue();
+            return new javafx.beans.property.SimpleLongProperty(r.requests);
+        });
+
+        colUsername.setCellValueFactory(data -> {
+            ServerMetricsReport.ActionRow r = (ServerMetricsReport.ActionRow) data.getValue();
+            return new javafx.beans.property.SimpleStringProperty(r.action == null ? "" : r.action.name());
+        });
+
+        colEmail.setCellValueFactory(data -> {
+            ServerMetricsReport.ActionRow r = (ServerMetricsReport.ActionRow) data.getValue();
+            return new javafx.beans.property.SimpleStringProperty(r.errors + " / " + r.inFlight);
+        });
+
+        colFirstName.setCellValueFactory(data -> {
+            ServerMetricsReport.ActionRow r = (ServerMetricsReport.ActionRow) data.getValue();
+            return new javafx.beans.property.SimpleStringProperty(
+                    millis(r.total.p50Micros) + " / " + millis(r.total.p95Micros));
+        });
+
+        colLastName.setCellValueFactory(data -> {
+            ServerMetricsReport.ActionRow r = (ServerMetricsReport.ActionRow) data.getValue();
+            return new javafx.beans.property.SimpleStringProperty(millis(r.total.p99Micros));
+        });
+
+        colCreatedAt.setCellValueFactory(data -> {
+            ServerMetricsReport.ActionRow r = (ServerMetricsReport.ActionRow) data.getValue();
+            return new javafx.beans.property.SimpleStringProperty(millis(r.total.maxMicros));
+        });
+    }
+
+    private void fillServerMetricsBarChart(ServerMetricsReport report) {
+        barChart.getData().clear();
+        barChart.setAnimated(false);
+
+        if (report == null || report.rows == null) return;
+
+        // p95 of the five busiest request types, split by stage
+        List<ServerMetricsReport.ActionRow> top = report.rows.subList(0, Math.min(5, report.rows.size()));
+        String[] stages = {"Queue", "Handler", "Encode", "Write"};
+        for (int i = 0; i < stages.length; i++) {
+            XYChart.Series<String, Number> s = new XYChart.Series<>();
+            s.setName(stages[i]);
+            for (ServerMetricsReport.ActionRow r : top) {
+                ServerMetricsReport.LatencyStats stats = switch (i) {
+                    case 0 -> r.queue;
+                    case 1 -> r.handler;
+                    case 2 -> r.serialization;
+                    default -> r.write;
+                };
+                String label = r.action.name().replace("_REQUEST", "");
+                s.getData().add(new XYChart.Data<>(label, stats.p95Micros / 1000.0));
+            }
+            barChart.getData().add(s);
+        }
+    }
+
+    private void setupServerMetricsTableInteractions(ServerMetricsReport report) {
+        tableView.setRowFactory(tv -> {
+            TableRow<Object> row = new TableRow<>();
+            row.setOnMouseClicked(e -> {
+                if (e.getClickCount() == 2 && !row.isEmpty()
+                        && row.getItem() instanceof ServerMetricsReport.ActionRow actionRow) {
+                    showServerMetricsDialog(report, actionRow);
+                }
+            });
+            return row;
+        });
+    }
+
+    private void showServerMetricsDialog(ServerMetricsReport report, ServerMetricsReport.ActionRow row) {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%-9s %8s %9s %9s %9s %9s%n", "Stage", "Count", "p50 ms", "p95 ms", "p99 ms", "Max ms"));
+        appendStage(text, "Queue", row.queue);
+        appendStage(text, "Handler", row.handler);
+        appendStage(text, "Encode", row.serialization);
+        appendStage(text, "Write", row.write);
+        appendStage(text, "Total", row.total);
+        text.append(String.format("%nRequests %d, errors %d, running now %d%n", row.requests, row.errors, row.inFlight));
+        text.append(String.format("SQL statements %d (%.1f per request)%n", row.sqlStatements,
+                row.requests == 0 ? 0.0 : (double) row.sqlStatements / row.requests));
+        text.append(String.format("Workers busy %d/%d, queue %d (peak %d), rejected %d, clients %d%n",
+                report.activeWorkers, report.workerThreads, report.queueDepth, report.peakQueueDepth,
+                report.rejectedRequests, report.connectedClients));
+        text.append(String.format("Image cache hits %d, misses %d, evictions %d, %d KB mapped%n",
+                report.imageCacheHits, report.imageCacheMisses, report.imageCacheEvictions,
+                report.imageCacheMappedBytes / 1024));
+        text.append(String.format("Map events written %d, dropped %d, queued %d, %d batches (%.1f per batch)%n",
+                report.eventsWritten, report.eventsDropped, report.eventQueueDepth, report.eventBatches,
+                report.eventBatches == 0 ? 0.0 : (double) report.eventsWritten / report.eventBatches));
+        if (report.eventFlush != null) {
+            appendStage(text, "Ev.flush", report.eventFlush);
+        }
+        long reportLookups = report.reportCacheHits + report.reportCacheMisses;
+        text.append(String.format("Report cache hits %d, misses %d (%.0f%% hit rate), %d reports, %d KB%n",
+                report.reportCacheHits, report.reportCacheMisses,
+                reportLookups == 0 ? 0.0 : 100.0 * report.reportCacheHits / reportLookups,
+                report.reportCacheEntries, report.reportCacheBytes / 1024));
+        text.append("Captured ").append(report.capturedAt == null ? "" : CREATED_FMT.format(report.capturedAt));
+
+        TextArea body = new TextArea(text.toString());
+        body.setEditable(false);
+        body.setStyle("-fx-font-family: monospace;");
+        body.setPrefRowCount(12);
+
+        Dialog<Void> dialog = new Dialog<>();
+        dialog.setTitle(row.action.name());
+        dialog.getDialogPane().setContent(body);
+        dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+        dialog.showAndWait();
+    }
+
+    private static void appendStage(StringBuilder text, String stage, ServerMetricsReport.LatencyStats stats) {
+        text.append(String.format("%-9s %8d %9s %9s %9s %9s%n", stage, stats.count,
+                millis(stats.p50Micros), millis(stats.p95Micros), millis(stats.p99Micros), millis(stats.maxMicros)));
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.2f", micros / 1000.0);
+    }
+
     private void setupSupportTableInteractions() {
         tableView.setRowFactory(tv -> {
             TableRow<Object> row = new TableRow<>();
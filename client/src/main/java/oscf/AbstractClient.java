@@ -1 +1 @@
-// This file contains material supporting section 3.7 of the textbook:// "Object Oriented Software Engineering" and is issued under the open-source// license found at www.lloseng.com package oscf;import java.io.IOException;import java.io.ObjectInputStream;import java.io.ObjectOutputStream;import java.net.InetAddress;import java.net.Socket;import java.net.SocketException;/*** The <code> AbstractClient </code> contains all the* methods necessary to set up the client side of a client-server* architecture.  When a client is thus connected to the* server, the two programs can then exchange <code> Object </code>* instances.<p>** Method <code> handleMessageFromServer </code> must be defined by* a concrete subclass. Several other hook methods may also be* overriden.<p>** Several public service methods are provided to* application that use this framework.<p>** Project Name: OCSF (Object Client-Server Framework)<p>** @author Dr. Robert Lagani&egrave;re* @author Dr. Timothy C. Lethbridge* @author Fran&ccedil;ois  B&eacutel;langer* @author Paul Holden* @version February 2001 (2.12)*/public abstract class AbstractClient implements Runnable{// INSTANCE VARIABLES ***********************************************  /**  * Sockets are used in the operating system as channels  * of communication between two processes.  * @see Socket  */  private Socket clientSocket;  /**  * The stream to handle data going to the server.  */  private ObjectOutputStream output;  /**  * The stream to handle data from the server.  */  private ObjectInputStream input;  /**  * The thread created to read data from the server.  */  private Thread clientReader;  /**  * Indicates if the thread is ready to stop.  * Needed so that the loop in the run method knows when to stop  * waiting for incoming messages.  */  private boolean readyToStop= false;  /**  * The server's host name.  */  private String host;  /**  * The port number.  */  private int port;// CONSTRUCTORS *****************************************************  /**   * Constructs the client.   *   * @param  host  the server's host name.   * @param  port  the port number.   */  public AbstractClient(String host, int port)  {    // Initialize variables    this.host = host;    this.port = port;  }// INSTANCE METHODS *************************************************  /**   * Opens the connection with the server.   * If the connection is already opened, this call has no effect.   *   * @exception IOException if an I/O error occurs when opening.   */  final public void openConnection() throws IOException  {    // Do not do anything if the connection is already open    if(isConnected())      return;    //Create the sockets and the data streams    try    {      clientSocket= new Socket(host, port);      output = new ObjectOutputStream(clientSocket.getOutputStream());      input = new ObjectInputStream(clientSocket.getInputStream());    }    catch (IOException ex)    // All three of the above must be closed when there is a failure    // to create any of them    {      try      {        closeAll();      }      catch (Exception exc) { }      throw ex; // Rethrow the exception.    }    clientReader = new Thread(this);  //Create the data reader thread    readyToStop = false;    clientReader.start();  //Start the thread  }  /**   * Sends an object to the server. This is the only way that   * methods should communicate with the server.   *   * @param msg   The message to be sent.   * @exception IOException if an I/O error occurs when sending   */  final public void sendToServer(Object msg) throws IOException  {    if (clientSocket == null || output == null)      throw new SocketException("socket does not exist");    output.writeObject(msg);    output.reset();  }  /**   * Closes the connection to the server.   *   * @exception IOException if an I/O error occurs when closing.   */  final public void closeConnection() throws IOException  {    // Prevent the thread from looping any more    readyToStop= true;    try    {      closeAll();    }    finally    {      // Call the hook method      connectionClosed();    }  }// ACCESSING METHODS ------------------------------------------------  /**   * @return true if the client is connnected.   */  final public boolean isConnected()  {    return clientReader!=null && clientReader.isAlive();  }  /**   * @return the port number.   */  final public int getPort()  {    return port;  }  /**   * Sets the server port number for the next connection.   * The change in port only takes effect at the time of the   * next call to openConnection().   *   * @param port the port number.   */  final public void setPort(int port)  {    this.port = port;  }  /**   * @return the host name.   */  final public String getHost()  {    return host;  }  /**   * Sets the server host for the next connection.   * The change in host only takes effect at the time of the   * next call to openConnection().   *   * @param host the host name.   */  final public void setHost(String host)  {    this.host = host;  }  /**   * returns the client's description.   *   * @return the client's Inet address.   */  final public InetAddress getInetAddress()  {    return clientSocket.getInetAddress();  }// RUN METHOD -------------------------------------------------------  /**   * Waits for messages from the server. When each arrives,   * a call is made to <code>handleMessageFromServer()</code>.   * Not to be explicitly called.   */  final public void run()  {    connectionEstablished();    // The message from the server    Object msg;    // Loop waiting for data    try    {      while(!readyToStop)      {        // Get data from Server and send it to the handler        // The thread waits indefinitely at the following        // statement until something is received from the server        msg = input.readObject();        // Concrete subclasses do what they want with the        // msg by implementing the following method        handleMessageFromServer(msg);      }    }    catch (Exception exception)    {      if(!readyToStop)      {        try        {          closeAll();        }        catch (Exception ex) { }        connectionException(exception);      }    }    finally    {      clientReader = null;    }  }// METHODS DESIGNED TO BE OVERRIDDEN BY CONCRETE SUBCLASSES ---------  /**   * Hook method called after the connection has been closed.   * The default implementation does nothing. The method   * may be overriden by subclasses to perform special processing   * such as cleaning up and terminating, or attempting to   * reconnect.   */  protected void connectionClosed() {}  /**   * Hook method called each time an exception is thrown by the   * client's thread that is waiting for messages from the server.   * The method may be overridden by subclasses.   *   * @param exception the exception raised.   */  protected void connectionException(Exception exception) {}  /**   * Hook method called after a connection has been established.   * The default implementation does nothing.   * It may be overridden by subclasses to do anything they wish.   */  protected void connectionEstablished() {}  /**   * Handles a message sent from the server to this client.   * This MUST be implemented by subclasses, who should respond to   * messages.   *   * @param msg   the message sent.   */  protected abstract void handleMessageFromServer(Object msg);// METHODS TO BE USED FROM WITHIN THE FRAMEWORK ONLY ----------------  /**   * Closes all aspects of the connection to the server.   *   * @exception IOException if an I/O error occurs when closing.   */  private void closeAll() throws IOException  {    try    {      //Close the socket      if (clientSocket != null)        clientSocket.close();      //Close the output stream      if (output != null)        output.close();      //Close the input stream      if (input != null)        input.close();    }    finally    {      // Set the streams and the sockets to NULL no matter what      // Doing so allows, but does not require, any finalizers      // of these objects to reclaim system resources if and      // when they are garbage collected.      output = null;      input = null;      clientSocket = null;    }  }}// end of AbstractClient class
\ No newline at end of file
+// This file contains material supporting section 3.7 of the textbook:// "Object Oriented Software Engineering" and is issued under the open-source// license found at www.lloseng.com package oscf;import java.io.BufferedInputStream;import java.io.BufferedOutputStream;import java.io.DataInputStream;import java.io.DataOutputStream;import java.io.IOException;import java.io.ObjectInputStream;import java.io.ObjectOutputStream;import java.net.InetAddress;import java.nio.ByteBuffer;import java.net.Socket;import java.net.SocketException;import java.net.SocketTimeoutException;import java.util.concurrent.Executors;import java.util.concurrent.ScheduledExecutorService;import java.util.concurrent.ScheduledFuture;import java.util.concurrent.TimeUnit;/*** The <code> AbstractClient </code> contains all the* methods necessary to set up the client side of a client-server* architecture.  When a client is thus connected to the* server, the two programs can then exchange <code> Object </code>* instances.<p>** Method <code> handleMessageFromServer </code> must be defined by* a concrete subclass. Several other hook methods may also be* overriden.<p>** Several public service methods are provided to* application that use this framework.<p>** Project Name: OCSF (Object Client-Server Framework)<p>** @author Dr. Robert Lagani&egrave;re* @author Dr. Timothy C. Lethbridge* @author Fran&ccedil;ois  B&eacutel;langer* @author Paul Holden* @version February 2001 (2.12)*/public abstract class AbstractClient implements Runnable{// CLASS VARIABLES **************************************************  /**  * The one thread, shared by every client, that checks heartbeats.  */  private static ScheduledExecutorService heartbeatTimer;// INSTANCE VARIABLES ***********************************************  /**  * Sockets are used in the operating system as channels  * of communication between two processes.  * @see Socket  */  private Socket clientSocket;  /**  * The stream to handle data going to the server.  */  private ObjectOutputStream output;  /**  * The stream to handle data from the server.  */  private ObjectInputStream input;  /**  * Streams used instead of the object streams in framed mode.  */  private DataOutputStream frameOutput;  private DataInputStream frameInput;  /**  * Indicates if the next connection uses the length-prefixed framed  * protocol rather than a continuous object stream. A server in  * NIO mode only accepts framed clients. Set to true by default.  */  private boolean framed = true;  /**  * Codec asked for in the framed handshake, null to use Java  * serialization without negotiating.  */  private PayloadCodec preferredCodec;  /**  * Codec of the current connection, as agreed with the server.  */  private volatile PayloadCodec codec = FrameCodec.JAVA;  /**  * Time between heartbeat checks in framed mode, in milliseconds.  * The server is pinged after half an interval without news from it.  * Set to 10 seconds by default; 0 disables heartbeats.  */  private int heartbeatInterval = 10000;  /**  * Number of intervals the server may stay silent before the  * connection is considered lost. Set to 3 by default.  */  private int heartbeatMissLimit = 3;  /**  * Set if the current connection exchanges heartbeats.  */  private volatile boolean heartbeats = false;  /**  * Indicates if the next framed connection with heartbeats offers to  * accept frames with a raw body, handed to  * <code>attachFrameBody</code>. Set to false by default.  */  private boolean acceptFrameBodies = false;  /**  * Set if the current connection accepts frames with a raw body.  */  private volatile boolean frameBodies = false;  /**  * When the last bytes were read from the server  * (<code>System.nanoTime</code>).  */  private volatile long lastReceived;  /**  * The heartbeat check of the current connection, if any.  */  private volatile ScheduledFuture<?> heartbeatTask;  /**  * Why the heartbeat check closed the connection, reported instead of  * the socket error the reading thread then runs into.  */  private volatile IOException expired;  /**  * The thread created to read data from the server.  */  private Thread clientReader;  /**  * Indicates if the thread is ready to stop.  * Needed so that the loop in the run method knows when to stop  * waiting for incoming messages.  */  private boolean readyToStop= false;  /**  * The server's host name.  */  private String host;  /**  * The port number.  */  private int port;// CONSTRUCTORS *****************************************************  /**   * Constructs the client.   *   * @param  host  the server's host name.   * @param  port  the port number.   */  public AbstractClient(String host, int port)  {    // Initialize variables    this.host = host;    this.port = port;  }// INSTANCE METHODS *************************************************  /**   * Opens the connection with the server.   * If the connection is already opened, this call has no effect.   *   * @exception IOException if an I/O error occurs when opening.   */  final public void openConnection() throws IOException  {    // Do not do anything if the connection is already open    if(isConnected())      return;    //Create the sockets and the data streams    try    {      clientSocket= new Socket(host, port);      if (framed)      {        clientSocket.setTcpNoDelay(true);        frameOutput = new DataOutputStream(          new BufferedOutputStream(clientSocket.getOutputStream()));        frameInput = new DataInputStream(          new BufferedInputStream(clientSocket.getInputStream()));        codec = FrameCodec.JAVA;        if (heartbeatInterval > 0)        {          frameOutput.writeInt(acceptFrameBodies            ? FrameCodec.MAGIC_BODIES : FrameCodec.MAGIC_HEARTBEAT);          frameOutput.writeInt(preferredCodec == null ? 0 : preferredCodec.getId());          frameOutput.flush();          // The server answers with the codec it will use          int agreed = frameInput.readInt();          if (preferredCodec != null && agreed == preferredCodec.getId())            codec = preferredCodec;        }        else if (preferredCodec == null)        {          frameOutput.writeInt(FrameCodec.MAGIC);          frameOutput.flush();        }        else        {          frameOutput.writeInt(FrameCodec.MAGIC_NEGOTIATED);          frameOutput.writeInt(preferredCodec.getId());          frameOutput.flush();          // The server answers with the codec it will use          if (frameInput.readInt() == preferredCodec.getId())            codec = preferredCodec;        }      }      else      {        output = new ObjectOutputStream(clientSocket.getOutputStream());        input = new ObjectInputStream(clientSocket.getInputStream());      }    }    catch (IOException ex)    // All three of the above must be closed when there is a failure    // to create any of them    {      try      {        closeAll();      }      catch (Exception exc) { }      throw ex; // Rethrow the exception.    }    clientReader = new Thread(this);  //Create the data reader thread    readyToStop = false;    expired = null;    heartbeats = framed && heartbeatInterval > 0;    frameBodies = heartbeats && acceptFrameBodies;    lastReceived = System.nanoTime();    clientReader.start();  //Start the thread    if (heartbeats)      startHeartbeats();  }  /**   * Sends an object to the server. This is the only way that   * methods should communicate with the server. Several threads may   * send at the same time; each object is written whole.   *   * @param msg   The message to be sent.   * @exception IOException if an I/O error occurs when sending   */  final public void sendToServer(Object msg) throws IOException  {    if (clientSocket == null || (output == null && frameOutput == null))      throw new SocketException("socket does not exist");    if (frameOutput != null)    {      ByteBuffer frame = FrameCodec.encode(msg, codec);      DataOutputStream out = frameOutput;      synchronized (out)      {        out.write(frame.array(), 0, frame.limit());        out.flush();      }      return;    }    ObjectOutputStream out = output;    synchronized (out)    {      out.writeObject(msg);      out.reset();    }  }  /**   * Closes the connection to the server.   *   * @exception IOException if an I/O error occurs when closing.   */  final public void closeConnection() throws IOException  {    // Prevent the thread from looping any more    readyToStop= true;    try    {      closeAll();    }    finally    {      // Call the hook method      connectionClosed();    }  }// ACCESSING METHODS ------------------------------------------------  /**   * @return true if the client is connnected.   */  final public boolean isConnected()  {    return clientReader!=null && clientReader.isAlive();  }  /**   * @return true if the framed protocol is used.   */  final public boolean isFramed()  {    return framed;  }  /**   * Selects the framed or the legacy object-stream protocol.   * The change only takes effect at the time of the next call   * to openConnection().   *   * @param framed true to use length-prefixed frames.   */  final public void setFramed(boolean framed)  {    this.framed = framed;  }  /**   * Sets the codec to ask the server for in the framed handshake. If   * the server does not know it the connection uses Java   * serialization. Takes effect at the next call to openConnection().   *   * @param codec the preferred codec, or null not to negotiate.   */  final public void setPayloadCodec(PayloadCodec codec)  {    this.preferredCodec = codec;  }  /**   * @return the codec of the current connection.   */  final public PayloadCodec getPayloadCodec()  {    return codec;  }  /**   * Sets how often the connection is checked in framed mode, in   * milliseconds, and how many silent intervals are tolerated before   * the connection is closed and reported through   * <code>connectionException</code>. Takes effect at the next call to   * openConnection().   *   * @param interval the interval in ms, 0 to disable heartbeats.   * @param missLimit the number of silent intervals (at least 1).   */  final public void setHeartbeat(int interval, int missLimit)  {    this.heartbeatInterval = Math.max(0, interval);    this.heartbeatMissLimit = Math.max(1, missLimit);  }  /**   * Sets whether the server may send frames with a raw body, which   * carry bytes (map images) outside the codec. Such frames are only   * offered in framed mode with heartbeats enabled; their bodies go to   * <code>attachFrameBody</code>. Takes effect at the next call to   * openConnection().   *   * @param accept true to accept frame bodies.   */  final public void setFrameBodies(boolean accept)  {    this.acceptFrameBodies = accept;  }  /**   * @return the heartbeat interval in ms, 0 if disabled.   */  final public int getHeartbeatInterval()  {    return heartbeatInterval;  }  /**   * @return the port number.   */  final public int getPort()  {    return port;  }  /**   * Sets the server port number for the next connection.   * The change in port only takes effect at the time of the   * next call to openConnection().   *   * @param port the port number.   */  final public void setPort(int port)  {    this.port = port;  }  /**   * @return the host name.   */  final public String getHost()  {    return host;  }  /**   * Sets the server host for the next connection.   * The change in host only takes effect at the time of the   * next call to openConnection().   *   * @param host the host name.   */  final public void setHost(String host)  {    this.host = host;  }  /**   * returns the client's description.   *   * @return the client's Inet address.   */  final public InetAddress getInetAddress()  {    return clientSocket.getInetAddress();  }// RUN METHOD -------------------------------------------------------  /**   * Waits for messages from the server. When each arrives,   * a call is made to <code>handleMessageFromServer()</code>.   * Not to be explicitly called.   */  final public void run()  {    connectionEstablished();    // The message from the server    Object msg;    // Loop waiting for data    try    {      while(!readyToStop)      {        // Get data from Server and send it to the handler        // The thread waits indefinitely at the following        // statement until something is received from the server        msg = frameInput != null ? readFrame() : input.readObject();        // Concrete subclasses do what they want with the        // msg by implementing the following method        handleMessageFromServer(msg);      }    }    catch (Exception exception)    {      if(!readyToStop)      {        try        {          closeAll();        }        catch (Exception ex) { }        connectionException(expired != null ? expired : exception);      }    }    finally    {      clientReader = null;    }  }// METHODS DESIGNED TO BE OVERRIDDEN BY CONCRETE SUBCLASSES ---------  /**   * Hook method called after the connection has been closed.   * The default implementation does nothing. The method   * may be overriden by subclasses to perform special processing   * such as cleaning up and terminating, or attempting to   * reconnect.   */  protected void connectionClosed() {}  /**   * Hook method called each time an exception is thrown by the   * client's thread that is waiting for messages from the server.   * The method may be overridden by subclasses.   *   * @param exception the exception raised.   */  protected void connectionException(Exception exception) {}  /**   * Hook method called after a connection has been established.   * The default implementation does nothing.   * It may be overridden by subclasses to do anything they wish.   */  protected void connectionEstablished() {}  /**   * Handles a message sent from the server to this client.   * This MUST be implemented by subclasses, who should respond to   * messages.   *   * @param msg   the message sent.   */  protected abstract void handleMessageFromServer(Object msg);  /**   * Hook method called, on the reading thread, with each message that   * came in a frame with a raw body, before the message is handed to   * <code>handleMessageFromServer</code>. Only called once   * <code>setFrameBodies(true)</code> has been set. The default   * implementation drops the body.   *   * @param msg   the message of the frame.   * @param body  the bytes that followed it.   * @return the message to hand to <code>handleMessageFromServer</code>.   */  protected Object attachFrameBody(Object msg, byte[] body)  {    return msg;  }// METHODS TO BE USED FROM WITHIN THE FRAMEWORK ONLY ----------------  /**   * Reads one frame from the server in framed mode, answering the   * heartbeat frames that come before it. The body of a body frame is   * attached to its message through <code>attachFrameBody</code>.   *   * @exception IOException if an I/O error occurs when reading.   */  private Object readFrame() throws IOException, ClassNotFoundException  {    int length = frameInput.readInt();    lastReceived = System.nanoTime();    while (heartbeats      && (length == FrameCodec.PING || length == FrameCodec.PONG))    {      if (length == FrameCodec.PING)        sendHeartbeat(FrameCodec.PONG);      length = frameInput.readInt();      lastReceived = System.nanoTime();    }    if (frameBodies && length == FrameCodec.BODY)    {      Object msg = FrameCodec.decode(readBytes(frameInput.readInt()), codec);      return attachFrameBody(msg, readBytes(frameInput.readInt()));    }    return FrameCodec.decode(readBytes(length), codec);  }  /**   * Reads the bytes of a frame once their length has been read.   *   * @param length the length read from the frame.   * @exception IOException if an I/O error occurs when reading.   */  private byte[] readBytes(int length) throws IOException  {    FrameCodec.checkLength(length);    byte[] payload = new byte[length];    // Read in slices so that a long download keeps counting as activity    for (int offset = 0; offset < length; offset += 64 * 1024)    {      frameInput.readFully(payload, offset, Math.min(64 * 1024, length - offset));      lastReceived = System.nanoTime();    }    return payload;  }  /**   * Schedules the heartbeat check of the connection just opened.   */  private void startHeartbeats()  {    synchronized (AbstractClient.class)    {      if (heartbeatTimer == null)        heartbeatTimer = Executors.newSingleThreadScheduledExecutor(          Thread.ofPlatform().name("AbstractClient-heartbeat").daemon(true).factory());    }    heartbeatTask = heartbeatTimer.scheduleAtFixedRate(new Runnable()    {      public void run()      {        checkHeartbeat();      }    }, heartbeatInterval, heartbeatInterval, TimeUnit.MILLISECONDS);  }  /**   * Pings a quiet server, and closes the connection once the server   * has been silent for <code>heartbeatMissLimit</code> intervals; the   * reading thread then reports it. Runs on the heartbeat timer.   */  private void checkHeartbeat()  {    long interval = TimeUnit.MILLISECONDS.toNanos(heartbeatInterval);    long silent = System.nanoTime() - lastReceived;    try    {      if (silent >= interval * heartbeatMissLimit)      {        expired = new SocketTimeoutException("no heartbeat from server for "          + TimeUnit.NANOSECONDS.toMillis(silent) + " ms");        closeAll();      }      else if (silent >= interval / 2)        sendHeartbeat(FrameCodec.PING);    }    catch (IOException ex) {}  }  /**   * Writes a heartbeat frame between whole messages.   */  private void sendHeartbeat(int header) throws IOException  {    DataOutputStream out = frameOutput;    if (out == null)      throw new SocketException("socket does not exist");    synchronized (out)    {      out.writeInt(header);      out.flush();    }  }  /**   * Closes all aspects of the connection to the server.   *   * @exception IOException if an I/O error occurs when closing.   */  private void closeAll() throws IOException  {    if (heartbeatTask != null)    {      heartbeatTask.cancel(false);      heartbeatTask = null;    }    try    {      //Close the socket      if (clientSocket != null)        clientSocket.close();      //Close the output stream      if (output != null)        output.close();      if (frameOutput != null)        frameOutput.close();      //Close the input stream      if (input != null)        input.close();      if (frameInput != null)        frameInput.close();    }    finally    {      // Set the streams and the sockets to NULL no matter what      // Doing so allows, but does not require, any finalizers      // of these objects to reclaim system resources if and      // when they are garbage collected.      output = null;      input = null;      frameOutput = null;      frameInput = null;      clientSocket = null;    }  }}// end of AbstractClient class
\ No newline at end of file
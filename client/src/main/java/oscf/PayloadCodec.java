@@ -0,0 +1,44 @@
+package oscf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+* Turns the objects exchanged over a framed connection into frame
+* payloads and back. Java serialization is always available; other
+* codecs are set with <code>AbstractClient.setPayloadCodec</code>
+* and used once the server accepts their id during the handshake.
+*
+* @see FrameCodec#MAGIC_NEGOTIATED
+*/
+public interface PayloadCodec
+{
+  /**
+   * @return the id the client names in the handshake. Id 0 is
+   * reserved for Java serialization.
+   */
+  int getId();
+
+  /**
+   * Writes one object to a frame being built.
+   *
+   * @param msg the object to encode.
+   * @param out the frame payload stream; not to be closed.
+   * @exception IOException if the object cannot be encoded.
+   */
+  void encode(Object msg, OutputStream out) throws IOException;
+
+  /**
+   * Reads back one object from a frame payload.
+   *
+   * @param payload the buffer holding the payload.
+   * @param offset where the payload starts.
+   * @param length the payload size in bytes.
+   * @return the decoded object.
+   * @exception IOException if the payload is malformed.
+   * @exception ClassNotFoundException if a class is unknown locally.
+   */
+  Object decode(byte[] payload, int offset, int length)
+    throws IOException, ClassNotFoundException;
+}
+// End of PayloadCodec interface
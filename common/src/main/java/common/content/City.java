@@ -11,6 +11,16 @@ import java.util.stream.Collectors;
 
 @Entity
 @Table(name = "cities")
+@NamedEntityGraphs({
+    @NamedEntityGraph(name = "City.maps", attributeNodes = @NamedAttributeNode("maps")),
+    @NamedEntityGraph(name = "City.sites", attributeNodes = @NamedAttributeNode("sites")),
+    @NamedEntityGraph(name = "City.mapSites",
+        attributeNodes = @NamedAttributeNode(value = "maps", subgraph = "sites"),
+        subgraphs = @NamedSubgraph(name = "sites", attributeNodes = @NamedAttributeNode("sites"))),
+    @NamedEntityGraph(name = "City.tourSites",
+        attributeNodes = @NamedAttributeNode(value = "tours", subgraph = "sites"),
+        subgraphs = @NamedSubgraph(name = "sites", attributeNodes = @NamedAttributeNode("sites")))
+})
 public class City extends ContentItem implements Serializable {
     
     private static final long serialVersionUID = 1L;
@@ -27,16 +37,17 @@ public class City extends ContentItem implements Serializable {
     public String getImagePath() { return imagePath; }
     public void setImagePath(String imagePath) { this.imagePath = imagePath; }
 
+    // Collections are lazy; the server loads what a request needs through a fetch plan
     // ONE City has MANY Maps
-    @OneToMany(mappedBy = "city", cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    @OneToMany(mappedBy = "city", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<GCMMap> maps = new ArrayList<>();
 
     // ONE City has MANY Sites
-    @OneToMany(mappedBy = "city", cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    @OneToMany(mappedBy = "city", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<Site> sites = new ArrayList<>();
 
     // ONE City has MANY Tours
-    @OneToMany(mappedBy = "city", cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    @OneToMany(mappedBy = "city", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<Tour> tours = new ArrayList<>();
 
     // ==================== CONSTRUCTORS ====================
@@ -11,6 +11,16 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 @Entity
 @Table(name = "maps")
+@NamedEntityGraphs({
+    @NamedEntityGraph(name = "GCMMap.city", attributeNodes = @NamedAttributeNode("city")),
+    @NamedEntityGraph(name = "GCMMap.sites", attributeNodes = @NamedAttributeNode("sites")),
+    @NamedEntityGraph(name = "GCMMap.cityTours",
+        attributeNodes = @NamedAttributeNode(value = "city", subgraph = "city"),
+        subgraphs = {
+            @NamedSubgraph(name = "city", attributeNodes = @NamedAttributeNode(value = "tours", subgraph = "tours")),
+            @NamedSubgraph(name = "tours", attributeNodes = @NamedAttributeNode("sites"))
+        })
+})
 public class GCMMap extends ContentItem implements Serializable {
     
     private static final long serialVersionUID = 1L;
@@ -24,10 +34,19 @@ public class GCMMap extends ContentItem implements Serializable {
     @Column(name = "image_path")
     private String imagePath;
 
-    @Lob
-    @Column(name = "map_image", columnDefinition = "LONGBLOB")
+    // The image bytes live in the server's blob store, addressed by their SHA-256
+    @Column(name = "image_hash", length = 64)
+    private String imageHash;
+
+    @Column(name = "image_size")
+    private Integer imageSize;
+
+    @Transient  // Not persisted - filled from the blob store when a client needs the bytes
     private byte[] mapImage;
 
+    @Transient  // Not persisted - size of the image when it is streamed separately
+    private int imageLength;
+
     @Lob
     @Column(name = "site_markers_json", columnDefinition = "LONGTEXT")
     private String siteMarkersJson;
@@ -37,12 +56,12 @@ public class GCMMap extends ContentItem implements Serializable {
     private MapStatus status;
 
     // MANY Maps belong to ONE City
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "city_id", nullable = false)
     private City city;
 
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(
         name = "map_sites",
         joinColumns = @JoinColumn(name = "map_id"),
@@ -83,6 +102,15 @@ public class GCMMap extends ContentItem implements Serializable {
     public byte[] getMapImage() { return mapImage; }
     public void setMapImage(byte[] mapImage) { this.mapImage = mapImage; }
 
+    public String getImageHash() { return imageHash; }
+    public void setImageHash(String imageHash) { this.imageHash = imageHash; }
+
+    public Integer getImageSize() { return imageSize; }
+    public void setImageSize(Integer imageSize) { this.imageSize = imageSize; }
+
+    public int getImageLength() { return imageLength; }
+    public void setImageLength(int imageLength) { this.imageLength = imageLength; }
+
     public String getSiteMarkersJson() { return siteMarkersJson; }
     public void setSiteMarkersJson(String siteMarkersJson) { this.siteMarkersJson = siteMarkersJson; }
 
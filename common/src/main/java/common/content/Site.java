@@ -10,6 +10,7 @@ import java.util.List;
 
 @Entity
 @Table(name = "sites")
+@NamedEntityGraph(name = "Site.city", attributeNodes = @NamedAttributeNode("city"))
 public class Site extends ContentItem implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -34,7 +35,7 @@ public class Site extends ContentItem implements Serializable {
     private String location;
 
     // MANY Sites belong to ONE City
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "city_id", nullable = false)
     private City city;
 
@@ -7,6 +7,8 @@ import java.util.List;
 
 @Entity
 @Table(name = "tours")
+@NamedEntityGraph(name = "Tour.citySites",
+    attributeNodes = { @NamedAttributeNode("city"), @NamedAttributeNode("sites") })
 public class Tour extends ContentItem implements Serializable {
     
     private static final long serialVersionUID = 1L;
@@ -20,7 +22,7 @@ public class Tour extends ContentItem implements Serializable {
     private City city;
 
     // MANY Tours have MANY Sites (owning side)
-    @ManyToMany(fetch = FetchType.EAGER)
+    @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(
         name = "tour_sites",
         joinColumns = @JoinColumn(name = "tour_id"),
@@ -0,0 +1,71 @@
+package common.dto;
+
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Payload of CATALOG_UPDATED_NOTIFICATION: which cities and maps changed since
+ * the previous notification. The server merges the changes of every approval
+ * made within its coalescing window into one of these, so clients reload only
+ * the affected cards.
+ *
+ * A change with no city or map ids only moved the pending approval counts.
+ * A null payload (older servers) means "anything may have changed".
+ */
+public class CatalogChange implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Set<Integer> cityIds = new HashSet<>();
+    private Set<Integer> mapIds = new HashSet<>();
+    private boolean approvalsChanged;
+
+    public CatalogChange() {}
+
+    public CatalogChange(Set<Integer> cityIds, Set<Integer> mapIds, boolean approvalsChanged) {
+        this.cityIds = cityIds != null ? cityIds : new HashSet<>();
+        this.mapIds = mapIds != null ? mapIds : new HashSet<>();
+        this.approvalsChanged = approvalsChanged;
+    }
+
+    public void addCity(Integer cityId) {
+        if (cityId != null) {
+            cityIds.add(cityId);
+        }
+    }
+
+    public void addMap(Integer mapId) {
+        if (mapId != null) {
+            mapIds.add(mapId);
+        }
+    }
+
+    /**
+     * Folds another change into this one.
+     */
+    public void merge(CatalogChange other) {
+        cityIds.addAll(other.cityIds);
+        mapIds.addAll(other.mapIds);
+        approvalsChanged |= other.approvalsChanged;
+    }
+
+    /** @return true if no city or map content changed */
+    public boolean isContentUnchanged() {
+        return cityIds.isEmpty() && mapIds.isEmpty();
+    }
+
+    public Set<Integer> getCityIds() { return cityIds; }
+    public void setCityIds(Set<Integer> cityIds) { this.cityIds = cityIds; }
+
+    public Set<Integer> getMapIds() { return mapIds; }
+    public void setMapIds(Set<Integer> mapIds) { this.mapIds = mapIds; }
+
+    public boolean isApprovalsChanged() { return approvalsChanged; }
+    public void setApprovalsChanged(boolean approvalsChanged) { this.approvalsChanged = approvalsChanged; }
+
+    @Override
+    public String toString() {
+        return "CatalogChange{cities=" + cityIds + ", maps=" + mapIds + ", approvals=" + approvalsChanged + "}";
+    }
+}
@@ -0,0 +1,30 @@
+package common.dto;
+
+import java.io.Serializable;
+
+/**
+ * Payload of GET_MAP_DETAILS_REQUEST / GET_CITY_FULL_DETAILS_REQUEST asking for
+ * the map images to be streamed. The response then carries the maps without
+ * their image bytes (see {@link common.content.GCMMap#getImageLength()}) and
+ * each image follows as a series of MAP_IMAGE_CHUNK messages.
+ *
+ * A plain Integer id still gets the images inline in the response.
+ */
+public class ImageStreamRequest implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private int targetId;
+
+    public ImageStreamRequest() {}
+
+    /**
+     * @param targetId the map id or the city id, depending on the request
+     */
+    public ImageStreamRequest(int targetId) {
+        this.targetId = targetId;
+    }
+
+    public int getTargetId() { return targetId; }
+    public void setTargetId(int targetId) { this.targetId = targetId; }
+}
@@ -0,0 +1,56 @@
+package common.dto;
+
+import java.io.Serializable;
+
+/**
+ * One slice of a streamed map image (MAP_IMAGE_CHUNK). Chunks of a transfer
+ * arrive in order and carry the request ID of the request that asked for the
+ * image. The client answers every chunk with MAP_IMAGE_CHUNK_ACK (payload: the
+ * transfer ID) so the server can send more.
+ */
+public class MapImageChunk implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long transferId;
+    private int mapId;
+    private int offset;
+    private int totalLength;
+    private byte[] data;
+
+    public MapImageChunk() {}
+
+    public MapImageChunk(long transferId, int mapId, int offset, int totalLength, byte[] data) {
+        this.transferId = transferId;
+        this.mapId = mapId;
+        this.offset = offset;
+        this.totalLength = totalLength;
+        this.data = data;
+    }
+
+    public long getTransferId() { return transferId; }
+    public void setTransferId(long transferId) { this.transferId = transferId; }
+
+    public int getMapId() { return mapId; }
+    public void setMapId(int mapId) { this.mapId = mapId; }
+
+    public int getOffset() { return offset; }
+    public void setOffset(int offset) { this.offset = offset; }
+
+    public int getTotalLength() { return totalLength; }
+    public void setTotalLength(int totalLength) { this.totalLength = totalLength; }
+
+    public byte[] getData() { return data; }
+    public void setData(byte[] data) { this.data = data; }
+
+    /** @return true if this chunk completes the image */
+    public boolean isLast() {
+        return offset + (data != null ? data.length : 0) >= totalLength;
+    }
+
+    @Override
+    public String toString() {
+        return "MapImageChunk{map=" + mapId + ", transfer=" + transferId + ", offset=" + offset
+                + ", length=" + (data != null ? data.length : 0) + "/" + totalLength + "}";
+    }
+}
@@ -154,6 +154,14 @@ public enum ActionType {
     // ==================== NOTIFICATIONS ====================
     CATALOG_UPDATED_NOTIFICATION,
 
+    // ==================== STREAMED MAP IMAGES ====================
+    MAP_IMAGE_CHUNK,                // Server -> client, payload MapImageChunk
+    MAP_IMAGE_CHUNK_ACK,            // Client -> server, payload transfer ID (Long)
+
+    // ==================== SERVER METRICS ====================
+    GET_SERVER_METRICS_REQUEST,     // Company managers only
+    GET_SERVER_METRICS_RESPONSE,    // Payload ServerMetricsReport
+
     // ==================== GENERIC ====================
     ERROR
 }
\ No newline at end of file
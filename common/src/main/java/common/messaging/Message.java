@@ -10,6 +10,13 @@ public class Message implements Serializable {
     private ActionType action;
     private Object message;
 
+    /**
+     * Correlates a response with its request. Set by the client before sending
+     * and copied onto the response by the server; 0 means uncorrelated
+     * (server-pushed notifications).
+     */
+    private long requestId;
+
     public Message(ActionType action, Object message){
         this.action = action;
         this.message = message;
@@ -26,6 +33,14 @@ public class Message implements Serializable {
         this.action = action;
     }
 
+    public long getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(long requestId) {
+        this.requestId = requestId;
+    }
+
     public Object getMessage() {
         return message;
     }
@@ -36,7 +51,7 @@ public class Message implements Serializable {
 
     @Override
     public String toString() {
-        return "Message [action=" + action + ", message=" + message + "]";
+        return "Message [action=" + action + ", requestId=" + requestId + ", message=" + message + "]";
     }
 }
 
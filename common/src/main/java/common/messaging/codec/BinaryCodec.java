@@ -0,0 +1,61 @@
+package common.messaging.codec;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+
+/**
+ * Compact binary encoding of {@link common.messaging.Message} and the shared
+ * DTOs, used instead of Java serialization when both peers agree on it.
+ *
+ * The payload is built from protobuf's varint and length-delimited primitives
+ * ({@code protobuf-java} from lib/), laid out by the hand-written schemas in
+ * {@link WireSchemas} - no class descriptors, no reflection, and repeated
+ * objects are sent once. Values of classes without a schema are embedded as
+ * Java-serialized blobs, so any {@code Serializable} payload still works.
+ */
+public final class BinaryCodec {
+
+    /**
+     * Codec id offered in the connection handshake ("GB" + layout version).
+     * A peer with a different schema version answers with another id and the
+     * connection falls back to Java serialization.
+     */
+    public static final int ID = 0x47420000 | WireSchemas.VERSION;
+
+    private static final int BUFFER_SIZE = 4096;
+
+    private BinaryCodec() {}
+
+    /**
+     * Writes one object graph to a stream.
+     *
+     * @param value the object to encode, may be null
+     * @param out the destination; it is not flushed or closed
+     */
+    public static void encode(Object value, OutputStream out) throws IOException {
+        CodedOutputStream coded = CodedOutputStream.newInstance(out, BUFFER_SIZE);
+        new BinaryWriter(coded).writeValue(value);
+        coded.flush();
+    }
+
+    /**
+     * Reads back one object graph written by {@link #encode}.
+     *
+     * @param data the buffer holding the payload
+     * @param offset where the payload starts
+     * @param length the payload size in bytes
+     */
+    public static Object decode(byte[] data, int offset, int length) throws IOException {
+        CodedInputStream coded = CodedInputStream.newInstance(data, offset, length);
+        coded.pushLimit(length);    // lets the reader check counts against the bytes left
+        Object value = new BinaryReader(coded).readValue();
+        if (!coded.isAtEnd()) {
+            throw new StreamCorruptedException("trailing bytes after binary payload");
+        }
+        return value;
+    }
+}
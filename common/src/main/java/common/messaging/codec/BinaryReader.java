@@ -0,0 +1,165 @@
+package common.messaging.codec;
+
+import com.google.protobuf.CodedInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.StreamCorruptedException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads an object graph written by {@link BinaryWriter}.
+ */
+final class BinaryReader {
+
+    private final CodedInputStream in;
+
+    /** Schema objects in the order they were started, for TAG_REF. */
+    private final List<Object> objects = new ArrayList<>();
+    private int currentSlot = -1;
+
+    BinaryReader(CodedInputStream in) {
+        this.in = in;
+    }
+
+    // ==================== SCHEMA FIELDS ====================
+
+    int readInt() throws IOException {
+        return in.readSInt32();
+    }
+
+    long readLong() throws IOException {
+        return in.readSInt64();
+    }
+
+    double readDouble() throws IOException {
+        return in.readDouble();
+    }
+
+    boolean readBoolean() throws IOException {
+        return in.readBool();
+    }
+
+    String readString() throws IOException {
+        return in.readBool() ? in.readStringRequireUtf8() : null;
+    }
+
+    /**
+     * Makes a schema object available to back-references while its fields are
+     * still being read.
+     */
+    <T> T bind(T instance) {
+        objects.set(currentSlot, instance);
+        return instance;
+    }
+
+    /**
+     * Reads any value written by {@link BinaryWriter#writeValue}. The result is
+     * cast to whatever the caller expects.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T readValue() throws IOException {
+        int tag = in.readUInt32();
+        Object value = switch (tag) {
+            case BinaryWriter.TAG_NULL -> null;
+            case BinaryWriter.TAG_REF -> reference(in.readUInt32());
+            case BinaryWriter.TAG_JAVA -> readJava();
+            case BinaryWriter.TAG_STRING -> in.readStringRequireUtf8();
+            case BinaryWriter.TAG_INT -> in.readSInt32();
+            case BinaryWriter.TAG_LONG -> in.readSInt64();
+            case BinaryWriter.TAG_DOUBLE -> in.readDouble();
+            case BinaryWriter.TAG_BOOLEAN -> in.readBool();
+            case BinaryWriter.TAG_FLOAT -> in.readFloat();
+            case BinaryWriter.TAG_BYTES -> in.readByteArray();
+            case BinaryWriter.TAG_LOCAL_DATE -> LocalDate.ofEpochDay(in.readSInt64());
+            case BinaryWriter.TAG_LOCAL_DATE_TIME -> LocalDateTime.of(
+                    LocalDate.ofEpochDay(in.readSInt64()), LocalTime.ofNanoOfDay(in.readInt64()));
+            case BinaryWriter.TAG_YEAR_MONTH -> YearMonth.of(in.readSInt32(), in.readUInt32());
+            case BinaryWriter.TAG_ENUM -> WireSchemas.enumConstant(in.readUInt32(), in.readUInt32());
+            case BinaryWriter.TAG_LIST -> readElements(new ArrayList<>());
+            case BinaryWriter.TAG_SET -> readElements(new HashSet<>());
+            case BinaryWriter.TAG_MAP -> readMap();
+            default -> readObject(tag - BinaryWriter.TAG_OBJECT);
+        };
+        return (T) value;
+    }
+
+    private <C extends java.util.Collection<Object>> C readElements(C target) throws IOException {
+        int size = readCount(1);
+        for (int i = 0; i < size; i++) {
+            target.add(readValue());
+        }
+        return target;
+    }
+
+    private Map<Object, Object> readMap() throws IOException {
+        int size = readCount(2);
+        Map<Object, Object> map = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            map.put(readValue(), readValue());
+        }
+        return map;
+    }
+
+    /**
+     * Reads an element count from the wire. Collections are never presized
+     * from it: it comes from the peer, and only the bytes actually left bound
+     * what it can be.
+     *
+     * @param minBytes fewest bytes each element takes
+     */
+    private int readCount(int minBytes) throws IOException {
+        int size = in.readUInt32();
+        int left = in.getBytesUntilLimit();
+        if (size < 0 || (left >= 0 && size > left / minBytes)) {
+            throw new StreamCorruptedException("element count " + Integer.toUnsignedString(size)
+                    + " exceeds the " + left + " bytes left");
+        }
+        return size;
+    }
+
+    private Object readObject(int schemaIndex) throws IOException {
+        Schema<?> schema = WireSchemas.schema(schemaIndex);
+        if (schema == null) {
+            throw new StreamCorruptedException("unknown wire type " + (schemaIndex + BinaryWriter.TAG_OBJECT));
+        }
+        int slot = objects.size();
+        objects.add(null);
+        int outer = currentSlot;
+        currentSlot = slot;
+        try {
+            Object value = schema.read(this);
+            objects.set(slot, value);
+            return value;
+        } finally {
+            currentSlot = outer;
+        }
+    }
+
+    private Object reference(int index) throws IOException {
+        Object value = index < objects.size() ? objects.get(index) : null;
+        if (value == null) {
+            throw new StreamCorruptedException("invalid back-reference " + index);
+        }
+        return value;
+    }
+
+    private Object readJava() throws IOException {
+        byte[] bytes = in.readRawBytes(in.readUInt32());
+        try (ObjectInputStream java = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return java.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("unknown class in serialized value: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package common.messaging.codec;
+
+import com.google.protobuf.CodedOutputStream;
+import org.hibernate.Hibernate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes one object graph in the {@link BinaryCodec} format on top of the
+ * protobuf varint/length-delimited primitives.
+ *
+ * Every value written through {@link #writeValue} starts with a one-varint tag.
+ * Objects with a {@link Schema} are written once and referenced by index after
+ * that, so shared and cyclic references (a city and its maps) survive the trip.
+ */
+final class BinaryWriter {
+
+    static final int TAG_NULL = 0;
+    static final int TAG_REF = 1;
+    static final int TAG_JAVA = 2;
+    static final int TAG_STRING = 3;
+    static final int TAG_INT = 4;
+    static final int TAG_LONG = 5;
+    static final int TAG_DOUBLE = 6;
+    static final int TAG_BOOLEAN = 7;
+    static final int TAG_BYTES = 8;
+    static final int TAG_LIST = 9;
+    static final int TAG_SET = 10;
+    static final int TAG_MAP = 11;
+    static final int TAG_ENUM = 12;
+    static final int TAG_LOCAL_DATE = 13;
+    static final int TAG_LOCAL_DATE_TIME = 14;
+    static final int TAG_YEAR_MONTH = 15;
+    static final int TAG_FLOAT = 16;
+
+    /** Tags from here on are schema objects: tag = TAG_OBJECT + schema index. */
+    static final int TAG_OBJECT = 32;
+
+    private final CodedOutputStream out;
+    private final IdentityHashMap<Object, Integer> written = new IdentityHashMap<>();
+
+    BinaryWriter(CodedOutputStream out) {
+        this.out = out;
+    }
+
+    // ==================== SCHEMA FIELDS ====================
+
+    void writeInt(int value) throws IOException {
+        out.writeSInt32NoTag(value);
+    }
+
+    void writeLong(long value) throws IOException {
+        out.writeSInt64NoTag(value);
+    }
+
+    void writeDouble(double value) throws IOException {
+        out.writeDoubleNoTag(value);
+    }
+
+    void writeBoolean(boolean value) throws IOException {
+        out.writeBoolNoTag(value);
+    }
+
+    void writeString(String value) throws IOException {
+        out.writeBoolNoTag(value != null);
+        if (value != null) {
+            out.writeStringNoTag(value);
+        }
+    }
+
+    /**
+     * Writes any value: null, a boxed primitive, a string, a collection, an
+     * enum or object with a schema, or - as a last resort - a Java-serialized blob.
+     */
+    void writeValue(Object value) throws IOException {
+        if (value == null) {
+            out.writeUInt32NoTag(TAG_NULL);
+            return;
+        }
+        // Lazy associations that were never loaded travel as null
+        if (!Hibernate.isInitialized(value)) {
+            out.writeUInt32NoTag(TAG_NULL);
+            return;
+        }
+        value = Hibernate.unproxy(value);
+
+        if (value instanceof String s) {
+            out.writeUInt32NoTag(TAG_STRING);
+            out.writeStringNoTag(s);
+        } else if (value instanceof Integer i) {
+            out.writeUInt32NoTag(TAG_INT);
+            out.writeSInt32NoTag(i);
+        } else if (value instanceof Long l) {
+            out.writeUInt32NoTag(TAG_LONG);
+            out.writeSInt64NoTag(l);
+        } else if (value instanceof Double d) {
+            out.writeUInt32NoTag(TAG_DOUBLE);
+            out.writeDoubleNoTag(d);
+        } else if (value instanceof Boolean b) {
+            out.writeUInt32NoTag(TAG_BOOLEAN);
+            out.writeBoolNoTag(b);
+        } else if (value instanceof Float f) {
+            out.writeUInt32NoTag(TAG_FLOAT);
+            out.writeFloatNoTag(f);
+        } else if (value instanceof byte[] bytes) {
+            out.writeUInt32NoTag(TAG_BYTES);
+            out.writeByteArrayNoTag(bytes);
+        } else if (value instanceof LocalDate date) {
+            out.writeUInt32NoTag(TAG_LOCAL_DATE);
+            out.writeSInt64NoTag(date.toEpochDay());
+        } else if (value instanceof LocalDateTime dateTime) {
+            out.writeUInt32NoTag(TAG_LOCAL_DATE_TIME);
+            out.writeSInt64NoTag(dateTime.toLocalDate().toEpochDay());
+            out.writeInt64NoTag(dateTime.toLocalTime().toNanoOfDay());
+        } else if (value instanceof YearMonth month) {
+            out.writeUInt32NoTag(TAG_YEAR_MONTH);
+            out.writeSInt32NoTag(month.getYear());
+            out.writeUInt32NoTag(month.getMonthValue());
+        } else if (value instanceof Enum<?> e && WireSchemas.enumIndex(e.getDeclaringClass()) >= 0) {
+            out.writeUInt32NoTag(TAG_ENUM);
+            out.writeUInt32NoTag(WireSchemas.enumIndex(e.getDeclaringClass()));
+            out.writeUInt32NoTag(e.ordinal());
+        } else if (value instanceof List<?> list) {
+            out.writeUInt32NoTag(TAG_LIST);
+            writeElements(list);
+        } else if (value instanceof Set<?> set) {
+            out.writeUInt32NoTag(TAG_SET);
+            writeElements(set);
+        } else if (value instanceof Map<?, ?> map) {
+            out.writeUInt32NoTag(TAG_MAP);
+            out.writeUInt32NoTag(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeValue(entry.getKey());
+                writeValue(entry.getValue());
+            }
+        } else {
+            writeObject(value);
+        }
+    }
+
+    private void writeElements(Collection<?> elements) throws IOException {
+        out.writeUInt32NoTag(elements.size());
+        for (Object element : elements) {
+            writeValue(element);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeObject(Object value) throws IOException {
+        Integer ref = written.get(value);
+        if (ref != null) {
+            out.writeUInt32NoTag(TAG_REF);
+            out.writeUInt32NoTag(ref);
+            return;
+        }
+
+        int index = WireSchemas.schemaIndex(value.getClass());
+        if (index < 0) {
+            writeJava(value);
+            return;
+        }
+        written.put(value, written.size());
+        out.writeUInt32NoTag(TAG_OBJECT + index);
+        ((Schema<Object>) WireSchemas.schema(index)).write(this, value);
+    }
+
+    /**
+     * Fallback for classes without a schema (user and purchase entities, ...).
+     * Each blob is a self-contained object stream, so it cannot share
+     * references with the rest of the graph.
+     */
+    private void writeJava(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream java = new ObjectOutputStream(bytes)) {
+            java.writeObject(value);
+        }
+        out.writeUInt32NoTag(TAG_JAVA);
+        out.writeUInt32NoTag(bytes.size());
+        out.writeRawBytes(bytes.toByteArray());
+    }
+}
@@ -0,0 +1,28 @@
+package common.messaging.codec;
+
+import java.io.IOException;
+
+/**
+ * Hand-written wire layout of one class for {@link BinaryCodec}.
+ *
+ * Fields are written in a fixed order with no names or tags, the same way on
+ * both sides. Changing the order or the set of fields of any schema requires
+ * bumping {@link WireSchemas#VERSION} so that peers with a different layout
+ * fall back to Java serialization during the handshake.
+ *
+ * @param <T> the class this schema encodes
+ */
+interface Schema<T> {
+
+    /** The exact class handled; subclasses need their own schema. */
+    Class<T> type();
+
+    void write(BinaryWriter out, T value) throws IOException;
+
+    /**
+     * Reads the fields written by {@link #write}. Schemas of classes that can
+     * take part in reference cycles (the content entities) must pass the new
+     * instance to {@link BinaryReader#bind} before reading any nested value.
+     */
+    T read(BinaryReader in) throws IOException;
+}
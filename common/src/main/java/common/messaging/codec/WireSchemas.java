@@ -0,0 +1,575 @@
+package common.messaging.codec;
+
+import common.content.City;
+import common.content.GCMMap;
+import common.content.Site;
+import common.content.SiteMarker;
+import common.content.Tour;
+import common.dto.AuthResponse;
+import common.dto.CatalogFilter;
+import common.dto.CatalogChange;
+import common.dto.CatalogResponse;
+import common.dto.ContentChangeRequest;
+import common.dto.ImageStreamRequest;
+import common.dto.MapImageChunk;
+import common.dto.MapPurchaseStatusDTO;
+import common.dto.PendingApprovalsResponse;
+import common.dto.PendingContentApprovalsResponse;
+import common.dto.PriceChangeRequestDTO;
+import common.dto.SubscriptionStatusDTO;
+import common.enums.ActionType;
+import common.enums.ContentActionType;
+import common.enums.ContentType;
+import common.enums.EmployeeRole;
+import common.enums.MapAccessLevel;
+import common.enums.MapStatus;
+import common.enums.PriceType;
+import common.enums.ReportType;
+import common.enums.RequestStatus;
+import common.enums.SiteCategory;
+import common.enums.SiteDuration;
+import common.enums.SupportTicketStatus;
+import common.messaging.Message;
+import common.report.ActivityReport;
+import common.report.AllClientsReport;
+import common.report.PurchasesReport;
+import common.report.ServerMetricsReport;
+import common.report.SupportRequestsReport;
+import common.support.CreateSupportTicketRequest;
+import common.support.CreateSupportTicketResponse;
+import common.support.ListClientSupportRepliesRequest;
+import common.support.ListClientSupportRepliesResponse;
+import common.support.ListSupportTicketsRequest;
+import common.support.ListSupportTicketsResponse;
+import common.support.MarkSupportReplyReadRequest;
+import common.support.ReplySupportTicketRequest;
+import common.support.SupportChoiceDTO;
+import common.support.SupportSubmitRequest;
+import common.support.SupportSubmitResponse;
+import common.support.SupportTicketRowDTO;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The schemas known to {@link BinaryCodec}: {@link Message}, the catalog
+ * entities it carries, and the DTOs of common.dto, common.report and
+ * common.support. Anything else is sent as a Java-serialized value.
+ *
+ * A schema's position in the list is its wire id, so new schemas go at the end
+ * of their section and {@link #VERSION} is bumped whenever a layout changes.
+ */
+final class WireSchemas {
+
+    /** Layout version, exchanged in the handshake through {@link BinaryCodec#ID}. */
+    static final int VERSION = 9;
+
+    private static final List<Schema<?>> SCHEMAS = new ArrayList<>();
+    private static final Map<Class<?>, Integer> SCHEMA_INDEX = new HashMap<>();
+
+    private static final List<Class<? extends Enum<?>>> ENUMS = List.of(
+            ActionType.class, ContentActionType.class, ContentType.class, EmployeeRole.class,
+            MapAccessLevel.class, MapStatus.class, PriceType.class, ReportType.class,
+            RequestStatus.class, SiteCategory.class, SiteDuration.class, SupportTicketStatus.class);
+    private static final Map<Class<?>, Integer> ENUM_INDEX = new HashMap<>();
+
+    private WireSchemas() {}
+
+    static {
+        for (int i = 0; i < ENUMS.size(); i++) {
+            ENUM_INDEX.put(ENUMS.get(i), i);
+        }
+
+        // ==================== MESSAGING ====================
+
+        add(Message.class, (out, m) -> {
+            out.writeValue(m.getAction());
+            out.writeLong(m.getRequestId());
+            out.writeValue(m.getMessage());
+        }, in -> {
+            Message m = new Message(in.<ActionType>readValue(), null);
+            m.setRequestId(in.readLong());
+            m.setMessage(in.readValue());
+            return m;
+        });
+
+        // ==================== CONTENT ====================
+
+        add(City.class, (out, c) -> {
+            out.writeInt(c.getId());
+            out.writeString(c.getName());
+            out.writeString(c.getDescription());
+            out.writeDouble(c.getPriceSub());
+            out.writeDouble(c.getPendingPriceSub());
+            out.writeString(c.getImagePath());
+            out.writeValue(c.getMaps());
+            out.writeValue(c.getSites());
+            out.writeValue(c.getTours());
+        }, in -> {
+            City c = in.bind(new City());
+            c.setId(in.readInt());
+            c.setName(in.readString());
+            c.setDescription(in.readString());
+            c.setPriceSub(in.readDouble());
+            c.setPendingPriceSub(in.readDouble());
+            c.setImagePath(in.readString());
+            c.setMaps(in.readValue());
+            c.setSites(orEmpty(in.readValue()));
+            c.setTours(orEmpty(in.readValue()));
+            return c;
+        });
+
+        add(GCMMap.class, (out, m) -> {
+            out.writeInt(m.getId());
+            out.writeString(m.getName());
+            out.writeString(m.getDescription());
+            out.writeString(m.getVersion());
+            out.writeDouble(m.getPrice());
+            out.writeString(m.getImagePath());
+            out.writeValue(m.getMapImage());
+            out.writeInt(m.getImageLength());
+            out.writeString(m.getSiteMarkersJson());
+            out.writeValue(m.getStatus());
+            out.writeValue(m.getCity());
+            out.writeValue(m.getSites());
+        }, in -> {
+            GCMMap m = in.bind(new GCMMap());
+            m.setId(in.readInt());
+            m.setName(in.readString());
+            m.setDescription(in.readString());
+            m.setVersion(in.readString());
+            m.setPrice(in.readDouble());
+            m.setImagePath(in.readString());
+            m.setMapImage(in.readValue());
+            m.setImageLength(in.readInt());
+            m.setSiteMarkersJson(in.readString());
+            m.setStatus(in.readValue());
+            m.setCity(in.readValue());
+            m.setSites(orEmpty(in.readValue()));
+            return m;
+        });
+
+        add(Site.class, (out, s) -> {
+            out.writeInt(s.getId());
+            out.writeString(s.getName());
+            out.writeString(s.getDescription());
+            out.writeValue(s.getCategory());
+            out.writeBoolean(s.isAccessible());
+            out.writeValue(s.getRecommendedVisitDuration());
+            out.writeString(s.getLocation());
+            out.writeValue(s.getCity());
+            out.writeValue(s.getMaps());
+            out.writeValue(s.getTours());
+        }, in -> {
+            Site s = in.bind(new Site());
+            s.setId(in.readInt());
+            s.setName(in.readString());
+            s.setDescription(in.readString());
+            s.setCategory(in.readValue());
+            s.setAccessible(in.readBoolean());
+            s.setRecommendedVisitDuration(in.readValue());
+            s.setLocation(in.readString());
+            s.setCity(in.readValue());
+            s.setMaps(orEmpty(in.readValue()));
+            s.setTours(orEmpty(in.readValue()));
+            return s;
+        });
+
+        add(Tour.class, (out, t) -> {
+            out.writeInt(t.getId());
+            out.writeString(t.getName());
+            out.writeString(t.getDescription());
+            out.writeString(t.getRecommendedDuration());
+            out.writeValue(t.getCity());
+            out.writeValue(t.getSites());
+        }, in -> {
+            Tour t = in.bind(new Tour());
+            t.setId(in.readInt());
+            t.setName(in.readString());
+            t.setDescription(in.readString());
+            t.setRecommendedDuration(in.readString());
+            t.setCity(in.readValue());
+            t.setSites(orEmpty(in.readValue()));
+            return t;
+        });
+
+        add(SiteMarker.class, (out, s) -> {
+            out.writeInt(s.getSiteId());
+            out.writeDouble(s.getX());
+            out.writeDouble(s.getY());
+        }, in -> new SiteMarker(in.readInt(), in.readDouble(), in.readDouble()));
+
+        // ==================== DTO ====================
+
+        add(CatalogFilter.class, (out, f) -> {
+            out.writeString(f.getCityName());
+            out.writeString(f.getMapName());
+            out.writeString(f.getVersion());
+            out.writeString(f.getSearchQuery());
+        }, in -> new CatalogFilter(in.readString(), in.readString(), in.readString(), in.readString()));
+
+        add(CatalogResponse.class, (out, r) -> {
+            out.writeValue(r.getMaps());
+            out.writeValue(r.getAvailableCities());
+            out.writeValue(r.getAvailableMapNames());
+            out.writeValue(r.getAvailableVersions());
+            out.writeValue(r.getCities());
+            out.writeValue(r.getSearchResults());
+        }, in -> {
+            CatalogResponse r = new CatalogResponse();
+            r.setMaps(in.readValue());
+            r.setAvailableCities(in.readValue());
+            r.setAvailableMapNames(in.readValue());
+            r.setAvailableVersions(in.readValue());
+            r.setCities(in.readValue());
+            r.setSearchResults(in.readValue());
+            return r;
+        });
+
+        add(CatalogResponse.CitySearchResult.class, (out, r) -> {
+            out.writeValue(r.getCity());
+            out.writeInt(r.getMapCount());
+            out.writeInt(r.getSiteCount());
+            out.writeInt(r.getTourCount());
+            out.writeValue(r.getMapDescriptions());
+        }, in -> {
+            CatalogResponse.CitySearchResult r = new CatalogResponse.CitySearchResult();
+            r.setCity(in.readValue());
+            r.setMapCount(in.readInt());
+            r.setSiteCount(in.readInt());
+            r.setTourCount(in.readInt());
+            r.setMapDescriptions(in.readValue());
+            return r;
+        });
+
+        add(AuthResponse.class, (out, r) -> {
+            out.writeBoolean(r.isSuccess());
+            out.writeString(r.getMessage());
+            out.writeValue(r.getUser());
+        }, in -> new AuthResponse(in.readBoolean(), in.readString(), in.readValue()));
+
+        add(ContentChangeRequest.class, (out, r) -> {
+            out.writeValue(r.getRequesterId());
+            out.writeValue(r.getActionType());
+            out.writeValue(r.getContentType());
+            out.writeValue(r.getTargetId());
+            out.writeString(r.getTargetName());
+            out.writeString(r.getContentDetailsJson());
+        }, in -> new ContentChangeRequest(in.readValue(), in.readValue(), in.readValue(),
+                in.readValue(), in.readString(), in.readString()));
+
+        add(MapPurchaseStatusDTO.class, (out, s) -> {
+            out.writeBoolean(s.isPurchased());
+            out.writeBoolean(s.isOlderVersionPurchased());
+            out.writeString(s.getPurchasedVersion());
+            out.writeDouble(s.getUpgradePrice());
+            out.writeDouble(s.getFullPrice());
+        }, in -> new MapPurchaseStatusDTO(in.readBoolean(), in.readBoolean(), in.readString(),
+                in.readDouble(), in.readDouble()));
+
+        add(PendingApprovalsResponse.class,
+                (out, r) -> out.writeValue(r.getPendingUpdates()),
+                in -> new PendingApprovalsResponse(in.readValue()));
+
+        add(PendingContentApprovalsResponse.class,
+                (out, r) -> out.writeValue(r.getPendingRequests()),
+                in -> new PendingContentApprovalsResponse(in.readValue()));
+
+        add(PriceChangeRequestDTO.class, (out, r) -> {
+            out.writeInt(r.getCityId());
+            out.writeString(r.getCityName());
+            out.writeDouble(r.getNewSubscriptionPrice());
+            out.writeDouble(r.getOldSubscriptionPrice());
+            out.writeValue(r.getMapPriceChanges());
+            out.writeValue(r.getMapOldPrices());
+            out.writeValue(r.getRequesterId());
+        }, in -> {
+            PriceChangeRequestDTO r = new PriceChangeRequestDTO();
+            r.setCityId(in.readInt());
+            r.setCityName(in.readString());
+            r.setNewSubscriptionPrice(in.readDouble());
+            r.setOldSubscriptionPrice(in.readDouble());
+            r.setMapPriceChanges(in.readValue());
+            r.setMapOldPrices(in.readValue());
+            r.setRequesterId(in.readValue());
+            return r;
+        });
+
+        add(SubscriptionStatusDTO.class, (out, s) -> {
+            out.writeBoolean(s.isActive());
+            out.writeValue(s.getExpirationDate());
+            out.writeString(s.getCityName());
+            out.writeInt(s.getCityId());
+            out.writeDouble(s.getPricePerMonth());
+        }, in -> new SubscriptionStatusDTO(in.readBoolean(), in.readValue(), in.readString(),
+                in.readInt(), in.readDouble()));
+
+        add(ImageStreamRequest.class, (out, r) -> out.writeInt(r.getTargetId()),
+                in -> new ImageStreamRequest(in.readInt()));
+
+        add(MapImageChunk.class, (out, c) -> {
+            out.writeLong(c.getTransferId());
+            out.writeInt(c.getMapId());
+            out.writeInt(c.getOffset());
+            out.writeInt(c.getTotalLength());
+            out.writeValue(c.getData());
+        }, in -> new MapImageChunk(in.readLong(), in.readInt(), in.readInt(), in.readInt(), in.readValue()));
+
+        add(CatalogChange.class, (out, c) -> {
+            out.writeValue(c.getCityIds());
+            out.writeValue(c.getMapIds());
+            out.writeBoolean(c.isApprovalsChanged());
+        }, in -> new CatalogChange(in.readValue(), in.readValue(), in.readBoolean()));
+
+        // ==================== REPORTS ====================
+
+        add(ActivityReport.class, (out, r) -> {
+            out.writeValue(r.fromDate);
+            out.writeValue(r.toDate);
+            out.writeValue(r.rows);
+        }, in -> new ActivityReport(in.readValue(), in.readValue(), in.readValue()));
+
+        add(ActivityReport.CityRow.class, (out, r) -> {
+            out.writeInt(r.cityId);
+            out.writeString(r.cityName);
+            out.writeInt(r.maps);
+            out.writeInt(r.oneTimePurchases);
+            out.writeInt(r.subscriptions);
+            out.writeInt(r.renewals);
+            out.writeInt(r.views);
+            out.writeInt(r.downloads);
+        }, in -> new ActivityReport.CityRow(in.readInt(), in.readString(), in.readInt(), in.readInt(),
+                in.readInt(), in.readInt(), in.readInt(), in.readInt()));
+
+        add(AllClientsReport.class, (out, r) -> {
+            out.writeValue(r.last5Months);
+            out.writeValue(r.clientsNewestFirst);
+            out.writeValue(r.nextAfterId);
+        }, in -> new AllClientsReport(in.readValue(), in.readValue(), in.readValue()));
+
+        add(AllClientsReport.MonthCount.class, (out, m) -> {
+            out.writeValue(m.month);
+            out.writeLong(m.count);
+        }, in -> new AllClientsReport.MonthCount(in.readValue(), in.readLong()));
+
+        add(AllClientsReport.ClientRow.class, (out, r) -> {
+            out.writeInt(r.userId);
+            out.writeString(r.username);
+            out.writeString(r.email);
+            out.writeString(r.firstName);
+            out.writeString(r.lastName);
+            out.writeValue(r.createdAt);
+        }, in -> new AllClientsReport.ClientRow(in.readInt(), in.readString(), in.readString(),
+                in.readString(), in.readString(), in.readValue()));
+
+        add(PurchasesReport.class, (out, r) -> {
+            out.writeValue(r.from);
+            out.writeValue(r.to);
+            out.writeInt(r.cityId);
+            out.writeString(r.cityName);
+            out.writeInt(r.oneTime);
+            out.writeInt(r.subscriptions);
+            out.writeInt(r.renewals);
+        }, in -> new PurchasesReport(in.readValue(), in.readValue(), in.readInt(), in.readString(),
+                in.readInt(), in.readInt(), in.readInt()));
+
+        add(SupportRequestsReport.class, (out, r) -> {
+            out.writeInt(r.pendingCount);
+            out.writeInt(r.doneCount);
+            out.writeValue(r.rows);
+        }, in -> new SupportRequestsReport(in.readInt(), in.readInt(), in.readValue()));
+
+        add(ServerMetricsReport.class, (out, r) -> {
+            out.writeValue(r.capturedAt);
+            out.writeInt(r.connectedClients);
+            out.writeInt(r.activeWorkers);
+            out.writeInt(r.workerThreads);
+            out.writeInt(r.queueDepth);
+            out.writeInt(r.peakQueueDepth);
+            out.writeLong(r.rejectedRequests);
+            out.writeLong(r.imageCacheHits);
+            out.writeLong(r.imageCacheMisses);
+            out.writeLong(r.imageCacheEvictions);
+            out.writeLong(r.imageCacheMappedBytes);
+            out.writeInt(r.eventQueueDepth);
+            out.writeLong(r.eventsWritten);
+            out.writeLong(r.eventsDropped);
+            out.writeLong(r.eventBatches);
+            out.writeValue(r.eventFlush);
+            out.writeLong(r.reportCacheHits);
+            out.writeLong(r.reportCacheMisses);
+            out.writeInt(r.reportCacheEntries);
+            out.writeLong(r.reportCacheBytes);
+            out.writeValue(r.rows);
+        }, in -> new ServerMetricsReport(in.readValue(), in.readInt(), in.readInt(), in.readInt(),
+                in.readInt(), in.readInt(), in.readLong(), in.readLong(), in.readLong(), in.readLong(),
+                in.readLong(), in.readInt(), in.readLong(), in.readLong(), in.readLong(), in.readValue(),
+                in.readLong(), in.readLong(), in.readInt(), in.readLong(), in.readValue()));
+
+        add(ServerMetricsReport.ActionRow.class, (out, r) -> {
+            out.writeValue(r.action);
+            out.writeLong(r.requests);
+            out.writeLong(r.errors);
+            out.writeInt(r.inFlight);
+            out.writeLong(r.sqlStatements);
+            out.writeValue(r.queue);
+            out.writeValue(r.handler);
+            out.writeValue(r.serialization);
+            out.writeValue(r.write);
+            out.writeValue(r.total);
+        }, in -> new ServerMetricsReport.ActionRow(in.readValue(), in.readLong(), in.readLong(), in.readInt(),
+                in.readLong(), in.readValue(), in.readValue(), in.readValue(), in.readValue(), in.readValue()));
+
+        add(ServerMetricsReport.LatencyStats.class, (out, l) -> {
+            out.writeLong(l.count);
+            out.writeLong(l.meanMicros);
+            out.writeLong(l.p50Micros);
+            out.writeLong(l.p95Micros);
+            out.writeLong(l.p99Micros);
+            out.writeLong(l.maxMicros);
+        }, in -> new ServerMetricsReport.LatencyStats(in.readLong(), in.readLong(), in.readLong(),
+                in.readLong(), in.readLong(), in.readLong()));
+
+        // ==================== SUPPORT ====================
+
+        add(CreateSupportTicketRequest.class, (out, r) -> {
+            out.writeInt(r.getUserId());
+            out.writeString(r.getTopic());
+            out.writeString(r.getText());
+        }, in -> new CreateSupportTicketRequest(in.readInt(), in.readString(), in.readString()));
+
+        add(CreateSupportTicketResponse.class,
+                (out, r) -> out.writeInt(r.getTicketId()),
+                in -> new CreateSupportTicketResponse(in.readInt()));
+
+        add(ListClientSupportRepliesRequest.class,
+                (out, r) -> out.writeInt(r.getUserId()),
+                in -> new ListClientSupportRepliesRequest(in.readInt()));
+
+        add(ListClientSupportRepliesResponse.class,
+                (out, r) -> out.writeValue(r.getRows()),
+                in -> new ListClientSupportRepliesResponse(in.readValue()));
+
+        add(ListSupportTicketsRequest.class,
+                (out, r) -> out.writeInt(r.getAgentId()),
+                in -> new ListSupportTicketsRequest(in.readInt()));
+
+        add(ListSupportTicketsResponse.class,
+                (out, r) -> out.writeValue(r.getRows()),
+                in -> new ListSupportTicketsResponse(in.readValue()));
+
+        add(MarkSupportReplyReadRequest.class, (out, r) -> {
+            out.writeInt(r.getUserId());
+            out.writeInt(r.getTicketId());
+        }, in -> new MarkSupportReplyReadRequest(in.readInt(), in.readInt()));
+
+        add(ReplySupportTicketRequest.class, (out, r) -> {
+            out.writeInt(r.getAgentId());
+            out.writeInt(r.getTicketId());
+            out.writeString(r.getReplyText());
+        }, in -> new ReplySupportTicketRequest(in.readInt(), in.readInt(), in.readString()));
+
+        add(SupportChoiceDTO.class, (out, c) -> {
+            out.writeInt(c.getCityId());
+            out.writeString(c.getLabel());
+        }, in -> new SupportChoiceDTO(in.readInt(), in.readString()));
+
+        add(SupportSubmitRequest.class, (out, r) -> {
+            out.writeInt(r.getUserId());
+            out.writeString(r.getTopic());
+            out.writeString(r.getMessageText());
+            out.writeValue(r.getCityId());
+        }, in -> new SupportSubmitRequest(in.readInt(), in.readString(), in.readString(), in.readValue()));
+
+        add(SupportSubmitResponse.class, (out, r) -> {
+            out.writeBoolean(r.isAnsweredByBot());
+            out.writeString(r.getResponseText());
+            out.writeValue(r.getChoices());
+        }, in -> new SupportSubmitResponse(in.readBoolean(), in.readString(), in.readValue()));
+
+        add(SupportTicketRowDTO.class, (out, r) -> {
+            out.writeInt(r.getTicketId());
+            out.writeString(r.getClientUsername());
+            out.writeString(r.getTopic());
+            out.writeValue(r.getStatus());
+            out.writeValue(r.getCreatedAt());
+            out.writeValue(r.getRepliedAt());
+            out.writeBoolean(r.isReadByClient());
+            out.writeString(r.getPreview());
+            out.writeString(r.getClientText());
+            out.writeString(r.getAgentName());
+            out.writeString(r.getAgentReply());
+        }, in -> new SupportTicketRowDTO(in.readInt(), in.readString(), in.readString(), in.readValue(),
+                in.readValue(), in.readValue(), in.readBoolean(), in.readString(), in.readString(),
+                in.readString(), in.readString()));
+    }
+
+    // ==================== LOOKUP ====================
+
+    /** @return the wire index of the class's schema, or -1 if it has none */
+    static int schemaIndex(Class<?> type) {
+        Integer index = SCHEMA_INDEX.get(type);
+        return index != null ? index : -1;
+    }
+
+    /** @return the schema at a wire index, or null if out of range */
+    static Schema<?> schema(int index) {
+        return index >= 0 && index < SCHEMAS.size() ? SCHEMAS.get(index) : null;
+    }
+
+    /** @return the wire index of an enum class, or -1 if it is not registered */
+    static int enumIndex(Class<?> type) {
+        Integer index = ENUM_INDEX.get(type);
+        return index != null ? index : -1;
+    }
+
+    static Enum<?> enumConstant(int index, int ordinal) throws IOException {
+        if (index >= ENUMS.size()) {
+            throw new StreamCorruptedException("unknown enum type " + index);
+        }
+        Enum<?>[] constants = ENUMS.get(index).getEnumConstants();
+        if (ordinal >= constants.length) {
+            throw new StreamCorruptedException("unknown " + ENUMS.get(index).getSimpleName() + " ordinal " + ordinal);
+        }
+        return constants[ordinal];
+    }
+
+    // ==================== REGISTRATION ====================
+
+    private interface Writer<T> {
+        void write(BinaryWriter out, T value) throws IOException;
+    }
+
+    private interface Reader<T> {
+        T read(BinaryReader in) throws IOException;
+    }
+
+    private static <T> void add(Class<T> type, Writer<T> writer, Reader<T> reader) {
+        SCHEMA_INDEX.put(type, SCHEMAS.size());
+        SCHEMAS.add(new Schema<T>() {
+            @Override
+            public Class<T> type() {
+                return type;
+            }
+
+            @Override
+            public void write(BinaryWriter out, T value) throws IOException {
+                writer.write(out, value);
+            }
+
+            @Override
+            public T read(BinaryReader in) throws IOException {
+                return reader.read(in);
+            }
+        });
+    }
+
+    /** Entity setters expect a list; a lazy collection that was not loaded arrives as null. */
+    private static <T> List<T> orEmpty(List<T> list) {
+        return list != null ? list : new ArrayList<>();
+    }
+}
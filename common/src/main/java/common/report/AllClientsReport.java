@@ -4,8 +4,18 @@ import java.io.Serializable;
 import java.time.YearMonth;
 import java.util.List;
 
+/**
+ * One page of the clients report, newest client first.
+ *
+ * The client asks for pages with GET_ALL_CLIENTS_REPORT_REQUEST and a payload
+ * of [afterId, pageSize]: a null afterId gets the first page, which alone
+ * carries the monthly histogram; {@link #nextAfterId} gets the one after it.
+ */
 public class AllClientsReport implements Serializable {
 
+    /** Rows per page unless the request asks for another size. */
+    public static final int PAGE_SIZE = 500;
+
     public static class MonthCount implements Serializable {
         public YearMonth month;
         public long count;
@@ -38,12 +48,17 @@ public class AllClientsReport implements Serializable {
         }
     }
 
+    /** Null on every page but the first. */
     public List<MonthCount> last5Months;
     public List<ClientRow> clientsNewestFirst;
+    /** The afterId of the next page, or null if this is the last one. */
+    public Integer nextAfterId;
 
     public AllClientsReport() {}
-    public AllClientsReport(List<MonthCount> last5Months, List<ClientRow> clientsNewestFirst) {
+    public AllClientsReport(List<MonthCount> last5Months, List<ClientRow> clientsNewestFirst,
+                            Integer nextAfterId) {
         this.last5Months = last5Months;
         this.clientsNewestFirst = clientsNewestFirst;
+        this.nextAfterId = nextAfterId;
     }
 }
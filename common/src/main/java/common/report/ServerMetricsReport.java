@@ -0,0 +1,135 @@
+package common.report;
+
+import common.enums.ActionType;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Snapshot of the server's request metrics, returned to company managers by
+ * GET_SERVER_METRICS_REQUEST. Latencies are in microseconds.
+ *
+ * Each row splits a request type's time into the stages it goes through:
+ * waiting for a dispatcher worker, running the handler, encoding the
+ * response and writing it to the socket. "total" runs from the moment the
+ * request was read until its response was written.
+ *
+ * The image cache figures describe the server's memory-mapped map images:
+ * lookups served by an existing mapping (hits), lookups that had to map the
+ * file (misses), and the size of the mappings kept.
+ *
+ * The event figures describe the map view/download log: events waiting for
+ * the writer, events written and dropped, the batches they were written in
+ * and the time to write one batch.
+ *
+ * The report cache figures count activity and purchases reports answered
+ * from the server's cache (hits) or generated (misses), and the reports kept.
+ */
+public class ServerMetricsReport implements Serializable {
+    public LocalDateTime capturedAt;
+
+    public int connectedClients;
+    public int activeWorkers;
+    public int workerThreads;
+    public int queueDepth;
+    public int peakQueueDepth;
+    public long rejectedRequests;
+
+    public long imageCacheHits;
+    public long imageCacheMisses;
+    public long imageCacheEvictions;
+    public long imageCacheMappedBytes;
+
+    public int eventQueueDepth;
+    public long eventsWritten;
+    public long eventsDropped;
+    public long eventBatches;
+    public LatencyStats eventFlush;
+
+    public long reportCacheHits;
+    public long reportCacheMisses;
+    public int reportCacheEntries;
+    public long reportCacheBytes;
+
+    public List<ActionRow> rows;
+
+    public ServerMetricsReport(LocalDateTime capturedAt, int connectedClients, int activeWorkers,
+                               int workerThreads, int queueDepth, int peakQueueDepth,
+                               long rejectedRequests, long imageCacheHits, long imageCacheMisses,
+                               long imageCacheEvictions, long imageCacheMappedBytes, int eventQueueDepth,
+                               long eventsWritten, long eventsDropped, long eventBatches, LatencyStats eventFlush,
+                               long reportCacheHits, long reportCacheMisses, int reportCacheEntries,
+                               long reportCacheBytes, List<ActionRow> rows) {
+        this.capturedAt = capturedAt;
+        this.connectedClients = connectedClients;
+        this.activeWorkers = activeWorkers;
+        this.workerThreads = workerThreads;
+        this.queueDepth = queueDepth;
+        this.peakQueueDepth = peakQueueDepth;
+        this.rejectedRequests = rejectedRequests;
+        this.imageCacheHits = imageCacheHits;
+        this.imageCacheMisses = imageCacheMisses;
+        this.imageCacheEvictions = imageCacheEvictions;
+        this.imageCacheMappedBytes = imageCacheMappedBytes;
+        this.eventQueueDepth = eventQueueDepth;
+        this.eventsWritten = eventsWritten;
+        this.eventsDropped = eventsDropped;
+        this.eventBatches = eventBatches;
+        this.eventFlush = eventFlush;
+        this.reportCacheHits = reportCacheHits;
+        this.reportCacheMisses = reportCacheMisses;
+        this.reportCacheEntries = reportCacheEntries;
+        this.reportCacheBytes = reportCacheBytes;
+        this.rows = rows;
+    }
+
+    public static class ActionRow implements Serializable {
+        public ActionType action;
+
+        public long requests;
+        public long errors;
+        public int inFlight;
+        public long sqlStatements;
+
+        public LatencyStats queue;
+        public LatencyStats handler;
+        public LatencyStats serialization;
+        public LatencyStats write;
+        public LatencyStats total;
+
+        public ActionRow(ActionType action, long requests, long errors, int inFlight, long sqlStatements,
+                         LatencyStats queue, LatencyStats handler, LatencyStats serialization,
+                         LatencyStats write, LatencyStats total) {
+            this.action = action;
+            this.requests = requests;
+            this.errors = errors;
+            this.inFlight = inFlight;
+            this.sqlStatements = sqlStatements;
+            this.queue = queue;
+            this.handler = handler;
+            this.serialization = serialization;
+            this.write = write;
+            this.total = total;
+        }
+    }
+
+    public static class LatencyStats implements Serializable {
+        public long count;
+        public long meanMicros;
+        public long p50Micros;
+        public long p95Micros;
+        public long p99Micros;
+        public long maxMicros;
+
+        public LatencyStats(long count, long meanMicros, long p50Micros, long p95Micros,
+                            long p99Micros, long maxMicros) {
+            this.count = count;
+            this.meanMicros = meanMicros;
+            this.p50Micros = p50Micros;
+            this.p95Micros = p95Micros;
+            this.p99Micros = p99Micros;
+            this.maxMicros = maxMicros;
+        }
+    }
+}
@@ -9,6 +9,9 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "pending_price_updates")
+@NamedEntityGraph(name = "PendingPriceUpdate.mapCity",
+    attributeNodes = @NamedAttributeNode(value = "map", subgraph = "map"),
+    subgraphs = @NamedSubgraph(name = "map", attributeNodes = @NamedAttributeNode("city")))
 public class PendingPriceUpdate implements Serializable {
     
     private static final long serialVersionUID = 1L;
@@ -2,6 +2,7 @@ module com.gcm.common {
     requires jakarta.persistence;
     requires java.sql;
     requires org.hibernate.orm.core;  // ADD THIS LINE - needed for proxy generation
+    requires com.google.protobuf;
 
     exports common.dto;
     exports common.user;
@@ -10,6 +11,7 @@ module com.gcm.common {
     exports common.workflow;
     exports common.enums;
     exports common.messaging;
+    exports common.messaging.codec;
     exports common.report;
 
     // Open packages to Hibernate for reflection access to private/protected fields
@@ -0,0 +1,128 @@
+package common.messaging.codec;
+
+import com.google.protobuf.CodedOutputStream;
+import common.content.City;
+import common.content.GCMMap;
+import common.content.Site;
+import common.enums.ActionType;
+import common.enums.MapStatus;
+import common.enums.SiteCategory;
+import common.enums.SiteDuration;
+import common.messaging.Message;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class BinaryCodecTest {
+
+    // Wire tags of BinaryWriter
+    private static final int NULL = 0;
+    private static final int REF = 1;
+    private static final int JAVA = 2;
+    private static final int STRING = 3;
+    private static final int BYTES = 8;
+    private static final int LIST = 9;
+    private static final int SET = 10;
+    private static final int MAP = 11;
+
+    @Test
+    void roundTripsEntitiesAndSharedReferences() throws IOException {
+        City city = new City(3, "Haifa", "Port city", 49.9);
+        GCMMap map = new GCMMap(30, "Downtown", "Old town", "1.2", 19.5, MapStatus.PUBLISHED);
+        map.setCity(city);
+        List<Site> sites = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            sites.add(new Site(300 + i, "Site " + i, "About " + i, city, SiteCategory.MUSEUM,
+                    i % 2 == 0, SiteDuration.values()[0], "32.8,35.0"));
+        }
+        map.setSites(sites);
+
+        Message decoded = (Message) roundTrip(new Message(ActionType.GET_MAP_DETAILS_RESPONSE, map));
+
+        assertEquals(ActionType.GET_MAP_DETAILS_RESPONSE, decoded.getAction());
+        GCMMap copy = assertInstanceOf(GCMMap.class, decoded.getMessage());
+        assertEquals("Downtown", copy.getName());
+        assertEquals("1.2", copy.getVersion());
+        assertEquals(19.5, copy.getPrice());
+        assertEquals(MapStatus.PUBLISHED, copy.getStatus());
+        assertEquals("Haifa", copy.getCityName());
+        assertEquals(3, copy.getSites().size());
+        assertEquals("Site 2", copy.getSites().get(2).getName());
+        assertEquals(SiteCategory.MUSEUM, copy.getSites().get(1).getCategory());
+        assertSame(copy.getCity(), copy.getSites().get(0).getCity());
+    }
+
+    @Test
+    void roundTripsCollectionsAndBytes() throws IOException {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("count", 42);
+        values.put("names", List.of("a", "b"));
+        values.put("image", new byte[] {1, 2, 3});
+        values.put("missing", null);
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> copy = (Map<String, Object>) roundTrip(values);
+
+        assertEquals(42, copy.get("count"));
+        assertEquals(List.of("a", "b"), copy.get("names"));
+        assertArrayEquals(new byte[] {1, 2, 3}, (byte[]) copy.get("image"));
+        assertEquals(4, copy.size());
+    }
+
+    static Stream<Arguments> malformedPayloads() throws IOException {
+        return Stream.of(
+                Arguments.of("map of 5e8 entries", payload(MAP, 500_000_000, NULL, NULL)),
+                Arguments.of("map of -1 entries", payload(MAP, -1)),
+                Arguments.of("list of 2^31-1", payload(LIST, Integer.MAX_VALUE, NULL)),
+                Arguments.of("set of 5e8", payload(SET, 500_000_000, NULL, NULL)),
+                Arguments.of("nested maps", payload(MAP, 1, MAP, 400_000_000, NULL, NULL)),
+                Arguments.of("bytes of 2^30", payload(BYTES, 1 << 30)),
+                Arguments.of("java of 2^30", payload(JAVA, 1 << 30)),
+                Arguments.of("truncated string", payload(STRING, 100, 97)),
+                Arguments.of("unknown tag", payload(31)),
+                Arguments.of("back-reference", payload(REF, 7)));
+    }
+
+    /** What a hostile peer could send before logging in: refused quickly, without a large allocation. */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("malformedPayloads")
+    void refusesMalformedPayloads(String name, byte[] payload) {
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () ->
+                assertThrows(IOException.class, () -> BinaryCodec.decode(payload, 0, payload.length)));
+    }
+
+    private static Object roundTrip(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryCodec.encode(value, bytes);
+        byte[] payload = bytes.toByteArray();
+        return BinaryCodec.decode(payload, 0, payload.length);
+    }
+
+    /** Writes each value as a varint, the way tags and counts go on the wire. */
+    private static byte[] payload(int... varints) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+        for (int v : varints) {
+            out.writeUInt32NoTag(v);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+}
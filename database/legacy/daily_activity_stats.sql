@@ -49,3 +49,36 @@ CREATE TABLE IF NOT EXISTS map_download_events
 -- 4) Mark renewals on purchases (so you can count subscription renewals)
 ALTER TABLE purchases ADD COLUMN is_renewal BOOLEAN NOT NULL DEFAULT FALSE;
 
+
+-- 5) Event log segments already folded into daily_city_activity_stats
+--    (map views/downloads are logged to local segment files, see server.events)
+CREATE TABLE IF NOT EXISTS event_log_segments
+(
+    segment_id BIGINT PRIMARY KEY,
+    events INT NOT NULL,
+    compacted_at DATETIME NOT NULL
+);
+
+-- 6) Days up to sealed_through are final in daily_city_activity_stats
+--    (see server.report.DailyStatsAggregator)
+CREATE TABLE IF NOT EXISTS daily_stats_state
+(
+    id TINYINT PRIMARY KEY,
+    sealed_through DATE NOT NULL
+);
+
+-- 7) Weekly (from Monday), monthly and yearly totals per city, written once
+--    a bucket's last day is sealed (see server.report.RollupMaintainer);
+--    daily_stats_state row 2 is the last day whose buckets are written
+CREATE TABLE IF NOT EXISTS city_activity_rollups
+(
+    granularity VARCHAR(5) NOT NULL,
+    city_id INT NOT NULL,
+    period_start DATE NOT NULL,
+    one_time_purchases INT NOT NULL DEFAULT 0,
+    subscriptions INT NOT NULL DEFAULT 0,
+    subscription_renewals INT NOT NULL DEFAULT 0,
+    views INT NOT NULL DEFAULT 0,
+    downloads INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (granularity, city_id, period_start)
+);
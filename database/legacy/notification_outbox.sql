@@ -0,0 +1,18 @@
+-- Emails and SMS waiting to be sent (see server.notification.NotificationOutbox).
+-- Rows are written in the transaction of the purchase or registration that
+-- causes them and deleted once sent; FAILED rows keep their last error.
+CREATE TABLE IF NOT EXISTS notification_outbox
+(
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    channel VARCHAR(8) NOT NULL,             -- EMAIL, SMS
+    recipient VARCHAR(255) NOT NULL,
+    subject VARCHAR(255) NULL,
+    body TEXT NOT NULL,
+    status VARCHAR(8) NOT NULL,              -- PENDING, SENDING, FAILED
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at DATETIME(3) NOT NULL,
+    created_at DATETIME(3) NOT NULL,
+    last_error VARCHAR(500) NULL,
+
+    INDEX idx_outbox_due (status, next_attempt_at)
+);
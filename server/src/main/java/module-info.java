@@ -2,6 +2,7 @@ module com.gcm.server {
     requires com.gcm.common;
     requires java.sql;
     requires java.naming;
+    requires java.management;
     requires mysql.connector.j;
     exports server;
 
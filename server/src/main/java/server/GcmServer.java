@@ -1,12 +1,32 @@
 package server;
 
 import common.dto.AuthResponse;
+import common.dto.CatalogChange;
+import common.dto.ImageStreamRequest;
 import common.messaging.Message;
+import common.messaging.codec.BinaryCodec;
 import common.enums.ActionType;
+import common.enums.EmployeeRole;
+import common.report.ServerMetricsReport;
+import common.user.Employee;
+import server.blob.MappedImageCache;
+import server.dispatch.CatalogChangeCoalescer;
+import server.dispatch.RequestDispatcher;
+import server.events.EventIngestor;
 import server.handler.HandlerRegistry;
+import server.metrics.ActionMetrics;
+import server.notification.NotificationDispatcher;
 import server.ocsf.AbstractServer;
 import server.ocsf.ConnectionToClient;
+import server.ocsf.PayloadCodec;
+import server.report.ReportCache;
+import server.report.ReportManager;
+import server.stream.MapImageStreamer;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -24,18 +44,62 @@ public class GcmServer extends AbstractServer {
     private static GcmServer instance;
 
     private final HandlerRegistry handlerRegistry;
+    private final RequestDispatcher dispatcher;
+    private final MapImageStreamer imageStreamer;
+    private final CatalogChangeCoalescer catalogChanges;
     private final ConcurrentHashMap<String, ConnectionToClient> activeSessions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<ConnectionToClient, RequestDispatcher.Lane> lanes = new ConcurrentHashMap<>();
 
     public GcmServer(int port) {
         super(port);
         this.handlerRegistry = HandlerRegistry.getInstance();
+        this.dispatcher = new RequestDispatcher(ServerConfig.dispatchWorkers(), ServerConfig.dispatchQueueCapacity());
+        this.imageStreamer = new MapImageStreamer(ServerConfig.streamChunkBytes(), ServerConfig.streamWindow());
+        this.catalogChanges = new CatalogChangeCoalescer(ServerConfig.broadcastCoalesceMillis(), this::sendToAllClients);
+        if (ServerConfig.binaryCodec()) {
+            addPayloadCodec(BINARY_CODEC);
+        }
         instance = this;
     }
 
+    /** Adapts the shared binary codec to the framework's codec interface. */
+    private static final PayloadCodec BINARY_CODEC = new PayloadCodec() {
+        @Override
+        public int getId() {
+            return BinaryCodec.ID;
+        }
+
+        @Override
+        public void encode(Object msg, OutputStream out) throws IOException {
+            BinaryCodec.encode(msg, out);
+        }
+
+        @Override
+        public Object decode(byte[] payload, int offset, int length) throws IOException {
+            return BinaryCodec.decode(payload, offset, length);
+        }
+    };
+
     public static GcmServer getInstance() {
         return instance;
     }
 
+    public RequestDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    public CatalogChangeCoalescer getCatalogChanges() {
+        return catalogChanges;
+    }
+
+    /**
+     * Announces a catalog change to all clients. Changes published close
+     * together are merged into one CATALOG_UPDATED_NOTIFICATION.
+     */
+    public void publishCatalogChange(CatalogChange change) {
+        catalogChanges.publish(change);
+    }
+
     @Override
     protected void handleMessageFromClient(Object msg, ConnectionToClient client) {
         if (!(msg instanceof Message request)) {
@@ -43,19 +107,59 @@ public class GcmServer extends AbstractServer {
             return;
         }
 
+        // Image chunk acks only add credit (the chunks are sent off this thread); they must not wait behind a busy queue
+        if (request.getAction() == ActionType.MAP_IMAGE_CHUNK_ACK) {
+            if (request.getMessage() instanceof Long transferId) {
+                imageStreamer.acknowledge(client, transferId);
+            }
+            return;
+        }
+
+        long received = System.nanoTime();
         System.out.println("Request: " + request.getAction() + " from " + client);
 
-        try {
-            // Handle logout directly — it's a connection-layer concern, not business logic
-            if (request.getAction() == ActionType.LOGOUT_REQUEST) {
-                handleLogout(client);
-                client.sendToClient(new Message(ActionType.LOGOUT_RESPONSE, "Logged out"));
-                System.out.println("Response: LOGOUT_RESPONSE sent to " + client);
-                return;
+        // Answered here so that the numbers still come back while the workers are saturated
+        if (request.getAction() == ActionType.GET_SERVER_METRICS_REQUEST) {
+            reply(client, request, serverMetrics(client));
+            return;
+        }
+
+        // Everything else runs on the worker pool so this connection keeps being read,
+        // one request at a time per connection so a logout never overtakes earlier requests
+        RequestDispatcher.Lane lane = lanes.computeIfAbsent(client, c -> new RequestDispatcher.Lane());
+        if (!dispatcher.submit(lane, () -> processRequest(request, client, received))) {
+            System.err.println("Server busy, rejected " + request.getAction() + " from " + client
+                    + " (" + dispatcher + ")");
+            ActionMetrics metrics = handlerRegistry.getMetrics().get(request.getAction());
+            if (metrics != null) {
+                metrics.recordRejected();
             }
+            reply(client, request, new Message(ActionType.ERROR, "Server busy, please try again in a moment."));
+        }
+    }
+
+    /**
+     * Runs a request through the handler registry and sends the response.
+     * Called on a dispatcher worker thread.
+     *
+     * @param received when the request was read (System.nanoTime)
+     */
+    private void processRequest(Message request, ConnectionToClient client, long received) {
+        ActionMetrics metrics = handlerRegistry.getMetrics().get(request.getAction());
+        if (metrics != null) {
+            metrics.recordQueued(System.nanoTime() - received);
+        }
+
+        // Logout is a connection-layer concern, not business logic
+        if (request.getAction() == ActionType.LOGOUT_REQUEST) {
+            handleLogout(client);
+            reply(client, request, new Message(ActionType.LOGOUT_RESPONSE, "Logged out"), metrics, received);
+            return;
+        }
 
-            // Delegate to handler registry
-            Message response = handlerRegistry.handleRequest(request);
+        try {
+            // Delegate to handler registry; reports it starts are cancelled if this client goes away
+            Message response = ReportManager.onBehalfOf(client, () -> handlerRegistry.handleRequest(request));
 
             if (response != null) {
                 // Intercept successful login responses to enforce unique sessions
@@ -63,19 +167,73 @@ public class GcmServer extends AbstractServer {
                     response = enforceUniqueSession(response, client);
                 }
 
-                client.sendToClient(response);
-                System.out.println("Response: " + response.getAction() + " sent to " + client);
+                // Streamed requests get the map images as chunks after the response
+                if (request.getMessage() instanceof ImageStreamRequest) {
+                    List<MapImageStreamer.DetachedImage> images = imageStreamer.detachImages(response.getMessage());
+                    reply(client, request, response, metrics, received);
+                    imageStreamer.start(client, request.getRequestId(), images);
+                    return;
+                }
+
+                reply(client, request, response, metrics, received);
             }
 
         } catch (Exception e) {
             System.err.println("Error handling request: " + e.getMessage());
             e.printStackTrace();
 
-            try {
-                client.sendToClient(new Message(ActionType.ERROR, "Server error: " + e.getMessage()));
-            } catch (Exception sendError) {
-                System.err.println("Failed to send error response: " + sendError.getMessage());
+            reply(client, request, new Message(ActionType.ERROR, "Server error: " + e.getMessage()),
+                    metrics, received);
+        }
+    }
+
+    /**
+     * Queues a message for every client without waiting on any socket, and logs
+     * how long the fan-out took. Clients too slow to drain their queue are
+     * disconnected by the framework.
+     */
+    @Override
+    public void sendToAllClients(Object msg) {
+        long slowBefore = getSlowConsumerCount();
+        super.sendToAllClients(msg);
+        long dropped = getSlowConsumerCount() - slowBefore;
+        System.out.printf("Broadcast %s to %d clients in %d us (max %d us over %d broadcasts)%s%n",
+                msg instanceof Message m ? m.getAction() : msg,
+                getNumberOfClients(),
+                getLastBroadcastNanos() / 1000,
+                getMaxBroadcastNanos() / 1000,
+                getBroadcastCount(),
+                dropped > 0 ? ", disconnected " + dropped + " slow client(s)" : "");
+    }
+
+    /**
+     * Sends a response tagged with the request's ID so the client can match it
+     * even when responses arrive out of order.
+     */
+    private void reply(ConnectionToClient client, Message request, Message response) {
+        reply(client, request, response, null, 0);
+    }
+
+    /**
+     * Sends a response and records how long it took to encode and write, and
+     * how long the request took overall since it was read.
+     *
+     * @param metrics the request type's metrics, or null to record nothing
+     * @param received when the request was read (System.nanoTime)
+     */
+    private void reply(ConnectionToClient client, Message request, Message response,
+                       ActionMetrics metrics, long received) {
+        response.setRequestId(request.getRequestId());
+        try {
+            long start = System.nanoTime();
+            long encodeNanos = client.sendToClientTimed(response);
+            long sent = System.nanoTime();
+            if (metrics != null) {
+                metrics.recordSent(encodeNanos, sent - start - encodeNanos, sent - received);
             }
+            System.out.println("Response: " + response.getAction() + " sent to " + client);
+        } catch (Exception sendError) {
+            System.err.println("Failed to send " + response.getAction() + " response: " + sendError.getMessage());
         }
     }
 
@@ -116,7 +274,7 @@ public class GcmServer extends AbstractServer {
 
         if (existing != null) {
             // Another session exists for this username
-            if (existing.isAlive()) {
+            if (existing.isConnected()) {
                 // Existing session is still active — reject new login
                 System.out.println("Duplicate login blocked for: " + username);
                 return new Message(ActionType.LOGIN_RESPONSE,
@@ -133,6 +291,7 @@ public class GcmServer extends AbstractServer {
         }
 
         client.setInfo("username", username);
+        client.setInfo("role", auth.getUser() instanceof Employee employee ? employee.getRole() : null);
         System.out.println("Session registered for: " + username);
         return response;
     }
@@ -146,18 +305,73 @@ public class GcmServer extends AbstractServer {
         if (username instanceof String name) {
             boolean removed = activeSessions.remove(name, client);
             client.setInfo("username", null);
+            client.setInfo("role", null);
             if (removed) {
                 System.out.println("Session removed for: " + name);
             }
         }
     }
 
+    // ==================== METRICS ====================
+
+    /**
+     * Builds the answer to GET_SERVER_METRICS_REQUEST. Only a logged-in
+     * company manager gets the numbers.
+     */
+    private Message serverMetrics(ConnectionToClient client) {
+        if (client.getInfo("role") != EmployeeRole.COMPANY_MANAGER) {
+            return new Message(ActionType.ERROR, "Server metrics are available to company managers only.");
+        }
+        MappedImageCache imageCache = MappedImageCache.getInstance();
+        EventIngestor events = EventIngestor.getInstance();
+        ReportCache reportCache = ReportCache.getInstance();
+        ServerMetricsReport report = new ServerMetricsReport(
+                LocalDateTime.now(),
+                getNumberOfClients(),
+                dispatcher.getActiveWorkers(),
+                dispatcher.getWorkerThreads(),
+                dispatcher.getQueueDepth(),
+                dispatcher.getPeakQueueDepth(),
+                dispatcher.getRejectedCount(),
+                imageCache.getHitCount(),
+                imageCache.getMissCount(),
+                imageCache.getEvictionCount(),
+                imageCache.getMappedBytes(),
+                events.getQueueDepth(),
+                events.getWrittenCount(),
+                events.getDroppedCount(),
+                events.getBatchCount(),
+                events.getFlushLatency().snapshot(),
+                reportCache.getHitCount(),
+                reportCache.getMissCount(),
+                reportCache.getEntryCount(),
+                reportCache.getCachedBytes(),
+                handlerRegistry.getMetrics().snapshot());
+        return new Message(ActionType.GET_SERVER_METRICS_RESPONSE, report);
+    }
+
+    /** Abandons reports still being generated for a client that went away. */
+    private void cancelReports(ConnectionToClient client) {
+        ReportManager reports = handlerRegistry.getReportManager();
+        int cancelled = reports == null ? 0 : reports.cancel(client);
+        if (cancelled > 0) {
+            System.out.println("Cancelled " + cancelled + " report(s) for " + client);
+        }
+    }
+
     // ==================== SERVER LIFECYCLE ====================
 
     @Override
     protected void serverStopped() {
         System.out.println("Server shutting down...");
         activeSessions.clear();
+        dispatcher.shutdown();
+        catalogChanges.shutdown();
+        EventIngestor.shutdown();
+        NotificationDispatcher.shutdown();
+        if (handlerRegistry.getReportManager() != null) {
+            handlerRegistry.getReportManager().shutdown();
+        }
         HibernateUtil.shutdown();
         System.out.println("Server stopped.");
     }
@@ -170,12 +384,18 @@ public class GcmServer extends AbstractServer {
     @Override
     synchronized protected void clientDisconnected(ConnectionToClient client) {
         handleLogout(client);
+        lanes.remove(client);
+        imageStreamer.cancel(client);
+        cancelReports(client);
         System.out.println("Client disconnected: " + client);
     }
 
     @Override
     synchronized protected void clientException(ConnectionToClient client, Throwable exception) {
         handleLogout(client);
+        lanes.remove(client);
+        imageStreamer.cancel(client);
+        cancelReports(client);
         System.out.println("Client exception: " + client + " — " + exception.getMessage());
     }
 }
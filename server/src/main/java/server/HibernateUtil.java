@@ -2,6 +2,7 @@ package server;
 
 import org.hibernate.SessionFactory;
 import org.hibernate.cfg.Configuration;
+import server.metrics.SqlStatementCounter;
 
 /**
  * Utility class for managing the Hibernate SessionFactory.
@@ -31,6 +32,9 @@ public class HibernateUtil {
             // Create Configuration from the XML file
             Configuration configuration = new Configuration();
             configuration.configure(configFile);  // Loads from classpath (resources folder)
+
+            // Count statements per request for the server performance report
+            configuration.setStatementInspector(SqlStatementCounter.INSTANCE);
             
             // Build the SessionFactory
             sessionFactory = configuration.buildSessionFactory();
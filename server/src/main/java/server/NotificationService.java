@@ -1,121 +1,64 @@
 package server;
 
-import com.twilio.Twilio;
-import com.twilio.rest.api.v2010.account.Message;
-import com.twilio.type.PhoneNumber;
-import javax.mail.*;
-import javax.mail.internet.InternetAddress;
-import javax.mail.internet.MimeMessage;
+import server.notification.Notification;
+import server.notification.NotificationDispatcher;
+import server.notification.NotificationOutbox;
+
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.time.LocalDate;
-import java.util.Date;
-import java.util.Properties;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * What GCM tells its users by email and SMS.
+ *
+ * Each alert is written to the notification outbox on the connection of the
+ * transaction that causes it, so it goes out only if that transaction
+ * commits, and the caller never waits for the mail server or Twilio: the
+ * {@link NotificationDispatcher} sends it in the background. Call
+ * {@link NotificationDispatcher#notifyEnqueued()} after the commit to have
+ * it sent right away rather than at the next poll.
+ */
 public class NotificationService
 {
-    private static final String SMTP_HOST = "smtp.gmail.com";
-    private static final String EMAIL_USER = System.getenv("EMAIL_USER");
-    private static final String EMAIL_PASSWORD = System.getenv("EMAIL_PASSWORD");
-
-    public static final String TWILIO_ACCOUNT_SID = System.getenv("TWILIO_ACCOUNT_SID");
-    public static final String TWILIO_AUTH_TOKEN = System.getenv("TWILIO_AUTH_TOKEN");
-    public static final String TWILIO_NUMBER = System.getenv("TWILIO_NUMBER");
-
-    public static void sendEmail(String recipientEmail, String subject, String messageText)
-    {
-        System.out.println("[DEBUG] Attempting to send mail to: " + recipientEmail);
-        System.out.println("[DEBUG] EMAIL_USER is: " + EMAIL_USER);
-        System.out.println("[DEBUG] EMAIL_PASSWORD length: " + (EMAIL_PASSWORD != null ? EMAIL_PASSWORD.length() : "NULL"));
-        Properties prop = new Properties();
-        prop.put("mail.smtp.host", SMTP_HOST);
-        prop.put("mail.smtp.port", "587");
-        prop.put("mail.smtp.auth", "true");
-        prop.put("mail.smtp.starttls.enable", "true"); // אבטחה TLS
-        Session session = Session.getInstance(prop, new Authenticator() {
-            @Override
-            protected PasswordAuthentication getPasswordAuthentication() {
-                return new PasswordAuthentication(EMAIL_USER, EMAIL_PASSWORD);
-            }
-        });
-        session.setDebug(true);
-        try {
-            MimeMessage message = new MimeMessage(session);
-            message.setFrom(new InternetAddress(EMAIL_USER));
-            message.setRecipients(MimeMessage.RecipientType.TO, InternetAddress.parse(recipientEmail));
-            message.setSubject(subject);
-            message.setText(messageText);
-
-            Transport.send(message);
-            System.out.println("[Mail] Email sent successfully to: " + recipientEmail);
-
-        } catch (MessagingException e) {
-            System.err.println("[Mail] Failed to send email: " + e.getMessage());
-            e.printStackTrace();
-        }
-    }
-
-    public static void sendSMS(String phoneNumber, String messageText)
-    {
-        try {
-            System.out.println("[DEBUG] --- SMS ATTEMPT ---");
-            System.out.println("[DEBUG] SID: " + (TWILIO_ACCOUNT_SID != null ? "FOUND" : "NULL"));
-            System.out.println("[DEBUG] Token: " + (TWILIO_AUTH_TOKEN != null ? "FOUND" : "NULL"));
-            System.out.println("[DEBUG] Sending from: " + TWILIO_NUMBER);
-            System.out.println("[DEBUG] Target phone: " + phoneNumber);
-            if (TWILIO_ACCOUNT_SID == null || TWILIO_AUTH_TOKEN == null || TWILIO_NUMBER == null) {
-                System.err.println("[SMS] Error: Twilio credentials are missing in Environment!");
-                return;
-            }
-            Twilio.init(TWILIO_ACCOUNT_SID, TWILIO_AUTH_TOKEN);
-            phoneNumber = formatPhoneNumberToInternational(phoneNumber);
-            Message message = Message.creator(
-                    new PhoneNumber(phoneNumber),
-                    new PhoneNumber(TWILIO_NUMBER),
-                    messageText
-            ).create();
-
-            System.out.println("Message SID: " + message.getSid());
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
-
-    public static void sendSubscriptionAlert(String email, String phone, String firstName, int days, String city) {
+    public static void queueSubscriptionExpiryAlert(Connection conn, String email, String phone, String firstName,
+                                                    int days, String city) throws SQLException {
         String subject = "GCM Subscription Expiry Warning";
         String message = "Hello " + firstName + ",\n\n" +
                 "This is a reminder that your GCM city subscription to " + city + " will expire in " + days + " days.\n" +
                 "To ensure uninterrupted access to your maps, please renew your subscription soon.\n\n" +
                 "Best regards,\nGCM Team";
 
-        sendEmail(email, subject, message);
-        if (phone != null && !phone.isEmpty()) {
-            sendSMS(phone, message);
-        }
+        enqueue(conn, email, phone, subject, message, true);
     }
 
-    public static void sendRegistrationAlert(String email, String phone, String firstName) {
+    public static void queueRegistrationAlert(Connection conn, String email, String phone, String firstName)
+            throws SQLException {
 
         String subject = "GCM Registration";
         String message = "Hello " + firstName + ",\n" +
                 "Welcome to GCM Services!\n" +
                 "We're so excited you joined us.";
 
-        sendEmail(email, subject, message);
-        if (phone != null && !phone.isEmpty()) {
-            sendSMS(phone, message);
-        }
+        enqueue(conn, email, phone, subject, message, true);
     }
 
-    public static void sendSubscriptionAlert(String email,String phone, String firstName, String city, double price, LocalDate expirationDate)
+    public static void queueSubscriptionAlert(Connection conn, String email, String phone, String firstName,
+                                              String city, double price, LocalDate expirationDate) throws SQLException
     {
         String subject = "GCM Subscription Payment receipt";
         String message = "Hello "+firstName+",\n\n"+
                 "Thank you for your purchase!\n"+
                 "Your subscription to "+city+ " will expire in "+expirationDate+"\n"+
                 "Price: "+price +"$";
-        sendEmail(email,subject, message);
+        enqueue(conn, email, phone, subject, message, false);
         //OPTIONAL - SEND SMS...
     }
-    public static void sendOneTimePurchaseAlert(String email,String phone,String firstName, String city,double price,String mapName, String mapVersion)
+
+    public static void queueOneTimePurchaseAlert(Connection conn, String email, String phone, String firstName,
+                                                 String city, double price, String mapName, String mapVersion)
+            throws SQLException
     {
         String subject = "GCM Map purchase receipt";
         String message = "Hello "+firstName+",\n\n"+
@@ -125,9 +68,23 @@ public class NotificationService
                 "\nMap name: "+mapName+
                 "\nMap version: "+mapVersion+
                 "\nPrice: "+price +"$";
-        sendEmail(email,subject, message);
+        enqueue(conn, email, phone, subject, message, false);
         //OPTIONAL - SEND SMS...
     }
+
+    /** Queues the email, and the SMS if asked for and there is a phone number. */
+    private static void enqueue(Connection conn, String email, String phone, String subject, String message,
+                                boolean sms) throws SQLException {
+        List<Notification> notifications = new ArrayList<>(2);
+        if (email != null && !email.isBlank()) {
+            notifications.add(Notification.email(email, subject, message));
+        }
+        if (sms && phone != null && !phone.isEmpty()) {
+            notifications.add(Notification.sms(phone, message));
+        }
+        NotificationOutbox.enqueue(conn, notifications);
+    }
+
     public static String formatPhoneNumberToInternational(String phoneNumber) {
         if (phoneNumber == null || phoneNumber.isEmpty()) {
             return null;
@@ -142,4 +99,4 @@ public class NotificationService
 
         return cleaned;
     }
-}
\ No newline at end of file
+}
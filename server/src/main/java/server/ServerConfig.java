@@ -0,0 +1,261 @@
+package server;
+
+import server.ocsf.TransportMode;
+
+import java.nio.file.Path;
+
+/**
+ * Startup settings read from JVM system properties, e.g.
+ * {@code java -Dgcm.transport=nio -jar server.jar}.
+ *
+ * Every setting has a default, so the server still starts without any flags.
+ */
+public final class ServerConfig {
+
+    private ServerConfig() {}
+
+    /** Listening port ({@code gcm.port}). */
+    public static int port() {
+        return intProperty("gcm.port", 5555);
+    }
+
+    /** Connection transport ({@code gcm.transport}: blocking | virtual-threads | nio). */
+    public static TransportMode transportMode() {
+        String value = System.getProperty("gcm.transport", "blocking");
+        try {
+            return TransportMode.valueOf(value.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown gcm.transport '" + value + "', using BLOCKING");
+            return TransportMode.BLOCKING;
+        }
+    }
+
+    /** Selector threads in NIO mode ({@code gcm.nio.eventLoops}). */
+    public static int nioEventLoops() {
+        return intProperty("gcm.nio.eventLoops",
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    /** Message handler threads in NIO mode ({@code gcm.nio.handlerThreads}). */
+    public static int nioHandlerThreads() {
+        return intProperty("gcm.nio.handlerThreads", 16);
+    }
+
+    /** Run NIO handlers on virtual threads instead of a fixed pool ({@code gcm.nio.virtualHandlers}). */
+    public static boolean nioVirtualHandlers() {
+        return Boolean.parseBoolean(System.getProperty("gcm.nio.virtualHandlers", "false"));
+    }
+
+    /** Worker threads running requests ({@code gcm.dispatch.workers}); keep below the DB pool size. */
+    public static int dispatchWorkers() {
+        return intProperty("gcm.dispatch.workers", 32);
+    }
+
+    /** Requests that may wait for a worker before the server answers busy ({@code gcm.dispatch.queueCapacity}). */
+    public static int dispatchQueueCapacity() {
+        return intProperty("gcm.dispatch.queueCapacity", 256);
+    }
+
+    /** Messages that may wait for a slow client before it is disconnected ({@code gcm.outbound.queueCapacity}). */
+    public static int outboundQueueCapacity() {
+        return intProperty("gcm.outbound.queueCapacity", 64);
+    }
+
+    /** Window in which catalog changes are merged into one notification ({@code gcm.broadcast.coalesceMs}). */
+    public static int broadcastCoalesceMillis() {
+        return intProperty("gcm.broadcast.coalesceMs", 500);
+    }
+
+    /** Heartbeat check interval in ms, 0 to disable ({@code gcm.heartbeat.intervalMs}). */
+    public static int heartbeatIntervalMillis() {
+        return intProperty("gcm.heartbeat.intervalMs", 10000);
+    }
+
+    /** Silent heartbeat intervals before a client is dropped ({@code gcm.heartbeat.misses}). */
+    public static int heartbeatMissLimit() {
+        return intProperty("gcm.heartbeat.misses", 3);
+    }
+
+    /** Largest slice of a streamed map image ({@code gcm.stream.chunkBytes}). */
+    public static int streamChunkBytes() {
+        return intProperty("gcm.stream.chunkBytes", 64 * 1024);
+    }
+
+    /** Unacknowledged chunks allowed per streamed image ({@code gcm.stream.window}). */
+    public static int streamWindow() {
+        return intProperty("gcm.stream.window", 4);
+    }
+
+    /** Directory of the content-addressed map image store ({@code gcm.blob.dir}). */
+    public static String blobStoreDir() {
+        String value = System.getProperty("gcm.blob.dir");
+        return value == null || value.isBlank() ? "blobs" : value.trim();
+    }
+
+    /** Whether {@code gcm.blob.dir} was set, rather than defaulting to a path relative to the working directory. */
+    public static boolean blobStoreDirConfigured() {
+        String value = System.getProperty("gcm.blob.dir");
+        return value != null && !value.isBlank();
+    }
+
+    /**
+     * Copy images still in the maps LONGBLOB column into the blob store at startup
+     * ({@code gcm.blob.migrateOnStartup}, off by default). The column is left as is;
+     * only {@link server.blob.MapImageMigration} run by hand clears it.
+     */
+    public static boolean migrateBlobsOnStartup() {
+        return Boolean.parseBoolean(System.getProperty("gcm.blob.migrateOnStartup", "false"));
+    }
+
+    /** Memory-mapped map images kept open, in MB ({@code gcm.blob.cacheMb}); 0 maps every chunk afresh. */
+    public static int blobCacheMb() {
+        return Math.max(0, intProperty("gcm.blob.cacheMb", 256));
+    }
+
+    /** Directory of the map view/download event log ({@code gcm.events.dir}). */
+    public static String eventLogDir() {
+        String value = System.getProperty("gcm.events.dir");
+        return value == null || value.isBlank() ? "events" : value.trim();
+    }
+
+    /** Records per event log segment file ({@code gcm.events.segmentRecords}); 32 bytes each. */
+    public static int eventSegmentRecords() {
+        return intProperty("gcm.events.segmentRecords", 128 * 1024);
+    }
+
+    /** Map events that may wait for the log writer before new ones are dropped ({@code gcm.events.queueCapacity}). */
+    public static int eventQueueCapacity() {
+        return intProperty("gcm.events.queueCapacity", 64 * 1024);
+    }
+
+    /** Most map events appended to the log at once ({@code gcm.events.batchSize}). */
+    public static int eventBatchSize() {
+        return intProperty("gcm.events.batchSize", 1024);
+    }
+
+    /** Longest a map event waits for its batch to fill, in ms ({@code gcm.events.flushMs}). */
+    public static int eventFlushMillis() {
+        return intProperty("gcm.events.flushMs", 50);
+    }
+
+    /** Force every event log batch to disk ({@code gcm.events.sync}). */
+    public static boolean eventSync() {
+        return Boolean.parseBoolean(System.getProperty("gcm.events.sync", "true"));
+    }
+
+    /** Seconds between folds of the event log into the daily stats ({@code gcm.events.compactSeconds}). */
+    public static int eventCompactSeconds() {
+        return Math.max(1, intProperty("gcm.events.compactSeconds", 60));
+    }
+
+    /** Threads running report parts ({@code gcm.reports.threads}); each holds at most one DB connection. */
+    public static int reportThreads() {
+        return intProperty("gcm.reports.threads", 4);
+    }
+
+    /** Reports generated at the same time before the next is turned away ({@code gcm.reports.maxConcurrent}). */
+    public static int reportMaxConcurrent() {
+        return intProperty("gcm.reports.maxConcurrent", 2);
+    }
+
+    /** Estimated size of the generated reports kept, in MB ({@code gcm.reports.cacheMb}); 0 keeps none. */
+    public static int reportCacheMb() {
+        return Math.max(0, intProperty("gcm.reports.cacheMb", 16));
+    }
+
+    /** Where notifications go ({@code gcm.notify.sink}): "smtp" for Gmail and Twilio, "fake" for {@link server.notification.FakeNotificationSink}. */
+    public static String notifySink() {
+        String value = System.getProperty("gcm.notify.sink");
+        return value == null || value.isBlank() ? "smtp" : value.trim();
+    }
+
+    /** Notifications sent at the same time ({@code gcm.notify.workers}). */
+    public static int notifyWorkers() {
+        return intProperty("gcm.notify.workers", 4);
+    }
+
+    /** Most notifications a worker sends at once, on one SMTP connection ({@code gcm.notify.batchSize}). */
+    public static int notifyBatchSize() {
+        return intProperty("gcm.notify.batchSize", 20);
+    }
+
+    /** Longest wait between looks at the notification outbox, in ms ({@code gcm.notify.pollMs}). */
+    public static int notifyPollMillis() {
+        return intProperty("gcm.notify.pollMs", 1000);
+    }
+
+    /** Sends tried before a notification is left as FAILED ({@code gcm.notify.maxAttempts}). */
+    public static int notifyMaxAttempts() {
+        return intProperty("gcm.notify.maxAttempts", 8);
+    }
+
+    /** Wait after a notification's first failed send, in ms ({@code gcm.notify.retryBaseMs}); doubled after each later one. */
+    public static int notifyRetryBaseMillis() {
+        return intProperty("gcm.notify.retryBaseMs", 5000);
+    }
+
+    /** SMTP server for notification email ({@code gcm.notify.smtp.host}). */
+    public static String notifySmtpHost() {
+        String value = System.getProperty("gcm.notify.smtp.host");
+        return value == null || value.isBlank() ? "smtp.gmail.com" : value.trim();
+    }
+
+    /** SMTP port ({@code gcm.notify.smtp.port}); the server must offer STARTTLS. */
+    public static int notifySmtpPort() {
+        return intProperty("gcm.notify.smtp.port", 587);
+    }
+
+    /** SMTP connections kept open for notification email ({@code gcm.notify.smtp.connections}). */
+    public static int notifySmtpConnections() {
+        return intProperty("gcm.notify.smtp.connections", 2);
+    }
+
+    /** Messages sent on one SMTP connection before it is reopened ({@code gcm.notify.smtp.messagesPerConnection}). */
+    public static int notifySmtpMessagesPerConnection() {
+        return intProperty("gcm.notify.smtp.messagesPerConnection", 100);
+    }
+
+    /** Emails sent per second at most ({@code gcm.notify.smtp.perSecond}); 0 for no limit. */
+    public static int notifySmtpPerSecond() {
+        return intProperty("gcm.notify.smtp.perSecond", 0);
+    }
+
+    /** Text messages sent per second at most ({@code gcm.notify.sms.perSecond}); Twilio queues beyond one per second per number. */
+    public static int notifySmsPerSecond() {
+        return intProperty("gcm.notify.sms.perSecond", 1);
+    }
+
+    /** Time each send to the fake sink takes, in ms ({@code gcm.notify.fake.latencyMs}). */
+    public static int notifyFakeLatencyMillis() {
+        return Math.max(0, intProperty("gcm.notify.fake.latencyMs", 0));
+    }
+
+    /** Share of sends to the fake sink that fail ({@code gcm.notify.fake.failPercent}). */
+    public static int notifyFakeFailPercent() {
+        return intProperty("gcm.notify.fake.failPercent", 0);
+    }
+
+    /** File the fake sink appends notifications to ({@code gcm.notify.fake.file}), or null. */
+    public static Path notifyFakeFile() {
+        String value = System.getProperty("gcm.notify.fake.file");
+        return value == null || value.isBlank() ? null : Path.of(value.trim());
+    }
+
+    /** Offer the compact binary codec to framed clients ({@code gcm.codec.binary}). */
+    public static boolean binaryCodec() {
+        return Boolean.parseBoolean(System.getProperty("gcm.codec.binary", "true"));
+    }
+
+    static int intProperty(String key, int defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid " + key + "='" + value + "', using " + defaultValue);
+            return defaultValue;
+        }
+    }
+}
@@ -1,6 +1,14 @@
 package server;
 
+import server.blob.BlobStore;
+import server.blob.MapImageMigration;
+import server.catalog.CatalogReadModel;
+import server.catalog.CatalogViews;
+import server.catalog.SearchIndex;
+import server.events.EventCompactor;
+import server.events.EventIngestor;
 import server.handler.HandlerRegistry;
+import server.notification.NotificationDispatcher;
 import server.report.ActivityStatsScheduler;
 import server.repository.PurchaseRepository;
 
@@ -21,17 +29,58 @@ public class appServer {
             HandlerRegistry.getInstance();
             System.out.println("✓ Handler registry initialized");
 
+            System.out.println("Map images stored in " + BlobStore.getInstance().getRoot()
+                    + ", up to " + ServerConfig.blobCacheMb() + " MB kept mapped");
+            if (ServerConfig.migrateBlobsOnStartup()) {
+                MapImageMigration.Result migrated = MapImageMigration.migrate(
+                        HibernateUtil.getSessionFactory(), BlobStore.getInstance(), false);
+                if (migrated.rows() > 0) {
+                    System.out.println("✓ " + migrated);
+                }
+            }
+
+            CatalogViews.rebuild();
+            System.out.println("✓ Catalog loaded: " + CatalogReadModel.getInstance().snapshot()
+                    + ", " + SearchIndex.getInstance().getTokenCount() + " search terms");
+
+            EventCompactor.getInstance().start(ServerConfig.eventCompactSeconds());
+            Runtime.getRuntime().addShutdownHook(new Thread(EventIngestor::shutdown, "event-log-shutdown"));
+            System.out.println("✓ Map events logged to " + EventIngestor.getInstance().getLog().getDir()
+                    + ", folded into daily stats every " + ServerConfig.eventCompactSeconds() + " s");
+
+            NotificationDispatcher notifications = NotificationDispatcher.getInstance();
+            int requeued = notifications.start();
+            System.out.println("✓ Notifications sent from the outbox by " + notifications.getWorkerThreads()
+                    + " workers through " + notifications.getSender()
+                    + (requeued > 0 ? ", " + requeued + " left from the last run" : ""));
+
             System.out.println("Server ready to accept connections.");
         } catch (Exception e) {
             System.err.println("✗ Failed to initialize server:");
             e.printStackTrace();
         }
 
-        gcmServer = new GcmServer(5555);
-        System.out.println("Server Started and Listening on port 5555");
+        int port = ServerConfig.port();
+        gcmServer = new GcmServer(port);
+        gcmServer.setTransportMode(ServerConfig.transportMode());
+        gcmServer.setEventLoopThreads(ServerConfig.nioEventLoops());
+        gcmServer.setHandlerThreads(ServerConfig.nioHandlerThreads());
+        gcmServer.setVirtualHandlers(ServerConfig.nioVirtualHandlers());
+        gcmServer.setOutboundQueueCapacity(ServerConfig.outboundQueueCapacity());
+        gcmServer.setHeartbeatInterval(ServerConfig.heartbeatIntervalMillis());
+        gcmServer.setHeartbeatMissLimit(ServerConfig.heartbeatMissLimit());
+        System.out.println("Server Started and Listening on port " + port
+                + " (" + gcmServer.getTransportMode() + " transport)");
+        System.out.println("Request workers: " + gcmServer.getDispatcher().getWorkerThreads()
+                + ", queue capacity: " + gcmServer.getDispatcher().getQueueCapacity()
+                + ", outbound queue per client: " + gcmServer.getOutboundQueueCapacity());
+        System.out.println("Catalog change notifications coalesced over "
+                + gcmServer.getCatalogChanges().getWindowMillis() + " ms");
+        System.out.println("Heartbeat every " + gcmServer.getHeartbeatInterval() + " ms, client dropped after "
+                + gcmServer.getHeartbeatMissLimit() + " silent intervals");
         gcmServer.listen();
         startDailyNotificationCheck();
-        // Start daily refresh at 23:59 using the central ReportManager
+        // Start daily refresh at 00:05 using the central ReportManager
         ActivityStatsScheduler.start(HandlerRegistry.getInstance().getReportManager());
     }
 
@@ -0,0 +1,211 @@
+package server.blob;
+
+import server.ServerConfig;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Content-addressed store of immutable binary files (map images) on local disk.
+ *
+ * A blob is named by the SHA-256 of its bytes and lives at
+ * {@code <root>/ab/cd/abcd...}. Storing bytes that are already there is a
+ * no-op, so map versions that share an image keep a single copy. Files are
+ * written to {@code <root>/tmp} first and linked into place, which fails
+ * rather than overwrites if another thread got there first, so a reader
+ * never sees a half-written blob.
+ *
+ * Blobs are never modified or deleted by the server; a blob no map refers to
+ * any more is simply left behind.
+ */
+public class BlobStore {
+
+    private static final int HASH_LENGTH = 64;
+    private static final HexFormat HEX = HexFormat.of();
+
+    private static BlobStore instance;
+
+    private final Path root;
+    private final Path tmp;
+
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+
+    public BlobStore(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+        this.tmp = this.root.resolve("tmp");
+        try {
+            Files.createDirectories(tmp);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot create blob store at " + this.root, e);
+        }
+    }
+
+    /** The store under {@link ServerConfig#blobStoreDir()}. */
+    public static synchronized BlobStore getInstance() {
+        if (instance == null) {
+            instance = new BlobStore(Path.of(ServerConfig.blobStoreDir()));
+        }
+        return instance;
+    }
+
+    /**
+     * Stores bytes unless a blob with the same content exists.
+     *
+     * @return the blob's hash (64 lowercase hex characters)
+     */
+    public String put(byte[] data) throws IOException {
+        String hash = hash(data);
+        Path target = path(hash);
+        if (Files.exists(target)) {
+            deduplicated.incrementAndGet();
+            return hash;
+        }
+
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(tmp, hash.substring(0, 8), ".part");
+        try {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                out.force(true);
+            }
+            publish(temp, target);
+            stored.incrementAndGet();
+        } catch (FileAlreadyExistsException e) {
+            // Another thread stored the same content first
+            deduplicated.incrementAndGet();
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return hash;
+    }
+
+    /** @return the whole blob */
+    public byte[] read(String hash) throws IOException {
+        return Files.readAllBytes(existing(hash));
+    }
+
+    /**
+     * Reads part of a blob without loading the rest of it.
+     *
+     * @param offset first byte to read
+     * @param length number of bytes to read
+     */
+    public byte[] read(String hash, long offset, int length) throws IOException {
+        byte[] data = new byte[length];
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        try (FileChannel in = FileChannel.open(existing(hash), StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (in.read(buffer, offset + buffer.position()) < 0) {
+                    throw new EOFException("Blob " + hash + " ends before byte " + (offset + length));
+                }
+            }
+        }
+        return data;
+    }
+
+    /** Copies a blob to a stream. */
+    public void copyTo(String hash, OutputStream out) throws IOException {
+        Files.copy(existing(hash), out);
+    }
+
+    public long size(String hash) throws IOException {
+        return Files.size(existing(hash));
+    }
+
+    public boolean contains(String hash) {
+        return isHash(hash) && Files.exists(path(hash));
+    }
+
+    /** @return where the blob is, or would be, stored */
+    public Path path(String hash) {
+        if (!isHash(hash)) {
+            throw new IllegalArgumentException("Not a blob hash: " + hash);
+        }
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /** Blobs written since startup. */
+    public long getStoredCount() {
+        return stored.get();
+    }
+
+    /** Puts that found their content already stored. */
+    public long getDeduplicatedCount() {
+        return deduplicated.get();
+    }
+
+    @Override
+    public String toString() {
+        return "BlobStore [root=" + root + ", stored=" + getStoredCount()
+                + ", deduplicated=" + getDeduplicatedCount() + "]";
+    }
+
+    /**
+     * Makes a fully written temp file visible under its final name.
+     *
+     * @throws FileAlreadyExistsException if the blob is already there
+     */
+    private static void publish(Path temp, Path target) throws IOException {
+        try {
+            Files.createLink(target, temp);
+        } catch (UnsupportedOperationException e) {
+            // No hard links on this file system; a rename may replace an identical file
+            if (Files.exists(target)) {
+                throw new FileAlreadyExistsException(target.toString());
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    // ==================== HASHING ====================
+
+    public static String hash(byte[] data) {
+        try {
+            return HEX.formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static boolean isHash(String hash) {
+        if (hash == null || hash.length() != HASH_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < HASH_LENGTH; i++) {
+            char c = hash.charAt(i);
+            if (!(c >= '0' && c <= '9') && !(c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Path existing(String hash) throws IOException {
+        Path file = path(hash);
+        if (!Files.exists(file)) {
+            throw new NoSuchFileException(file.toString(), null, "blob missing from store");
+        }
+        return file;
+    }
+}
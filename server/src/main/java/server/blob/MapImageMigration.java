@@ -0,0 +1,162 @@
+package server.blob;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import server.HibernateUtil;
+import server.ServerConfig;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+/**
+ * Moves map images from the legacy {@code maps.map_image} LONGBLOB column into
+ * the {@link BlobStore}, leaving only {@code image_hash} and {@code image_size}
+ * in the row.
+ *
+ * Rows are migrated in small batches, one transaction each, so the tool can
+ * be stopped and run again: a row counts as migrated once it has a hash, and
+ * its LONGBLOB is cleared in the same transaction (unless --keep-legacy).
+ * Identical images are stored once.
+ *
+ * The server can run it at startup (see {@code gcm.blob.migrateOnStartup}),
+ * but only ever keeps the LONGBLOB data there. Clearing the column is left to
+ * a run by hand, which refuses to clear unless {@code gcm.blob.dir} is set,
+ * so the images cannot end up in a directory relative to wherever it ran:
+ * <pre>
+ * java -Dgcm.blob.dir=/var/gcm/blobs -cp server.jar server.blob.MapImageMigration [--keep-legacy]
+ * </pre>
+ */
+public class MapImageMigration {
+
+    private static final int BATCH_SIZE = 20;
+
+    public static void main(String[] args) {
+        boolean keepLegacy = args.length > 0 && "--keep-legacy".equals(args[0]);
+        if (!keepLegacy && !ServerConfig.blobStoreDirConfigured()) {
+            System.err.println("Refusing to clear maps.map_image without -Dgcm.blob.dir; "
+                    + "set it to the server's blob directory, or pass --keep-legacy");
+            System.exit(2);
+        }
+        HibernateUtil.initialize("dbHibernate.cfg.xml");
+        try {
+            BlobStore store = BlobStore.getInstance();
+            System.out.println("Migrating map images into " + store.getRoot()
+                    + (keepLegacy ? " (keeping the LONGBLOB column data)" : ""));
+            Result result = migrate(HibernateUtil.getSessionFactory(), store, !keepLegacy);
+            System.out.println(result);
+        } finally {
+            HibernateUtil.shutdown();
+        }
+    }
+
+    /**
+     * Migrates every row that still has a LONGBLOB image and no hash.
+     * Does nothing on a database that never had the column.
+     *
+     * @param clearLegacy true to set map_image to NULL once the blob is stored
+     */
+    public static Result migrate(SessionFactory sessionFactory, BlobStore store, boolean clearLegacy) {
+        if (!hasLegacyColumn(sessionFactory)) {
+            return new Result(0, 0, 0);
+        }
+
+        long storedBefore = store.getStoredCount();
+        int rows = 0;
+        long bytes = 0;
+        int lastId = 0;
+        while (true) {
+            Batch batch = migrateBatch(sessionFactory, store, clearLegacy, lastId);
+            if (batch.scanned == 0) {
+                break;
+            }
+            rows += batch.rows;
+            bytes += batch.bytes;
+            lastId = batch.lastId;
+        }
+        return new Result(rows, bytes, (int) (store.getStoredCount() - storedBefore));
+    }
+
+    private static boolean hasLegacyColumn(SessionFactory sessionFactory) {
+        try (Session session = sessionFactory.openSession()) {
+            Number count = session.createNativeQuery(
+                    "SELECT COUNT(*) FROM information_schema.COLUMNS " +
+                    "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'maps' AND COLUMN_NAME = 'map_image'",
+                    Number.class).uniqueResult();
+            return count != null && count.intValue() > 0;
+        }
+    }
+
+    /**
+     * Migrates the next rows after {@code afterId} in one transaction.
+     */
+    private static Batch migrateBatch(SessionFactory sessionFactory, BlobStore store,
+                                      boolean clearLegacy, int afterId) {
+        Batch batch = new Batch();
+        batch.lastId = afterId;
+        Transaction tx = null;
+        try (Session session = sessionFactory.openSession()) {
+            tx = session.beginTransaction();
+            session.doWork((Connection connection) -> {
+                String update = clearLegacy
+                        ? "UPDATE maps SET image_hash = ?, image_size = ?, map_image = NULL WHERE id = ?"
+                        : "UPDATE maps SET image_hash = ?, image_size = ? WHERE id = ?";
+                try (PreparedStatement select = connection.prepareStatement(
+                        "SELECT id, map_image FROM maps " +
+                        "WHERE id > ? AND map_image IS NOT NULL AND image_hash IS NULL " +
+                        "ORDER BY id LIMIT " + BATCH_SIZE);
+                     PreparedStatement write = connection.prepareStatement(update)) {
+                    select.setInt(1, afterId);
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) {
+                            int id = rs.getInt(1);
+                            byte[] image = rs.getBytes(2);
+                            batch.lastId = id;
+                            batch.scanned++;
+                            if (image == null || image.length == 0) {
+                                continue;
+                            }
+                            write.setString(1, store.put(image));
+                            write.setInt(2, image.length);
+                            write.setInt(3, id);
+                            write.addBatch();
+                            batch.rows++;
+                            batch.bytes += image.length;
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    write.executeBatch();
+                }
+            });
+            tx.commit();
+        } catch (RuntimeException e) {
+            if (tx != null && tx.isActive()) tx.rollback();
+            throw e;
+        }
+        return batch;
+    }
+
+    private static final class Batch {
+        int scanned;
+        int rows;
+        long bytes;
+        int lastId;
+    }
+
+    /**
+     * @param rows      maps moved to the store
+     * @param bytes     image bytes read from the LONGBLOB column
+     * @param newBlobs  files written; fewer than rows when images are shared
+     */
+    public record Result(int rows, long bytes, int newBlobs) {
+        @Override
+        public String toString() {
+            return "Migrated " + rows + " map image(s), " + (bytes / 1024) + " KB, into "
+                    + newBlobs + " new blob(s)";
+        }
+    }
+}
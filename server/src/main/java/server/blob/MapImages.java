@@ -0,0 +1,43 @@
+package server.blob;
+
+import common.content.GCMMap;
+
+import java.io.IOException;
+
+/**
+ * Glue between {@link GCMMap} rows and the {@link BlobStore}: the maps table
+ * only keeps the image hash and size, the bytes live in the store.
+ */
+public final class MapImages {
+
+    private MapImages() {}
+
+    /**
+     * Stores a new image and points the map at it.
+     */
+    public static void store(GCMMap map, byte[] image) throws IOException {
+        map.setImageHash(BlobStore.getInstance().put(image));
+        map.setImageSize(image.length);
+    }
+
+    /**
+     * Copies the image reference of a managed map onto a detached copy sent
+     * to a client.
+     *
+     * @param inline true to load the bytes into {@link GCMMap#getMapImage()};
+     *               false leaves them to {@link server.stream.MapImageStreamer},
+     *               which reads them from the store chunk by chunk
+     */
+    public static void copy(GCMMap source, GCMMap target, boolean inline) {
+        target.setImageHash(source.getImageHash());
+        target.setImageSize(source.getImageSize());
+        if (!inline || source.getImageHash() == null) {
+            return;
+        }
+        try {
+            target.setMapImage(BlobStore.getInstance().read(source.getImageHash()));
+        } catch (IOException e) {
+            System.err.println("Image of map " + source.getId() + " unavailable: " + e.getMessage());
+        }
+    }
+}
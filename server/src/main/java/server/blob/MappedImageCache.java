@@ -0,0 +1,151 @@
+package server.blob;
+
+import server.ServerConfig;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-only memory mappings of the most recently served blobs.
+ *
+ * Streamed map images are sliced straight out of a mapping, so their bytes
+ * come from the OS page cache and, on an NIO connection, go to the socket
+ * without passing through the Java heap. Mappings are kept in LRU order up
+ * to a byte budget; a blob larger than the whole budget is mapped for the
+ * caller but not kept.
+ *
+ * Evicting a mapping only drops the cache's reference: chunks still queued
+ * on a slow connection keep it valid, and the JVM unmaps it once it is
+ * garbage collected. Blobs are immutable, so a mapping never goes stale.
+ */
+public class MappedImageCache {
+
+    private static MappedImageCache instance;
+
+    private final BlobStore store;
+    private final long budgetBytes;
+
+    /** Access-ordered, eldest first; guarded by this. */
+    private final LinkedHashMap<String, MappedByteBuffer> mappings = new LinkedHashMap<>(64, 0.75f, true);
+    private long mappedBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param budgetBytes total size of the mappings kept; 0 keeps none
+     */
+    public MappedImageCache(BlobStore store, long budgetBytes) {
+        if (budgetBytes < 0) {
+            throw new IllegalArgumentException("budgetBytes must not be negative");
+        }
+        this.store = store;
+        this.budgetBytes = budgetBytes;
+    }
+
+    /** The cache of {@link BlobStore#getInstance()}, sized by {@link ServerConfig#blobCacheMb()}. */
+    public static synchronized MappedImageCache getInstance() {
+        if (instance == null) {
+            instance = new MappedImageCache(BlobStore.getInstance(), ServerConfig.blobCacheMb() * 1024L * 1024L);
+        }
+        return instance;
+    }
+
+    /**
+     * @return a read-only buffer over the whole blob, positioned at 0; each
+     *         call returns an independent buffer
+     */
+    public ByteBuffer get(String hash) throws IOException {
+        synchronized (this) {
+            MappedByteBuffer mapping = mappings.get(hash);
+            if (mapping != null) {
+                hits.incrementAndGet();
+                return mapping.duplicate();
+            }
+        }
+        misses.incrementAndGet();
+
+        MappedByteBuffer mapping = map(store.path(hash));
+        if (mapping.capacity() > budgetBytes) {
+            return mapping;
+        }
+        synchronized (this) {
+            MappedByteBuffer raced = mappings.putIfAbsent(hash, mapping);
+            if (raced != null) {
+                // Another thread mapped it meanwhile; ours is dropped
+                return raced.duplicate();
+            }
+            mappedBytes += mapping.capacity();
+            evictOverBudget();
+        }
+        return mapping.duplicate();
+    }
+
+    /**
+     * @return a read-only buffer over part of a blob
+     */
+    public ByteBuffer slice(String hash, int offset, int length) throws IOException {
+        return get(hash).slice(offset, length);
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    /** Total size of the mappings currently kept. */
+    public synchronized long getMappedBytes() {
+        return mappedBytes;
+    }
+
+    public synchronized int getMappingCount() {
+        return mappings.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "MappedImageCache [mapped=" + getMappedBytes() / 1024 + " KB of " + budgetBytes / 1024
+                + " KB, mappings=" + getMappingCount() + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+                + ", evictions=" + getEvictionCount() + "]";
+    }
+
+    /** Called with the lock held. */
+    private void evictOverBudget() {
+        Iterator<Map.Entry<String, MappedByteBuffer>> eldest = mappings.entrySet().iterator();
+        while (mappedBytes > budgetBytes && eldest.hasNext()) {
+            mappedBytes -= eldest.next().getValue().capacity();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            throw new NoSuchFileException(file.toString(), null, "blob missing from store");
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package server.catalog;
+
+import common.dto.CatalogChange;
+import server.repository.CatalogRow;
+import server.repository.MapRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The catalog, held in memory: every priced, non-external map with the
+ * columns the catalog page shows, grouped by city.
+ *
+ * It answers the catalog page and its filter dropdowns without touching the
+ * database. The data is an immutable {@link Snapshot} behind a volatile
+ * field, so readers never lock and always see one consistent catalog.
+ *
+ * The snapshot is built in full at startup ({@link #rebuild()}). After a
+ * change is committed, {@link #apply(CatalogChange)} re-reads only the
+ * cities it names and swaps in a copy of the snapshot with those cities
+ * replaced. Writers are serialized so two updates cannot drop each other's
+ * cities. If an update fails the snapshot is discarded and the next read
+ * rebuilds it.
+ */
+public class CatalogReadModel {
+
+    private static CatalogReadModel instance;
+
+    private final Loader loader;
+    private volatile Snapshot snapshot;
+
+    private final AtomicLong rebuilds = new AtomicLong();
+    private final AtomicLong updates = new AtomicLong();
+
+    /**
+     * Reads catalog rows; {@link MapRepository#findCatalogRows(Collection)} in the server.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        /** @param cityIds the cities to read, or null for all */
+        List<CatalogRow> load(Collection<Integer> cityIds);
+    }
+
+    public CatalogReadModel(Loader loader) {
+        this.loader = loader;
+    }
+
+    public static synchronized CatalogReadModel getInstance() {
+        if (instance == null) {
+            instance = new CatalogReadModel(MapRepository.getInstance()::findCatalogRows);
+        }
+        return instance;
+    }
+
+    // ==================== READS ====================
+
+    /** The current catalog; built on first use if startup did not build it. */
+    public Snapshot snapshot() {
+        Snapshot current = snapshot;
+        return current != null ? current : build();
+    }
+
+    // ==================== UPDATES ====================
+
+    /**
+     * Reads the whole catalog again and replaces the snapshot.
+     */
+    public synchronized Snapshot rebuild() {
+        Snapshot rebuilt = Snapshot.of(group(loader.load(null)));
+        snapshot = rebuilt;
+        rebuilds.incrementAndGet();
+        return rebuilt;
+    }
+
+    /**
+     * Brings the cities touched by a committed change up to date. A changed
+     * map whose city is not named is looked up in the current snapshot; if
+     * it is not there either (a map that just got its first price), the
+     * catalog is rebuilt.
+     */
+    public void apply(CatalogChange change) {
+        if (change == null || change.isContentUnchanged()) {
+            return;
+        }
+        synchronized (this) {
+            Snapshot current = snapshot;
+            if (current == null) {
+                return;     // the next read builds it from scratch
+            }
+            try {
+                Set<Integer> cityIds = new HashSet<>(change.getCityIds());
+                for (Integer mapId : change.getMapIds()) {
+                    Integer cityId = current.cityOfMap.get(mapId);
+                    if (cityId == null && change.getCityIds().isEmpty()) {
+                        rebuild();
+                        return;
+                    }
+                    if (cityId != null) {
+                        cityIds.add(cityId);
+                    }
+                }
+
+                Map<Integer, CityEntry> cities = new HashMap<>(current.byId);
+                cities.keySet().removeAll(cityIds);
+                cities.putAll(group(loader.load(cityIds)));
+                snapshot = Snapshot.of(cities);
+                updates.incrementAndGet();
+            } catch (RuntimeException e) {
+                System.err.println("Catalog read model update failed, rebuilding on next read: " + e.getMessage());
+                snapshot = null;
+            }
+        }
+    }
+
+    /** Builds the snapshot unless another reader just did. */
+    private synchronized Snapshot build() {
+        Snapshot current = snapshot;
+        return current != null ? current : rebuild();
+    }
+
+    /** Full rebuilds since startup. */
+    public long getRebuildCount() {
+        return rebuilds.get();
+    }
+
+    /** Incremental updates since startup. */
+    public long getUpdateCount() {
+        return updates.get();
+    }
+
+    @Override
+    public String toString() {
+        Snapshot current = snapshot;
+        return "CatalogReadModel [" + (current == null ? "not built" : current)
+                + ", rebuilds=" + getRebuildCount() + ", updates=" + getUpdateCount() + "]";
+    }
+
+    /** Groups rows by city; rows arrive ordered by city, map name and version. */
+    private static Map<Integer, CityEntry> group(List<CatalogRow> rows) {
+        Map<Integer, List<CatalogRow>> byCity = new HashMap<>();
+        for (CatalogRow row : rows) {
+            byCity.computeIfAbsent(row.cityId(), id -> new ArrayList<>()).add(row);
+        }
+        Map<Integer, CityEntry> cities = new HashMap<>();
+        byCity.forEach((id, cityRows) -> cities.put(id, CityEntry.of(cityRows)));
+        return cities;
+    }
+
+    // ==================== SNAPSHOT ====================
+
+    /**
+     * One city and its catalog maps, ordered by map name, then version.
+     * Names compare ignoring case, as the database's collation does.
+     */
+    public record CityEntry(int id, String name, double priceSub, List<CatalogRow> rows,
+                            List<String> mapNames) {
+
+        static CityEntry of(List<CatalogRow> rows) {
+            List<CatalogRow> sorted = new ArrayList<>(rows);
+            sorted.sort(Comparator.comparing(CatalogRow::name, String.CASE_INSENSITIVE_ORDER)
+                    .thenComparing(CatalogRow::version, String.CASE_INSENSITIVE_ORDER));
+            CatalogRow first = sorted.get(0);
+            TreeSet<String> names = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+            for (CatalogRow row : sorted) {
+                names.add(row.name());
+            }
+            return new CityEntry(first.cityId(), first.cityName(), first.cityPriceSub(),
+                    List.copyOf(sorted), List.copyOf(names));
+        }
+
+        /** Whether the city is shown in the catalog, i.e. has a subscription price. */
+        public boolean listed() {
+            return priceSub > 0;
+        }
+
+        /** Versions of one map, in order. */
+        public List<String> versions(String mapName) {
+            TreeSet<String> versions = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+            for (CatalogRow row : rows) {
+                if (row.name().equals(mapName)) {
+                    versions.add(row.version());
+                }
+            }
+            return List.copyOf(versions);
+        }
+    }
+
+    /**
+     * An immutable view of the whole catalog.
+     */
+    public static final class Snapshot {
+
+        private final Map<Integer, CityEntry> byId;
+        private final Map<String, CityEntry> byName;
+        private final Map<Integer, Integer> cityOfMap;
+        private final List<CityEntry> listed;
+        private final int mapCount;
+
+        private Snapshot(Map<Integer, CityEntry> byId) {
+            this.byId = Map.copyOf(byId);
+            Map<String, CityEntry> names = new HashMap<>();
+            Map<Integer, Integer> maps = new HashMap<>();
+            List<CityEntry> shown = new ArrayList<>();
+            int shownMaps = 0;
+            for (CityEntry city : byId.values()) {
+                names.put(city.name(), city);
+                for (CatalogRow row : city.rows()) {
+                    maps.put(row.mapId(), city.id());
+                }
+                if (city.listed()) {
+                    shown.add(city);
+                    shownMaps += city.rows().size();
+                }
+            }
+            shown.sort(Comparator.comparing(CityEntry::name, String.CASE_INSENSITIVE_ORDER));
+            this.byName = Map.copyOf(names);
+            this.cityOfMap = Map.copyOf(maps);
+            this.listed = List.copyOf(shown);
+            this.mapCount = shownMaps;
+        }
+
+        static Snapshot of(Map<Integer, CityEntry> byId) {
+            return new Snapshot(byId);
+        }
+
+        /** Names of the cities shown in the catalog, in order. */
+        public List<String> cityNames() {
+            List<String> names = new ArrayList<>(listed.size());
+            for (CityEntry city : listed) {
+                names.add(city.name());
+            }
+            return names;
+        }
+
+        /** A city with at least one catalog map, listed or not; null if none. */
+        public CityEntry city(String name) {
+            return name == null ? null : byName.get(name);
+        }
+
+        /** Names of a city's catalog maps, in order; empty for an unknown city. */
+        public List<String> mapNames(String cityName) {
+            CityEntry city = city(cityName);
+            return city == null ? List.of() : city.mapNames();
+        }
+
+        /** Versions of a map in a city, in order. */
+        public List<String> versions(String cityName, String mapName) {
+            CityEntry city = city(cityName);
+            return city == null ? List.of() : city.versions(mapName);
+        }
+
+        /**
+         * Maps of listed cities matching the filter, ordered by city, map name and
+         * version. A null or blank filter value matches everything.
+         */
+        public List<CatalogRow> rows(String cityName, String mapName, String version) {
+            Collection<CityEntry> cities = blank(cityName) ? listed : listedCity(cityName);
+            List<CatalogRow> rows = new ArrayList<>();
+            for (CityEntry city : cities) {
+                for (CatalogRow row : city.rows()) {
+                    if ((blank(mapName) || row.name().equals(mapName))
+                            && (blank(version) || row.version().equals(version))) {
+                        rows.add(row);
+                    }
+                }
+            }
+            return rows;
+        }
+
+        /** Cities shown in the catalog. */
+        public int getCityCount() {
+            return listed.size();
+        }
+
+        /** Maps of the cities shown in the catalog. */
+        public int getMapCount() {
+            return mapCount;
+        }
+
+        @Override
+        public String toString() {
+            return listed.size() + " cities, " + mapCount + " maps";
+        }
+
+        private List<CityEntry> listedCity(String name) {
+            CityEntry city = byName.get(name);
+            return city != null && city.listed() ? List.of(city) : List.of();
+        }
+
+        private static boolean blank(String value) {
+            return value == null || value.isBlank();
+        }
+    }
+}
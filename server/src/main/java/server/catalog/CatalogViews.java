@@ -0,0 +1,30 @@
+package server.catalog;
+
+import common.dto.CatalogChange;
+import server.report.ReportCache;
+
+/**
+ * The server's in-memory views of the catalog, kept in step with the
+ * database: the {@link CatalogReadModel} and the {@link SearchIndex}.
+ */
+public final class CatalogViews {
+
+    private CatalogViews() {}
+
+    /** Builds every view from the database; called at startup. */
+    public static void rebuild() {
+        CatalogReadModel.getInstance().rebuild();
+        SearchIndex.getInstance().rebuild();
+    }
+
+    /**
+     * Brings every view up to date after a change has been committed, and
+     * drops cached reports, which show city names and map counts.
+     * Call it before the change is broadcast to clients.
+     */
+    public static void apply(CatalogChange change) {
+        CatalogReadModel.getInstance().apply(change);
+        SearchIndex.getInstance().apply(change);
+        ReportCache.getInstance().catalogChanged();
+    }
+}
@@ -0,0 +1,424 @@
+package server.catalog;
+
+import common.dto.CatalogChange;
+import server.repository.CityRepository;
+import server.repository.CitySearchRow;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory inverted index for catalog search mode.
+ *
+ * Every city is one document made of its name and description and the names
+ * and descriptions of its sites, tours and catalog maps. Text is split into
+ * lower-case tokens (runs of letters and digits). A query term matches a
+ * token exactly, as a prefix, or anywhere inside it; inside matches are found
+ * through an index of the tokens' three-letter substrings, so terms shorter
+ * than three letters match whole tokens and prefixes only. A city matches
+ * when every query term does.
+ *
+ * Results are ranked by relevance: a term scores the weight of the fields the
+ * token occurs in (city name highest, descriptions lowest, repeated across
+ * sites/tours/maps), times 3 for an exact, 2 for a prefix and 1 for an inside
+ * match, taking the best token per term. Ties are ordered by city name.
+ *
+ * Like {@link CatalogReadModel} the index is an immutable snapshot swapped
+ * on update: {@link #apply(CatalogChange)} re-reads the cities a committed
+ * change names and copies only the posting lists they touch.
+ */
+public class SearchIndex {
+
+    static final int CITY_NAME = 8;
+    static final int CONTENT_NAME = 3;
+    static final int CITY_DESCRIPTION = 2;
+    static final int CONTENT_DESCRIPTION = 1;
+
+    private static final int GRAM = 3;
+
+    private static SearchIndex instance;
+
+    private final Loader loader;
+    private volatile Index index;
+
+    private final AtomicLong rebuilds = new AtomicLong();
+    private final AtomicLong updates = new AtomicLong();
+    private final AtomicLong searches = new AtomicLong();
+
+    /**
+     * Reads city text; {@link CityRepository#findSearchRows(Collection)} in the server.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        /** @param cityIds the cities to read, or null for all */
+        List<CitySearchRow> load(Collection<Integer> cityIds);
+    }
+
+    /**
+     * A matching city and its relevance.
+     */
+    public record Hit(CitySearchRow city, double score) {}
+
+    public SearchIndex(Loader loader) {
+        this.loader = loader;
+    }
+
+    public static synchronized SearchIndex getInstance() {
+        if (instance == null) {
+            instance = new SearchIndex(CityRepository.getInstance()::findSearchRows);
+        }
+        return instance;
+    }
+
+    // ==================== SEARCH ====================
+
+    /**
+     * Cities shown in the catalog (subscription price and at least one catalog
+     * map) matching every term of the query, best first. A query without
+     * terms matches all of them, in name order.
+     */
+    public List<Hit> search(String query) {
+        searches.incrementAndGet();
+        Index current = index();
+        List<String> terms = tokens(query);
+
+        Map<Integer, Double> scores = null;
+        for (String term : terms) {
+            Map<Integer, Double> termScores = current.match(term);
+            if (scores == null) {
+                scores = termScores;
+            } else {
+                scores.keySet().retainAll(termScores.keySet());
+                scores.replaceAll((city, score) -> score + termScores.get(city));
+            }
+            if (scores.isEmpty()) {
+                return List.of();
+            }
+        }
+
+        List<Hit> hits = new ArrayList<>();
+        if (scores == null) {
+            for (CitySearchRow city : current.docs.values()) {
+                if (listed(city)) {
+                    hits.add(new Hit(city, 0));
+                }
+            }
+        } else {
+            scores.forEach((cityId, score) -> {
+                CitySearchRow city = current.docs.get(cityId);
+                if (listed(city)) {
+                    hits.add(new Hit(city, score));
+                }
+            });
+        }
+        hits.sort(Comparator.comparingDouble(Hit::score).reversed()
+                .thenComparing(hit -> hit.city().name(), String.CASE_INSENSITIVE_ORDER));
+        return hits;
+    }
+
+    private static boolean listed(CitySearchRow city) {
+        return city.priceSub() > 0 && !city.maps().isEmpty();
+    }
+
+    // ==================== UPDATES ====================
+
+    /**
+     * Indexes every city again.
+     */
+    public synchronized void rebuild() {
+        List<Doc> docs = new ArrayList<>();
+        for (CitySearchRow row : loader.load(null)) {
+            docs.add(Doc.of(row));
+        }
+        index = Index.EMPTY.update(List.of(), docs);
+        rebuilds.incrementAndGet();
+    }
+
+    /**
+     * Re-indexes the cities a committed change names. A change that names
+     * maps but no city causes a full rebuild.
+     */
+    public void apply(CatalogChange change) {
+        if (change == null || change.isContentUnchanged()) {
+            return;
+        }
+        synchronized (this) {
+            Index current = index;
+            if (current == null) {
+                return;     // the next search builds it from scratch
+            }
+            try {
+                if (change.getCityIds().isEmpty()) {
+                    rebuild();
+                    return;
+                }
+                List<Doc> docs = new ArrayList<>();
+                for (CitySearchRow row : loader.load(change.getCityIds())) {
+                    docs.add(Doc.of(row));
+                }
+                index = current.update(change.getCityIds(), docs);
+                updates.incrementAndGet();
+            } catch (RuntimeException e) {
+                System.err.println("Search index update failed, rebuilding on next search: " + e.getMessage());
+                index = null;
+            }
+        }
+    }
+
+    /** Cities in the index, listed or not. */
+    public int getCityCount() {
+        Index current = index;
+        return current == null ? 0 : current.docs.size();
+    }
+
+    /** Distinct tokens in the index. */
+    public int getTokenCount() {
+        Index current = index;
+        return current == null ? 0 : current.postings.size();
+    }
+
+    public long getSearchCount() {
+        return searches.get();
+    }
+
+    public long getRebuildCount() {
+        return rebuilds.get();
+    }
+
+    public long getUpdateCount() {
+        return updates.get();
+    }
+
+    @Override
+    public String toString() {
+        return "SearchIndex [cities=" + getCityCount() + ", tokens=" + getTokenCount()
+                + ", searches=" + getSearchCount() + ", rebuilds=" + getRebuildCount()
+                + ", updates=" + getUpdateCount() + "]";
+    }
+
+    private Index index() {
+        Index current = index;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (index == null) {
+                rebuild();
+            }
+            return index;
+        }
+    }
+
+    // ==================== TOKENS ====================
+
+    /** Lower-case runs of letters and digits, in order. */
+    static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i < lower.length(); i++) {
+            if (Character.isLetterOrDigit(lower.charAt(i))) {
+                if (start < 0) start = i;
+            } else if (start >= 0) {
+                tokens.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        if (start >= 0) {
+            tokens.add(lower.substring(start));
+        }
+        return tokens;
+    }
+
+    private static Set<String> grams(String token) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= token.length(); i++) {
+            grams.add(token.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    /**
+     * One city's tokens with the summed weight of the fields they occur in;
+     * a field counts once however often the token repeats in it.
+     */
+    private record Doc(CitySearchRow row, Map<String, Integer> weights) {
+
+        static Doc of(CitySearchRow row) {
+            Map<String, Integer> weights = new HashMap<>();
+            add(weights, row.name(), CITY_NAME);
+            add(weights, row.description(), CITY_DESCRIPTION);
+            for (List<CitySearchRow.Text> items : List.of(row.maps(), row.sites(), row.tours())) {
+                for (CitySearchRow.Text item : items) {
+                    add(weights, item.name(), CONTENT_NAME);
+                    add(weights, item.description(), CONTENT_DESCRIPTION);
+                }
+            }
+            return new Doc(row, weights);
+        }
+
+        private static void add(Map<String, Integer> weights, String text, int weight) {
+            for (String token : new HashSet<>(tokens(text))) {
+                weights.merge(token, weight, Integer::sum);
+            }
+        }
+    }
+
+    // ==================== INDEX ====================
+
+    /**
+     * Immutable once published. Maps and sets reachable from it are never
+     * modified; an update copies the ones it changes.
+     */
+    private static final class Index {
+
+        static final Index EMPTY = new Index(Map.of(), Map.of(), new TreeSet<>(), Map.of());
+
+        final Map<Integer, CitySearchRow> docs;
+        /** token -> city -> weight */
+        final Map<String, Map<Integer, Integer>> postings;
+        final NavigableSet<String> vocabulary;
+        /** three-letter substring -> tokens containing it */
+        final Map<String, Set<String>> grams;
+
+        private Index(Map<Integer, CitySearchRow> docs, Map<String, Map<Integer, Integer>> postings,
+                      NavigableSet<String> vocabulary, Map<String, Set<String>> grams) {
+            this.docs = docs;
+            this.postings = postings;
+            this.vocabulary = vocabulary;
+            this.grams = grams;
+        }
+
+        /** @return city -> best score of the term in that city; a new, modifiable map */
+        Map<Integer, Double> match(String term) {
+            Map<Integer, Double> scores = new HashMap<>();
+            score(scores, term, 3);
+            for (String token : vocabulary.subSet(term, false, term + Character.MAX_VALUE, false)) {
+                score(scores, token, 2);
+            }
+            if (term.length() >= GRAM) {
+                for (String token : containing(term)) {
+                    if (!token.startsWith(term)) {
+                        score(scores, token, 1);
+                    }
+                }
+            }
+            return scores;
+        }
+
+        private void score(Map<Integer, Double> scores, String token, int factor) {
+            Map<Integer, Integer> posting = postings.get(token);
+            if (posting != null) {
+                posting.forEach((city, weight) -> scores.merge(city, (double) weight * factor, Math::max));
+            }
+        }
+
+        /** Tokens that contain the term, found by intersecting the term's substrings. */
+        private List<String> containing(String term) {
+            Set<String> smallest = null;
+            List<Set<String>> candidates = new ArrayList<>();
+            for (String gram : grams(term)) {
+                Set<String> tokens = grams.get(gram);
+                if (tokens == null) {
+                    return List.of();
+                }
+                candidates.add(tokens);
+                if (smallest == null || tokens.size() < smallest.size()) {
+                    smallest = tokens;
+                }
+            }
+            List<String> found = new ArrayList<>();
+            for (String token : smallest) {
+                if (token.contains(term)) {
+                    found.add(token);
+                }
+            }
+            return found;
+        }
+
+        /**
+         * @return a new index without the given cities and with the given documents
+         */
+        Index update(Collection<Integer> removed, List<Doc> added) {
+            Map<Integer, CitySearchRow> newDocs = new HashMap<>(docs);
+            Map<String, Map<Integer, Integer>> newPostings = new HashMap<>(postings);
+            TreeSet<String> newVocabulary = new TreeSet<>(vocabulary);
+            Map<String, Set<String>> newGrams = new HashMap<>(grams);
+            Set<Object> copied = Collections.newSetFromMap(new IdentityHashMap<>());
+
+            for (Integer cityId : removed) {
+                CitySearchRow old = newDocs.remove(cityId);
+                if (old == null) {
+                    continue;
+                }
+                for (String token : Doc.of(old).weights().keySet()) {
+                    Map<Integer, Integer> posting = own(newPostings, token, copied);
+                    posting.remove(cityId);
+                    if (posting.isEmpty()) {
+                        newPostings.remove(token);
+                        newVocabulary.remove(token);
+                        for (String gram : grams(token)) {
+                            Set<String> tokens = ownGram(newGrams, gram, copied);
+                            tokens.remove(token);
+                            if (tokens.isEmpty()) {
+                                newGrams.remove(gram);
+                            }
+                        }
+                    }
+                }
+            }
+
+            for (Doc doc : added) {
+                int cityId = doc.row().cityId();
+                newDocs.put(cityId, doc.row());
+                doc.weights().forEach((token, weight) -> {
+                    if (!newPostings.containsKey(token)) {
+                        newVocabulary.add(token);
+                        for (String gram : grams(token)) {
+                            ownGram(newGrams, gram, copied).add(token);
+                        }
+                    }
+                    own(newPostings, token, copied).put(cityId, weight);
+                });
+            }
+            return new Index(newDocs, newPostings, newVocabulary, newGrams);
+        }
+
+        /** The posting list of a token, copied the first time this update touches it. */
+        private static Map<Integer, Integer> own(Map<String, Map<Integer, Integer>> postings, String token,
+                                                 Set<Object> copied) {
+            Map<Integer, Integer> posting = postings.get(token);
+            if (posting == null || copied.add(posting)) {
+                posting = posting == null ? new HashMap<>() : new HashMap<>(posting);
+                postings.put(token, posting);
+                copied.add(posting);
+            }
+            return posting;
+        }
+
+        private static Set<String> ownGram(Map<String, Set<String>> grams, String gram, Set<Object> copied) {
+            Set<String> tokens = grams.get(gram);
+            if (tokens == null || copied.add(tokens)) {
+                tokens = tokens == null ? new HashSet<>() : new HashSet<>(tokens);
+                grams.put(gram, tokens);
+                copied.add(tokens);
+            }
+            return tokens;
+        }
+    }
+}
@@ -117,7 +117,7 @@ public class PurchaseController {
                     return "Map ID is required for ONE_TIME purchase";
                 }
 
-                Optional<GCMMap> optionalMap = mapRepository.findById(mapId);
+                Optional<GCMMap> optionalMap = mapRepository.findById(mapId, FetchPlan.MAP_CATALOG);
                 if (optionalMap.isEmpty()) {
                     return "Map not found with ID: " + mapId;
                 }
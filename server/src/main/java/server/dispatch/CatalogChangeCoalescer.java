@@ -0,0 +1,130 @@
+package server.dispatch;
+
+import common.dto.CatalogChange;
+import common.enums.ActionType;
+import common.messaging.Message;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Turns bursts of catalog changes into a single CATALOG_UPDATED_NOTIFICATION.
+ *
+ * The first change after a quiet period opens a window. Every change published
+ * while the window is open is merged into the same {@link CatalogChange}, and
+ * one notification naming all affected cities and maps goes out when the window
+ * closes. A manager approving twenty requests in a row therefore causes one
+ * broadcast instead of twenty, and clients reload only the named cards.
+ *
+ * The window is not extended by later changes, so a steady stream of approvals
+ * still produces a notification at least once per window.
+ */
+public class CatalogChangeCoalescer {
+
+    private final long windowMillis;
+    private final Consumer<Message> broadcaster;
+    private final ScheduledExecutorService timer;
+
+    /** Changes waiting for the window to close; guarded by this. */
+    private CatalogChange pending;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong broadcasts = new AtomicLong();
+
+    /**
+     * @param windowMillis how long changes are collected before one notification is sent;
+     *                     0 sends every change right away
+     * @param broadcaster  sends the merged notification to all clients
+     */
+    public CatalogChangeCoalescer(long windowMillis, Consumer<Message> broadcaster) {
+        this.windowMillis = Math.max(0, windowMillis);
+        this.broadcaster = broadcaster;
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "catalog-change-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Records a change. Returns immediately; the notification is sent when the
+     * current window closes.
+     */
+    public void publish(CatalogChange change) {
+        published.incrementAndGet();
+        if (windowMillis == 0) {
+            send(change);
+            return;
+        }
+        synchronized (this) {
+            if (pending != null) {
+                pending.merge(change);
+                return;
+            }
+            pending = new CatalogChange();
+            pending.merge(change);
+        }
+        try {
+            timer.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            flush();
+        }
+    }
+
+    /**
+     * Sends whatever is waiting now instead of at the end of the window.
+     */
+    public void flush() {
+        CatalogChange change;
+        synchronized (this) {
+            change = pending;
+            pending = null;
+        }
+        if (change != null) {
+            send(change);
+        }
+    }
+
+    /**
+     * Sends the pending changes and stops the window timer.
+     */
+    public void shutdown() {
+        timer.shutdownNow();
+        flush();
+    }
+
+    private void send(CatalogChange change) {
+        broadcasts.incrementAndGet();
+        try {
+            broadcaster.accept(new Message(ActionType.CATALOG_UPDATED_NOTIFICATION, change));
+        } catch (RuntimeException e) {
+            System.err.println("Failed to broadcast " + change + ": " + e.getMessage());
+        }
+    }
+
+    // ==================== METRICS ====================
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    /** Changes handed to {@link #publish} since startup. */
+    public long getPublishedCount() {
+        return published.get();
+    }
+
+    /** Notifications actually sent since startup. */
+    public long getBroadcastCount() {
+        return broadcasts.get();
+    }
+
+    @Override
+    public String toString() {
+        return "window=" + windowMillis + "ms, published=" + published.get()
+                + ", broadcasts=" + broadcasts.get();
+    }
+}
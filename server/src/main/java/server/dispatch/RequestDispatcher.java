@@ -0,0 +1,207 @@
+package server.dispatch;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dispatch stage between the transport and the handler registry.
+ *
+ * Connection threads only read and decode; the actual request work runs on a
+ * fixed pool of workers fed by a bounded queue. This caps how many requests can
+ * hit the database at the same time (keep the worker count below the Hikari
+ * pool size) and keeps a slow report query from blocking the socket it came from.
+ *
+ * When the queue is full {@link #submit(Runnable)} returns false instead of
+ * blocking, so the caller can answer "server busy" right away.
+ *
+ * Requests submitted through the same {@link Lane} run one at a time in the
+ * order they were submitted, so each connection keeps its own request order
+ * while different connections share the workers.
+ */
+public class RequestDispatcher {
+
+    private final ThreadPoolExecutor workers;
+    private final int queueCapacity;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicInteger peakQueueDepth = new AtomicInteger();
+
+    /**
+     * @param workerThreads number of requests handled at the same time
+     * @param queueCapacity number of requests allowed to wait for a worker
+     */
+    public RequestDispatcher(int workerThreads, int queueCapacity) {
+        this.queueCapacity = Math.max(1, queueCapacity);
+        int threads = Math.max(1, workerThreads);
+        this.workers = new ThreadPoolExecutor(
+                threads, threads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(this.queueCapacity),
+                workerThreads(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Queues a request for a worker.
+     *
+     * @return false if the queue is full or the dispatcher is shut down
+     */
+    public boolean submit(Runnable request) {
+        try {
+            workers.execute(request);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        submitted.incrementAndGet();
+        peakQueueDepth.accumulateAndGet(workers.getQueue().size(), Math::max);
+        return true;
+    }
+
+    /**
+     * Queues a request behind the earlier requests of its lane. Only the head
+     * of a lane occupies the worker queue; the rest wait in the lane, which
+     * holds at most as many requests as the worker queue.
+     *
+     * @return false if the lane or the queue is full, or the dispatcher is shut down
+     */
+    public boolean submit(Lane lane, Runnable request) {
+        synchronized (lane) {
+            if (lane.running) {
+                if (lane.pending.size() >= queueCapacity) {
+                    rejected.incrementAndGet();
+                    return false;
+                }
+                lane.pending.add(request);
+                submitted.incrementAndGet();
+                return true;
+            }
+            lane.running = true;
+        }
+        if (!submit(() -> runLane(lane, request))) {
+            synchronized (lane) {
+                lane.running = false;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Runs a lane's request, then hands the next one back to the pool so other
+     * lanes get their turn. If the worker queue is full the next request runs
+     * on this worker instead, since it was already accepted.
+     */
+    private void runLane(Lane lane, Runnable request) {
+        while (true) {
+            try {
+                request.run();
+            } catch (RuntimeException e) {
+                System.err.println("Request failed on " + Thread.currentThread().getName() + ": " + e);
+            }
+            Runnable next;
+            synchronized (lane) {
+                next = lane.pending.poll();
+                if (next == null) {
+                    lane.running = false;
+                    return;
+                }
+            }
+            try {
+                workers.execute(() -> runLane(lane, next));
+                return;
+            } catch (RejectedExecutionException e) {
+                request = next;
+            }
+        }
+    }
+
+    /**
+     * Stops taking requests and waits briefly for the queued ones to finish.
+     */
+    public void shutdown() {
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ==================== METRICS ====================
+
+    /** Requests waiting for a worker right now. */
+    public int getQueueDepth() {
+        return workers.getQueue().size();
+    }
+
+    /** Highest queue depth seen since startup. */
+    public int getPeakQueueDepth() {
+        return peakQueueDepth.get();
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /** Workers currently running a request. */
+    public int getActiveWorkers() {
+        return workers.getActiveCount();
+    }
+
+    public int getWorkerThreads() {
+        return workers.getMaximumPoolSize();
+    }
+
+    /** Requests accepted into the queue since startup. */
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    /** Requests turned away because the queue was full. */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /** Requests that finished running. */
+    public long getCompletedCount() {
+        return workers.getCompletedTaskCount();
+    }
+
+    @Override
+    public String toString() {
+        return "RequestDispatcher [workers=" + getActiveWorkers() + "/" + getWorkerThreads()
+                + ", queue=" + getQueueDepth() + "/" + queueCapacity
+                + ", peakQueue=" + getPeakQueueDepth()
+                + ", submitted=" + getSubmittedCount()
+                + ", rejected=" + getRejectedCount() + "]";
+    }
+
+    /**
+     * Requests of one connection. Create one per connection and pass it to
+     * {@link #submit(Lane, Runnable)} for every request of that connection.
+     */
+    public static final class Lane {
+        private final ArrayDeque<Runnable> pending = new ArrayDeque<>();
+        private boolean running;
+    }
+
+    private static ThreadFactory workerThreads() {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, "RequestWorker-" + count.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
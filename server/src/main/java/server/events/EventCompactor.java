@@ -0,0 +1,225 @@
+package server.events;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import server.HibernateUtil;
+import server.report.ReportCache;
+import server.report.RollupMaintainer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Folds closed {@link EventLog} segments into daily_city_activity_stats and
+ * deletes them.
+ *
+ * Each segment is counted per city and day (server time zone): views, and
+ * downloads by subscribers, the same events the report used to count in
+ * map_view_events and map_download_events. The counts are added to the
+ * city's daily row in one JDBC batch, and the segment's number is recorded
+ * in event_log_segments in the same transaction. A segment already recorded
+ * there is only deleted, so a crash between the commit and the delete does
+ * not count it twice. Events of cities that no longer exist are skipped.
+ * Events of days whose week, month or year rollups are already written are
+ * added to those too, in the same transaction.
+ *
+ * Every pass first rolls the log, so a pass brings the stats up to the
+ * events written before it started.
+ */
+public class EventCompactor {
+
+    private static final String UPSERT = """
+            INSERT INTO daily_city_activity_stats (city_id, stat_date, views, downloads)
+            SELECT c.id, ?, ?, ? FROM cities c WHERE c.id = ?
+            ON DUPLICATE KEY UPDATE
+                views = views + VALUES(views),
+                downloads = downloads + VALUES(downloads)
+            """;
+
+    private static EventCompactor instance;
+
+    private final SessionFactory sf;
+    private final EventLog log;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private volatile boolean tableChecked;
+
+    private final AtomicLong segments = new AtomicLong();
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong passes = new AtomicLong();
+
+    private record CityDay(int cityId, LocalDate day) {}
+
+    public EventCompactor(SessionFactory sf, EventLog log) {
+        this.sf = sf;
+        this.log = log;
+    }
+
+    /** The compactor of {@link EventIngestor#getInstance()}'s log. */
+    public static synchronized EventCompactor getInstance() {
+        if (instance == null) {
+            instance = new EventCompactor(HibernateUtil.getSessionFactory(), EventIngestor.getInstance().getLog());
+        }
+        return instance;
+    }
+
+    /**
+     * Compacts now, which also replays whatever a previous run left behind,
+     * and then every {@code periodSeconds} on a daemon thread.
+     */
+    public void start(long periodSeconds) {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "event-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleWithFixedDelay(() -> {
+            try {
+                compact();
+            } catch (Exception e) {
+                System.err.println("[EventCompactor] FAILED: " + e.getMessage());
+            }
+        }, 0, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Rolls the log and compacts every closed segment.
+     *
+     * @return events added to the stats
+     */
+    public synchronized long compact() throws IOException {
+        ensureTable();
+        log.roll();
+        long added = 0;
+        for (EventLog.Segment segment : log.closedSegments()) {
+            added += compact(segment);
+        }
+        passes.incrementAndGet();
+        return added;
+    }
+
+    private long compact(EventLog.Segment segment) throws IOException {
+        Map<CityDay, int[]> counts = new HashMap<>();
+        int read = EventLog.read(segment.path(), event -> {
+            LocalDate day = LocalDate.ofInstant(Instant.ofEpochMilli(event.timestamp()), zone);
+            int[] count = counts.computeIfAbsent(new CityDay(event.cityId(), day), key -> new int[2]);
+            if (event.kind() == MapEvent.Kind.VIEW) {
+                count[0]++;
+            } else if (event.subscriber()) {
+                count[1]++;
+            }
+        });
+
+        boolean added;
+        Transaction tx = null;
+        try (Session s = sf.openSession()) {
+            tx = s.beginTransaction();
+            Number done = (Number) s.createNativeQuery(
+                    "SELECT COUNT(*) FROM event_log_segments WHERE segment_id = :id")
+                    .setParameter("id", segment.id())
+                    .getSingleResult();
+            added = done.intValue() == 0;
+            if (added) {
+                s.doWork(connection -> {
+                    LocalDate rolledThrough = RollupMaintainer.lockRolledThrough(connection);
+                    try (PreparedStatement ps = connection.prepareStatement(UPSERT);
+                         PreparedStatement rollups = RollupMaintainer.prepareAddEvents(connection)) {
+                        for (Map.Entry<CityDay, int[]> entry : counts.entrySet()) {
+                            ps.setDate(1, Date.valueOf(entry.getKey().day()));
+                            ps.setInt(2, entry.getValue()[0]);
+                            ps.setInt(3, entry.getValue()[1]);
+                            ps.setInt(4, entry.getKey().cityId());
+                            ps.addBatch();
+                            RollupMaintainer.addEvents(rollups, entry.getKey().cityId(), entry.getKey().day(),
+                                    entry.getValue()[0], entry.getValue()[1], rolledThrough);
+                        }
+                        ps.executeBatch();
+                        rollups.executeBatch();
+                    }
+                });
+                s.createNativeQuery("""
+                        INSERT INTO event_log_segments (segment_id, events, compacted_at)
+                        VALUES (:id, :events, CURRENT_TIMESTAMP)
+                        """)
+                        .setParameter("id", segment.id())
+                        .setParameter("events", read)
+                        .executeUpdate();
+            }
+            tx.commit();
+        } catch (RuntimeException e) {
+            if (tx != null && tx.isActive()) tx.rollback();
+            throw e;
+        }
+
+        try {
+            Files.deleteIfExists(segment.path());
+        } catch (IOException e) {
+            // still mapped on some platforms; recorded above, so the next pass just deletes it
+            System.err.println("[EventCompactor] Could not delete " + segment.path() + ": " + e.getMessage());
+        }
+        if (!added) {
+            return 0;
+        }
+        // reports cached since these events were logged do not count them yet,
+        // including reports over older days when a segment is replayed
+        Map<Integer, LocalDate[]> days = new HashMap<>();
+        for (CityDay cityDay : counts.keySet()) {
+            LocalDate[] range = days.computeIfAbsent(cityDay.cityId(), id -> new LocalDate[] {cityDay.day(), cityDay.day()});
+            if (cityDay.day().isBefore(range[0])) range[0] = cityDay.day();
+            if (cityDay.day().isAfter(range[1])) range[1] = cityDay.day();
+        }
+        days.forEach((cityId, range) -> ReportCache.getInstance().daysChanged(cityId, range[0], range[1]));
+        segments.incrementAndGet();
+        events.addAndGet(read);
+        return read;
+    }
+
+    private void ensureTable() {
+        if (tableChecked) {
+            return;
+        }
+        try (Session s = sf.openSession()) {
+            s.beginTransaction();
+            s.createNativeQuery("""
+                    CREATE TABLE IF NOT EXISTS event_log_segments (
+                        segment_id BIGINT PRIMARY KEY,
+                        events INT NOT NULL,
+                        compacted_at DATETIME NOT NULL
+                    )
+                    """).executeUpdate();
+            s.getTransaction().commit();
+        }
+        tableChecked = true;
+    }
+
+    /** Segments folded into the stats since startup. */
+    public long getSegmentCount() {
+        return segments.get();
+    }
+
+    /** Events folded into the stats since startup. */
+    public long getEventCount() {
+        return events.get();
+    }
+
+    public long getPassCount() {
+        return passes.get();
+    }
+
+    @Override
+    public String toString() {
+        return "EventCompactor [segments=" + getSegmentCount() + ", events=" + getEventCount()
+                + ", passes=" + getPassCount() + "]";
+    }
+}
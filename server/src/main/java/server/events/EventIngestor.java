@@ -0,0 +1,242 @@
+package server.events;
+
+import server.ServerConfig;
+import server.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Takes map views and downloads off the request path.
+ *
+ * {@link #submit(MapEvent)} puts the event in a bounded in-memory queue and
+ * returns; when the queue is full the event is dropped and counted rather
+ * than making the client wait. A single writer thread drains the queue into
+ * batches and appends each batch to the {@link EventLog} with one
+ * {@link EventLog#force()} (group commit). A batch is written when it reaches
+ * the batch size, or when its first event has waited the flush interval.
+ *
+ * {@link #close()} stops taking events, writes everything still queued and
+ * closes the log. It runs from the server's shutdown path and from a JVM
+ * shutdown hook, whichever comes first.
+ */
+public class EventIngestor {
+
+    private static EventIngestor instance;
+
+    private final EventLog log;
+    private final BlockingQueue<MapEvent> queue;
+    private final int batchSize;
+    private final long flushMillis;
+    private final boolean sync;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicInteger peakQueueDepth = new AtomicInteger();
+    private final AtomicInteger largestBatch = new AtomicInteger();
+    private final LatencyHistogram flushLatency = new LatencyHistogram();
+
+    /**
+     * @param queueCapacity events that may wait for the writer before new ones are dropped
+     * @param batchSize     most events written with one force
+     * @param flushMillis   longest an event waits for its batch to fill
+     * @param sync          force each batch to disk; without it a batch is safe from a
+     *                      process crash but not from a power loss
+     */
+    public EventIngestor(EventLog log, int queueCapacity, int batchSize, long flushMillis, boolean sync) {
+        this.log = log;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushMillis = flushMillis;
+        this.sync = sync;
+        this.writer = new Thread(this::run, "event-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /** The ingestor of the server's event log, configured from {@link ServerConfig}. */
+    public static synchronized EventIngestor getInstance() {
+        if (instance == null) {
+            try {
+                instance = new EventIngestor(
+                        new EventLog(Path.of(ServerConfig.eventLogDir()), ServerConfig.eventSegmentRecords()),
+                        ServerConfig.eventQueueCapacity(), ServerConfig.eventBatchSize(),
+                        ServerConfig.eventFlushMillis(), ServerConfig.eventSync());
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot open event log in " + ServerConfig.eventLogDir(), e);
+            }
+        }
+        return instance;
+    }
+
+    /** Closes the server's ingestor if it was started. */
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.close();
+        }
+    }
+
+    public EventLog getLog() {
+        return log;
+    }
+
+    /**
+     * Queues an event for the writer.
+     *
+     * @return false if the queue was full or the ingestor is closed and the event was dropped
+     */
+    public boolean submit(MapEvent event) {
+        submitted.incrementAndGet();
+        if (!running || !queue.offer(event)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        int depth = queue.size();
+        if (depth > peakQueueDepth.get()) {
+            peakQueueDepth.accumulateAndGet(depth, Math::max);
+        }
+        return true;
+    }
+
+    /**
+     * Stops taking events and waits until the queued ones are in the log.
+     * Calling it again does nothing.
+     */
+    public void close() {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+        }
+        // Not interrupted: an interrupt would close the channel of a segment being opened.
+        // The writer notices within one flush interval.
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.close();
+        System.out.println("Event log closed: " + this);
+    }
+
+    // ==================== WRITER ====================
+
+    private void run() {
+        List<MapEvent> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                MapEvent first = queue.poll(flushMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushMillis);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long wait = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || wait <= 0) {
+                        break;
+                    }
+                    MapEvent next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                running = false;    // flag not restored: the final writes must not see it
+            }
+            flush(batch);
+        }
+
+        while (!queue.isEmpty()) {
+            queue.drainTo(batch, batchSize);
+            flush(batch);
+        }
+    }
+
+    private void flush(List<MapEvent> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            log.append(batch);
+            if (sync) {
+                log.force();
+            }
+            written.addAndGet(batch.size());
+        } catch (IOException | RuntimeException e) {
+            failed.addAndGet(batch.size());
+            System.err.println("Event log write failed, " + batch.size() + " events lost: " + e.getMessage());
+        }
+        flushLatency.record(System.nanoTime() - start);
+        batches.incrementAndGet();
+        largestBatch.accumulateAndGet(batch.size(), Math::max);
+        batch.clear();
+    }
+
+    // ==================== METRICS ====================
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getPeakQueueDepth() {
+        return peakQueueDepth.get();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    /** Events refused because the queue was full or the ingestor closed. */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /** Events appended to the log. */
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    /** Events lost to a failed append. */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public int getLargestBatch() {
+        return largestBatch.get();
+    }
+
+    /** Time to append and force one batch. */
+    public LatencyHistogram getFlushLatency() {
+        return flushLatency;
+    }
+
+    @Override
+    public String toString() {
+        long n = getBatchCount();
+        return "EventIngestor [written=" + getWrittenCount() + ", dropped=" + getDroppedCount()
+                + ", failed=" + getFailedCount() + ", batches=" + n
+                + ", avgBatch=" + (n == 0 ? 0 : getWrittenCount() / n)
+                + ", queue=" + getQueueDepth() + "/" + getPeakQueueDepth() + "]";
+    }
+}
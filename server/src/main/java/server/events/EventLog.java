@@ -0,0 +1,245 @@
+package server.events;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of map events on local disk, split into segments.
+ *
+ * A segment is a file of fixed-width {@value #RECORD_BYTES}-byte records,
+ * written through a memory mapping of the whole file:
+ * <pre>
+ *  0 int  cityId
+ *  4 int  mapId, -1 for none
+ *  8 int  userId, -1 for none
+ * 12 int  flags (PRESENT, DOWNLOAD, SUBSCRIBER)
+ * 16 long timestamp, epoch milliseconds
+ * 24 int  CRC-32 of bytes 0-23
+ * 28 int  reserved, 0
+ * </pre>
+ * The unwritten rest of a segment is zeros, which never passes the checksum,
+ * so a reader stops at the first record that is missing its PRESENT flag or
+ * fails the CRC. A record torn by a crash therefore ends its segment and
+ * everything before it is kept.
+ *
+ * Segments are named by a number that grows across restarts (the creation
+ * time in milliseconds, or one more than the last). Only the newest segment
+ * opened by this instance is written; every other segment, including
+ * whatever the last run left open, is closed and is read by
+ * {@link EventCompactor} and then deleted. {@link #roll()} closes the
+ * current segment early so its events can be compacted.
+ *
+ * Appends are serialized by the instance lock; in the server only the
+ * {@link EventIngestor} writer thread appends.
+ */
+public class EventLog implements Closeable {
+
+    public static final int RECORD_BYTES = 32;
+
+    private static final String SUFFIX = ".seg";
+    private static final int PRESENT = 1;
+    private static final int DOWNLOAD = 2;
+    private static final int SUBSCRIBER = 4;
+
+    private final Path dir;
+    private final int segmentRecords;
+    private final CRC32 crc = new CRC32();
+
+    /** The segment being written, or null until the next append; guarded by this. */
+    private Segment current;
+    private MappedByteBuffer mapping;
+    private long lastId;
+
+    /**
+     * A segment file and its number.
+     */
+    public record Segment(long id, Path path) {}
+
+    /**
+     * @param segmentRecords records per segment file
+     */
+    public EventLog(Path dir, int segmentRecords) throws IOException {
+        if (segmentRecords <= 0) {
+            throw new IllegalArgumentException("segmentRecords must be positive");
+        }
+        this.dir = dir.toAbsolutePath().normalize();
+        this.segmentRecords = segmentRecords;
+        Files.createDirectories(this.dir);
+        for (Segment segment : segments()) {
+            lastId = Math.max(lastId, segment.id());
+        }
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    // ==================== WRITING ====================
+
+    /**
+     * Appends events, starting new segments as they fill up. The records are
+     * in the page cache once this returns; {@link #force()} puts them on disk.
+     */
+    public synchronized void append(List<MapEvent> events) throws IOException {
+        for (MapEvent event : events) {
+            if (mapping == null || !mapping.hasRemaining()) {
+                startSegment();
+            }
+            write(mapping, event);
+        }
+    }
+
+    /** Writes the current segment's mapped pages to disk. */
+    public synchronized void force() {
+        if (mapping != null) {
+            mapping.force();
+        }
+    }
+
+    /**
+     * Closes the current segment if it holds any record; the next append
+     * starts a new one.
+     *
+     * @return whether a segment was closed
+     */
+    public synchronized boolean roll() {
+        if (mapping == null || mapping.position() == 0) {
+            return false;
+        }
+        mapping.force();
+        mapping = null;
+        current = null;
+        return true;
+    }
+
+    @Override
+    public synchronized void close() {
+        roll();
+    }
+
+    private void startSegment() throws IOException {
+        if (mapping != null) {
+            mapping.force();
+        }
+        lastId = Math.max(lastId + 1, System.currentTimeMillis());
+        Path path = dir.resolve(String.format("%020d%s", lastId, SUFFIX));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) segmentRecords * RECORD_BYTES);
+        }
+        current = new Segment(lastId, path);
+    }
+
+    private void write(ByteBuffer buffer, MapEvent event) {
+        int start = buffer.position();
+        int flags = PRESENT
+                | (event.kind() == MapEvent.Kind.DOWNLOAD ? DOWNLOAD : 0)
+                | (event.subscriber() ? SUBSCRIBER : 0);
+        buffer.putInt(event.cityId());
+        buffer.putInt(event.mapId() == null ? -1 : event.mapId());
+        buffer.putInt(event.userId() == null ? -1 : event.userId());
+        buffer.putInt(flags);
+        buffer.putLong(event.timestamp());
+        crc.reset();
+        crc.update(buffer.slice(start, 24));
+        buffer.putInt((int) crc.getValue());
+        buffer.putInt(0);
+    }
+
+    // ==================== READING ====================
+
+    /**
+     * Segments that are no longer written, oldest first.
+     */
+    public synchronized List<Segment> closedSegments() throws IOException {
+        List<Segment> closed = segments();
+        if (current != null) {
+            closed.removeIf(segment -> segment.id() == current.id());
+        }
+        return closed;
+    }
+
+    /**
+     * Reads a closed segment's records in order, up to the first one that is
+     * missing or damaged. The file is read, not mapped, so it can be deleted
+     * right after.
+     *
+     * @return the number of events read
+     */
+    public static int read(Path segment, Consumer<MapEvent> sink) throws IOException {
+        CRC32 check = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES * 2048);
+        int count = 0;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            while (true) {
+                buffer.clear();
+                while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+                    // fill the buffer
+                }
+                buffer.flip();
+                while (buffer.remaining() >= RECORD_BYTES) {
+                    MapEvent event = read(buffer, check);
+                    if (event == null) {
+                        return count;
+                    }
+                    sink.accept(event);
+                    count++;
+                }
+                if (buffer.limit() < buffer.capacity()) {
+                    return count;
+                }
+            }
+        }
+    }
+
+    private static MapEvent read(ByteBuffer buffer, CRC32 check) {
+        int start = buffer.position();
+        int cityId = buffer.getInt();
+        int mapId = buffer.getInt();
+        int userId = buffer.getInt();
+        int flags = buffer.getInt();
+        long timestamp = buffer.getLong();
+        int stored = buffer.getInt();
+        buffer.getInt();
+        if ((flags & PRESENT) == 0) {
+            return null;
+        }
+        check.reset();
+        check.update(buffer.slice(start, 24));
+        if ((int) check.getValue() != stored) {
+            return null;
+        }
+        return new MapEvent((flags & DOWNLOAD) != 0 ? MapEvent.Kind.DOWNLOAD : MapEvent.Kind.VIEW,
+                cityId, mapId < 0 ? null : mapId, userId < 0 ? null : userId, timestamp,
+                (flags & SUBSCRIBER) != 0);
+    }
+
+    private List<Segment> segments() throws IOException {
+        List<Segment> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    segments.add(new Segment(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())),
+                            file));
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+        segments.sort(Comparator.comparingLong(Segment::id));
+        return segments;
+    }
+}
@@ -0,0 +1,24 @@
+package server.events;
+
+/**
+ * One map view or download, as the client reports it.
+ *
+ * @param cityId     the city the map belongs to
+ * @param mapId      the map, or null when the client did not name one
+ * @param userId     the user, or null for a guest
+ * @param timestamp  when the server received it, in epoch milliseconds
+ * @param subscriber for downloads, whether the user held a subscription to the city
+ */
+public record MapEvent(Kind kind, int cityId, Integer mapId, Integer userId, long timestamp,
+                       boolean subscriber) {
+
+    public enum Kind { VIEW, DOWNLOAD }
+
+    public static MapEvent view(int cityId, Integer mapId, Integer userId) {
+        return new MapEvent(Kind.VIEW, cityId, mapId, userId, System.currentTimeMillis(), false);
+    }
+
+    public static MapEvent download(int cityId, Integer mapId, Integer userId, boolean subscriber) {
+        return new MapEvent(Kind.DOWNLOAD, cityId, mapId, userId, System.currentTimeMillis(), subscriber);
+    }
+}
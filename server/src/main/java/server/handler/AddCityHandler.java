@@ -1,8 +1,10 @@
 package server.handler;
 
 import common.content.City;
+import common.dto.CatalogChange;
 import common.enums.ActionType;
 import common.messaging.Message;
+import server.catalog.CatalogViews;
 import server.repository.CityRepository;
 
 import java.util.List;
@@ -39,6 +41,10 @@ public class AddCityHandler implements RequestHandler {
             city.setPriceSub(0);
             cityRepository.save(city);
 
+            CatalogChange change = new CatalogChange();
+            change.addCity(city.getId());
+            CatalogViews.apply(change);
+
             System.out.println("Created new city: " + cityName);
             return new Message(ActionType.ADD_CITY_RESPONSE, true);
 
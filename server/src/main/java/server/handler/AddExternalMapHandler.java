@@ -1,11 +1,14 @@
 package server.handler;
 
+import common.dto.CatalogChange;
 import common.enums.ActionType;
 import common.enums.MapStatus;
 import common.messaging.Message;
 import org.hibernate.Session;
 import org.hibernate.Transaction;
 import server.HibernateUtil;
+import server.blob.BlobStore;
+import server.catalog.CatalogViews;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -47,6 +50,9 @@ public class AddExternalMapHandler implements RequestHandler {
                 return new Message(ActionType.ADD_EXTERNAL_MAP_RESPONSE, false);
             }
 
+            // The image goes to the blob store; the row only keeps its hash
+            String imageHash = BlobStore.getInstance().put(imageBytes);
+
             session = HibernateUtil.getSessionFactory().openSession();
             tx = session.beginTransaction();
 
@@ -88,15 +94,16 @@ public class AddExternalMapHandler implements RequestHandler {
 
                 // Step 3: Insert the map
                 try (PreparedStatement ps = connection.prepareStatement(
-                        "INSERT INTO maps (name, description, version, status, price, city_id, map_image) " +
-                        "VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+                        "INSERT INTO maps (name, description, version, status, price, city_id, image_hash, image_size) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
                     ps.setString(1, mapName);
                     ps.setString(2, description != null ? description : "");
                     ps.setString(3, "1.0");
                     ps.setString(4, MapStatus.EXTERNAL.name());
                     ps.setDouble(5, 0.0);
                     ps.setInt(6, cityId);
-                    ps.setBytes(7, imageBytes);
+                    ps.setString(7, imageHash);
+                    ps.setInt(8, imageBytes.length);
                     ps.executeUpdate();
                     System.out.println("AddExternalMap: inserted map '" + mapName + "' for city id=" + cityId);
                 }
@@ -109,6 +116,9 @@ public class AddExternalMapHandler implements RequestHandler {
             session.close();
 
             if (success[0]) {
+                CatalogChange change = new CatalogChange();
+                change.addCity(cityIdHolder[0]);
+                CatalogViews.apply(change);
                 System.out.println("Added external map: " + mapName + " in city: " + cityName);
                 return new Message(ActionType.ADD_EXTERNAL_MAP_RESPONSE, true);
             } else {
@@ -1,8 +1,10 @@
 package server.handler;
 
+import common.dto.CatalogChange;
 import common.enums.ActionType;
 import common.messaging.Message;
 import server.GcmServer;
+import server.catalog.CatalogViews;
 import server.repository.PendingContentRequestRepository;
 
 /**
@@ -20,12 +22,15 @@ public class ApproveContentHandler implements RequestHandler {
 
             // TODO: Get the approver user from the request if needed
             // For now, passing null as approver
-            String error = repository.approveWithError(pendingId, null);
+            CatalogChange change = new CatalogChange();
+            change.setApprovalsChanged(true);
+            String error = repository.approveWithError(pendingId, null, change);
 
             if (error == null) {
+                CatalogViews.apply(change);
                 GcmServer server = GcmServer.getInstance();
                 if (server != null) {
-                    server.sendToAllClients(new Message(ActionType.CATALOG_UPDATED_NOTIFICATION, null));
+                    server.publishCatalogChange(change);
                 }
                 return new Message(ActionType.APPROVE_CONTENT_RESPONSE, "OK");
             } else {
@@ -1,8 +1,10 @@
 package server.handler;
 
+import common.dto.CatalogChange;
 import common.enums.ActionType;
 import common.messaging.Message;
 import server.GcmServer;
+import server.catalog.CatalogViews;
 import server.repository.PendingPriceUpdateRepository;
 
 public class ApprovePendingHandler implements RequestHandler {
@@ -13,12 +15,15 @@ public class ApprovePendingHandler implements RequestHandler {
     public Message handle(Message request) {
         try {
             int pendingId = (Integer) request.getMessage();
-            boolean success = repository.approve(pendingId);
+            CatalogChange change = new CatalogChange();
+            change.setApprovalsChanged(true);
+            boolean success = repository.approve(pendingId, change);
 
             if (success) {
+                CatalogViews.apply(change);
                 GcmServer server = GcmServer.getInstance();
                 if (server != null) {
-                    server.sendToAllClients(new Message(ActionType.CATALOG_UPDATED_NOTIFICATION, null));
+                    server.publishCatalogChange(change);
                 }
             }
 
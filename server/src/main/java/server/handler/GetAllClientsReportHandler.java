@@ -6,6 +6,12 @@ import common.messaging.Message;
 import common.report.AllClientsReport;
 import server.report.ReportManager;
 
+import java.util.List;
+
+/**
+ * Answers one page of the clients report; the payload is [afterId, pageSize]
+ * (either may be null), or null for the first page.
+ */
 public class GetAllClientsReportHandler implements RequestHandler {
 
     private final ReportManager reportManager;
@@ -17,9 +23,17 @@ public class GetAllClientsReportHandler implements RequestHandler {
     @Override
     public Message handle(Message request) {
 
+        Integer afterId = null;
+        Integer pageSize = null;
+        if (request.getMessage() instanceof List<?> payload && payload.size() >= 2) {
+            afterId = (Integer) payload.get(0);
+            pageSize = (Integer) payload.get(1);
+        }
+
         AllClientsReport report = reportManager.generate(
                 ReportType.CLIENTS,
-                AllClientsReport.class
+                AllClientsReport.class,
+                afterId, pageSize
         );
 
         return new Message(ActionType.GET_ALL_CLIENTS_REPORT_RESPONSE, report);
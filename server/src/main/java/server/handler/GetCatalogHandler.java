@@ -6,8 +6,10 @@ import common.dto.CatalogFilter;
 import common.dto.CatalogResponse;
 import common.enums.ActionType;
 import common.messaging.Message;
-import server.repository.CityRepository;
-import server.repository.MapRepository;
+import server.catalog.CatalogReadModel;
+import server.catalog.SearchIndex;
+import server.repository.CatalogRow;
+import server.repository.CitySearchRow;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -16,13 +18,14 @@ import java.util.List;
  * Consolidated handler for all catalog-related queries.
  * Returns cities, maps, and filter options in a single response.
  *
- * Builds lightweight detached copies to avoid serializing heavy blob data
- * and the full EAGER-loaded city object graph.
+ * The catalog and its filter options come from the {@link CatalogReadModel}
+ * without a database round-trip; maps are built from its {@link CatalogRow}s.
+ * Search mode is answered by the {@link SearchIndex}.
  */
 public class GetCatalogHandler implements RequestHandler {
 
-    private final CityRepository cityRepository = CityRepository.getInstance();
-    private final MapRepository mapRepository = MapRepository.getInstance();
+    private final SearchIndex searchIndex = SearchIndex.getInstance();
+    private final CatalogReadModel catalog = CatalogReadModel.getInstance();
 
     @Override
     public Message handle(Message request) {
@@ -38,35 +41,33 @@ public class GetCatalogHandler implements RequestHandler {
                 return handleSearchRequest(filter, response);
             }
 
-            // Regular catalog mode
+            // Regular catalog mode, answered from one consistent snapshot
+            CatalogReadModel.Snapshot snapshot = catalog.snapshot();
+
             // Always include all city names for the dropdown
-            List<String> allCityNames = cityRepository.findCatalogCityNames();
-            response.setAvailableCities(new ArrayList<>(allCityNames));
+            response.setAvailableCities(new ArrayList<>(snapshot.cityNames()));
 
             // Get filtered maps
-            List<GCMMap> maps = mapRepository.findByCriteria(
+            List<CatalogRow> rows = snapshot.rows(
                 filter.getCityName(),
                 filter.getMapName(),
                 filter.getVersion()
             );
 
-            // Build lightweight copies — no blobs, no deep city graph
-            List<GCMMap> lightMaps = new ArrayList<>();
-            for (GCMMap map : maps) {
-                lightMaps.add(toLightweight(map));
+            List<GCMMap> lightMaps = new ArrayList<>(rows.size());
+            for (CatalogRow row : rows) {
+                lightMaps.add(toLightweight(row));
             }
             response.setMaps(lightMaps);
 
             // Populate available map names (for selected city, or all if no city selected)
             if (filter.getCityName() != null) {
-                List<String> mapNames = mapRepository.findMapNamesByCity(filter.getCityName());
+                List<String> mapNames = snapshot.mapNames(filter.getCityName());
                 response.setAvailableMapNames(new ArrayList<>(mapNames));
 
                 // Populate available versions (for selected city+map)
                 if (filter.getMapName() != null) {
-                    List<String> versions = mapRepository.findVersionsByCityAndMapName(
-                        filter.getCityName(), filter.getMapName()
-                    );
+                    List<String> versions = snapshot.versions(filter.getCityName(), filter.getMapName());
                     response.setAvailableVersions(new ArrayList<>(versions));
                 }
             }
@@ -80,33 +81,24 @@ public class GetCatalogHandler implements RequestHandler {
     }
 
     /**
-     * Handle search mode request - returns cities matching query with counts.
+     * Handle search mode request - returns matching cities with counts, best match first.
      */
     private Message handleSearchRequest(CatalogFilter filter, CatalogResponse response) {
-        String searchQuery = filter.getSearchQuery();
-
-        // Get search results with counts
-        List<Object[]> results = cityRepository.searchWithCounts(searchQuery);
-
         List<CatalogResponse.CitySearchResult> searchResults = new ArrayList<>();
-        for (Object[] row : results) {
-            City city = (City) row[0];
-            Long mapCount = (Long) row[1];
-            Long siteCount = (Long) row[2];
-            Long tourCount = (Long) row[3];
-
-            // Build lightweight city copy (no deep collections)
-            City lightCity = toLightweightCity(city);
+        for (SearchIndex.Hit hit : searchIndex.search(filter.getSearchQuery())) {
+            CitySearchRow city = hit.city();
 
             CatalogResponse.CitySearchResult result = new CatalogResponse.CitySearchResult();
-            result.setCity(lightCity);
-            result.setMapCount(mapCount.intValue());
-            result.setSiteCount(siteCount.intValue());
-            result.setTourCount(tourCount.intValue());
-
-            // Get map descriptions for this city
-            List<String> mapDescriptions = cityRepository.getMapDescriptionsForCity(city.getId());
-            result.setMapDescriptions(new ArrayList<>(mapDescriptions));
+            result.setCity(toLightweightCity(city));
+            result.setMapCount(city.maps().size());
+            result.setSiteCount(city.sites().size());
+            result.setTourCount(city.tours().size());
+
+            List<String> mapDescriptions = new ArrayList<>(city.maps().size());
+            for (CitySearchRow.Text map : city.maps()) {
+                mapDescriptions.add(map.description());
+            }
+            result.setMapDescriptions(mapDescriptions);
 
             searchResults.add(result);
         }
@@ -116,36 +108,32 @@ public class GetCatalogHandler implements RequestHandler {
     }
 
     /**
-     * Create a lightweight GCMMap copy for catalog display.
-     * Excludes mapImage blob, siteMarkersJson, and deep city collections.
+     * Create a lightweight GCMMap for catalog display from a projected row.
+     * It has no image, siteMarkersJson or sites, and its city has no collections.
      */
-    private GCMMap toLightweight(GCMMap map) {
+    private GCMMap toLightweight(CatalogRow row) {
         GCMMap light = new GCMMap();
-        light.setId(map.getId());
-        light.setName(map.getName());
-        light.setDescription(map.getDescription());
-        light.setVersion(map.getVersion());
-        light.setPrice(map.getPrice());
-        light.setStatus(map.getStatus());
-        light.setImagePath(map.getImagePath());
-        // Intentionally skip: mapImage, siteMarkersJson, sites
-
-        if (map.getCity() != null) {
-            light.setCity(toLightweightCity(map.getCity()));
-        }
+        light.setId(row.mapId());
+        light.setName(row.name());
+        light.setDescription(row.description());
+        light.setVersion(row.version());
+        light.setPrice(row.price());
+        light.setStatus(row.status());
+        light.setImagePath(row.imagePath());
+        light.setCity(new City(row.cityId(), row.cityName(), row.cityPriceSub()));
         return light;
     }
 
     /**
-     * Create a lightweight City copy (name, price, imagePath only — no collections).
+     * Create a lightweight City (name, price, imagePath only — no collections).
      */
-    private City toLightweightCity(City city) {
+    private City toLightweightCity(CitySearchRow city) {
         City light = new City();
-        light.setId(city.getId());
-        light.setName(city.getName());
-        light.setDescription(city.getDescription());
-        light.setPriceSub(city.getPriceSub());
-        light.setImagePath(city.getImagePath());
+        light.setId(city.cityId());
+        light.setName(city.name());
+        light.setDescription(city.description());
+        light.setPriceSub(city.priceSub());
+        light.setImagePath(city.imagePath());
         // Intentionally skip: maps, sites, tours
         return light;
     }
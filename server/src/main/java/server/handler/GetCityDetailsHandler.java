@@ -6,6 +6,7 @@ import common.enums.ActionType;
 import common.enums.MapStatus;
 import common.messaging.Message;
 import server.repository.CityRepository;
+import server.repository.FetchPlan;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -25,7 +26,7 @@ public class GetCityDetailsHandler implements RequestHandler {
         try {
             int cityId = (Integer) request.getMessage();
 
-            Optional<City> optionalCity = cityRepository.findByIdWithMaps(cityId);
+            Optional<City> optionalCity = cityRepository.findById(cityId, FetchPlan.CITY_DETAIL);
 
             if (optionalCity.isEmpty()) {
                 return new Message(ActionType.ERROR, "City not found with ID: " + cityId);
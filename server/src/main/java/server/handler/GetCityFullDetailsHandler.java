@@ -1,11 +1,13 @@
 package server.handler;
 
 import common.content.*;
+import common.dto.ImageStreamRequest;
 import common.enums.ActionType;
 import common.enums.MapStatus;
 import common.messaging.Message;
-import org.hibernate.Session;
-import server.HibernateUtil;
+import server.blob.MapImages;
+import server.repository.CityRepository;
+import server.repository.FetchPlan;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -14,129 +16,115 @@ import java.util.List;
  * Handler for getting full city data including map images, markers, sites, and tours.
  * Used by Edit Mode to load everything needed for content editing.
  *
- * Fetches each collection separately to avoid MultipleBagFetchException.
+ * Loads the city through {@link FetchPlan#CITY_EDIT}, which fetches each
+ * collection in its own query to avoid MultipleBagFetchException.
  */
 public class GetCityFullDetailsHandler implements RequestHandler {
 
     @Override
     public Message handle(Message request) {
         try {
-            int cityId = (Integer) request.getMessage();
+            // A streamed request gets the same response, the server sends the images separately
+            boolean streamed = request.getMessage() instanceof ImageStreamRequest;
+            int cityId = streamed
+                    ? ((ImageStreamRequest) request.getMessage()).getTargetId() : (Integer) request.getMessage();
 
-            try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+            // Sites, maps with their sites, and tours with their sites are all loaded
+            City city = CityRepository.getInstance().findById(cityId, FetchPlan.CITY_EDIT).orElse(null);
 
-                // 1. Fetch city with sites
-                City cityWithSites = session.createQuery(
-                        "FROM City c LEFT JOIN FETCH c.sites WHERE c.id = :id", City.class)
-                        .setParameter("id", cityId)
-                        .uniqueResult();
-
-                if (cityWithSites == null) {
-                    return new Message(ActionType.ERROR, "City not found with ID: " + cityId);
-                }
-
-                // 2. Fetch city with maps (separate query, same session)
-                City cityWithMaps = session.createQuery(
-                        "FROM City c LEFT JOIN FETCH c.maps WHERE c.id = :id", City.class)
-                        .setParameter("id", cityId)
-                        .uniqueResult();
-
-                // 3. Fetch city with tours (separate query, same session)
-                City cityWithTours = session.createQuery(
-                        "FROM City c LEFT JOIN FETCH c.tours WHERE c.id = :id", City.class)
-                        .setParameter("id", cityId)
-                        .uniqueResult();
-
-                // Now build clean detached objects
-                City cleanCity = new City();
-                cleanCity.setId(cityWithSites.getId());
-                cleanCity.setName(cityWithSites.getName());
-                cleanCity.setDescription(cityWithSites.getDescription());
-                cleanCity.setPriceSub(cityWithSites.getPriceSub());
-                cleanCity.setImagePath(cityWithSites.getImagePath());
+            if (city == null) {
+                return new Message(ActionType.ERROR, "City not found with ID: " + cityId);
+            }
 
-                // Build clean sites list
-                List<Site> cleanSites = new ArrayList<>();
-                if (cityWithSites.getSites() != null) {
-                    for (Site s : cityWithSites.getSites()) {
-                        Site cleanSite = new Site();
-                        cleanSite.setId(s.getId());
-                        cleanSite.setName(s.getName());
-                        cleanSite.setDescription(s.getDescription());
-                        cleanSite.setCategory(s.getCategory());
-                        cleanSite.setAccessible(s.isAccessible());
-                        cleanSite.setRecommendedVisitDuration(s.getRecommendedVisitDuration());
-                        cleanSite.setLocation(s.getLocation());
-                        cleanSites.add(cleanSite);
-                    }
+            // Now build clean detached objects
+            City cleanCity = new City();
+            cleanCity.setId(city.getId());
+            cleanCity.setName(city.getName());
+            cleanCity.setDescription(city.getDescription());
+            cleanCity.setPriceSub(city.getPriceSub());
+            cleanCity.setImagePath(city.getImagePath());
+
+            // Build clean sites list
+            List<Site> cleanSites = new ArrayList<>();
+            if (city.getSites() != null) {
+                for (Site s : city.getSites()) {
+                    Site cleanSite = new Site();
+                    cleanSite.setId(s.getId());
+                    cleanSite.setName(s.getName());
+                    cleanSite.setDescription(s.getDescription());
+                    cleanSite.setCategory(s.getCategory());
+                    cleanSite.setAccessible(s.isAccessible());
+                    cleanSite.setRecommendedVisitDuration(s.getRecommendedVisitDuration());
+                    cleanSite.setLocation(s.getLocation());
+                    cleanSites.add(cleanSite);
                 }
-                cleanCity.setSites(cleanSites);
-
-                // Build clean maps list WITH mapImage bytes and siteMarkersJson
-                List<GCMMap> cleanMaps = new ArrayList<>();
-                if (cityWithMaps != null && cityWithMaps.getMaps() != null) {
-                    for (GCMMap m : cityWithMaps.getMaps()) {
-                        // Filter out EXTERNAL maps (they belong to the external repository)
-                        if (m.getStatus() == MapStatus.EXTERNAL) continue;
-                        GCMMap cleanMap = new GCMMap();
-                        cleanMap.setId(m.getId());
-                        cleanMap.setName(m.getName());
-                        cleanMap.setDescription(m.getDescription());
-                        cleanMap.setVersion(m.getVersion());
-                        cleanMap.setPrice(m.getPrice());
-                        cleanMap.setStatus(m.getStatus());
-                        cleanMap.setImagePath(m.getImagePath());
-                        cleanMap.setMapImage(m.getMapImage());
-                        cleanMap.setSiteMarkersJson(m.getSiteMarkersJson());
-
-                        // Copy site references for this map (sites are eagerly fetched on GCMMap)
-                        List<Site> mapSites = new ArrayList<>();
-                        if (m.getSites() != null) {
-                            for (Site ms : m.getSites()) {
-                                for (Site cs : cleanSites) {
-                                    if (cs.getId() == ms.getId()) {
-                                        mapSites.add(cs);
-                                        break;
-                                    }
+            }
+            cleanCity.setSites(cleanSites);
+
+            // Build clean maps list WITH images (inline or streamed from the blob store) and siteMarkersJson
+            List<GCMMap> cleanMaps = new ArrayList<>();
+            if (city.getMaps() != null) {
+                for (GCMMap m : city.getMaps()) {
+                    // Filter out EXTERNAL maps (they belong to the external repository)
+                    if (m.getStatus() == MapStatus.EXTERNAL) continue;
+                    GCMMap cleanMap = new GCMMap();
+                    cleanMap.setId(m.getId());
+                    cleanMap.setName(m.getName());
+                    cleanMap.setDescription(m.getDescription());
+                    cleanMap.setVersion(m.getVersion());
+                    cleanMap.setPrice(m.getPrice());
+                    cleanMap.setStatus(m.getStatus());
+                    cleanMap.setImagePath(m.getImagePath());
+                    MapImages.copy(m, cleanMap, !streamed);
+                    cleanMap.setSiteMarkersJson(m.getSiteMarkersJson());
+
+                    // Copy site references for this map (loaded by the fetch plan)
+                    List<Site> mapSites = new ArrayList<>();
+                    if (m.getSites() != null) {
+                        for (Site ms : m.getSites()) {
+                            for (Site cs : cleanSites) {
+                                if (cs.getId() == ms.getId()) {
+                                    mapSites.add(cs);
+                                    break;
                                 }
                             }
                         }
-                        cleanMap.setSites(mapSites);
-                        cleanMaps.add(cleanMap);
                     }
+                    cleanMap.setSites(mapSites);
+                    cleanMaps.add(cleanMap);
                 }
-                cleanCity.setMaps(cleanMaps);
-
-                // Build clean tours list with ordered site references
-                List<Tour> cleanTours = new ArrayList<>();
-                if (cityWithTours != null && cityWithTours.getTours() != null) {
-                    for (Tour t : cityWithTours.getTours()) {
-                        Tour cleanTour = new Tour();
-                        cleanTour.setId(t.getId());
-                        cleanTour.setName(t.getName());
-                        cleanTour.setDescription(t.getDescription());
-                        cleanTour.setRecommendedDuration(t.getRecommendedDuration());
-
-                        // Copy ordered site references
-                        List<Site> tourSites = new ArrayList<>();
-                        if (t.getSites() != null) {
-                            for (Site ts : t.getSites()) {
-                                for (Site cs : cleanSites) {
-                                    if (cs.getId() == ts.getId()) {
-                                        tourSites.add(cs);
-                                        break;
-                                    }
+            }
+            cleanCity.setMaps(cleanMaps);
+
+            // Build clean tours list with ordered site references
+            List<Tour> cleanTours = new ArrayList<>();
+            if (city.getTours() != null) {
+                for (Tour t : city.getTours()) {
+                    Tour cleanTour = new Tour();
+                    cleanTour.setId(t.getId());
+                    cleanTour.setName(t.getName());
+                    cleanTour.setDescription(t.getDescription());
+                    cleanTour.setRecommendedDuration(t.getRecommendedDuration());
+
+                    // Copy ordered site references
+                    List<Site> tourSites = new ArrayList<>();
+                    if (t.getSites() != null) {
+                        for (Site ts : t.getSites()) {
+                            for (Site cs : cleanSites) {
+                                if (cs.getId() == ts.getId()) {
+                                    tourSites.add(cs);
+                                    break;
                                 }
                             }
                         }
-                        cleanTour.setSites(tourSites);
-                        cleanTours.add(cleanTour);
                     }
+                    cleanTour.setSites(tourSites);
+                    cleanTours.add(cleanTour);
                 }
-                cleanCity.setTours(cleanTours);
-
-                return new Message(ActionType.GET_CITY_FULL_DETAILS_RESPONSE, cleanCity);
             }
+            cleanCity.setTours(cleanTours);
+
+            return new Message(ActionType.GET_CITY_FULL_DETAILS_RESPONSE, cleanCity);
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -1,5 +1,6 @@
 package server.handler;
 
+import common.content.City;
 import common.content.Site;
 import common.enums.ActionType;
 import common.messaging.Message;
@@ -8,15 +9,26 @@ import server.repository.SiteRepository;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Handler for getting the sites of a city.
+ * Replies with clean detached copies so the lazy maps/tours collections
+ * never reach a serializer outside the session.
+ */
 public class GetCitySitesHandler implements RequestHandler
 {
     private final SiteRepository sp = SiteRepository.getInstance();
     @Override
     public Message handle(Message request) {
         try{
-            List<Site> allCitySites = new ArrayList<>();
             String cityName = (String) request.getMessage();
-            allCitySites = sp.findSitesByCityName(cityName);
+            List<Site> allCitySites = new ArrayList<>();
+            City cleanCity = null;
+            for (Site s : sp.findSitesByCityName(cityName)) {
+                if (cleanCity == null && s.getCity() != null) {
+                    cleanCity = cleanCity(s.getCity());
+                }
+                allCitySites.add(cleanSite(s, cleanCity));
+            }
             return new Message(ActionType.GET_CITY_SITES_RESPONSE,allCitySites);
         }
         catch (Exception e) {
@@ -24,4 +36,20 @@ public class GetCitySitesHandler implements RequestHandler
             return new Message(ActionType.ERROR, "Sites - Database error: " + e.getMessage());
         }
     }
+
+    /** Copies the scalar columns of a city, leaving its maps/sites/tours empty. */
+    static City cleanCity(City dbCity) {
+        City cleanCity = new City();
+        cleanCity.setId(dbCity.getId());
+        cleanCity.setName(dbCity.getName());
+        cleanCity.setDescription(dbCity.getDescription());
+        cleanCity.setPriceSub(dbCity.getPriceSub());
+        return cleanCity;
+    }
+
+    /** Copies the scalar columns of a site and points it at the given clean city. */
+    static Site cleanSite(Site s, City cleanCity) {
+        return new Site(s.getId(), s.getName(), s.getDescription(), cleanCity,
+                s.getCategory(), s.isAccessible(), s.getRecommendedVisitDuration(), s.getLocation());
+    }
 }
@@ -1,5 +1,7 @@
 package server.handler;
 
+import common.content.City;
+import common.content.Site;
 import common.content.Tour;
 import common.enums.ActionType;
 import common.messaging.Message;
@@ -8,14 +10,34 @@ import server.repository.TourRepository;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Handler for getting the tours of a city.
+ * Replies with clean detached copies; the sites of each tour share the
+ * tour's city because their own city association is never fetched.
+ */
 public class GetCityToursHandler implements RequestHandler{
     private TourRepository tp = TourRepository.getInstance();
     @Override
     public Message handle(Message request) {
         try{
-            List<Tour> allCityTours = new ArrayList<>();
             String cityName = (String) request.getMessage();
-            allCityTours = tp.findToursByCityName(cityName);
+            List<Tour> allCityTours = new ArrayList<>();
+            City cleanCity = null;
+            for (Tour t : tp.findToursByCityName(cityName)) {
+                if (cleanCity == null && t.getCity() != null) {
+                    cleanCity = GetCitySitesHandler.cleanCity(t.getCity());
+                }
+                Tour cleanTour = new Tour(t.getId(), t.getName(), t.getDescription(), t.getRecommendedDuration());
+                cleanTour.setCity(cleanCity);
+                List<Site> cleanSites = new ArrayList<>();
+                if (t.getSites() != null) {
+                    for (Site s : t.getSites()) {
+                        if (s != null) cleanSites.add(GetCitySitesHandler.cleanSite(s, cleanCity));
+                    }
+                }
+                cleanTour.setSites(cleanSites);
+                allCityTours.add(cleanTour);
+            }
             return new Message(ActionType.GET_CITY_TOURS_RESPONSE,allCityTours);
         }
         catch (Exception e)
@@ -4,9 +4,12 @@ import common.content.City;
 import common.content.GCMMap;
 import common.content.Site;
 import common.content.Tour;
+import common.dto.ImageStreamRequest;
 import common.enums.ActionType;
 import common.messaging.Message;
+import server.blob.MapImages;
 import server.repository.CityRepository;
+import server.repository.FetchPlan;
 import server.repository.MapRepository;
 
 import java.util.ArrayList;
@@ -17,7 +20,7 @@ import java.util.List;
  * Used by the map content popup to load heavy data on demand.
  *
  * Builds a clean detached copy to avoid serializing the entire city graph
- * (which would include ALL other maps' LONGBLOB images).
+ * (which would include ALL other maps of the city with their sites).
  */
 public class GetMapDetailsHandler implements RequestHandler {
 
@@ -27,10 +30,13 @@ public class GetMapDetailsHandler implements RequestHandler {
     @Override
     public Message handle(Message request) {
         try {
-            int mapId = (Integer) request.getMessage();
+            // A streamed request gets the same response, the server sends the images separately
+            boolean streamed = request.getMessage() instanceof ImageStreamRequest;
+            int mapId = streamed
+                    ? ((ImageStreamRequest) request.getMessage()).getTargetId() : (Integer) request.getMessage();
 
-            return mapRepository.findByIdWithSites(mapId)
-                .map(this::toCleanCopy)
+            return mapRepository.findById(mapId, FetchPlan.MAP_DETAIL)
+                .map(map -> toCleanCopy(map, !streamed))
                 .map(map -> new Message(ActionType.GET_MAP_DETAILS_RESPONSE, map))
                 .orElse(new Message(ActionType.ERROR, "Map not found with ID: " + mapId));
 
@@ -43,8 +49,10 @@ public class GetMapDetailsHandler implements RequestHandler {
     /**
      * Build a clean detached copy of the map with its image, sites, and markers,
      * plus a lightweight city (with tours for getAvailableTours, but no map images).
+     *
+     * @param inlineImage false when the image is streamed from the blob store after the response
      */
-    private GCMMap toCleanCopy(GCMMap source) {
+    private GCMMap toCleanCopy(GCMMap source, boolean inlineImage) {
         GCMMap clean = new GCMMap();
         clean.setId(source.getId());
         clean.setName(source.getName());
@@ -53,7 +61,7 @@ public class GetMapDetailsHandler implements RequestHandler {
         clean.setPrice(source.getPrice());
         clean.setStatus(source.getStatus());
         clean.setImagePath(source.getImagePath());
-        clean.setMapImage(source.getMapImage());
+        MapImages.copy(source, clean, inlineImage);
         clean.setSiteMarkersJson(source.getSiteMarkersJson());
 
         // Copy sites
@@ -1,11 +1,14 @@
 package server.handler;
 
+import common.content.City;
+import common.content.GCMMap;
 import common.dto.PendingApprovalsResponse;
 import common.enums.ActionType;
 import common.messaging.Message;
 import common.workflow.PendingPriceUpdate;
 import server.repository.PendingPriceUpdateRepository;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -19,7 +22,10 @@ public class GetPendingApprovalsHandler implements RequestHandler {
     @Override
     public Message handle(Message request) {
         try {
-            List<PendingPriceUpdate> pending = repository.findAllPending();
+            List<PendingPriceUpdate> pending = new ArrayList<>();
+            for (PendingPriceUpdate p : repository.findAllPending()) {
+                pending.add(detach(p));
+            }
             PendingApprovalsResponse response = new PendingApprovalsResponse(pending);
             return new Message(ActionType.GET_PENDING_APPROVALS_RESPONSE, response);
 
@@ -28,4 +34,25 @@ public class GetPendingApprovalsHandler implements RequestHandler {
             return new Message(ActionType.ERROR, "Error fetching pending approvals: " + e.getMessage());
         }
     }
+
+    /**
+     * Copies an update with a clean map and city; the requester is never
+     * fetched and the approval page does not show it, so it is left out.
+     */
+    private static PendingPriceUpdate detach(PendingPriceUpdate p) {
+        GCMMap cleanMap = null;
+        GCMMap m = p.getMap();
+        if (m != null) {
+            cleanMap = new GCMMap(m.getId(), m.getName(), m.getDescription(), m.getVersion(), m.getPrice(), m.getStatus());
+            if (m.getCity() != null) {
+                City cleanCity = new City(m.getCity().getId(), m.getCity().getName(), m.getCity().getPriceSub());
+                cleanMap.setCity(cleanCity);
+            }
+        }
+        PendingPriceUpdate clean = new PendingPriceUpdate(cleanMap, null, p.getOldPrice(), p.getNewPrice(), p.isSubscriptionChange());
+        clean.setId(p.getId());
+        clean.setStatus(p.getStatus());
+        clean.setCreatedAt(p.getCreatedAt());
+        return clean;
+    }
 }
@@ -6,14 +6,13 @@ import common.content.Site;
 import common.content.Tour;
 import common.enums.ActionType;
 import common.messaging.Message;
-import org.hibernate.Session;
-import server.HibernateUtil;
+import server.blob.MapImages;
 import server.repository.CityRepository;
+import server.repository.FetchPlan;
 import server.repository.PurchaseRepository;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 
 /**
  * Handler for getting live maps from a user's active city subscriptions.
@@ -34,89 +33,80 @@ public class GetSubscriptionMapsHandler implements RequestHandler {
 
             ArrayList<City> result = new ArrayList<>();
 
+            List<Integer> cityIds = new ArrayList<>();
             for (Object[] sub : activeSubs) {
-                int cityId = ((Number) sub[0]).intValue();
-
-                // Fetch city with maps and tours in separate queries to avoid MultipleBagFetchException
-                try (Session session = HibernateUtil.getSessionFactory().openSession()) {
-                    City cityWithMaps = session.createQuery(
-                            "FROM City c LEFT JOIN FETCH c.maps WHERE c.id = :id", City.class)
-                            .setParameter("id", cityId)
-                            .uniqueResult();
-
-                    if (cityWithMaps == null) continue;
-
-                    City cityWithTours = session.createQuery(
-                            "FROM City c LEFT JOIN FETCH c.tours WHERE c.id = :id", City.class)
-                            .setParameter("id", cityId)
-                            .uniqueResult();
-
-                    // Build clean detached objects
-                    City cleanCity = new City();
-                    cleanCity.setId(cityWithMaps.getId());
-                    cleanCity.setName(cityWithMaps.getName());
-                    cleanCity.setDescription(cityWithMaps.getDescription());
-                    cleanCity.setPriceSub(cityWithMaps.getPriceSub());
-                    cleanCity.setImagePath(cityWithMaps.getImagePath());
-
-                    // Collect all clean sites (keyed by ID to reuse across maps and tours)
-                    List<Site> allCleanSites = new ArrayList<>();
-
-                    boolean hasMap = false;
-                    if (cityWithMaps.getMaps() != null) {
-                        for (GCMMap m : cityWithMaps.getMaps()) {
-                            GCMMap cleanMap = new GCMMap();
-                            cleanMap.setId(m.getId());
-                            cleanMap.setName(m.getName());
-                            cleanMap.setDescription(m.getDescription());
-                            cleanMap.setVersion(m.getVersion());
-                            cleanMap.setPrice(m.getPrice());
-                            cleanMap.setStatus(m.getStatus());
-                            cleanMap.setImagePath(m.getImagePath());
-                            cleanMap.setMapImage(m.getMapImage());
-                            cleanMap.setSiteMarkersJson(m.getSiteMarkersJson());
-                            cleanMap.setCity(cleanCity);
-
-                            // Copy sites for this map
-                            List<Site> mapCleanSites = new ArrayList<>();
-                            if (m.getSites() != null) {
-                                for (Site s : m.getSites()) {
-                                    Site cleanSite = findOrCreateCleanSite(allCleanSites, s);
-                                    mapCleanSites.add(cleanSite);
-                                }
-                            }
-                            cleanMap.setSites(mapCleanSites);
+                cityIds.add(((Number) sub[0]).intValue());
+            }
 
-                            cleanCity.getMaps().add(cleanMap);
-                            hasMap = true;
+            // All subscribed cities at once; maps and tours, each with their sites,
+            // come in separate queries (see FetchPlan)
+            for (City city : cityRepository.findAllByIds(cityIds, FetchPlan.CITY_SUBSCRIPTION).values()) {
+
+                // Build clean detached objects
+                City cleanCity = new City();
+                cleanCity.setId(city.getId());
+                cleanCity.setName(city.getName());
+                cleanCity.setDescription(city.getDescription());
+                cleanCity.setPriceSub(city.getPriceSub());
+                cleanCity.setImagePath(city.getImagePath());
+
+                // Collect all clean sites (keyed by ID to reuse across maps and tours)
+                List<Site> allCleanSites = new ArrayList<>();
+
+                boolean hasMap = false;
+                if (city.getMaps() != null) {
+                    for (GCMMap m : city.getMaps()) {
+                        GCMMap cleanMap = new GCMMap();
+                        cleanMap.setId(m.getId());
+                        cleanMap.setName(m.getName());
+                        cleanMap.setDescription(m.getDescription());
+                        cleanMap.setVersion(m.getVersion());
+                        cleanMap.setPrice(m.getPrice());
+                        cleanMap.setStatus(m.getStatus());
+                        cleanMap.setImagePath(m.getImagePath());
+                        MapImages.copy(m, cleanMap, true);
+                        cleanMap.setSiteMarkersJson(m.getSiteMarkersJson());
+                        cleanMap.setCity(cleanCity);
+
+                        // Copy sites for this map
+                        List<Site> mapCleanSites = new ArrayList<>();
+                        if (m.getSites() != null) {
+                            for (Site s : m.getSites()) {
+                                Site cleanSite = findOrCreateCleanSite(allCleanSites, s);
+                                mapCleanSites.add(cleanSite);
+                            }
                         }
+                        cleanMap.setSites(mapCleanSites);
+
+                        cleanCity.getMaps().add(cleanMap);
+                        hasMap = true;
                     }
+                }
 
-                    // Build clean tours so getAvailableTours() works in the popup
-                    if (cityWithTours != null && cityWithTours.getTours() != null) {
-                        List<Tour> cleanTours = new ArrayList<>();
-                        for (Tour t : cityWithTours.getTours()) {
-                            Tour cleanTour = new Tour();
-                            cleanTour.setId(t.getId());
-                            cleanTour.setName(t.getName());
-                            cleanTour.setDescription(t.getDescription());
-                            cleanTour.setRecommendedDuration(t.getRecommendedDuration());
-
-                            List<Site> tourSites = new ArrayList<>();
-                            if (t.getSites() != null) {
-                                for (Site s : t.getSites()) {
-                                    tourSites.add(findOrCreateCleanSite(allCleanSites, s));
-                                }
+                // Build clean tours so getAvailableTours() works in the popup
+                if (city.getTours() != null) {
+                    List<Tour> cleanTours = new ArrayList<>();
+                    for (Tour t : city.getTours()) {
+                        Tour cleanTour = new Tour();
+                        cleanTour.setId(t.getId());
+                        cleanTour.setName(t.getName());
+                        cleanTour.setDescription(t.getDescription());
+                        cleanTour.setRecommendedDuration(t.getRecommendedDuration());
+
+                        List<Site> tourSites = new ArrayList<>();
+                        if (t.getSites() != null) {
+                            for (Site s : t.getSites()) {
+                                tourSites.add(findOrCreateCleanSite(allCleanSites, s));
                             }
-                            cleanTour.setSites(tourSites);
-                            cleanTours.add(cleanTour);
                         }
-                        cleanCity.setTours(cleanTours);
+                        cleanTour.setSites(tourSites);
+                        cleanTours.add(cleanTour);
                     }
+                    cleanCity.setTours(cleanTours);
+                }
 
-                    if (hasMap) {
-                        result.add(cleanCity);
-                    }
+                if (hasMap) {
+                    result.add(cleanCity);
                 }
             }
 
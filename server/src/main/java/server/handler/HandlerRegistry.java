@@ -2,6 +2,10 @@ package server.handler;
 
 import common.messaging.Message;
 import common.enums.ActionType;
+import server.events.EventIngestor;
+import server.metrics.ActionMetrics;
+import server.metrics.RequestMetrics;
+import server.metrics.SqlStatementCounter;
 import server.report.ReportManager;
 
 import java.util.EnumMap;
@@ -18,6 +22,9 @@ public class HandlerRegistry {
     
     private final Map<ActionType, RequestHandler> handlers = new EnumMap<>(ActionType.class);
 
+    // Latency and error counts of every registered action
+    private final RequestMetrics metrics = new RequestMetrics();
+
     private ReportManager reportManager;
 
     private HandlerRegistry() {}
@@ -80,10 +87,10 @@ public class HandlerRegistry {
                 new GetActivityReportHandler(reportManager));
 
         register(ActionType.LOG_MAP_VIEW_REQUEST,
-                new LogMapViewHandler(HibernateUtil.getSessionFactory()));
+                new LogMapViewHandler(EventIngestor.getInstance()));
 
         register(ActionType.LOG_MAP_DOWNLOAD_REQUEST,
-                new LogMapDownloadHandler(HibernateUtil.getSessionFactory()));
+                new LogMapDownloadHandler(EventIngestor.getInstance()));
         register(ActionType.GET_PURCHASES_REPORT_REQUEST,
                 new GetPurchasesReportHandler(reportManager));
         register(ActionType.GET_SUPPORT_REQUESTS_REPORT_REQUEST,
@@ -107,6 +114,7 @@ public class HandlerRegistry {
 
     public void register(ActionType action, RequestHandler handler) {
         handlers.put(action, handler);
+        metrics.track(action);
         System.out.println("Registered handler for: " + action);
     }
 
@@ -116,6 +124,8 @@ public class HandlerRegistry {
 
     /**
      * Handle a request by finding and invoking the appropriate handler.
+     * The handler's run time and SQL statement count are recorded; a thrown
+     * exception or an ERROR response counts as an error.
      */
     public Message handleRequest(Message request) {
         RequestHandler handler = handlers.get(request.getAction());
@@ -125,14 +135,29 @@ public class HandlerRegistry {
             return new Message(ActionType.ERROR, "Unknown action: " + request.getAction());
         }
 
+        ActionMetrics actionMetrics = metrics.get(request.getAction());
+        actionMetrics.handlerStarted();
+        long start = System.nanoTime();
+        long statementsBefore = SqlStatementCounter.currentThreadCount();
+        boolean failed = true;
         try {
-            return handler.handle(request);
+            Message response = handler.handle(request);
+            failed = response != null && response.getAction() == ActionType.ERROR;
+            return response;
         } catch (Exception e) {
             System.err.println("Error in handler for " + request.getAction() + ": " + e.getMessage());
             e.printStackTrace();
             return new Message(ActionType.ERROR, "Server error: " + e.getMessage());
+        } finally {
+            actionMetrics.handlerFinished(System.nanoTime() - start,
+                    SqlStatementCounter.currentThreadCount() - statementsBefore, failed);
         }
     }
+
+    public RequestMetrics getMetrics() {
+        return metrics;
+    }
+
     public ReportManager getReportManager() {
         return reportManager;
     }
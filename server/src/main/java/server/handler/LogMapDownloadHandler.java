@@ -2,15 +2,19 @@ package server.handler;
 
 import common.enums.ActionType;
 import common.messaging.Message;
-import org.hibernate.Session;
-import org.hibernate.SessionFactory;
+import server.events.EventIngestor;
+import server.events.MapEvent;
 
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 
+/**
+ * Records a map download. The event is queued for the event log and the
+ * client is answered right away; see {@link EventIngestor}. Reports count it
+ * once the compactor has folded it in, which is also when their cache is cleared.
+ */
 public class LogMapDownloadHandler implements RequestHandler {
-    private final SessionFactory sf;
-    public LogMapDownloadHandler(SessionFactory sf) { this.sf = sf; }
+    private final EventIngestor ingestor;
+    public LogMapDownloadHandler(EventIngestor ingestor) { this.ingestor = ingestor; }
 
     @Override
     public Message handle(Message request) {
@@ -20,22 +24,7 @@ public class LogMapDownloadHandler implements RequestHandler {
         Integer mapId  = (Integer) data.get(2);
         Boolean isSubscriber = (Boolean) data.get(3);
 
-        try (Session s = sf.openSession()) {
-            s.beginTransaction();
-
-            s.createNativeQuery("""
-                INSERT INTO map_download_events(city_id, map_id, user_id, downloaded_at, is_subscriber)
-                VALUES (:cityId, :mapId, :userId, :ts, :isSub)
-            """)
-                    .setParameter("cityId", cityId)
-                    .setParameter("mapId", mapId)
-                    .setParameter("userId", userId)
-                    .setParameter("ts", LocalDateTime.now())
-                    .setParameter("isSub", isSubscriber)
-                    .executeUpdate();
-
-            s.getTransaction().commit();
-        }
+        ingestor.submit(MapEvent.download(cityId, mapId, userId, Boolean.TRUE.equals(isSubscriber)));
 
         return new Message(ActionType.LOG_MAP_DOWNLOAD_RESPONSE, true);
     }
@@ -2,15 +2,19 @@ package server.handler;
 
 import common.enums.ActionType;
 import common.messaging.Message;
-import org.hibernate.Session;
-import org.hibernate.SessionFactory;
+import server.events.EventIngestor;
+import server.events.MapEvent;
 
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 
+/**
+ * Records a map view. The event is queued for the event log and the client
+ * is answered right away; see {@link EventIngestor}. Reports count it once
+ * the compactor has folded it in, which is also when their cache is cleared.
+ */
 public class LogMapViewHandler implements RequestHandler {
-    private final SessionFactory sf;
-    public LogMapViewHandler(SessionFactory sf) { this.sf = sf; }
+    private final EventIngestor ingestor;
+    public LogMapViewHandler(EventIngestor ingestor) { this.ingestor = ingestor; }
 
     @Override
     public Message handle(Message request) {
@@ -19,21 +23,7 @@ public class LogMapViewHandler implements RequestHandler {
         Integer cityId = (Integer) data.get(1);
         Integer mapId  = (Integer) data.get(2); // can be null
 
-        try (Session s = sf.openSession()) {
-            s.beginTransaction();
-
-            s.createNativeQuery("""
-                INSERT INTO map_view_events(city_id, map_id, user_id, viewed_at)
-                VALUES (:cityId, :mapId, :userId, :ts)
-            """)
-                    .setParameter("cityId", cityId)
-                    .setParameter("mapId", mapId)
-                    .setParameter("userId", userId)
-                    .setParameter("ts", LocalDateTime.now())
-                    .executeUpdate();
-
-            s.getTransaction().commit();
-        }
+        ingestor.submit(MapEvent.view(cityId, mapId, userId));
 
         return new Message(ActionType.LOG_MAP_VIEW_RESPONSE, true);
     }
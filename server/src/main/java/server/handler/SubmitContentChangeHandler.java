@@ -1,5 +1,6 @@
 package server.handler;
 
+import common.dto.CatalogChange;
 import common.dto.ContentChangeRequest;
 import common.enums.ActionType;
 import common.messaging.Message;
@@ -36,7 +37,7 @@ public class SubmitContentChangeHandler implements RequestHandler {
                 // Notify all clients so approval counts refresh
                 GcmServer server = GcmServer.getInstance();
                 if (server != null) {
-                    server.sendToAllClients(new Message(ActionType.CATALOG_UPDATED_NOTIFICATION, null));
+                    server.publishCatalogChange(new CatalogChange(null, null, true));
                 }
             }
 
@@ -7,7 +7,9 @@ import common.enums.ActionType;
 import common.messaging.Message;
 import common.user.User;
 import common.workflow.PendingPriceUpdate;
+import server.repository.BatchLoader;
 import server.repository.CityRepository;
+import server.repository.FetchPlan;
 import server.repository.MapRepository;
 import server.repository.PendingPriceUpdateRepository;
 import server.repository.UserRepository;
@@ -45,13 +47,22 @@ public class UpdatePriceHandler implements RequestHandler {
             Map<Integer, Double> newPrices = dto.getMapPriceChanges();
             Map<Integer, Double> oldPrices = dto.getMapOldPrices();
 
+            // Maps whose price changed are fetched together on first use
+            BatchLoader<Integer, GCMMap> maps = mapRepository.batchLoader();
+            for (Map.Entry<Integer, Double> entry : newPrices.entrySet()) {
+                Double oldPrice = oldPrices.get(entry.getKey());
+                if (oldPrice != null && Double.compare(oldPrice, entry.getValue()) != 0) {
+                    maps.load(entry.getKey());
+                }
+            }
+
             for (Map.Entry<Integer, Double> entry : newPrices.entrySet()) {
                 int mapId = entry.getKey();
                 double newPrice = entry.getValue();
                 Double oldPrice = oldPrices.get(mapId);
 
                 if (oldPrice != null && Double.compare(oldPrice, newPrice) != 0) {
-                    Optional<GCMMap> optMap = mapRepository.findById(mapId);
+                    Optional<GCMMap> optMap = maps.get(mapId);
                     if (optMap.isPresent()) {
                         GCMMap map = optMap.get();
                         PendingPriceUpdate pending = new PendingPriceUpdate(map, requester, oldPrice, newPrice);
@@ -65,7 +76,7 @@ public class UpdatePriceHandler implements RequestHandler {
             if (Double.compare(dto.getOldSubscriptionPrice(), dto.getNewSubscriptionPrice()) != 0) {
                 // PendingPriceUpdate requires a non-null map (map_id NOT NULL in DB),
                 // so we use the city's first map as a carrier for the subscription change.
-                Optional<City> optCity = cityRepository.findByIdWithMaps(dto.getCityId());
+                Optional<City> optCity = cityRepository.findById(dto.getCityId(), FetchPlan.CITY_DETAIL);
                 if (optCity.isPresent()) {
                     City city = optCity.get();
                     if (city.getMaps() != null && !city.getMaps().isEmpty()) {
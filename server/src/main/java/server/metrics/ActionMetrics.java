@@ -0,0 +1,106 @@
+package server.metrics;
+
+import common.enums.ActionType;
+import common.report.ServerMetricsReport;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and stage latencies of one request type.
+ */
+public class ActionMetrics {
+
+    private final ActionType action;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong sqlStatements = new AtomicLong();
+
+    private final LatencyHistogram queue = new LatencyHistogram();
+    private final LatencyHistogram handler = new LatencyHistogram();
+    private final LatencyHistogram serialization = new LatencyHistogram();
+    private final LatencyHistogram write = new LatencyHistogram();
+    private final LatencyHistogram total = new LatencyHistogram();
+
+    ActionMetrics(ActionType action) {
+        this.action = action;
+    }
+
+    /** Called when a worker picks the request up. */
+    public void recordQueued(long nanos) {
+        queue.record(nanos);
+    }
+
+    /** Called right before the handler runs. */
+    public void handlerStarted() {
+        requests.incrementAndGet();
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * Called when the handler returns or throws.
+     *
+     * @param statements SQL statements the handler issued
+     */
+    public void handlerFinished(long nanos, long statements, boolean failed) {
+        inFlight.decrementAndGet();
+        handler.record(nanos);
+        sqlStatements.addAndGet(statements);
+        if (failed) {
+            errors.incrementAndGet();
+        }
+    }
+
+    /**
+     * Counts a request that never reached its handler (server busy).
+     */
+    public void recordRejected() {
+        requests.incrementAndGet();
+        errors.incrementAndGet();
+    }
+
+    /** Called once the response is on the socket. */
+    public void recordSent(long encodeNanos, long writeNanos, long totalNanos) {
+        serialization.record(encodeNanos);
+        write.record(writeNanos);
+        total.record(totalNanos);
+    }
+
+    public ActionType getAction() {
+        return action;
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getErrorCount() {
+        return errors.get();
+    }
+
+    /** Handlers of this type running right now. */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /** SQL statements issued by all handlers of this type so far. */
+    public long getSqlStatementCount() {
+        return sqlStatements.get();
+    }
+
+    public LatencyHistogram getHandlerLatency() {
+        return handler;
+    }
+
+    public LatencyHistogram getTotalLatency() {
+        return total;
+    }
+
+    public ServerMetricsReport.ActionRow snapshot() {
+        return new ServerMetricsReport.ActionRow(action, requests.get(), errors.get(), inFlight.get(),
+                sqlStatements.get(), queue.snapshot(), handler.snapshot(), serialization.snapshot(), write.snapshot(),
+                total.snapshot());
+    }
+}
@@ -0,0 +1,139 @@
+package server.metrics;
+
+import common.report.ServerMetricsReport;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with logarithmic buckets.
+ *
+ * Values are recorded in microseconds. Each power of two is split into
+ * {@value #SUB_BUCKETS} linear buckets, so a percentile read from the
+ * histogram is at most 12.5% above the true value. Values below
+ * {@value #SUB_BUCKETS} us are exact; anything above an hour lands in the
+ * last bucket (the exact maximum is kept separately).
+ *
+ * {@link #record(long)} does not allocate or lock: it is one bucket
+ * increment plus a few counter updates, cheap enough for every request.
+ * Reading percentiles copies the buckets, so a snapshot taken while
+ * requests are recorded may be off by the requests in flight.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /** Values are clamped to about an hour; later buckets would stay empty. */
+    private static final long MAX_TRACKED_MICROS = (1L << 32) - 1;
+    private static final int BUCKET_COUNT = bucketIndex(MAX_TRACKED_MICROS) + 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * Records one measurement.
+     *
+     * @param nanos the elapsed time in nanoseconds (negative values count as 0)
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        buckets.incrementAndGet(bucketIndex(Math.min(micros, MAX_TRACKED_MICROS)));
+        count.incrementAndGet();
+        totalMicros.addAndGet(micros);
+        if (micros > maxMicros.get()) {
+            maxMicros.accumulateAndGet(micros, Math::max);
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the upper bound of the bucket holding that percentile, in
+     *         microseconds, or 0 if nothing was recorded
+     */
+    public long getPercentileMicros(double percentile) {
+        return percentiles(copyBuckets(), percentile)[0];
+    }
+
+    /**
+     * Reads count, mean, p50/p95/p99 and max from one copy of the buckets.
+     */
+    public ServerMetricsReport.LatencyStats snapshot() {
+        long[] copy = copyBuckets();
+        long n = 0;
+        for (long c : copy) {
+            n += c;
+        }
+        long[] p = percentiles(copy, 50, 95, 99);
+        long max = maxMicros.get();
+        long mean = n == 0 ? 0 : totalMicros.get() / n;
+        return new ServerMetricsReport.LatencyStats(n, mean, p[0], p[1], p[2], max);
+    }
+
+    private long[] copyBuckets() {
+        long[] copy = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = buckets.get(i);
+        }
+        return copy;
+    }
+
+    /**
+     * Walks the buckets once for several ascending percentiles.
+     */
+    private long[] percentiles(long[] copy, double... wanted) {
+        long total = 0;
+        for (long c : copy) {
+            total += c;
+        }
+        long[] result = new long[wanted.length];
+        if (total == 0) {
+            return result;
+        }
+
+        long max = maxMicros.get();
+        long seen = 0;
+        int next = 0;
+        for (int i = 0; i < copy.length && next < wanted.length; i++) {
+            seen += copy[i];
+            while (next < wanted.length && seen >= Math.ceil(total * wanted[next] / 100.0)) {
+                result[next++] = Math.min(bucketUpperBound(i), max);
+            }
+        }
+        return result;
+    }
+
+    // ==================== BUCKET LAYOUT ====================
+
+    /**
+     * Values below SUB_BUCKETS map to themselves; above that, the bucket is
+     * the position of the highest bit followed by the next SUB_BUCKET_BITS bits.
+     */
+    static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((micros >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /** @return the largest value that falls into a bucket */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
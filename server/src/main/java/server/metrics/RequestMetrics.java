@@ -0,0 +1,53 @@
+package server.metrics;
+
+import common.enums.ActionType;
+import common.report.ServerMetricsReport;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Per-ActionType request metrics.
+ *
+ * Only tracked types get counters and histograms; they are created up front
+ * (see {@link #track(ActionType)}) so that recording never allocates.
+ * {@link #get(ActionType)} returns null for anything else, and callers skip
+ * recording then.
+ */
+public class RequestMetrics {
+
+    private final AtomicReferenceArray<ActionMetrics> byAction =
+            new AtomicReferenceArray<>(ActionType.values().length);
+
+    /**
+     * Starts tracking a request type. Calling it again is harmless.
+     */
+    public ActionMetrics track(ActionType action) {
+        int slot = action.ordinal();
+        byAction.compareAndSet(slot, null, new ActionMetrics(action));
+        return byAction.get(slot);
+    }
+
+    /** @return the metrics of a tracked type, or null */
+    public ActionMetrics get(ActionType action) {
+        return action == null ? null : byAction.get(action.ordinal());
+    }
+
+    /**
+     * @return one row per tracked type that saw at least one request,
+     *         busiest first
+     */
+    public List<ServerMetricsReport.ActionRow> snapshot() {
+        List<ServerMetricsReport.ActionRow> rows = new ArrayList<>();
+        for (int i = 0; i < byAction.length(); i++) {
+            ActionMetrics metrics = byAction.get(i);
+            if (metrics != null && metrics.getRequestCount() > 0) {
+                rows.add(metrics.snapshot());
+            }
+        }
+        rows.sort(Comparator.comparingLong((ServerMetricsReport.ActionRow r) -> r.requests).reversed());
+        return rows;
+    }
+}
@@ -0,0 +1,42 @@
+package server.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the SQL statements Hibernate prepares, per thread and in total.
+ *
+ * A handler runs on one worker thread and its sessions prepare their
+ * statements there, so the difference of {@link #currentThreadCount()}
+ * before and after the handler is the number of statements it issued
+ * (see {@link server.handler.HandlerRegistry}). The SQL itself is passed
+ * through unchanged.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    public static final SqlStatementCounter INSTANCE = new SqlStatementCounter();
+
+    private static final ThreadLocal<long[]> PER_THREAD = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final AtomicLong total = new AtomicLong();
+
+    private SqlStatementCounter() {}
+
+    @Override
+    public String inspect(String sql) {
+        PER_THREAD.get()[0]++;
+        total.incrementAndGet();
+        return sql;
+    }
+
+    /** Statements prepared on the calling thread so far. */
+    public static long currentThreadCount() {
+        return PER_THREAD.get()[0];
+    }
+
+    /** Statements prepared by all threads since startup. */
+    public long getTotalCount() {
+        return total.get();
+    }
+}
@@ -0,0 +1,93 @@
+package server.notification;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stands in for the mail server and Twilio in load runs and local testing:
+ * takes every notification without sending it anywhere.
+ *
+ * Each send can be made to take a fixed time, like a provider round trip,
+ * and to fail for a share of the calls, to exercise the outbox retries.
+ * The last notifications are kept in memory, and every one is appended to
+ * a file if one is given.
+ */
+public class FakeNotificationSink implements NotificationSender {
+
+    private static final int RECENT = 1000;
+
+    private final long latencyMillis;
+    private final int failPercent;
+    private final Path file;
+
+    /** Last delivered notifications, newest last; guarded by itself. */
+    private final ArrayDeque<Notification> recent = new ArrayDeque<>();
+
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * @param latencyMillis time each send takes
+     * @param failPercent   share of sends that throw, 0 to 100
+     * @param file          file to append delivered notifications to, or null
+     */
+    public FakeNotificationSink(long latencyMillis, int failPercent, Path file) {
+        this.latencyMillis = Math.max(0, latencyMillis);
+        this.failPercent = Math.max(0, Math.min(100, failPercent));
+        this.file = file;
+    }
+
+    @Override
+    public void send(Notification notification) throws Exception {
+        if (latencyMillis > 0) {
+            Thread.sleep(latencyMillis);
+        }
+        if (failPercent > 0 && ThreadLocalRandom.current().nextInt(100) < failPercent) {
+            failed.incrementAndGet();
+            throw new IOException("Simulated " + notification.channel() + " failure");
+        }
+        synchronized (recent) {
+            if (recent.size() == RECENT) {
+                recent.removeFirst();
+            }
+            recent.addLast(notification);
+            if (file != null) {
+                Files.writeString(file, LocalDateTime.now() + " " + notification.channel() + " "
+                                + notification.recipient() + " " + notification.subject() + "\n",
+                        StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+        }
+        delivered.incrementAndGet();
+    }
+
+    /** The last notifications delivered, oldest first. */
+    public List<Notification> getRecent() {
+        synchronized (recent) {
+            return new ArrayList<>(recent);
+        }
+    }
+
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    /** Sends that threw on purpose. */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    @Override
+    public String toString() {
+        return "FakeNotificationSink [latencyMs=" + latencyMillis + ", failPercent=" + failPercent
+                + ", file=" + file + ", delivered=" + getDeliveredCount() + ", failed=" + getFailedCount() + "]";
+    }
+}
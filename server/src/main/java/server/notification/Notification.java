@@ -0,0 +1,20 @@
+package server.notification;
+
+/**
+ * One email or text message to a user.
+ *
+ * @param recipient email address, or phone number as the user typed it
+ * @param subject   email subject; null for SMS
+ */
+public record Notification(Channel channel, String recipient, String subject, String body) {
+
+    public enum Channel { EMAIL, SMS }
+
+    public static Notification email(String recipient, String subject, String body) {
+        return new Notification(Channel.EMAIL, recipient, subject, body);
+    }
+
+    public static Notification sms(String recipient, String body) {
+        return new Notification(Channel.SMS, recipient, null, body);
+    }
+}
@@ -0,0 +1,336 @@
+package server.notification;
+
+import server.HibernateUtil;
+import server.ServerConfig;
+import server.metrics.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the {@link NotificationOutbox} in the background, so purchases and
+ * registrations never wait for the mail server or Twilio.
+ *
+ * One poller thread claims due rows, at most as many as the workers have
+ * room for, and hands them in batches of up to {@code batchSize} to a small
+ * pool of "NotificationWorker" threads; a worker sends a batch with one
+ * {@link NotificationSender#sendAll} (one SMTP connection) and deletes the
+ * sent rows with one statement. The poller looks every {@code pollMillis},
+ * and sooner when {@link #notifyEnqueued()} says a transaction just added
+ * rows.
+ *
+ * A failed send is tried again after {@code retryBaseMillis}, then twice
+ * that, and so on up to an hour; after {@code maxAttempts} the row is left
+ * as FAILED. Rows are sent at least once: a send whose row could not be
+ * deleted afterwards, or that was cut short by a restart, is sent again.
+ */
+public class NotificationDispatcher {
+
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private static NotificationDispatcher instance;
+
+    private final NotificationOutbox outbox;
+    private final NotificationSender sender;
+    private final ThreadPoolExecutor workers;
+    /** Rows claimed and not yet sent or put back; two batches per worker. */
+    private final Semaphore inFlight;
+    private final int inFlightLimit;
+    private final int batchSize;
+    private final long pollMillis;
+    private final int maxAttempts;
+    private final long retryBaseMillis;
+    private final Thread poller;
+    private final Object wakeLock = new Object();
+    private boolean wakeRequested;   // guarded by wakeLock
+    private volatile boolean running = true;
+
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final LatencyHistogram sendLatency = new LatencyHistogram();
+
+    /**
+     * @param threads         batches sent at the same time
+     * @param batchSize       most notifications a worker sends at once
+     * @param pollMillis      longest wait between looks at the outbox
+     * @param maxAttempts     sends tried before a row is left as FAILED
+     * @param retryBaseMillis wait after the first failed send; doubled after each later one
+     */
+    public NotificationDispatcher(NotificationOutbox outbox, NotificationSender sender, int threads, int batchSize,
+                                  long pollMillis, int maxAttempts, long retryBaseMillis) {
+        int size = Math.max(1, threads);
+        this.outbox = outbox;
+        this.sender = sender;
+        this.batchSize = Math.max(1, batchSize);
+        this.inFlightLimit = size * this.batchSize * 2;
+        this.inFlight = new Semaphore(inFlightLimit);
+        this.pollMillis = Math.max(10, pollMillis);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBaseMillis = Math.max(1, retryBaseMillis);
+        this.workers = new ThreadPoolExecutor(
+                size, size,
+                0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                notificationThreads());
+        this.poller = new Thread(this::run, "notification-poller");
+        this.poller.setDaemon(true);
+    }
+
+    /** The server's dispatcher, configured from {@link ServerConfig}. */
+    public static synchronized NotificationDispatcher getInstance() {
+        if (instance == null) {
+            instance = new NotificationDispatcher(
+                    new NotificationOutbox(HibernateUtil.getSessionFactory()),
+                    NotificationSender.fromConfig(),
+                    ServerConfig.notifyWorkers(), ServerConfig.notifyBatchSize(), ServerConfig.notifyPollMillis(),
+                    ServerConfig.notifyMaxAttempts(), ServerConfig.notifyRetryBaseMillis());
+        }
+        return instance;
+    }
+
+    /**
+     * Creates the outbox table if needed, puts back rows a previous run left
+     * claimed, and starts polling.
+     *
+     * @return rows put back
+     */
+    public int start() {
+        outbox.ensureTable();
+        int requeued = outbox.requeueClaimed();
+        poller.start();
+        return requeued;
+    }
+
+    /** Tells the server's dispatcher, if started, that a committed transaction added rows. */
+    public static void notifyEnqueued() {
+        NotificationDispatcher dispatcher;
+        synchronized (NotificationDispatcher.class) {
+            dispatcher = instance;
+        }
+        if (dispatcher != null) {
+            dispatcher.wake();
+        }
+    }
+
+    /** Stops the server's dispatcher if it was created. */
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.close();
+        }
+    }
+
+    /**
+     * Stops claiming rows and waits briefly for the sends in progress; rows
+     * still claimed after that are put back on the next start.
+     */
+    public void close() {
+        running = false;
+        wake();
+        try {
+            poller.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        if (sender instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                System.err.println("[Notification] Cannot close " + sender + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // ==================== DISPATCH ====================
+
+    private void run() {
+        while (running) {
+            int room = inFlight.availablePermits();
+            int taken = 0;
+            if (room > 0) {
+                try {
+                    taken = dispatch(outbox.claim(room));
+                } catch (Exception e) {
+                    System.err.println("[Notification] Cannot read the outbox: " + e.getMessage());
+                }
+            }
+            if (room == 0 || taken < room) {
+                await();    // every worker is busy, or nothing more is due
+            }
+        }
+    }
+
+    /** Splits the claimed rows evenly over the workers, at most {@code batchSize} each. */
+    private int dispatch(List<NotificationOutbox.Entry> entries) {
+        claimed.addAndGet(entries.size());
+        int threads = getWorkerThreads();
+        int chunk = Math.max(1, Math.min(batchSize, (entries.size() + threads - 1) / threads));
+        for (int from = 0; from < entries.size(); from += chunk) {
+            List<NotificationOutbox.Entry> batch = entries.subList(from, Math.min(from + chunk, entries.size()));
+            inFlight.acquireUninterruptibly(batch.size());
+            workers.execute(() -> deliver(batch));
+        }
+        return entries.size();
+    }
+
+    private void deliver(List<NotificationOutbox.Entry> batch) {
+        try {
+            List<Notification> notifications = new ArrayList<>(batch.size());
+            for (NotificationOutbox.Entry entry : batch) {
+                notifications.add(entry.notification());
+            }
+            long start = System.nanoTime();
+            List<Exception> failures;
+            try {
+                failures = sender.sendAll(notifications);
+            } catch (RuntimeException e) {
+                failures = Collections.nCopies(batch.size(), e);
+            }
+            sendLatency.record(System.nanoTime() - start);
+            batches.incrementAndGet();
+
+            List<Long> sentIds = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                if (failures.get(i) == null) {
+                    sentIds.add(batch.get(i).id());
+                } else {
+                    giveBack(batch.get(i), failures.get(i));
+                }
+            }
+            sent.addAndGet(sentIds.size());
+            try {
+                outbox.delivered(sentIds);
+            } catch (Exception e) {
+                System.err.println("[Notification] Cannot remove " + sentIds.size() + " sent rows: " + e.getMessage());
+            }
+        } finally {
+            inFlight.release(batch.size());
+            wake();
+        }
+    }
+
+    private void giveBack(NotificationOutbox.Entry entry, Exception cause) {
+        int attempts = entry.attempts() + 1;
+        String error = cause.getClass().getSimpleName() + ": " + cause.getMessage();
+        try {
+            if (attempts >= maxAttempts) {
+                outbox.failed(entry.id(), attempts, error);
+                failed.incrementAndGet();
+                System.err.println("[Notification] Gave up on " + entry.notification().channel() + " to "
+                        + entry.notification().recipient() + " after " + attempts + " attempts: " + error);
+            } else {
+                outbox.retryLater(entry.id(), attempts, error, backoffMillis(attempts));
+                retried.incrementAndGet();
+            }
+        } catch (Exception e) {
+            System.err.println("[Notification] Cannot update outbox row " + entry.id() + ": " + e.getMessage());
+        }
+    }
+
+    /** Wait before the next send of a row that failed {@code attempts} times. */
+    long backoffMillis(int attempts) {
+        int doublings = Math.min(attempts - 1, 30);
+        return Math.min(retryBaseMillis << doublings, MAX_BACKOFF_MILLIS);
+    }
+
+    private void wake() {
+        synchronized (wakeLock) {
+            wakeRequested = true;
+            wakeLock.notifyAll();
+        }
+    }
+
+    private void await() {
+        synchronized (wakeLock) {
+            try {
+                if (!wakeRequested && running) {
+                    wakeLock.wait(pollMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            wakeRequested = false;
+        }
+    }
+
+    // ==================== METRICS ====================
+
+    public int getWorkerThreads() {
+        return workers.getMaximumPoolSize();
+    }
+
+    public NotificationSender getSender() {
+        return sender;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /** Batches handed to the sender since startup. */
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    /** Rows claimed since startup, retries included. */
+    public long getClaimedCount() {
+        return claimed.get();
+    }
+
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    /** Sends that failed and were put back for later. */
+    public long getRetriedCount() {
+        return retried.get();
+    }
+
+    /** Rows given up on after the last attempt. */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /** Time of each batch sent to the providers, failed ones included. */
+    public LatencyHistogram getSendLatency() {
+        return sendLatency;
+    }
+
+    @Override
+    public String toString() {
+        return "NotificationDispatcher [workers=" + getWorkerThreads()
+                + ", inFlight=" + (inFlightLimit - inFlight.availablePermits())
+                + ", claimed=" + getClaimedCount() + ", batches=" + getBatchCount() + ", sent=" + getSentCount()
+                + ", retried=" + getRetriedCount() + ", failed=" + getFailedCount()
+                + ", sendP99Us=" + sendLatency.getPercentileMicros(99) + "]";
+    }
+
+    private static ThreadFactory notificationThreads() {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, "NotificationWorker-" + count.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,213 @@
+package server.notification;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The notification_outbox table: notifications waiting to be sent.
+ *
+ * {@link #enqueue} writes rows on the connection of the caller's
+ * transaction, so a notification exists exactly when the purchase or
+ * registration that caused it was committed. The dispatcher then moves each
+ * row PENDING → SENDING ({@link #claim}) and deletes it once sent, or puts
+ * it back as PENDING with a later {@code next_attempt_at}, or leaves it as
+ * FAILED after the last attempt.
+ */
+public class NotificationOutbox {
+
+    private static final String INSERT = """
+            INSERT INTO notification_outbox
+                (channel, recipient, subject, body, status, attempts, next_attempt_at, created_at)
+            VALUES (?, ?, ?, ?, 'PENDING', 0, NOW(3), NOW(3))
+            """;
+
+    /**
+     * A claimed row.
+     *
+     * @param attempts failed sends so far
+     */
+    public record Entry(long id, Notification notification, int attempts) {}
+
+    private final SessionFactory sf;
+    private boolean tableChecked;
+
+    public NotificationOutbox(SessionFactory sf) {
+        this.sf = sf;
+    }
+
+    /**
+     * Adds notifications to the outbox in the transaction of {@code connection}.
+     * The table must exist already ({@link #ensureTable()}); DDL here would
+     * commit the caller's transaction.
+     */
+    public static void enqueue(Connection connection, List<Notification> notifications) throws SQLException {
+        if (notifications.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement ps = connection.prepareStatement(INSERT)) {
+            for (Notification n : notifications) {
+                ps.setString(1, n.channel().name());
+                ps.setString(2, n.recipient());
+                ps.setString(3, n.subject());
+                ps.setString(4, n.body());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    public synchronized void ensureTable() {
+        if (tableChecked) {
+            return;
+        }
+        try (Session s = sf.openSession()) {
+            s.beginTransaction();
+            s.createNativeQuery("""
+                CREATE TABLE IF NOT EXISTS notification_outbox (
+                    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                    channel VARCHAR(8) NOT NULL,
+                    recipient VARCHAR(255) NOT NULL,
+                    subject VARCHAR(255) NULL,
+                    body TEXT NOT NULL,
+                    status VARCHAR(8) NOT NULL,
+                    attempts INT NOT NULL DEFAULT 0,
+                    next_attempt_at DATETIME(3) NOT NULL,
+                    created_at DATETIME(3) NOT NULL,
+                    last_error VARCHAR(500) NULL,
+                    INDEX idx_outbox_due (status, next_attempt_at)
+                )
+            """).executeUpdate();
+            s.getTransaction().commit();
+        }
+        tableChecked = true;
+    }
+
+    // ==================== DISPATCH ====================
+
+    /**
+     * Marks up to {@code limit} due rows as SENDING, oldest due first.
+     */
+    public List<Entry> claim(int limit) {
+        try (Session s = sf.openSession()) {
+            s.beginTransaction();
+            @SuppressWarnings("unchecked")
+            List<Object[]> rows = s.createNativeQuery("""
+                SELECT id, channel, recipient, subject, body, attempts
+                  FROM notification_outbox
+                 WHERE status = 'PENDING' AND next_attempt_at <= NOW(3)
+                 ORDER BY next_attempt_at
+                 LIMIT :limit
+                   FOR UPDATE
+            """)
+                    .setParameter("limit", limit)
+                    .getResultList();
+
+            List<Entry> entries = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                entries.add(new Entry(((Number) row[0]).longValue(),
+                        new Notification(Notification.Channel.valueOf((String) row[1]),
+                                (String) row[2], (String) row[3], (String) row[4]),
+                        ((Number) row[5]).intValue()));
+            }
+            if (!entries.isEmpty()) {
+                s.createNativeQuery("UPDATE notification_outbox SET status = 'SENDING' WHERE id IN (:ids)")
+                        .setParameterList("ids", entries.stream().map(Entry::id).toList())
+                        .executeUpdate();
+            }
+            s.getTransaction().commit();
+            return entries;
+        }
+    }
+
+    /** Removes rows that were sent, in one statement. */
+    public void delivered(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        try (Session s = sf.openSession()) {
+            s.beginTransaction();
+            s.createNativeQuery("DELETE FROM notification_outbox WHERE id IN (:ids)")
+                    .setParameterList("ids", ids)
+                    .executeUpdate();
+            s.getTransaction().commit();
+        }
+    }
+
+    /**
+     * Puts a row back to be tried again after {@code delayMillis}.
+     *
+     * @param attempts failed sends including this one
+     */
+    public void retryLater(long id, int attempts, String error, long delayMillis) {
+        try (Session s = sf.openSession()) {
+            s.beginTransaction();
+            s.createNativeQuery("""
+                UPDATE notification_outbox
+                   SET status = 'PENDING', attempts = :attempts, last_error = :error,
+                       next_attempt_at = DATE_ADD(NOW(3), INTERVAL :delay MICROSECOND)
+                 WHERE id = :id
+            """)
+                    .setParameter("attempts", attempts)
+                    .setParameter("error", truncate(error))
+                    .setParameter("delay", delayMillis * 1000)
+                    .setParameter("id", id)
+                    .executeUpdate();
+            s.getTransaction().commit();
+        }
+    }
+
+    /** Gives up on a row; it stays as FAILED with its last error. */
+    public void failed(long id, int attempts, String error) {
+        try (Session s = sf.openSession()) {
+            s.beginTransaction();
+            s.createNativeQuery("""
+                UPDATE notification_outbox
+                   SET status = 'FAILED', attempts = :attempts, last_error = :error
+                 WHERE id = :id
+            """)
+                    .setParameter("attempts", attempts)
+                    .setParameter("error", truncate(error))
+                    .setParameter("id", id)
+                    .executeUpdate();
+            s.getTransaction().commit();
+        }
+    }
+
+    /**
+     * Puts rows left SENDING by a previous run back to PENDING. Some of them
+     * may have been sent just before it stopped and will be sent twice.
+     *
+     * @return rows put back
+     */
+    public int requeueClaimed() {
+        try (Session s = sf.openSession()) {
+            s.beginTransaction();
+            int rows = s.createNativeQuery("UPDATE notification_outbox SET status = 'PENDING' WHERE status = 'SENDING'")
+                    .executeUpdate();
+            s.getTransaction().commit();
+            return rows;
+        }
+    }
+
+    /** Rows waiting to be sent, due or not. */
+    public long countPending() {
+        try (Session s = sf.openSession()) {
+            Object count = s.createNativeQuery("SELECT COUNT(*) FROM notification_outbox WHERE status = 'PENDING'")
+                    .getSingleResult();
+            return ((Number) count).longValue();
+        }
+    }
+
+    private static String truncate(String error) {
+        if (error == null) {
+            return null;
+        }
+        return error.length() <= 500 ? error : error.substring(0, 500);
+    }
+}
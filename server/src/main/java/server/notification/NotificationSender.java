@@ -0,0 +1,45 @@
+package server.notification;
+
+import server.ServerConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Delivers notifications taken from the outbox; called from several
+ * dispatcher workers at once.
+ */
+public interface NotificationSender {
+
+    /**
+     * Delivers one notification, or throws so that it is tried again later.
+     */
+    void send(Notification notification) throws Exception;
+
+    /**
+     * Delivers several notifications; by default one {@link #send} at a time.
+     *
+     * @return for each notification in order, null if it was delivered, or why it was not
+     */
+    default List<Exception> sendAll(List<Notification> batch) {
+        List<Exception> failures = new ArrayList<>(batch.size());
+        for (Notification notification : batch) {
+            try {
+                send(notification);
+                failures.add(null);
+            } catch (Exception e) {
+                failures.add(e);
+            }
+        }
+        return failures;
+    }
+
+    /** The sender chosen by {@link ServerConfig#notifySink()}. */
+    static NotificationSender fromConfig() {
+        if ("fake".equalsIgnoreCase(ServerConfig.notifySink())) {
+            return new FakeNotificationSink(ServerConfig.notifyFakeLatencyMillis(),
+                    ServerConfig.notifyFakeFailPercent(), ServerConfig.notifyFakeFile());
+        }
+        return new SmtpTwilioSender();
+    }
+}
@@ -0,0 +1,45 @@
+package server.notification;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spaces calls evenly to stay under a provider's rate limit: each
+ * {@link #acquire()} waits until 1/rate seconds after the previous one.
+ */
+public class RateLimiter {
+
+    private final long intervalNanos;
+    private long next;      // guarded by this
+
+    /**
+     * @param perSecond calls allowed per second; 0 or less for no limit
+     */
+    public RateLimiter(double perSecond) {
+        this.intervalNanos = perSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / perSecond) : 0;
+    }
+
+    /** Waits for this caller's turn. */
+    public void acquire() throws InterruptedException {
+        if (intervalNanos == 0) {
+            return;
+        }
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (next - now < 0) {
+                next = now;
+            }
+            wait = next - now;
+            next += intervalNanos;
+        }
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return intervalNanos == 0 ? "unlimited"
+                : String.format("%.1f/s", (double) TimeUnit.SECONDS.toNanos(1) / intervalNanos);
+    }
+}
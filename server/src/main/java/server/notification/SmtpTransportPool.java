@@ -0,0 +1,230 @@
+package server.notification;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+import java.util.Properties;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Authenticated SMTP connections kept open between sends.
+ *
+ * Opening a connection to the mail server costs a TCP handshake, STARTTLS
+ * and AUTH, several round trips before the first message; a connection from
+ * the pool skips all of them. At most {@code maxConnections} are open at
+ * once, {@link #lease()} waiting for one to come back when all are in use.
+ * A connection is closed after {@code messagesPerConnection} messages, since
+ * servers cap that, and checked with a NOOP before reuse when it has been
+ * idle long enough for the server to drop it.
+ */
+public class SmtpTransportPool implements AutoCloseable {
+
+    /** Idle time after which a connection is checked before it is reused. */
+    private static final long CHECK_AFTER_IDLE_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final Session session;
+    private final String host;
+    private final int port;
+    private final String user;
+    private final String password;
+    private final int maxConnections;
+    private final int messagesPerConnection;
+
+    /** Open connections not leased, most recently used first. */
+    private final LinkedBlockingDeque<Connection> idle = new LinkedBlockingDeque<>();
+    private final Semaphore available;
+    private volatile boolean closed;
+
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private static final class Connection {
+        final Transport transport;
+        int messages;
+        long lastUsed = System.currentTimeMillis();
+
+        Connection(Transport transport) {
+            this.transport = transport;
+        }
+    }
+
+    /**
+     * @param user     SMTP login, or null for a server without AUTH
+     * @param startTls upgrade the connection to TLS before logging in
+     */
+    public SmtpTransportPool(String host, int port, String user, String password, boolean startTls,
+                             int maxConnections, int messagesPerConnection) {
+        Properties prop = new Properties();
+        prop.put("mail.smtp.host", host);
+        prop.put("mail.smtp.port", String.valueOf(port));
+        prop.put("mail.smtp.auth", String.valueOf(user != null));
+        prop.put("mail.smtp.starttls.enable", String.valueOf(startTls));
+        prop.put("mail.smtp.connectiontimeout", "10000");
+        prop.put("mail.smtp.timeout", "10000");
+        prop.put("mail.smtp.writetimeout", "10000");
+        this.session = Session.getInstance(prop);
+        this.host = host;
+        this.port = port;
+        this.user = user;
+        this.password = password;
+        this.maxConnections = Math.max(1, maxConnections);
+        this.messagesPerConnection = Math.max(1, messagesPerConnection);
+        this.available = new Semaphore(this.maxConnections);
+    }
+
+    /** The session to build messages with. */
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * Takes a connection, waiting while all of them are leased. Close the
+     * lease to give it back.
+     */
+    public Lease lease() throws MessagingException, InterruptedException {
+        if (closed) {
+            throw new MessagingException("SMTP pool is closed");
+        }
+        available.acquire();
+        try {
+            return new Lease(take());
+        } catch (MessagingException | RuntimeException e) {
+            available.release();
+            throw e;
+        }
+    }
+
+    private Connection take() throws MessagingException {
+        Connection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            if (System.currentTimeMillis() - connection.lastUsed < CHECK_AFTER_IDLE_MILLIS
+                    || connection.transport.isConnected()) {
+                return connection;
+            }
+            discard(connection);
+        }
+        Transport transport = session.getTransport("smtp");
+        transport.connect(host, port, user, password);
+        opened.incrementAndGet();
+        return new Connection(transport);
+    }
+
+    private void discard(Connection connection) {
+        dropped.incrementAndGet();
+        try {
+            connection.transport.close();
+        } catch (MessagingException ignored) {
+            // already gone
+        }
+    }
+
+    /** One leased connection; not for use by several threads. */
+    public final class Lease implements AutoCloseable {
+
+        private Connection connection;      // null once discarded
+        private boolean broken;
+        private boolean returned;
+
+        private Lease(Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * Sends one message on this connection. If the server dropped the
+         * connection, the message is sent again once on a new one.
+         */
+        public void send(MimeMessage message) throws MessagingException {
+            if (connection != null && connection.messages >= messagesPerConnection) {
+                discard(connection);    // the server would refuse the next one
+                connection = null;
+            }
+            if (connection == null) {
+                connection = take();
+            }
+            message.saveChanges();
+            try {
+                connection.transport.sendMessage(message, message.getAllRecipients());
+            } catch (MessagingException e) {
+                if (connection.transport.isConnected()) {
+                    throw e;    // the message was refused, the connection is fine
+                }
+                discard(connection);
+                connection = null;
+                connection = take();
+                try {
+                    connection.transport.sendMessage(message, message.getAllRecipients());
+                } catch (MessagingException retry) {
+                    broken = true;
+                    throw retry;
+                }
+            }
+            connection.messages++;
+            connection.lastUsed = System.currentTimeMillis();
+            messages.incrementAndGet();
+        }
+
+        @Override
+        public void close() {
+            if (returned) {
+                return;
+            }
+            returned = true;
+            if (connection != null) {
+                if (broken || closed || connection.messages >= messagesPerConnection) {
+                    discard(connection);
+                } else {
+                    idle.offerFirst(connection);
+                }
+                connection = null;
+            }
+            available.release();
+        }
+    }
+
+    /** Closes the idle connections; leased ones are closed when given back. */
+    @Override
+    public void close() {
+        closed = true;
+        Connection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            discard(connection);
+        }
+    }
+
+    // ==================== METRICS ====================
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    /** Connections opened since startup; each costs the handshake and login. */
+    public long getOpenedCount() {
+        return opened.get();
+    }
+
+    public long getMessageCount() {
+        return messages.get();
+    }
+
+    /** Connections closed for their message cap, a failure or the pool closing. */
+    public long getClosedCount() {
+        return dropped.get();
+    }
+
+    @Override
+    public String toString() {
+        return "SmtpTransportPool [" + host + ":" + port
+                + ", connections=" + maxConnections + " (" + getIdleConnections() + " idle)"
+                + ", opened=" + getOpenedCount() + ", messages=" + getMessageCount()
+                + ", closed=" + getClosedCount() + "]";
+    }
+}
@@ -0,0 +1,184 @@
+package server.notification;
+
+import com.twilio.Twilio;
+import com.twilio.rest.api.v2010.account.Message;
+import com.twilio.type.PhoneNumber;
+import server.NotificationService;
+import server.ServerConfig;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sends email through an SMTP server (Gmail by default) and SMS through
+ * Twilio, with the credentials in the environment (EMAIL_USER,
+ * EMAIL_PASSWORD, TWILIO_ACCOUNT_SID, TWILIO_AUTH_TOKEN, TWILIO_NUMBER).
+ *
+ * Email goes over the connections of an {@link SmtpTransportPool}, a whole
+ * batch on one connection; Twilio is initialized once. Each channel is
+ * throttled to its provider's rate limit.
+ *
+ * A channel without credentials is skipped with a warning rather than
+ * failed, since no retry would help.
+ */
+public class SmtpTwilioSender implements NotificationSender, AutoCloseable {
+
+    private static final String EMAIL_USER = System.getenv("EMAIL_USER");
+    private static final String EMAIL_PASSWORD = System.getenv("EMAIL_PASSWORD");
+
+    private static final String TWILIO_ACCOUNT_SID = System.getenv("TWILIO_ACCOUNT_SID");
+    private static final String TWILIO_AUTH_TOKEN = System.getenv("TWILIO_AUTH_TOKEN");
+    private static final String TWILIO_NUMBER = System.getenv("TWILIO_NUMBER");
+
+    private final SmtpTransportPool smtp;       // null without email credentials
+    private final String from;
+    private final RateLimiter emailLimit;
+    private final RateLimiter smsLimit;
+    private volatile boolean twilioReady;
+
+    /** Gmail and Twilio as configured in {@link ServerConfig} and the environment. */
+    public SmtpTwilioSender() {
+        this(EMAIL_USER == null || EMAIL_PASSWORD == null ? null
+                        : new SmtpTransportPool(ServerConfig.notifySmtpHost(), ServerConfig.notifySmtpPort(),
+                                EMAIL_USER, EMAIL_PASSWORD, true,
+                                ServerConfig.notifySmtpConnections(), ServerConfig.notifySmtpMessagesPerConnection()),
+                EMAIL_USER,
+                new RateLimiter(ServerConfig.notifySmtpPerSecond()),
+                new RateLimiter(ServerConfig.notifySmsPerSecond()));
+    }
+
+    /**
+     * @param smtp connections to send email on, or null to skip email
+     * @param from sender address
+     */
+    public SmtpTwilioSender(SmtpTransportPool smtp, String from, RateLimiter emailLimit, RateLimiter smsLimit) {
+        this.smtp = smtp;
+        this.from = from;
+        this.emailLimit = emailLimit;
+        this.smsLimit = smsLimit;
+    }
+
+    @Override
+    public void send(Notification notification) throws Exception {
+        Exception failure = sendAll(List.of(notification)).get(0);
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /** Sends the emails of the batch on one pooled connection, then the SMS. */
+    @Override
+    public List<Exception> sendAll(List<Notification> batch) {
+        Exception[] failures = new Exception[batch.size()];
+        sendEmails(batch, failures);
+        for (int i = 0; i < batch.size(); i++) {
+            Notification n = batch.get(i);
+            if (n.channel() == Notification.Channel.SMS) {
+                try {
+                    sendSMS(n.recipient(), n.body());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failures[i] = e;
+                } catch (Exception e) {
+                    failures[i] = e;
+                }
+            }
+        }
+        return Arrays.asList(failures);
+    }
+
+    private void sendEmails(List<Notification> batch, Exception[] failures) {
+        List<Integer> emails = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.get(i).channel() == Notification.Channel.EMAIL) {
+                emails.add(i);
+            }
+        }
+        if (emails.isEmpty()) {
+            return;
+        }
+        if (smtp == null) {
+            System.err.println("[Mail] EMAIL_USER/EMAIL_PASSWORD missing in Environment, not sending "
+                    + emails.size() + " emails");
+            return;
+        }
+        try (SmtpTransportPool.Lease connection = smtp.lease()) {
+            for (int i : emails) {
+                Notification n = batch.get(i);
+                try {
+                    emailLimit.acquire();
+                    MimeMessage message = new MimeMessage(smtp.getSession());
+                    message.setFrom(new InternetAddress(from));
+                    message.setRecipients(MimeMessage.RecipientType.TO, InternetAddress.parse(n.recipient()));
+                    message.setSubject(n.subject());
+                    message.setText(n.body());
+                    connection.send(message);
+                } catch (MessagingException e) {
+                    failures[i] = e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(emails, failures, e);
+        } catch (MessagingException e) {
+            fail(emails, failures, e);     // no connection to the mail server
+        }
+    }
+
+    private static void fail(List<Integer> indexes, Exception[] failures, Exception cause) {
+        for (int i : indexes) {
+            if (failures[i] == null) {
+                failures[i] = cause;
+            }
+        }
+    }
+
+    private void sendSMS(String phoneNumber, String messageText) throws InterruptedException {
+        if (TWILIO_ACCOUNT_SID == null || TWILIO_AUTH_TOKEN == null || TWILIO_NUMBER == null) {
+            System.err.println("[SMS] Twilio credentials are missing in Environment, not sending to " + phoneNumber);
+            return;
+        }
+        initTwilio();
+        smsLimit.acquire();
+        Message message = Message.creator(
+                new PhoneNumber(NotificationService.formatPhoneNumberToInternational(phoneNumber)),
+                new PhoneNumber(TWILIO_NUMBER),
+                messageText
+        ).create();
+
+        System.out.println("[SMS] Message SID: " + message.getSid());
+    }
+
+    private void initTwilio() {
+        if (!twilioReady) {
+            synchronized (this) {
+                if (!twilioReady) {
+                    Twilio.init(TWILIO_ACCOUNT_SID, TWILIO_AUTH_TOKEN);
+                    twilioReady = true;
+                }
+            }
+        }
+    }
+
+    public SmtpTransportPool getSmtpPool() {
+        return smtp;
+    }
+
+    @Override
+    public void close() {
+        if (smtp != null) {
+            smtp.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SmtpTwilioSender [" + (smtp == null ? "email off" : smtp.toString())
+                + ", emailLimit=" + emailLimit + ", sms=" + (TWILIO_ACCOUNT_SID != null)
+                + ", smsLimit=" + smsLimit + "]";
+    }
+}
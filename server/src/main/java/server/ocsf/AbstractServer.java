@@ -1 +1 @@
-// This file contains material supporting section 3.8 of the textbook:// "Object Oriented Software Engineering" and is issued under the open-source// license found at www.lloseng.com package server.ocsf;import java.io.IOException;import java.io.InterruptedIOException;import java.net.ServerSocket;import java.net.Socket;/*** The <code> AbstractServer </code> class maintains a thread that waits* for connection attempts from clients. When a connection attempt occurs* it creates a new <code> ConnectionToClient </code> instance which* runs as a thread. When a client is thus connected to the* server, the two programs can then exchange <code> Object </code>* instances.<p>** Method <code> handleMessageFromClient </code> must be defined by* a concrete subclass. Several other hook methods may also be* overriden.<p>** Several public service methods are provided to applications that use* this framework, and several hook methods are also available<p>** Project Name: OCSF (Object Client-Server Framework)<p>** @author Dr Robert Lagani&egrave;re* @author Dr Timothy C. Lethbridge* @author Fran&ccedil;ois B&eacute;langer* @author Paul Holden* @version February 2001 (2.12)* @see ConnectionToClient*/public abstract class AbstractServer implements Runnable{  // INSTANCE VARIABLES *********************************************  /**   * The server socket: listens for clients who want to connect.   */  private ServerSocket serverSocket = null;  /**   * The connection listener thread.   */  private Thread connectionListener;  /**   * The port number   */  private int port;  /**   * The server timeout while for accepting connections.   * After timing out, the server will check to see if a command to   * stop the server has been issued; it not it will resume accepting   * connections.   * Set to half a second by default.   */  private int timeout = 500;  /**   * The maximum queue length; i.e. the maximum number of clients that   * can be waiting to connect.   * Set to 10 by default.   */  private int backlog = 10;  /**   * The thread group associated with client threads. Each member of the   * thread group is a <code> ConnectionToClient </code>.   */  private ThreadGroup clientThreadGroup;  /**   * Indicates if the listening thread is ready to stop.  Set to   * false by default.   */  private boolean readyToStop = false;// CONSTRUCTOR ******************************************************  /**   * Constructs a new server.   *   * @param port the port number on which to listen.   */  public AbstractServer(int port)  {    this.port = port;    this.clientThreadGroup =      new ThreadGroup("ConnectionToClient threads")      {        public void uncaughtException(          Thread thread, Throwable exception)        {          clientException((ConnectionToClient)thread, exception);        }      };  }// INSTANCE METHODS *************************************************  /**   * Begins the thread that waits for new clients.   * If the server is already in listening mode, this   * call has no effect.   *   * @exception IOException if an I/O error occurs   * when creating the server socket.   */  final public void listen() throws IOException  {    if (!isListening())    {      if (serverSocket == null)      {        serverSocket = new ServerSocket(getPort(), backlog);      }      serverSocket.setSoTimeout(timeout);      readyToStop = false;      connectionListener = new Thread(this);      connectionListener.start();    }  }  /**   * Causes the server to stop accepting new connections.   */  final public void stopListening()  {    readyToStop = true;  }  /**   * Closes the server socket and the connections with all clients.   * Any exception thrown while closing a client is ignored.   * If one wishes to catch these exceptions, then clients   * should be individually closed before calling this method.   * The method also stops listening if this thread is running.   * If the server is already closed, this   * call has no effect.   *   * @exception IOException if an I/O error occurs while   * closing the server socket.   */  final synchronized public void close() throws IOException  {    if (serverSocket == null)      return;      stopListening();    try    {      serverSocket.close();    }    finally    {      Thread[] clientThreadList = getClientConnections();      for (int i=0; i<clientThreadList.length; i++)      {         try         {           ((ConnectionToClient)clientThreadList[i]).close();         }         catch(Exception ex) {}      }      serverSocket = null;      serverClosed();    }  }  /**   * Sends a message to every client connected to the server.   * This is merely a utility; a subclass may want to do some checks   * before actually sending messages to all clients.  This method   * can be overriden, but if so it should still perform the general   * function of sending to all clients, perhaps after some kind   * of filtering is done. Any exception thrown while   * sending the message to a particular client is ignored.   *   * @param msg   Object The message to be sent   */  public void sendToAllClients(Object msg)  {    Thread[] clientThreadList = getClientConnections();    for (int i=0; i<clientThreadList.length; i++)    {      try      {        ((ConnectionToClient)clientThreadList[i]).sendToClient(msg);      }      catch (Exception ex) {}    }  }// ACCESSING METHODS ------------------------------------------------  /**   * Returns true if the server is ready to accept new clients.   *   * @return true if the server is listening.   */  final public boolean isListening()  {    return (connectionListener != null);  }  /**   * Returns an array containing the existing   * client connections. This can be used by   * concrete subclasses to implement messages that do something with   * each connection (e.g. kill it, send a message to it etc.).   * Remember that after this array is obtained, some clients   * in this migth disconnect. New clients can also connect,   * these later will not appear in the array.   *   * @return an array of <code>Thread</code> containing   * <code>ConnectionToClient</code> instances.   */  synchronized final public Thread[] getClientConnections()  {    Thread[] clientThreadList = new      Thread[clientThreadGroup.activeCount()];    clientThreadGroup.enumerate(clientThreadList);    return clientThreadList;  }  /**   * Counts the number of clients currently connected.   *   * @return the number of clients currently connected.   */  final public int getNumberOfClients()  {    return clientThreadGroup.activeCount();  }  /**   * Returns the port number.   *   * @return the port number.   */  final public int getPort()  {    return port;  }  /**   * Sets the port number for the next connection.   * The server must be closed and restarted for the port   * change to be in effect.   *   * @param port the port number.   */  final public void setPort(int port)  {    this.port = port;  }  /**   * Sets the timeout time when accepting connections.   * The default is half a second. This means that stopping the   * server may take up to timeout duration to actually stop.   * The server must be stopped and restarted for the timeout   * change to be effective.   *   * @param timeout the timeout time in ms.   */  final public void setTimeout(int timeout)  {    this.timeout = timeout;  }  /**   * Sets the maximum number of waiting connections accepted by the   * operating system. The default is 20.   * The server must be closed and restarted for the backlog   * change to be in effect.   *   * @param backlog the maximum number of connections.   */  final public void setBacklog(int backlog)  {    this.backlog = backlog;  }// RUN METHOD -------------------------------------------------------  /**   * Runs the listening thread that allows clients to connect.   * Not to be called.   */  final public void run()  {    serverStarted();    try    {      while(!readyToStop)      {        try        {          Socket clientSocket = serverSocket.accept();          synchronized(this)          {            ConnectionToClient c = new ConnectionToClient(              this.clientThreadGroup, clientSocket, this);          }        }        catch (InterruptedIOException exception)        {        }      }      serverStopped();    }    catch (IOException exception)    {      if (!readyToStop)      {        listeningException(exception);      }      else      {        serverStopped();      }    }    finally    {      readyToStop = true;      connectionListener = null;    }  }// METHODS DESIGNED TO BE OVERRIDDEN BY CONCRETE SUBCLASSES ---------  /**   * Hook method called each time a new client connection is   * accepted. The default implementation does nothing.   * @param client the connection connected to the client.   */  protected void clientConnected(ConnectionToClient client) {}  /**   * Hook method called each time a client disconnects.   * The default implementation does nothing. The method   * may be overridden by subclasses but should remains synchronized.   *   * @param client the connection with the client.   */  synchronized protected void clientDisconnected(    ConnectionToClient client) {}  /**   * Hook method called each time an exception is thrown in a   * ConnectionToClient thread.   * The method may be overridden by subclasses but should remains   * synchronized.   *   * @param client the client that raised the exception.   * @param Throwable the exception thrown.   */  synchronized protected void clientException(    ConnectionToClient client, Throwable exception) {}  /**   * Hook method called when the server stops accepting   * connections because an exception has been raised.   * The default implementation does nothing.   * This method may be overriden by subclasses.   *   * @param exception the exception raised.   */  protected void listeningException(Throwable exception) {}  /**   * Hook method called when the server starts listening for   * connections.  The default implementation does nothing.   * The method may be overridden by subclasses.   */  protected void serverStarted() {}  /**   * Hook method called when the server stops accepting   * connections.  The default implementation   * does nothing. This method may be overriden by subclasses.   */  protected void serverStopped() {}  /**   * Hook method called when the server is clased.   * The default implementation does nothing. This method may be   * overriden by subclasses. When the server is closed while still   * listening, serverStopped() will also be called.   */  protected void serverClosed() {}  /**   * Handles a command sent from one client to the server.   * This MUST be implemented by subclasses, who should respond to   * messages.   * This method is called by a synchronized method so it is also   * implcitly synchronized.   *   * @param msg   the message sent.   * @param client the connection connected to the client that   *  sent the message.   */  protected abstract void handleMessageFromClient(    Object msg, ConnectionToClient client);// METHODS TO BE USED FROM WITHIN THE FRAMEWORK ONLY ----------------  /**   * Receives a command sent from the client to the server.   * Called by the run method of <code>ConnectionToClient</code>   * instances that are watching for messages coming from the server   * This method is synchronized to ensure that whatever effects it has   * do not conflict with work being done by other threads. The method   * simply calls the <code>handleMessageFromClient</code> slot method.   *   * @param msg   the message sent.   * @param client the connection connected to the client that   *  sent the message.   */  final void receiveMessageFromClient(    Object msg, ConnectionToClient client)  {    this.handleMessageFromClient(msg, client);  }}// End of AbstractServer Class
\ No newline at end of file
+// This file contains material supporting section 3.8 of the textbook:// "Object Oriented Software Engineering" and is issued under the open-source// license found at www.lloseng.com package server.ocsf;import java.io.IOException;import java.io.InterruptedIOException;import java.net.ServerSocket;import java.net.Socket;import java.nio.ByteBuffer;import java.util.HashMap;import java.util.Map;import java.util.Set;import java.util.concurrent.ConcurrentHashMap;import java.util.concurrent.Executors;import java.util.concurrent.ScheduledExecutorService;import java.util.concurrent.TimeUnit;import java.util.concurrent.atomic.AtomicLong;/*** The <code> AbstractServer </code> class maintains a thread that waits* for connection attempts from clients. When a connection attempt occurs* it creates a new <code> ConnectionToClient </code> instance which* runs on its own thread, or on a shared event loop in NIO mode (see* <code>TransportMode</code>). When a client is thus connected to the* server, the two programs can then exchange <code> Object </code>* instances.<p>** Method <code> handleMessageFromClient </code> must be defined by* a concrete subclass. Several other hook methods may also be* overriden.<p>** Several public service methods are provided to applications that use* this framework, and several hook methods are also available<p>** Project Name: OCSF (Object Client-Server Framework)<p>** @author Dr Robert Lagani&egrave;re* @author Dr Timothy C. Lethbridge* @author Fran&ccedil;ois B&eacute;langer* @author Paul Holden* @version February 2001 (2.12)* @see ConnectionToClient*/public abstract class AbstractServer implements Runnable{  // INSTANCE VARIABLES *********************************************  /**   * The server socket: listens for clients who want to connect.   */  private ServerSocket serverSocket = null;  /**   * The connection listener thread.   */  private Thread connectionListener;  /**   * The port number   */  private int port;  /**   * The server timeout while for accepting connections.   * After timing out, the server will check to see if a command to   * stop the server has been issued; it not it will resume accepting   * connections.   * Set to half a second by default.   */  private int timeout = 500;  /**   * The maximum queue length; i.e. the maximum number of clients that   * can be waiting to connect.   * Set to 10 by default.   */  private int backlog = 10;  /**   * The connections currently open, whatever thread model serves   * them. A connection is added when it is accepted and removed when   * its thread ends or its channel closes.   */  private final Set<ConnectionToClient> clientConnections =    ConcurrentHashMap.newKeySet();  /**   * Builds the thread of each accepted connection in the blocking   * and virtual-thread modes.   */  private Thread.Builder connectionThreads;  /**   * Indicates if the listening thread is ready to stop.  Set to   * false by default.   */  private boolean readyToStop = false;  /**   * How connections are accepted and served. Set to   * <code>BLOCKING</code> (one thread per client) by default.   */  private TransportMode transportMode = TransportMode.BLOCKING;  /**   * The selector-based transport, used instead of the server socket   * in NIO mode.   */  private NioTransport nioTransport = null;  /**   * Number of selector threads in NIO mode.   */  private int eventLoopThreads =    Math.max(1, Runtime.getRuntime().availableProcessors() / 2);  /**   * Number of threads running <code>handleMessageFromClient</code>   * in NIO mode.   */  private int handlerThreads = 16;  /**   * Indicates if NIO handlers run on virtual threads, one per task,   * instead of the fixed pool of <code>handlerThreads</code>.   */  private boolean virtualHandlers = false;  /**   * Payload codecs framed clients may ask for, by id. Java   * serialization is always available and not listed here.   */  private final Map<Integer, PayloadCodec> payloadCodecs =    new ConcurrentHashMap<Integer, PayloadCodec>();  /**   * Number of messages that may wait in a connection's outbound queue.   * A client that lets its queue fill up is disconnected.   */  private int outboundQueueCapacity = 64;  /**   * Broadcast statistics: count, fan-out time of the last and of the   * slowest broadcast, total fan-out time, and clients disconnected   * for not keeping up.   */  private final AtomicLong broadcastCount = new AtomicLong();  private final AtomicLong lastBroadcastNanos = new AtomicLong();  private final AtomicLong maxBroadcastNanos = new AtomicLong();  private final AtomicLong totalBroadcastNanos = new AtomicLong();  private final AtomicLong slowConsumerCount = new AtomicLong();  /**   * Time between heartbeat checks, in milliseconds. A heartbeat   * connection that has been silent for half of it is pinged.   * Set to 10 seconds by default; 0 disables heartbeats.   */  private int heartbeatInterval = 10000;  /**   * Number of intervals a heartbeat connection may stay silent before   * it is considered dead and closed. Set to 3 by default.   */  private int heartbeatMissLimit = 3;  /**   * The single thread pinging idle connections and reaping dead ones,   * running while the server is open.   */  private ScheduledExecutorService heartbeatTimer = null;  /**   * Number of connections closed for missing their heartbeats.   */  private final AtomicLong heartbeatTimeoutCount = new AtomicLong();// CONSTRUCTOR ******************************************************  /**   * Constructs a new server.   *   * @param port the port number on which to listen.   */  public AbstractServer(int port)  {    this.port = port;  }// INSTANCE METHODS *************************************************  /**   * Begins the thread that waits for new clients.   * If the server is already in listening mode, this   * call has no effect.   *   * @exception IOException if an I/O error occurs   * when creating the server socket.   */  final public void listen() throws IOException  {    if (!isListening())    {      if (transportMode == TransportMode.NIO)      {        if (nioTransport == null)        {          nioTransport = new NioTransport(this, getPort(), backlog,            eventLoopThreads, virtualHandlers ? 0 : handlerThreads);        }      }      else      {        connectionThreads = transportMode == TransportMode.VIRTUAL_THREADS          ? Thread.ofVirtual().name("ConnectionToClient-", 0)          : Thread.ofPlatform().name("ConnectionToClient-", 0);        if (serverSocket == null)        {          serverSocket = new ServerSocket(getPort(), backlog);        }        serverSocket.setSoTimeout(timeout);      }      startHeartbeats();      readyToStop = false;      connectionListener = new Thread(this);      connectionListener.start();    }  }  /**   * Causes the server to stop accepting new connections.   */  final public void stopListening()  {    readyToStop = true;  }  /**   * Closes the server socket and the connections with all clients.   * Any exception thrown while closing a client is ignored.   * If one wishes to catch these exceptions, then clients   * should be individually closed before calling this method.   * The method also stops listening if this thread is running.   * If the server is already closed, this   * call has no effect.   *   * @exception IOException if an I/O error occurs while   * closing the server socket.   */  final synchronized public void close() throws IOException  {    if (serverSocket == null && nioTransport == null)      return;      stopListening();    try    {      if (serverSocket != null)        serverSocket.close();    }    finally    {      ConnectionToClient[] clientList = getClientConnections();      for (int i=0; i<clientList.length; i++)      {         try         {           clientList[i].close();         }         catch(Exception ex) {}      }      if (nioTransport != null)      {        try        {          nioTransport.close();        }        catch(Exception ex) {}      }      serverSocket = null;      nioTransport = null;      if (heartbeatTimer != null)      {        heartbeatTimer.shutdownNow();        heartbeatTimer = null;      }      serverClosed();    }  }  /**   * Sends a message to every client connected to the server.   * This is merely a utility; a subclass may want to do some checks   * before actually sending messages to all clients.  This method   * can be overriden, but if so it should still perform the general   * function of sending to all clients, perhaps after some kind   * of filtering is done. Any exception thrown while   * sending the message to a particular client is ignored.<p>   *   * The caller never waits for a socket: the message is encoded once   * per payload codec and added to each connection's outbound queue,   * which the transport drains. A client whose queue is full is   * disconnected as a slow consumer.   *   * @param msg   Object The message to be sent   */  public void sendToAllClients(Object msg)  {    long start = System.nanoTime();    ConnectionToClient[] clientList = getClientConnections();    Map<PayloadCodec, ByteBuffer> frames = new HashMap<PayloadCodec, ByteBuffer>();    for (int i=0; i<clientList.length; i++)    {      try      {        if (!clientList[i].offer(msg, frames))          dropSlowConsumer(clientList[i]);      }      catch (Exception ex) {}    }    long elapsed = System.nanoTime() - start;    broadcastCount.incrementAndGet();    lastBroadcastNanos.set(elapsed);    totalBroadcastNanos.addAndGet(elapsed);    maxBroadcastNanos.accumulateAndGet(elapsed, Math::max);  }// ACCESSING METHODS ------------------------------------------------  /**   * Returns true if the server is ready to accept new clients.   *   * @return true if the server is listening.   */  final public boolean isListening()  {    return (connectionListener != null);  }  /**   * Returns an array containing the existing   * client connections. This can be used by   * concrete subclasses to implement messages that do something with   * each connection (e.g. kill it, send a message to it etc.).   * Remember that after this array is obtained, some clients   * in this migth disconnect. New clients can also connect,   * these later will not appear in the array.   *   * @return an array of <code>ConnectionToClient</code> instances.   */  final public ConnectionToClient[] getClientConnections()  {    return clientConnections.toArray(new ConnectionToClient[0]);  }  /**   * Counts the number of clients currently connected.   *   * @return the number of clients currently connected.   */  final public int getNumberOfClients()  {    return clientConnections.size();  }  /**   * Returns the transport currently selected.   *   * @return the transport mode.   */  final public TransportMode getTransportMode()  {    return transportMode;  }  /**   * Selects how connections are accepted and served. The server must   * be closed and restarted for the change to be in effect.   *   * @param transportMode the transport to use.   */  final public void setTransportMode(TransportMode transportMode)  {    this.transportMode = transportMode;  }  /**   * Sets the number of selector threads used in NIO mode.   * The server must be closed and restarted for the change to be   * in effect.   *   * @param eventLoopThreads the number of event loops (at least 1).   */  final public void setEventLoopThreads(int eventLoopThreads)  {    this.eventLoopThreads = Math.max(1, eventLoopThreads);  }  /**   * Makes NIO mode run each handler task on a fresh virtual thread   * instead of a fixed pool, so handlers blocked on JDBC do not hold   * platform threads. The server must be closed and restarted for the   * change to be in effect.   *   * @param virtualHandlers true to use virtual threads.   */  final public void setVirtualHandlers(boolean virtualHandlers)  {    this.virtualHandlers = virtualHandlers;  }  /**   * Sets the number of threads handling messages in NIO mode.   * The server must be closed and restarted for the change to be   * in effect.   *   * @param handlerThreads the handler pool size (at least 1).   */  final public void setHandlerThreads(int handlerThreads)  {    this.handlerThreads = Math.max(1, handlerThreads);  }  /**   * Makes a payload codec available to framed clients that ask for   * it in their handshake. Clients that ask for nothing, or for an   * unknown codec, keep using Java serialization.   *   * @param codec the codec to offer.   */  final public void addPayloadCodec(PayloadCodec codec)  {    payloadCodecs.put(codec.getId(), codec);  }  /**   * Sets how many messages may wait in each connection's outbound   * queue. Only connections accepted after the call are affected.   *   * @param outboundQueueCapacity the queue size (at least 1).   */  final public void setOutboundQueueCapacity(int outboundQueueCapacity)  {    this.outboundQueueCapacity = Math.max(1, outboundQueueCapacity);  }  /**   * @return the outbound queue size of new connections.   */  final public int getOutboundQueueCapacity()  {    return outboundQueueCapacity;  }  /**   * @return the number of calls to sendToAllClients.   */  final public long getBroadcastCount()  {    return broadcastCount.get();  }  /**   * @return the time the last broadcast took to reach every   *   connection's queue, in nanoseconds.   */  final public long getLastBroadcastNanos()  {    return lastBroadcastNanos.get();  }  /**   * @return the longest broadcast fan-out time, in nanoseconds.   */  final public long getMaxBroadcastNanos()  {    return maxBroadcastNanos.get();  }  /**   * @return the fan-out time of all broadcasts, in nanoseconds.   */  final public long getTotalBroadcastNanos()  {    return totalBroadcastNanos.get();  }  /**   * @return the number of clients disconnected because their   *   outbound queue overflowed.   */  final public long getSlowConsumerCount()  {    return slowConsumerCount.get();  }  /**   * Sets how often heartbeat connections are checked, in   * milliseconds. A connection silent for half the interval is   * pinged; one silent for <code>heartbeatMissLimit</code> intervals   * is closed and reported through <code>clientException</code>.   * Only clients that asked for heartbeats in their handshake are   * checked. The server must be closed and restarted for the change   * to be in effect.   *   * @param heartbeatInterval the interval in ms, 0 to disable.   */  final public void setHeartbeatInterval(int heartbeatInterval)  {    this.heartbeatInterval = Math.max(0, heartbeatInterval);  }  /**   * @return the heartbeat interval in ms, 0 if disabled.   */  final public int getHeartbeatInterval()  {    return heartbeatInterval;  }  /**   * Sets how many heartbeat intervals a connection may stay silent   * before it is closed.   *   * @param heartbeatMissLimit the number of intervals (at least 1).   */  final public void setHeartbeatMissLimit(int heartbeatMissLimit)  {    this.heartbeatMissLimit = Math.max(1, heartbeatMissLimit);  }  /**   * @return the number of silent intervals tolerated.   */  final public int getHeartbeatMissLimit()  {    return heartbeatMissLimit;  }  /**   * @return the number of connections closed for missing their   *   heartbeats.   */  final public long getHeartbeatTimeoutCount()  {    return heartbeatTimeoutCount.get();  }  /**   * Returns the port number.   *   * @return the port number.   */  final public int getPort()  {    return port;  }  /**   * Sets the port number for the next connection.   * The server must be closed and restarted for the port   * change to be in effect.   *   * @param port the port number.   */  final public void setPort(int port)  {    this.port = port;  }  /**   * Sets the timeout time when accepting connections.   * The default is half a second. This means that stopping the   * server may take up to timeout duration to actually stop.   * The server must be stopped and restarted for the timeout   * change to be effective.   *   * @param timeout the timeout time in ms.   */  final public void setTimeout(int timeout)  {    this.timeout = timeout;  }  /**   * Sets the maximum number of waiting connections accepted by the   * operating system. The default is 20.   * The server must be closed and restarted for the backlog   * change to be in effect.   *   * @param backlog the maximum number of connections.   */  final public void setBacklog(int backlog)  {    this.backlog = backlog;  }// RUN METHOD -------------------------------------------------------  /**   * Runs the listening thread that allows clients to connect.   * Not to be called.   */  final public void run()  {    serverStarted();    // close() may clear the field while this thread is still selecting    NioTransport transport = nioTransport;    try    {      while(!readyToStop)      {        if (transport != null)        {          transport.acceptConnections(timeout);          continue;        }        try        {          Socket clientSocket = serverSocket.accept();          synchronized(this)          {            ConnectionToClient c = new ConnectionToClient(              this.connectionThreads, clientSocket, this);          }        }        catch (InterruptedIOException exception)        {        }      }      serverStopped();    }    catch (IOException exception)    {      if (!readyToStop)      {        listeningException(exception);      }      else      {        serverStopped();      }    }    finally    {      readyToStop = true;      connectionListener = null;    }  }// METHODS DESIGNED TO BE OVERRIDDEN BY CONCRETE SUBCLASSES ---------  /**   * Hook method called each time a new client connection is   * accepted. The default implementation does nothing.   * @param client the connection connected to the client.   */  protected void clientConnected(ConnectionToClient client) {}  /**   * Hook method called each time a client disconnects.   * The default implementation does nothing. The method   * may be overridden by subclasses but should remains synchronized.   *   * @param client the connection with the client.   */  synchronized protected void clientDisconnected(    ConnectionToClient client) {}  /**   * Hook method called each time an exception is thrown in a   * ConnectionToClient thread.   * The method may be overridden by subclasses but should remains   * synchronized.   *   * @param client the client that raised the exception.   * @param Throwable the exception thrown.   */  synchronized protected void clientException(    ConnectionToClient client, Throwable exception) {}  /**   * Hook method called when the server stops accepting   * connections because an exception has been raised.   * The default implementation does nothing.   * This method may be overriden by subclasses.   *   * @param exception the exception raised.   */  protected void listeningException(Throwable exception) {}  /**   * Hook method called when the server starts listening for   * connections.  The default implementation does nothing.   * The method may be overridden by subclasses.   */  protected void serverStarted() {}  /**   * Hook method called when the server stops accepting   * connections.  The default implementation   * does nothing. This method may be overriden by subclasses.   */  protected void serverStopped() {}  /**   * Hook method called when the server is clased.   * The default implementation does nothing. This method may be   * overriden by subclasses. When the server is closed while still   * listening, serverStopped() will also be called.   */  protected void serverClosed() {}  /**   * Handles a command sent from one client to the server.   * This MUST be implemented by subclasses, who should respond to   * messages.   * This method is called by a synchronized method so it is also   * implcitly synchronized.   *   * @param msg   the message sent.   * @param client the connection connected to the client that   *  sent the message.   */  protected abstract void handleMessageFromClient(    Object msg, ConnectionToClient client);// METHODS TO BE USED FROM WITHIN THE FRAMEWORK ONLY ----------------  /**   * Receives a command sent from the client to the server.   * Called by the run method of <code>ConnectionToClient</code>   * instances that are watching for messages coming from the server   * This method is synchronized to ensure that whatever effects it has   * do not conflict with work being done by other threads. The method   * simply calls the <code>handleMessageFromClient</code> slot method.   *   * @param msg   the message sent.   * @param client the connection connected to the client that   *  sent the message.   */  final void receiveMessageFromClient(    Object msg, ConnectionToClient client)  {    this.handleMessageFromClient(msg, client);  }  /**   * Picks the codec of a connection from the id the client asked for.   *   * @param requestedId the codec id sent in the handshake.   * @return the matching codec, or Java serialization.   */  final PayloadCodec negotiateCodec(int requestedId)  {    PayloadCodec codec = payloadCodecs.get(requestedId);    return codec != null ? codec : FrameCodec.JAVA;  }  /**   * Disconnects a client whose outbound queue overflowed.   */  final void dropSlowConsumer(ConnectionToClient client)  {    slowConsumerCount.incrementAndGet();    try    {      client.close();    }    catch (Exception ex) {}  }  /**   * Starts the heartbeat timer unless heartbeats are disabled or the   * timer already runs.   */  private synchronized void startHeartbeats()  {    if (heartbeatInterval == 0 || heartbeatTimer != null)      return;    heartbeatTimer = Executors.newSingleThreadScheduledExecutor(      Thread.ofPlatform().name("AbstractServer-heartbeat").daemon(true).factory());    heartbeatTimer.scheduleAtFixedRate(new Runnable()    {      public void run()      {        checkHeartbeats();      }    }, heartbeatInterval, heartbeatInterval, TimeUnit.MILLISECONDS);  }  /**   * Pings the connections that have been quiet and closes those that   * stayed silent for too long. Runs on the heartbeat timer.   */  private void checkHeartbeats()  {    long now = System.nanoTime();    long interval = TimeUnit.MILLISECONDS.toNanos(heartbeatInterval);    ConnectionToClient[] clientList = getClientConnections();    for (int i=0; i<clientList.length; i++)    {      try      {        if (!clientList[i].checkHeartbeat(now, interval, heartbeatMissLimit))          heartbeatTimeoutCount.incrementAndGet();      }      catch (RuntimeException ex) {}    }  }  /**   * Adds a connection that has just been accepted.   */  final void registerConnection(ConnectionToClient client)  {    clientConnections.add(client);  }  /**   * Removes a connection whose thread ended or channel closed.   */  final void unregisterConnection(ConnectionToClient client)  {    clientConnections.remove(client);  }}// End of AbstractServer Class
\ No newline at end of file
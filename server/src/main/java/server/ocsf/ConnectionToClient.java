@@ -4,13 +4,26 @@
 
 package server.ocsf;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.net.InetAddress;
+import java.nio.ByteBuffer;
 import java.net.Socket;
 import java.net.SocketException;
-import java.util.HashMap;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
 * An instance of this class is created by the server when a client
@@ -20,6 +33,13 @@ import java.util.HashMap;
 * instances of this class and is responsible for adding and deleting
 * them.<p>
 *
+* In <code>BLOCKING</code> and <code>VIRTUAL_THREADS</code> modes the
+* connection is run by its own (platform or virtual) thread and speaks
+* either the legacy object-stream protocol or the framed protocol,
+* depending on the first bytes the client sends. In <code>NIO</code>
+* mode there is no connection thread; the socket is served by a
+* <code>NioChannel</code> instead.<p>
+*
 * Project Name: OCSF (Object Client-Server Framework)<p>
 *
 * @author Dr Robert Lagani&egrave;re
@@ -28,8 +48,29 @@ import java.util.HashMap;
 * @author Paul Holden
 * @version February 2001 (2.12)
 */
-public class ConnectionToClient extends Thread
+public class ConnectionToClient implements Runnable
 {
+// CONSTANTS ********************************************************
+
+  /**
+  * Read timeout of connections that do not exchange heartbeats
+  * (object stream and older framed clients): an idle client of that
+  * kind is considered dead after five minutes.
+  */
+  private static final int LEGACY_IDLE_TIMEOUT = 300000;
+
+  /**
+  * Largest slice of a frame payload read at once, so that a long
+  * upload keeps counting as activity.
+  */
+  private static final int READ_SLICE = 64 * 1024;
+
+  /**
+  * Size of the array through which a direct frame body is copied to
+  * the socket in blocking mode.
+  */
+  private static final int WRITE_SLICE = 8 * 1024;
+
 // INSTANCE VARIABLES ***********************************************
 
   /**
@@ -37,6 +78,18 @@ public class ConnectionToClient extends Thread
   */
   private AbstractServer server;
 
+  /**
+  * The thread reading from the client, null in NIO mode.
+  */
+  private Thread thread;
+
+  /**
+  * Serializes writes. A lock rather than a synchronized method so
+  * that a virtual thread blocked in a socket write does not pin its
+  * carrier thread.
+  */
+  private final ReentrantLock sendLock = new ReentrantLock();
+
   /**
   * Sockets are used in the operating system as channels
   * of communication between two processes.
@@ -54,6 +107,61 @@ public class ConnectionToClient extends Thread
   */
   private ObjectOutputStream output;
 
+  /**
+  * Streams used instead of the object streams when the client sent
+  * the framed-protocol preamble.
+  */
+  private DataInputStream frameInput;
+  private OutputStream frameOutput;
+
+  /**
+  * Encodes the payload of each frame. Java serialization unless the
+  * client negotiated another codec in its handshake.
+  */
+  private volatile PayloadCodec codec = FrameCodec.JAVA;
+
+  /**
+  * Objects offered with <code>offerToClient</code> that the writer
+  * has not sent yet, in the blocking modes: encoded frames, or the
+  * objects themselves for object stream clients. Null in NIO mode,
+  * where the channel queues frames itself.
+  */
+  private final ArrayBlockingQueue<Object> outbound;
+
+  /**
+  * Set while a writer thread drains <code>outbound</code>.
+  */
+  private final AtomicBoolean draining = new AtomicBoolean(false);
+
+  /**
+  * Set if the client asked for heartbeats in its handshake. Only
+  * such connections are pinged and reaped when silent.
+  */
+  private volatile boolean heartbeats = false;
+
+  /**
+  * Set if the client accepts frames with a raw body.
+  */
+  private volatile boolean frameBodies = false;
+
+  /**
+  * When the last bytes were read from the client, in blocking mode
+  * (<code>System.nanoTime</code>). The NIO channel keeps its own.
+  */
+  private volatile long lastReceived = System.nanoTime();
+
+  /**
+  * Why the heartbeat timer closed this connection, reported instead
+  * of the socket error the reading thread then runs into.
+  */
+  private volatile IOException expired;
+
+  /**
+  * The non-blocking channel serving this connection in NIO mode,
+  * null in blocking mode.
+  */
+  private NioChannel channel;
+
   /**
   * Indicates if the thread is ready to stop. Set to true when closing
   * of the connection is initiated.
@@ -65,9 +173,11 @@ public class ConnectionToClient extends Thread
    * The initial size of the map is small since it is not expected
    * that concrete servers will want to store many different types of
    * information about each client. Used by the setInfo and getInfo
-   * methods.
+   * methods, which are called from the request workers as well as the
+   * reading thread, hence a concurrent map.
    */
-  private HashMap savedInfo = new HashMap(10);
+  private final ConcurrentHashMap<String, Object> savedInfo =
+    new ConcurrentHashMap<String, Object>(10);
 
 
 // CONSTRUCTORS *****************************************************
@@ -75,28 +185,61 @@ public class ConnectionToClient extends Thread
   /**
    * Constructs a new connection to a client.
    *
-   * @param group the thread group that contains the connections.
+   * @param threads builds the thread that serves the connection.
    * @param clientSocket contains the client's socket.
    * @param server a reference to the server that created
    *        this instance
    * @exception IOException if an I/O error occur when creating
    *        the connection.
    */
-  ConnectionToClient(ThreadGroup group, Socket clientSocket,
+  ConnectionToClient(Thread.Builder threads, Socket clientSocket,
     AbstractServer server) throws IOException
   {
-    super(group,(Runnable)null);
     // Initialize variables
     this.clientSocket = clientSocket;
     this.server = server;
+    this.outbound = new ArrayBlockingQueue<Object>(server.getOutboundQueueCapacity());
 
-    clientSocket.setSoTimeout(300000); // 5-minute timeout to clean up dead clients
+    // Until the handshake tells whether the client sends heartbeats
+    clientSocket.setSoTimeout(LEGACY_IDLE_TIMEOUT);
 
-    //Initialize the objects streams
+    //Initialize the streams for the protocol the client speaks
     try
     {
-      input = new ObjectInputStream(clientSocket.getInputStream());
-      output = new ObjectOutputStream(clientSocket.getOutputStream());
+      BufferedInputStream in =
+        new BufferedInputStream(clientSocket.getInputStream());
+      in.mark(FrameCodec.HEADER_LENGTH);
+      DataInputStream data = new DataInputStream(in);
+
+      int preamble = data.readInt();
+      if (preamble == FrameCodec.MAGIC
+        || preamble == FrameCodec.MAGIC_NEGOTIATED
+        || preamble == FrameCodec.MAGIC_HEARTBEAT
+        || preamble == FrameCodec.MAGIC_BODIES)
+      {
+        frameInput = data;
+        frameOutput = new BufferedOutputStream(clientSocket.getOutputStream());
+        if (preamble != FrameCodec.MAGIC)
+        {
+          codec = server.negotiateCodec(data.readInt());
+          new DataOutputStream(frameOutput).writeInt(codec.getId());
+          frameOutput.flush();
+        }
+        if (preamble == FrameCodec.MAGIC_HEARTBEAT
+          || preamble == FrameCodec.MAGIC_BODIES)
+        {
+          // Dead clients are found by the heartbeat timer instead
+          heartbeats = true;
+          clientSocket.setSoTimeout(0);
+        }
+        frameBodies = preamble == FrameCodec.MAGIC_BODIES;
+      }
+      else
+      {
+        in.reset();
+        input = new ObjectInputStream(in);
+        output = new ObjectOutputStream(clientSocket.getOutputStream());
+      }
     }
     catch (IOException ex)
     {
@@ -110,7 +253,33 @@ public class ConnectionToClient extends Thread
     }
 
     readyToStop = false;
-    start(); // Start the thread waits for data from the socket
+    thread = threads.unstarted(this);
+    thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler()
+    {
+      public void uncaughtException(Thread t, Throwable exception)
+      {
+        server.clientException(ConnectionToClient.this, exception);
+      }
+    });
+    server.registerConnection(this);
+    thread.start(); // Start the thread waits for data from the socket
+  }
+
+  /**
+   * Constructs a connection served by a non-blocking channel. No
+   * thread is created; the channel's event loop does the reading.
+   *
+   * @param channel the channel of the accepted client.
+   * @param server a reference to the server that created
+   *        this instance
+   */
+  ConnectionToClient(NioChannel channel, AbstractServer server)
+  {
+    this.channel = channel;
+    this.server = server;
+    this.outbound = null;
+    readyToStop = false;
+    channel.attach(this);
   }
 
 // INSTANCE METHODS *************************************************
@@ -122,13 +291,87 @@ public class ConnectionToClient extends Thread
    * @exception IOException if an I/O error occur when sending the
    *    message.
    */
-  final synchronized public void sendToClient(Object msg) throws IOException
+  final public void sendToClient(Object msg) throws IOException
   {
-    if (clientSocket == null || output == null)
-      throw new SocketException("socket does not exist");
+    sendToClientTimed(msg);
+  }
 
-    output.writeObject(msg);
-    output.reset();
+  /**
+   * Sends an object to the client like <code>sendToClient</code> and
+   * tells how much of the call went into encoding it; the rest went
+   * into the socket write. On an object stream connection the object
+   * is serialized while it is written, so 0 is returned.
+   *
+   * @param msg the message to be sent.
+   * @return the time spent encoding the message, in nanoseconds.
+   * @exception IOException if an I/O error occur when sending the
+   *    message.
+   */
+  final public long sendToClientTimed(Object msg) throws IOException
+  {
+    if (channel == null && frameOutput == null)
+    {
+      write(msg);
+      return 0;
+    }
+
+    long start = System.nanoTime();
+    ByteBuffer frame = FrameCodec.encode(msg, codec);
+    long encodeNanos = System.nanoTime() - start;
+    if (channel != null)
+      channel.send(frame);
+    else
+      write(frame);
+    return encodeNanos;
+  }
+
+  /**
+   * Sends an object followed by raw bytes that bypass the codec, in
+   * one frame. The client hands both to its
+   * <code>attachFrameBody</code> hook. In NIO mode the body is written
+   * to the socket as is, so a file mapping goes out without being
+   * copied into the heap; in blocking mode a direct body is copied
+   * through a small array.
+   *
+   * @param msg the message to be sent.
+   * @param body the bytes between its position and limit; the buffer
+   *    itself is left untouched.
+   * @exception IOException if an I/O error occur when sending the
+   *    message.
+   * @exception IllegalStateException if the client does not accept
+   *    frame bodies (see <code>acceptsFrameBodies</code>).
+   */
+  final public void sendToClient(Object msg, ByteBuffer body) throws IOException
+  {
+    if (!frameBodies)
+      throw new IllegalStateException("client does not accept frame bodies");
+
+    body = body.duplicate();
+    ByteBuffer header = FrameCodec.encodeBodyHeader(msg, codec, body.remaining());
+    if (channel != null)
+      channel.send(header, body);
+    else
+      write(new ByteBuffer[] {header, body});
+  }
+
+  /**
+   * Queues an object for the client without waiting for the socket;
+   * the transport writes queued objects in order. A client whose
+   * outbound queue is full cannot keep up: it is disconnected and
+   * the object is dropped.
+   *
+   * @param msg the message to be sent.
+   * @return true if the message was queued, false if the client was
+   *    disconnected as a slow consumer.
+   * @exception IOException if the connection is closed or the
+   *    message cannot be encoded.
+   */
+  final public boolean offerToClient(Object msg) throws IOException
+  {
+    if (offer(msg, null))
+      return true;
+    server.dropSlowConsumer(this);
+    return false;
   }
 
   /**
@@ -154,6 +397,49 @@ public class ConnectionToClient extends Thread
 
 // ACCESSING METHODS ------------------------------------------------
 
+  /**
+   * Returns true while the connection with the client is open, that
+   * is while its thread runs or, in NIO mode, its channel is open.
+   *
+   * @return true if the client is connected.
+   */
+  final public boolean isConnected()
+  {
+    return channel != null ? channel.isOpen() : thread.isAlive();
+  }
+
+  /**
+   * Returns the thread serving this connection.
+   *
+   * @return the connection's thread, or null in NIO mode.
+   */
+  final public Thread getThread()
+  {
+    return thread;
+  }
+
+  /**
+   * Returns the codec encoding this connection's frames.
+   *
+   * @return the payload codec; Java serialization for object stream
+   *   clients and clients that did not negotiate.
+   */
+  final public PayloadCodec getPayloadCodec()
+  {
+    return codec;
+  }
+
+  /**
+   * Tells whether the client accepts frames with a raw body, sent with
+   * <code>sendToClient(Object, ByteBuffer)</code>.
+   *
+   * @return true if the client asked for frame bodies in its handshake.
+   */
+  final public boolean acceptsFrameBodies()
+  {
+    return frameBodies;
+  }
+
   /**
    * Returns the address of the client.
    *
@@ -161,6 +447,8 @@ public class ConnectionToClient extends Thread
    */
   final public InetAddress getInetAddress()
   {
+    if (channel != null)
+      return channel.getInetAddress();
     return clientSocket == null ? null : clientSocket.getInetAddress();
   }
 
@@ -171,21 +459,25 @@ public class ConnectionToClient extends Thread
    */
   public String toString()
   {
-    return clientSocket == null ? null :
-      clientSocket.getInetAddress().getHostName()
-        +" (" + clientSocket.getInetAddress().getHostAddress() + ")";
+    InetAddress address = getInetAddress();
+    return address == null ? null :
+      address.getHostName() +" (" + address.getHostAddress() + ")";
   }
 
   /**
    * Saves arbitrary information about this client. Designed to be
    * used by concrete subclasses of AbstractServer. Based on a hash map.
+   * Safe to call from any thread.
    *
    * @param infoType   identifies the type of information
-   * @param info       the information itself.
+   * @param info       the information itself, or null to forget it.
    */
   public void setInfo(String infoType, Object info)
   {
-    savedInfo.put(infoType, info);
+    if (info == null)
+      savedInfo.remove(infoType);
+    else
+      savedInfo.put(infoType, info);
   }
 
   /**
@@ -221,7 +513,7 @@ public class ConnectionToClient extends Thread
       {
         // This block waits until it reads a message from the client
         // and then sends it for handling by the server
-        msg = input.readObject();
+        msg = frameInput != null ? readFrame() : input.readObject();
         server.receiveMessageFromClient(msg, this);
       }
     }
@@ -235,14 +527,320 @@ public class ConnectionToClient extends Thread
         }
         catch (Exception ex) { }
 
-        server.clientException(this, exception);
+        server.clientException(this, expired != null ? expired : exception);
       }
     }
+    finally
+    {
+      server.unregisterConnection(this);
+    }
   }
 
 
 // METHODS TO BE USED FROM WITHIN THE FRAMEWORK ONLY ----------------
 
+  /**
+   * Adds a message to the outbound queue.
+   *
+   * @param msg the message to be sent.
+   * @param frames frames of this message already encoded for other
+   *    connections, by codec, or null. A broadcast encodes once per
+   *    codec this way.
+   * @return false if the queue is full.
+   */
+  boolean offer(Object msg, Map<PayloadCodec, ByteBuffer> frames)
+    throws IOException
+  {
+    if (channel != null)
+      return channel.offer(frame(msg, frames), server.getOutboundQueueCapacity());
+
+    if (clientSocket == null || (output == null && frameOutput == null))
+      throw new SocketException("socket does not exist");
+    return enqueue(frameOutput != null ? frame(msg, frames) : msg);
+  }
+
+  /**
+   * Called by the server's heartbeat timer. Pings the client once it
+   * has been quiet for half an interval, and closes the connection
+   * once it has been silent for <code>missLimit</code> intervals. The
+   * server then hears of it through <code>clientException</code>.
+   *
+   * @param now the current <code>System.nanoTime</code>.
+   * @param interval the heartbeat interval in nanoseconds.
+   * @param missLimit the number of silent intervals tolerated.
+   * @return false if the connection was closed as dead.
+   */
+  boolean checkHeartbeat(long now, long interval, int missLimit)
+  {
+    if (!heartbeats)
+      return true;
+    // A paused channel is not reading; the silence is ours
+    if (channel != null && channel.isReadPaused())
+      return true;
+
+    long silent = now - (channel != null ? channel.getLastReceived() : lastReceived);
+    if (silent >= interval * missLimit)
+    {
+      expire(new SocketTimeoutException("no heartbeat from client for "
+        + TimeUnit.NANOSECONDS.toMillis(silent) + " ms"));
+      return false;
+    }
+    if (silent >= interval / 2)
+    {
+      try
+      {
+        // A full queue already means a slow consumer; no ping then
+        if (channel != null)
+          channel.offer(FrameCodec.heartbeat(FrameCodec.PING),
+            server.getOutboundQueueCapacity());
+        else
+          enqueue(FrameCodec.heartbeat(FrameCodec.PING));
+      }
+      catch (IOException ex) {}
+    }
+    return true;
+  }
+
+  /**
+   * Adds an encoded frame, or an object for an object stream client,
+   * to the outbound queue and makes sure a writer drains it.
+   *
+   * @return false if the queue is full.
+   */
+  private boolean enqueue(Object item)
+  {
+    if (!outbound.offer(item))
+      return false;
+
+    if (draining.compareAndSet(false, true))
+    {
+      Thread.ofVirtual().name("ConnectionToClient-writer").start(new Runnable()
+      {
+        public void run()
+        {
+          drainOutbound();
+        }
+      });
+    }
+    return true;
+  }
+
+  /**
+   * Closes a connection found dead by the heartbeat timer, without
+   * marking it as closed on purpose so that the failure is reported.
+   */
+  private void expire(IOException cause)
+  {
+    expired = cause;
+    if (channel != null)
+    {
+      channel.expire(cause);
+      return;
+    }
+    try
+    {
+      closeAll();
+    }
+    catch (IOException ex) {}
+  }
+
+  private ByteBuffer frame(Object msg, Map<PayloadCodec, ByteBuffer> frames)
+    throws IOException
+  {
+    if (frames == null)
+      return FrameCodec.encode(msg, codec);
+
+    ByteBuffer frame = frames.get(codec);
+    if (frame == null)
+    {
+      frame = FrameCodec.encode(msg, codec);
+      frames.put(codec, frame);
+    }
+    return frame.duplicate();
+  }
+
+  /**
+   * Writes queued objects until the queue is empty. On a write error
+   * the socket is closed; the reading thread then reports it.
+   */
+  private void drainOutbound()
+  {
+    do
+    {
+      Object item;
+      while ((item = outbound.poll()) != null)
+      {
+        try
+        {
+          write(item);
+        }
+        catch (IOException | RuntimeException ex)
+        {
+          // A runtime failure must not end the writer with draining still set
+          outbound.clear();
+          try
+          {
+            closeAll();
+          }
+          catch (IOException exc) {}
+        }
+      }
+      draining.set(false);
+      // An object may have been queued after the last poll
+    }
+    while (!outbound.isEmpty() && draining.compareAndSet(false, true));
+  }
+
+  /**
+   * Writes an encoded frame, the buffers of a body frame, or an object
+   * on an object stream connection, in blocking mode.
+   */
+  private void write(Object item) throws IOException
+  {
+    sendLock.lock();
+    try
+    {
+      // Read once: closeAll clears the streams under the same lock
+      ObjectOutputStream objects = output;
+      OutputStream frames = frameOutput;
+      if (clientSocket == null || (objects == null && frames == null))
+        throw new SocketException("socket does not exist");
+
+      if (frames != null)
+      {
+        if (item instanceof ByteBuffer[])
+        {
+          for (ByteBuffer buffer : (ByteBuffer[])item)
+            writeBuffer(frames, buffer);
+        }
+        else
+          writeBuffer(frames, (ByteBuffer)item);
+        frames.flush();
+        return;
+      }
+
+      objects.writeObject(item);
+      objects.reset();
+    }
+    finally
+    {
+      sendLock.unlock();
+    }
+  }
+
+  /**
+   * Called by the NIO channel, on its event loop, when the handshake
+   * has settled the codec.
+   */
+  void setPayloadCodec(PayloadCodec codec)
+  {
+    this.codec = codec;
+  }
+
+  /**
+   * Copies a buffer to the framed output stream, in slices if it has
+   * no backing array.
+   */
+  private void writeBuffer(OutputStream frames, ByteBuffer buffer) throws IOException
+  {
+    if (buffer.hasArray())
+    {
+      frames.write(buffer.array(), buffer.arrayOffset() + buffer.position(),
+        buffer.remaining());
+      return;
+    }
+
+    byte[] slice = new byte[Math.min(WRITE_SLICE, buffer.remaining())];
+    while (buffer.hasRemaining())
+    {
+      int count = Math.min(slice.length, buffer.remaining());
+      buffer.get(slice, 0, count);
+      frames.write(slice, 0, count);
+    }
+  }
+
+  /**
+   * Called by the NIO channel, on its event loop, when the client's
+   * handshake accepts frame bodies.
+   */
+  void enableFrameBodies()
+  {
+    frameBodies = true;
+  }
+
+  /**
+   * Called by the NIO channel, on its event loop, when the client's
+   * handshake asks for heartbeats.
+   */
+  void enableHeartbeats()
+  {
+    heartbeats = true;
+  }
+
+  /**
+   * @return true if the client asked for heartbeats.
+   */
+  boolean hasHeartbeats()
+  {
+    return heartbeats;
+  }
+
+  /**
+   * Called by the NIO channel, on the handler pool, before any message.
+   */
+  void handleConnected()
+  {
+    server.clientConnected(this);
+  }
+
+  /**
+   * Called by the NIO channel, on the handler pool, for each message.
+   */
+  void handleMessage(Object msg)
+  {
+    server.receiveMessageFromClient(msg, this);
+  }
+
+  /**
+   * Called by the NIO channel, on the handler pool, once the channel
+   * has been closed because of an error or end of stream.
+   */
+  void handleFailure(Exception exception)
+  {
+    if (!readyToStop)
+      server.clientException(this, exception);
+  }
+
+  /**
+   * Reads one frame from a framed blocking connection, answering the
+   * heartbeat frames that come before it.
+   */
+  private Object readFrame() throws IOException, ClassNotFoundException
+  {
+    int length = frameInput.readInt();
+    lastReceived = System.nanoTime();
+    while (heartbeats
+      && (length == FrameCodec.PING || length == FrameCodec.PONG))
+    {
+      if (length == FrameCodec.PING)
+        enqueue(FrameCodec.heartbeat(FrameCodec.PONG));
+      length = frameInput.readInt();
+      lastReceived = System.nanoTime();
+    }
+
+    FrameCodec.checkLength(length);
+    // Grown as the bytes arrive, so that a length prefix alone costs little
+    byte[] payload = new byte[Math.min(length, READ_SLICE)];
+    for (int offset = 0; offset < length; offset += READ_SLICE)
+    {
+      if (offset == payload.length)
+        payload = Arrays.copyOf(payload, (int)Math.min(length, 2L * payload.length));
+      frameInput.readFully(payload, offset, Math.min(READ_SLICE, length - offset));
+      lastReceived = System.nanoTime();
+    }
+    return FrameCodec.decode(payload, codec);
+  }
+
   /**
    * Closes all connection to the server.
    *
@@ -251,19 +849,46 @@ public class ConnectionToClient extends Thread
    */
   private void closeAll() throws IOException
   {
+    if (channel != null)
+    {
+      channel.close();
+      return;
+    }
+
     try
     {
-      // Close the socket
+      // Close the socket; this also unblocks a writer stuck in a write
+      // so that the send lock below can be taken
       if (clientSocket != null)
         clientSocket.close();
+    }
+    finally
+    {
+      // Close the output stream under the send lock, so that a writer
+      // never sees it go away between its check and its write
+      sendLock.lock();
+      try
+      {
+        if (output != null)
+          output.close();
+        if (frameOutput != null)
+          frameOutput.close();
+      }
+      finally
+      {
+        output = null;
+        frameOutput = null;
+        sendLock.unlock();
+      }
+    }
 
-      // Close the output stream
-      if (output != null)
-        output.close();
-
+    try
+    {
       // Close the input stream
       if (input != null)
         input.close();
+      if (frameInput != null)
+        frameInput.close();
     }
     finally
     {
@@ -271,8 +896,8 @@ public class ConnectionToClient extends Thread
       // Doing so allows, but does not require, any finalizers
       // of these objects to reclaim system resources if and
       // when they are garbage collected.
-      output = null;
       input = null;
+      frameInput = null;
       clientSocket = null;
     }
   }
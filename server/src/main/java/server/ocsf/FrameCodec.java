@@ -0,0 +1,231 @@
+package server.ocsf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+
+/**
+* Encodes and decodes the length-prefixed frames used by framed
+* connections. A framed client first sends a 4-byte preamble; after
+* that every message travels as a 4-byte big-endian length followed by
+* that many bytes holding one self-contained encoded object.<p>
+*
+* With the <code>MAGIC</code> preamble payloads are Java-serialized.
+* With <code>MAGIC_NEGOTIATED</code> the client follows up with the id
+* of the <code>PayloadCodec</code> it wants and the server answers with
+* the id it will use: the same one if it knows it, 0 (Java
+* serialization) otherwise. <code>MAGIC_HEARTBEAT</code> negotiates
+* the same way and also turns on heartbeats: either side may send a
+* <code>PING</code> header with no payload, which the other answers
+* with <code>PONG</code>. Any frame received proves the peer alive.<p>
+*
+* A client sending <code>MAGIC_BODIES</code> gets all of the above and
+* also accepts frames with a raw body: a <code>BODY</code> header, the
+* length and payload of an encoded message, then the length and bytes
+* of the body. The body never goes through the codec, so the server
+* can write it straight from a file mapping.
+*/
+final class FrameCodec
+{
+// CONSTANTS ********************************************************
+
+  /**
+  * Preamble sent by a framed client right after connecting ("GCM1").
+  * A legacy object-stream client starts with 0xACED0005 instead.
+  */
+  static final int MAGIC = 0x47434D31;
+
+  /**
+  * Preamble of a framed client that negotiates its codec ("GCM2").
+  */
+  static final int MAGIC_NEGOTIATED = 0x47434D32;
+
+  /**
+  * Preamble of a framed client that negotiates its codec and
+  * exchanges heartbeats ("GCM3").
+  */
+  static final int MAGIC_HEARTBEAT = 0x47434D33;
+
+  /**
+  * Preamble of a framed client that negotiates its codec, exchanges
+  * heartbeats and accepts frames with a raw body ("GCM4").
+  */
+  static final int MAGIC_BODIES = 0x47434D34;
+
+  /**
+  * Length prefix values of the payload-less heartbeat frames.
+  */
+  static final int PING = -1;
+  static final int PONG = -2;
+
+  /**
+  * Header of a frame made of a message followed by a raw body.
+  */
+  static final int BODY = -3;
+
+  /**
+  * Size of the length prefix in bytes.
+  */
+  static final int HEADER_LENGTH = 4;
+
+  /**
+  * Largest frame accepted from a client. Map images reach clients in
+  * chunks, and the largest upload is a map image of at most 5 MB, so
+  * this leaves room for that and its message around it.
+  */
+  static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+  /**
+  * The default codec: one self-contained Java object stream per
+  * frame, as the object stream protocol does in effect since
+  * <code>sendToClient</code> resets the stream after every message.
+  */
+  static final PayloadCodec JAVA = new PayloadCodec()
+  {
+    public int getId()
+    {
+      return 0;
+    }
+
+    public void encode(Object msg, OutputStream out) throws IOException
+    {
+      ObjectOutputStream output = new ObjectOutputStream(out);
+      output.writeObject(msg);
+      output.flush();
+    }
+
+    public Object decode(byte[] payload, int offset, int length)
+      throws IOException, ClassNotFoundException
+    {
+      ObjectInputStream input = new ObjectInputStream(
+        new ByteArrayInputStream(payload, offset, length));
+      return input.readObject();
+    }
+  };
+
+  private FrameCodec() {}
+
+// ENCODING *********************************************************
+
+  /**
+   * Encodes an object into a complete frame (prefix included),
+   * positioned for writing to a channel.
+   *
+   * @param msg the object to encode.
+   * @param codec the connection's payload codec.
+   * @return a buffer holding the frame.
+   * @exception IOException if the object cannot be encoded.
+   */
+  static ByteBuffer encode(Object msg, PayloadCodec codec) throws IOException
+  {
+    FrameBuffer bytes = new FrameBuffer();
+    codec.encode(msg, bytes);
+    return bytes.toFrame();
+  }
+
+  /**
+   * Encodes an object into the part of a body frame that precedes the
+   * body itself: the <code>BODY</code> header, the message and the
+   * body length.
+   *
+   * @param msg the object to encode.
+   * @param codec the connection's payload codec.
+   * @param bodyLength the number of body bytes that will follow.
+   * @return a buffer holding the start of the frame.
+   * @exception IOException if the object cannot be encoded.
+   */
+  static ByteBuffer encodeBodyHeader(Object msg, PayloadCodec codec,
+    int bodyLength) throws IOException
+  {
+    FrameBuffer bytes = new FrameBuffer(2 * HEADER_LENGTH);
+    codec.encode(msg, bytes);
+    return bytes.toBodyHeader(bodyLength);
+  }
+
+  /**
+   * Decodes the payload of a frame (prefix excluded).
+   *
+   * @param payload the bytes following the length prefix.
+   * @param codec the connection's payload codec.
+   * @return the decoded object.
+   * @exception IOException if the payload is malformed.
+   * @exception ClassNotFoundException if a class is unknown locally.
+   */
+  static Object decode(byte[] payload, PayloadCodec codec)
+    throws IOException, ClassNotFoundException
+  {
+    return codec.decode(payload, 0, payload.length);
+  }
+
+  /**
+   * Validates a length prefix read from the wire.
+   *
+   * @param length the announced payload length.
+   * @exception StreamCorruptedException if the length is out of range.
+   */
+  static void checkLength(int length) throws StreamCorruptedException
+  {
+    if (length <= 0 || length > MAX_FRAME_LENGTH)
+      throw new StreamCorruptedException("invalid frame length " + length);
+  }
+
+  /**
+   * Builds a payload-less heartbeat frame.
+   *
+   * @param header <code>PING</code> or <code>PONG</code>.
+   * @return a buffer holding the frame.
+   */
+  static ByteBuffer heartbeat(int header)
+  {
+    ByteBuffer frame = ByteBuffer.allocate(HEADER_LENGTH);
+    frame.putInt(0, header);
+    return frame;
+  }
+
+// INNER CLASSES ****************************************************
+
+  /**
+   * Byte stream that reserves room for the length prefix and hands
+   * out its internal array without a final copy.
+   */
+  private static final class FrameBuffer extends ByteArrayOutputStream
+  {
+    FrameBuffer()
+    {
+      this(HEADER_LENGTH);
+    }
+
+    FrameBuffer(int reserved)
+    {
+      super(512);
+      count = reserved;
+    }
+
+    ByteBuffer toFrame()
+    {
+      ByteBuffer frame = ByteBuffer.wrap(buf, 0, count);
+      frame.putInt(0, count - HEADER_LENGTH);
+      return frame;
+    }
+
+    ByteBuffer toBodyHeader(int bodyLength)
+    {
+      int payloadLength = count - 2 * HEADER_LENGTH;
+      write(0);
+      write(0);
+      write(0);
+      write(0);
+      ByteBuffer header = ByteBuffer.wrap(buf, 0, count);
+      header.putInt(0, BODY);
+      header.putInt(HEADER_LENGTH, payloadLength);
+      header.putInt(count - HEADER_LENGTH, bodyLength);
+      return header;
+    }
+  }
+}
+// End of FrameCodec class
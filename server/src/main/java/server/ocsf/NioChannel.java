@@ -0,0 +1,585 @@
+package server.ocsf;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+* The non-blocking side of a <code>ConnectionToClient</code> in
+* <code>NIO</code> mode. Reading and deframing happen on the owning
+* event loop; decoding and the server hooks run on the transport's
+* handler pool, one task at a time per connection so that messages
+* from a client are still handled in the order they were sent.<p>
+*
+* Writes are attempted immediately from the calling thread. Whatever
+* the socket does not accept is queued and finished by the event loop
+* when the channel becomes writable, so a sender never blocks on a
+* slow client. Offered frames (broadcasts) skip the attempt and go
+* straight to the bounded queue.
+*/
+final class NioChannel
+{
+// CONSTANTS ********************************************************
+
+  /**
+  * Number of undelivered frames after which reading is paused.
+  */
+  private static final int MAX_PENDING_FRAMES = 32;
+
+  /**
+  * Number of undelivered frames at which a paused read resumes.
+  */
+  private static final int RESUME_PENDING_FRAMES = 8;
+
+  /**
+  * Initial size of a payload buffer. It doubles as bytes arrive, so
+  * a length prefix alone never makes the loop allocate much.
+  */
+  private static final int BODY_START = 64 * 1024;
+
+// INSTANCE VARIABLES ***********************************************
+
+  private final SocketChannel socket;
+  private final NioEventLoop loop;
+  private final NioTransport transport;
+  private volatile SelectionKey key;
+  private ConnectionToClient connection;
+
+  /**
+  * Partial length prefix (or preamble) being read.
+  */
+  private final ByteBuffer header = ByteBuffer.allocate(FrameCodec.HEADER_LENGTH);
+
+  /**
+  * Payload of the frame being read, null between frames, and the
+  * length announced for it.
+  */
+  private ByteBuffer body;
+  private int bodyLength;
+
+  /**
+  * Set once the client's preamble, and the codec id that follows a
+  * negotiating preamble, have been read.
+  */
+  private volatile boolean handshakeDone = false;
+  private boolean awaitingCodecId = false;
+
+  /**
+  * Frames that could not be written yet. Guarded by itself.
+  */
+  private final ArrayDeque<ByteBuffer> outbound = new ArrayDeque<ByteBuffer>();
+
+  /**
+  * Work waiting for the handler pool, run in submission order.
+  */
+  private final Queue<Runnable> inbound = new ConcurrentLinkedQueue<Runnable>();
+  private final AtomicBoolean draining = new AtomicBoolean(false);
+  private final AtomicInteger pendingFrames = new AtomicInteger();
+  private volatile boolean readPaused = false;
+
+  /**
+  * When the last bytes were read (<code>System.nanoTime</code>).
+  */
+  private volatile long lastReceived = System.nanoTime();
+
+  private final AtomicBoolean closed = new AtomicBoolean(false);
+
+// CONSTRUCTORS *****************************************************
+
+  /**
+   * Wraps an accepted channel. Nothing is read until
+   * <code>open</code> is called.
+   *
+   * @param socket the accepted channel, already non-blocking.
+   * @param loop the loop that will serve it.
+   * @param transport the transport owning the handler pool.
+   */
+  NioChannel(SocketChannel socket, NioEventLoop loop, NioTransport transport)
+  {
+    this.socket = socket;
+    this.loop = loop;
+    this.transport = transport;
+  }
+
+// INSTANCE METHODS *************************************************
+
+  /**
+   * Links this channel to the connection handed to the server hooks.
+   */
+  void attach(ConnectionToClient connection)
+  {
+    this.connection = connection;
+  }
+
+  /**
+   * Starts reading from the channel. The connection is reported to
+   * the server once the client's handshake has been read.
+   *
+   * @exception IOException if the channel cannot be registered.
+   */
+  void open() throws IOException
+  {
+    key = socket.register(loop.selector(), SelectionKey.OP_READ, this);
+    loop.wakeup();
+  }
+
+  /**
+   * @return true until the channel is closed.
+   */
+  boolean isOpen()
+  {
+    return !closed.get() && socket.isOpen();
+  }
+
+  /**
+   * @return the remote address, or null once closed.
+   */
+  InetAddress getInetAddress()
+  {
+    try
+    {
+      InetSocketAddress remote = (InetSocketAddress)socket.getRemoteAddress();
+      return remote == null ? null : remote.getAddress();
+    }
+    catch (IOException ex)
+    {
+      return null;
+    }
+  }
+
+  /**
+   * Writes a frame, queueing whatever the socket does not take now. A
+   * frame may come in several buffers, written with one gathering
+   * write; a direct buffer (a file mapping) is then never copied
+   * into the heap.
+   *
+   * @param frame the buffers of a complete frame, in order.
+   * @exception IOException if the channel is closed or fails.
+   */
+  void send(ByteBuffer... frame) throws IOException
+  {
+    if (!isOpen())
+      throw new SocketException("socket does not exist");
+
+    synchronized (outbound)
+    {
+      if (outbound.isEmpty())
+        socket.write(frame);
+
+      boolean queued = false;
+      for (ByteBuffer buffer : frame)
+      {
+        if (buffer.hasRemaining())
+        {
+          outbound.add(buffer);
+          queued = true;
+        }
+      }
+      if (queued)
+        requestWrite();
+    }
+  }
+
+  /**
+   * Queues a frame for the event loop to write, without touching the
+   * socket from the calling thread.
+   *
+   * @param frame a complete frame.
+   * @param capacity the number of frames allowed to wait.
+   * @return false if <code>capacity</code> frames are already waiting.
+   * @exception IOException if the channel is closed.
+   */
+  boolean offer(ByteBuffer frame, int capacity) throws IOException
+  {
+    if (!isOpen())
+      throw new SocketException("socket does not exist");
+    // Nothing may precede the handshake reply; the client is not
+    // connected yet as far as the server hooks are concerned
+    if (!handshakeDone)
+      return true;
+
+    synchronized (outbound)
+    {
+      if (outbound.size() >= capacity)
+        return false;
+      outbound.add(frame);
+      requestWrite();
+    }
+    return true;
+  }
+
+  /**
+   * Asks the event loop to finish the queued writes. Called with the
+   * outbound lock held.
+   */
+  private void requestWrite() throws IOException
+  {
+    try
+    {
+      if ((key.interestOps() & SelectionKey.OP_WRITE) == 0)
+      {
+        key.interestOpsOr(SelectionKey.OP_WRITE);
+        loop.wakeup();
+      }
+    }
+    catch (CancelledKeyException ex)
+    {
+      throw new SocketException("socket does not exist");
+    }
+  }
+
+  /**
+   * Runs a task for this connection on the handler pool, after every
+   * task submitted before it.
+   *
+   * @param task the work to run.
+   */
+  void dispatch(Runnable task)
+  {
+    inbound.add(task);
+    if (draining.compareAndSet(false, true))
+      schedule();
+  }
+
+  /**
+   * Closes the channel. Safe to call from any thread, more than once.
+   */
+  void close()
+  {
+    closeChannel();
+  }
+
+  /**
+   * Closes a channel found dead by the heartbeat timer and reports
+   * the failure.
+   *
+   * @param cause the reason given to <code>clientException</code>.
+   */
+  void expire(IOException cause)
+  {
+    fail(cause);
+  }
+
+  /**
+   * @return when the last bytes were read (<code>System.nanoTime</code>).
+   */
+  long getLastReceived()
+  {
+    return lastReceived;
+  }
+
+  /**
+   * @return true while reading is paused because the handlers lag.
+   */
+  boolean isReadPaused()
+  {
+    return readPaused;
+  }
+
+// EVENT LOOP CALLBACKS ---------------------------------------------
+
+  /**
+   * Reads what is available and delivers every complete frame.
+   * Called by the event loop only.
+   *
+   * @param scratch the loop's shared read buffer.
+   */
+  void onReadable(ByteBuffer scratch)
+  {
+    try
+    {
+      // Large payloads are read straight into their own buffer
+      if (body != null && bodyLength - body.position() >= scratch.capacity())
+      {
+        growBody();
+        if (socket.read(body) < 0)
+          throw new EOFException("connection closed by client");
+        lastReceived = System.nanoTime();
+        if (body.position() == bodyLength)
+          deliver();
+        return;
+      }
+
+      scratch.clear();
+      if (socket.read(scratch) < 0)
+        throw new EOFException("connection closed by client");
+      lastReceived = System.nanoTime();
+      scratch.flip();
+
+      while (scratch.hasRemaining())
+      {
+        if (body == null)
+        {
+          transfer(scratch, header);
+          if (header.hasRemaining())
+            break;
+
+          header.flip();
+          int value = header.getInt();
+          header.clear();
+
+          if (!handshakeDone)
+          {
+            handshake(value);
+            continue;
+          }
+
+          if (connection.hasHeartbeats()
+            && (value == FrameCodec.PING || value == FrameCodec.PONG))
+          {
+            if (value == FrameCodec.PING)
+              send(FrameCodec.heartbeat(FrameCodec.PONG));
+            continue;
+          }
+
+          FrameCodec.checkLength(value);
+          bodyLength = value;
+          body = ByteBuffer.allocate(Math.min(value, BODY_START));
+        }
+
+        growBody();
+        transfer(scratch, body);
+        if (body.position() == bodyLength)
+          deliver();
+      }
+    }
+    catch (IOException ex)
+    {
+      fail(ex);
+    }
+  }
+
+  /**
+   * Finishes queued writes. Called by the event loop only.
+   */
+  void onWritable()
+  {
+    try
+    {
+      synchronized (outbound)
+      {
+        while (!outbound.isEmpty())
+        {
+          ByteBuffer frame = outbound.peek();
+          socket.write(frame);
+          if (frame.hasRemaining())
+            return;
+          outbound.poll();
+        }
+        key.interestOpsAnd(~SelectionKey.OP_WRITE);
+      }
+    }
+    catch (IOException ex)
+    {
+      fail(ex);
+    }
+  }
+
+// METHODS TO BE USED FROM WITHIN THE FRAMEWORK ONLY ----------------
+
+  /**
+   * Handles one int of the handshake: the preamble, then the codec id
+   * if the client negotiates. The codec is settled before the server
+   * hears of the connection.
+   */
+  private void handshake(int value) throws IOException
+  {
+    if (awaitingCodecId)
+    {
+      PayloadCodec codec = transport.negotiateCodec(value);
+      connection.setPayloadCodec(codec);
+      send(ByteBuffer.allocate(4).putInt(codec.getId()).flip());
+    }
+    else if (value == FrameCodec.MAGIC_NEGOTIATED
+      || value == FrameCodec.MAGIC_HEARTBEAT
+      || value == FrameCodec.MAGIC_BODIES)
+    {
+      if (value != FrameCodec.MAGIC_NEGOTIATED)
+        connection.enableHeartbeats();
+      if (value == FrameCodec.MAGIC_BODIES)
+        connection.enableFrameBodies();
+      awaitingCodecId = true;
+      return;
+    }
+    else if (value != FrameCodec.MAGIC)
+      throw new StreamCorruptedException("unsupported wire protocol");
+
+    handshakeDone = true;
+    dispatch(new Runnable()
+    {
+      public void run()
+      {
+        connection.handleConnected();
+      }
+    });
+  }
+
+  /**
+   * Doubles a full payload buffer, up to the announced length.
+   */
+  private void growBody()
+  {
+    if (body.hasRemaining() || body.capacity() == bodyLength)
+      return;
+    ByteBuffer larger = ByteBuffer.allocate(
+      (int)Math.min(bodyLength, 2L * body.capacity()));
+    body.flip();
+    larger.put(body);
+    body = larger;
+  }
+
+  private void deliver()
+  {
+    final byte[] payload = body.array();
+    body = null;
+
+    if (pendingFrames.incrementAndGet() >= MAX_PENDING_FRAMES && !readPaused)
+    {
+      readPaused = true;
+      key.interestOpsAnd(~SelectionKey.OP_READ);
+    }
+
+    dispatch(new Runnable()
+    {
+      public void run()
+      {
+        frameHandled();
+        if (!isOpen())
+          return;
+        try
+        {
+          connection.handleMessage(
+            FrameCodec.decode(payload, connection.getPayloadCodec()));
+        }
+        catch (Exception ex)
+        {
+          fail(ex);
+        }
+      }
+    });
+  }
+
+  private void frameHandled()
+  {
+    if (pendingFrames.decrementAndGet() <= RESUME_PENDING_FRAMES && readPaused)
+    {
+      loop.execute(new Runnable()
+      {
+        public void run()
+        {
+          if (readPaused && key.isValid())
+          {
+            readPaused = false;
+            key.interestOpsOr(SelectionKey.OP_READ);
+          }
+        }
+      });
+    }
+  }
+
+  /**
+   * Closes the channel after an error or end of stream and reports it
+   * through the connection, unless the server closed it on purpose.
+   */
+  private void fail(final Exception exception)
+  {
+    // A client that never completed its handshake was never reported
+    if (!closeChannel() || !handshakeDone)
+      return;
+    dispatch(new Runnable()
+    {
+      public void run()
+      {
+        connection.handleFailure(exception);
+      }
+    });
+  }
+
+  /**
+   * @return true if this call closed the channel, false if it was
+   * already closed.
+   */
+  private boolean closeChannel()
+  {
+    if (!closed.compareAndSet(false, true))
+      return false;
+
+    if (key != null)
+      key.cancel();
+    try
+    {
+      socket.close();
+    }
+    catch (IOException ex) {}
+    synchronized (outbound)
+    {
+      outbound.clear();
+    }
+    transport.unregister(connection);
+    return true;
+  }
+
+  private void schedule()
+  {
+    try
+    {
+      transport.handlers().execute(new Runnable()
+      {
+        public void run()
+        {
+          drain();
+        }
+      });
+    }
+    catch (RejectedExecutionException ex)
+    {
+      // Transport shut down; pending work is dropped with the connection
+      inbound.clear();
+      draining.set(false);
+    }
+  }
+
+  private void drain()
+  {
+    Runnable task;
+    while ((task = inbound.poll()) != null)
+    {
+      try
+      {
+        task.run();
+      }
+      catch (RuntimeException ex)
+      {
+        System.err.println("Error handling client message: " + ex);
+      }
+    }
+    draining.set(false);
+
+    // A task may have been added after the last poll
+    if (!inbound.isEmpty() && draining.compareAndSet(false, true))
+      schedule();
+  }
+
+  private static void transfer(ByteBuffer source, ByteBuffer target)
+  {
+    int count = Math.min(source.remaining(), target.remaining());
+    int limit = source.limit();
+    source.limit(source.position() + count);
+    target.put(source);
+    source.limit(limit);
+  }
+}
+// End of NioChannel class
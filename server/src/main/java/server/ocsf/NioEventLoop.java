@@ -0,0 +1,172 @@
+package server.ocsf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+* A single selector thread serving a share of the NIO connections.
+* It performs every read and the writes that could not complete
+* immediately, but never runs application code: complete frames are
+* handed to the transport's handler pool.
+*
+* @see NioTransport
+*/
+final class NioEventLoop implements Runnable
+{
+// INSTANCE VARIABLES ***********************************************
+
+  /**
+  * The selector watching this loop's channels.
+  */
+  private final Selector selector;
+
+  /**
+  * Work submitted by other threads, run between two selects.
+  */
+  private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+  /**
+  * Scratch buffer shared by every channel of this loop. Each read is
+  * fully consumed before the next channel is served, so one buffer
+  * per loop is enough.
+  */
+  private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(64 * 1024);
+
+  /**
+  * The thread running this loop.
+  */
+  private final Thread thread;
+
+  /**
+  * Cleared to make the loop exit.
+  */
+  private volatile boolean running = true;
+
+// CONSTRUCTORS *****************************************************
+
+  /**
+   * Opens the selector and starts the loop thread.
+   *
+   * @param name the thread name.
+   * @exception IOException if the selector cannot be opened.
+   */
+  NioEventLoop(String name) throws IOException
+  {
+    selector = Selector.open();
+    thread = new Thread(this, name);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+// INSTANCE METHODS *************************************************
+
+  /**
+   * @return the selector channels of this loop register with.
+   */
+  Selector selector()
+  {
+    return selector;
+  }
+
+  /**
+   * Runs a task on the loop thread.
+   *
+   * @param task the task to run.
+   */
+  void execute(Runnable task)
+  {
+    tasks.add(task);
+    selector.wakeup();
+  }
+
+  /**
+   * Wakes the loop up so new registrations and interest changes are
+   * taken into account.
+   */
+  void wakeup()
+  {
+    selector.wakeup();
+  }
+
+  /**
+   * Stops the loop. Channels still registered are closed by the
+   * owner of their connections, not by the loop.
+   */
+  void shutdown()
+  {
+    running = false;
+    selector.wakeup();
+  }
+
+// RUN METHOD -------------------------------------------------------
+
+  /**
+   * Selects ready channels and services them until shut down.
+   * Not to be called.
+   */
+  public void run()
+  {
+    try
+    {
+      while (running)
+      {
+        selector.select();
+        runTasks();
+
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext())
+        {
+          SelectionKey key = keys.next();
+          keys.remove();
+          NioChannel channel = (NioChannel)key.attachment();
+          try
+          {
+            if (key.isValid() && key.isReadable())
+              channel.onReadable(readBuffer);
+            if (key.isValid() && key.isWritable())
+              channel.onWritable();
+          }
+          catch (CancelledKeyException ex)
+          {
+            // Closed by another thread while being serviced
+          }
+        }
+      }
+    }
+    catch (IOException ex)
+    {
+      System.err.println("NIO event loop failed: " + ex.getMessage());
+    }
+    finally
+    {
+      try
+      {
+        selector.close();
+      }
+      catch (IOException ex) {}
+    }
+  }
+
+  private void runTasks()
+  {
+    Runnable task;
+    while ((task = tasks.poll()) != null)
+    {
+      try
+      {
+        task.run();
+      }
+      catch (RuntimeException ex)
+      {
+        System.err.println("NIO event loop task failed: " + ex);
+      }
+    }
+  }
+}
+// End of NioEventLoop class
@@ -0,0 +1,200 @@
+package server.ocsf;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+* Selector-based transport used by <code>AbstractServer</code> in
+* <code>NIO</code> mode. The listening thread of the server accepts
+* connections through this class and spreads them round-robin over a
+* fixed set of <code>NioEventLoop</code>s. Messages are handled on a
+* separate pool so that a slow handler never stalls a selector.
+*
+* @see TransportMode#NIO
+*/
+final class NioTransport
+{
+// INSTANCE VARIABLES ***********************************************
+
+  private final AbstractServer server;
+  private final ServerSocketChannel serverChannel;
+  private final Selector acceptSelector;
+  private final NioEventLoop[] loops;
+  private final ExecutorService handlers;
+  private final AtomicInteger nextLoop = new AtomicInteger();
+
+// CONSTRUCTORS *****************************************************
+
+  /**
+   * Binds the listening channel and starts the event loops.
+   *
+   * @param server the server owning the connections.
+   * @param port the port to listen on.
+   * @param backlog the accept backlog.
+   * @param eventLoops the number of selector threads.
+   * @param handlerThreads the size of the message handler pool, or 0
+   *        to run every handler task on its own virtual thread.
+   * @exception IOException if the port cannot be bound.
+   */
+  NioTransport(AbstractServer server, int port, int backlog,
+    int eventLoops, int handlerThreads) throws IOException
+  {
+    this.server = server;
+    this.serverChannel = ServerSocketChannel.open();
+    try
+    {
+      serverChannel.bind(new InetSocketAddress(port), backlog);
+      serverChannel.configureBlocking(false);
+      acceptSelector = Selector.open();
+      serverChannel.register(acceptSelector, SelectionKey.OP_ACCEPT);
+
+      loops = new NioEventLoop[eventLoops];
+      for (int i = 0; i < loops.length; i++)
+        loops[i] = new NioEventLoop("NIO event loop " + i);
+    }
+    catch (IOException ex)
+    {
+      serverChannel.close();
+      throw ex;
+    }
+
+    handlers = handlerThreads > 0
+      ? Executors.newFixedThreadPool(handlerThreads,
+          namedDaemonThreads("NIO handler "))
+      : Executors.newThreadPerTaskExecutor(
+          Thread.ofVirtual().name("NIO handler ", 0).factory());
+  }
+
+// INSTANCE METHODS *************************************************
+
+  /**
+   * Waits up to <code>timeout</code> ms for connection attempts and
+   * accepts all of them. Called repeatedly by the listening thread.
+   *
+   * @param timeout the select timeout in ms.
+   * @exception IOException if the listening channel fails.
+   */
+  void acceptConnections(int timeout) throws IOException
+  {
+    try
+    {
+      if (acceptSelector.select(timeout) == 0)
+        return;
+    }
+    catch (ClosedSelectorException ex)
+    {
+      throw new ClosedChannelException();
+    }
+
+    Iterator<SelectionKey> keys = acceptSelector.selectedKeys().iterator();
+    while (keys.hasNext())
+    {
+      keys.next();
+      keys.remove();
+
+      SocketChannel socket;
+      while ((socket = serverChannel.accept()) != null)
+        accepted(socket);
+    }
+  }
+
+  /**
+   * @return the pool running message handlers.
+   */
+  ExecutorService handlers()
+  {
+    return handlers;
+  }
+
+  /**
+   * Picks the codec a client asked for in its handshake.
+   */
+  PayloadCodec negotiateCodec(int requestedId)
+  {
+    return server.negotiateCodec(requestedId);
+  }
+
+  /**
+   * Removes a closed connection from the server's registry.
+   */
+  void unregister(ConnectionToClient connection)
+  {
+    if (connection != null)
+      server.unregisterConnection(connection);
+  }
+
+  /**
+   * Closes the listening channel and stops the event loops and the
+   * handler pool. Connections must be closed by the caller first.
+   */
+  void close() throws IOException
+  {
+    try
+    {
+      acceptSelector.close();
+      serverChannel.close();
+    }
+    finally
+    {
+      for (int i = 0; i < loops.length; i++)
+        loops[i].shutdown();
+      handlers.shutdown();
+    }
+  }
+
+// METHODS TO BE USED FROM WITHIN THE FRAMEWORK ONLY ----------------
+
+  private void accepted(SocketChannel socket)
+  {
+    NioChannel channel = null;
+    try
+    {
+      socket.configureBlocking(false);
+      socket.setOption(StandardSocketOptions.TCP_NODELAY, Boolean.TRUE);
+
+      NioEventLoop loop =
+        loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+      channel = new NioChannel(socket, loop, this);
+      ConnectionToClient connection = new ConnectionToClient(channel, server);
+      server.registerConnection(connection);
+      channel.open();
+    }
+    catch (IOException ex)
+    {
+      if (channel != null)
+        channel.close();
+      try
+      {
+        socket.close();
+      }
+      catch (IOException e) {}
+    }
+  }
+
+  static ThreadFactory namedDaemonThreads(final String prefix)
+  {
+    final AtomicInteger count = new AtomicInteger();
+    return new ThreadFactory()
+    {
+      public Thread newThread(Runnable r)
+      {
+        Thread t = new Thread(r, prefix + count.getAndIncrement());
+        t.setDaemon(true);
+        return t;
+      }
+    };
+  }
+}
+// End of NioTransport class
@@ -0,0 +1,32 @@
+package server.ocsf;
+
+/**
+* Selects how an <code>AbstractServer</code> accepts connections and
+* reads from them. The mode must be chosen before
+* <code>listen()</code> is called.
+*
+* @see AbstractServer#setTransportMode(TransportMode)
+*/
+public enum TransportMode
+{
+  /**
+  * One platform thread per connection, blocked on the socket stream.
+  * Accepts both legacy object-stream clients and framed clients.
+  */
+  BLOCKING,
+
+  /**
+  * Like <code>BLOCKING</code> but each connection runs on a JDK
+  * virtual thread, so handlers blocked on the database or the socket
+  * only hold a small heap-allocated stack. Accepts both protocols.
+  */
+  VIRTUAL_THREADS,
+
+  /**
+  * A few selector event-loop threads multiplex every connection
+  * using non-blocking channels. Messages are handled on a separate
+  * handler pool. Only framed clients are accepted.
+  */
+  NIO
+}
+// End of TransportMode enum
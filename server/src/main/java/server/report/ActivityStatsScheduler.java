@@ -1,8 +1,5 @@
 package server.report;
 
-import org.hibernate.Session;
-import org.hibernate.SessionFactory;
-
 import java.time.*;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -18,12 +15,13 @@ public class ActivityStatsScheduler {
             });
 
     /**
-     * Start a daily job that runs at 23:59 (server time zone)
-     * and triggers ReportManager daily refresh for ALL reports.
+     * Start a daily job that runs at 00:05 (server time zone), just after the
+     * day ends, and triggers ReportManager daily refresh for ALL reports.
+     * The activity report seals the day that ended then.
      */
     public static void start(ReportManager reportManager) {
 
-        long initialDelaySeconds = secondsUntilNextRun(23, 59);
+        long initialDelaySeconds = secondsUntilNextRun(0, 5);
         long periodSeconds = TimeUnit.DAYS.toSeconds(1);
 
         exec.scheduleAtFixedRate(
@@ -61,78 +59,4 @@ public class ActivityStatsScheduler {
             e.printStackTrace();
         }
     }
-
-    /**
-     * Aggregates all stats for one day into daily_city_activity_stats.
-     * Day definition: [day 00:00, next day 00:00)
-     */
-    public static void aggregateDay(SessionFactory sf, LocalDate day) {
-
-        LocalDateTime start = day.atStartOfDay();
-        LocalDateTime end = day.plusDays(1).atStartOfDay();
-
-        try (Session s = sf.openSession()) {
-            s.beginTransaction();
-
-            s.createNativeQuery("""
-                INSERT INTO daily_city_activity_stats
-                    (city_id, stat_date, one_time_purchases, subscriptions, subscription_renewals, views, downloads)
-                SELECT
-                    c.id,
-                    :statDate,
-
-                    (SELECT COUNT(*)
-                       FROM purchases p
-                      WHERE p.city_id = c.id
-                        AND p.purchase_type = 'ONE_TIME'
-                        AND p.purchase_date >= :dayDate
-                        AND p.purchase_date < :dayDatePlus1),
-
-                    (SELECT COUNT(*)
-                       FROM purchases p
-                      WHERE p.city_id = c.id
-                        AND p.purchase_type = 'SUBSCRIPTION'
-                        AND p.is_renewal = 0
-                        AND p.purchase_date >= :dayDate
-                        AND p.purchase_date < :dayDatePlus1),
-
-                    (SELECT COUNT(*)
-                       FROM purchases p
-                      WHERE p.city_id = c.id
-                        AND p.purchase_type = 'SUBSCRIPTION'
-                        AND p.is_renewal = 1
-                        AND p.purchase_date >= :dayDate
-                        AND p.purchase_date < :dayDatePlus1),
-
-                    (SELECT COUNT(*)
-                       FROM map_view_events v
-                      WHERE v.city_id = c.id
-                        AND v.viewed_at >= :startTs
-                        AND v.viewed_at < :endTs),
-
-                    (SELECT COUNT(*)
-                       FROM map_download_events d
-                      WHERE d.city_id = c.id
-                        AND d.is_subscriber = 1
-                        AND d.downloaded_at >= :startTs
-                        AND d.downloaded_at < :endTs)
-
-                FROM cities c
-                ON DUPLICATE KEY UPDATE
-                    one_time_purchases = VALUES(one_time_purchases),
-                    subscriptions = VALUES(subscriptions),
-                    subscription_renewals = VALUES(subscription_renewals),
-                    views = VALUES(views),
-                    downloads = VALUES(downloads)
-            """)
-                    .setParameter("statDate", java.sql.Date.valueOf(day))
-                    .setParameter("dayDate", java.sql.Date.valueOf(day))
-                    .setParameter("dayDatePlus1", java.sql.Date.valueOf(day.plusDays(1)))
-                    .setParameter("startTs", start)
-                    .setParameter("endTs", end)
-                    .executeUpdate();
-
-            s.getTransaction().commit();
-        }
-    }
 }
@@ -0,0 +1,273 @@
+package server.report;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps daily_city_activity_stats complete so reports only read it.
+ *
+ * A day is sealed once it is over and its purchase counts have been computed
+ * after its end; purchases are only ever added with the current date, so a
+ * sealed day never changes again. Sealed days are tracked as a watermark in
+ * daily_stats_state (every day up to {@code sealed_through}), and
+ * {@link #prepare(LocalDate)} seals the days between the watermark and
+ * yesterday with one grouped statement per source table rather than one
+ * statement per day. After the first report that is at most one day.
+ *
+ * The current day is maintained as it happens: each purchase adds one to its
+ * city's row in the transaction that inserts it ({@link #countPurchase}), and
+ * views and downloads are added by the event log compactor. The day is
+ * computed exactly once when the server first prepares a report (purchases
+ * made before it started) and again when it is sealed.
+ *
+ * Views and downloads of the old map_view_events/map_download_events tables
+ * only seed rows that do not exist yet; the compactor owns those columns.
+ */
+public class DailyStatsAggregator {
+
+    private static final String COUNT_PURCHASE = """
+            INSERT INTO daily_city_activity_stats
+                (city_id, stat_date, one_time_purchases, subscriptions, subscription_renewals)
+            VALUES (?, ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE
+                one_time_purchases = one_time_purchases + VALUES(one_time_purchases),
+                subscriptions = subscriptions + VALUES(subscriptions),
+                subscription_renewals = subscription_renewals + VALUES(subscription_renewals)
+            """;
+
+    static final int STATE_ID = 1;
+
+    private final SessionFactory sf;
+    private final RollupMaintainer rollups;
+
+    /** Last day known to be sealed, null until read from the database; guarded by this. */
+    private LocalDate sealedThrough;
+    /** The day whose row was last computed exactly; guarded by this. */
+    private LocalDate reconciledDay;
+    private boolean tableChecked;
+
+    private final AtomicLong sealedDays = new AtomicLong();
+    private final AtomicLong statements = new AtomicLong();
+
+    public DailyStatsAggregator(SessionFactory sf) {
+        this.sf = sf;
+        this.rollups = new RollupMaintainer(sf);
+    }
+
+    /** The week/month/year totals kept on top of the sealed days. */
+    public RollupMaintainer getRollups() {
+        return rollups;
+    }
+
+    // ==================== REPORTS ====================
+
+    /**
+     * Makes the stats complete up to {@code to}: seals any unsealed past day
+     * and, if the range reaches today, computes today once per server run.
+     * Usually does nothing.
+     */
+    public synchronized void prepare(LocalDate to) {
+        LocalDate today = LocalDate.now();
+        LocalDate yesterday = today.minusDays(1);
+        sealThrough(to.isBefore(yesterday) ? to : yesterday);
+        if (!to.isBefore(today) && !today.equals(reconciledDay)) {
+            aggregate(today, today);
+            reconciledDay = today;
+        }
+    }
+
+    /**
+     * Seals every day up to {@code day}, then writes the rollup buckets those
+     * days complete; for the daily scheduler, which seals yesterday.
+     */
+    public synchronized void sealThrough(LocalDate day) {
+        LocalDate sealed = getSealedThrough();
+        if (sealed.isBefore(day)) {
+            LocalDate from = sealed.plusDays(1);
+            aggregate(from, day);
+            writeWatermark(day);
+            sealedDays.addAndGet(day.toEpochDay() - from.toEpochDay() + 1);
+            sealedThrough = day;
+        }
+        rollups.catchUp(sealedThrough);
+    }
+
+    /** Last sealed day, read from the database on first use. */
+    public synchronized LocalDate getSealedThrough() {
+        if (sealedThrough == null) {
+            ensureTables();
+            sealedThrough = readState(sf, STATE_ID);
+        }
+        return sealedThrough;
+    }
+
+    // ==================== AGGREGATION ====================
+
+    /**
+     * Recomputes the purchase counts of every city and day in [from, to] and
+     * seeds rows missing for days with old view/download rows, in one
+     * transaction of three statements.
+     */
+    public void aggregate(LocalDate from, LocalDate to) {
+        Date fromDate = Date.valueOf(from);
+        Date toDate = Date.valueOf(to);
+        Date endDate = Date.valueOf(to.plusDays(1));
+
+        try (Session s = sf.openSession()) {
+            s.beginTransaction();
+
+            s.createNativeQuery("""
+                INSERT INTO daily_city_activity_stats (city_id, stat_date, views, downloads)
+                SELECT e.city_id, e.stat_date, SUM(e.views), SUM(e.downloads)
+                FROM (
+                    SELECT v.city_id, DATE(v.viewed_at) AS stat_date, 1 AS views, 0 AS downloads
+                      FROM map_view_events v
+                     WHERE v.viewed_at >= :fromDate AND v.viewed_at < :endDate
+                    UNION ALL
+                    SELECT d.city_id, DATE(d.downloaded_at), 0, 1
+                      FROM map_download_events d
+                     WHERE d.is_subscriber = 1
+                       AND d.downloaded_at >= :fromDate AND d.downloaded_at < :endDate
+                ) e
+                GROUP BY e.city_id, e.stat_date
+                ON DUPLICATE KEY UPDATE views = daily_city_activity_stats.views
+            """)
+                    .setParameter("fromDate", fromDate)
+                    .setParameter("endDate", endDate)
+                    .executeUpdate();
+
+            s.createNativeQuery("""
+                UPDATE daily_city_activity_stats
+                   SET one_time_purchases = 0, subscriptions = 0, subscription_renewals = 0
+                 WHERE stat_date >= :fromDate AND stat_date <= :toDate
+            """)
+                    .setParameter("fromDate", fromDate)
+                    .setParameter("toDate", toDate)
+                    .executeUpdate();
+
+            s.createNativeQuery("""
+                INSERT INTO daily_city_activity_stats
+                    (city_id, stat_date, one_time_purchases, subscriptions, subscription_renewals)
+                SELECT p.city_id, p.purchase_date,
+                       SUM(p.purchase_type = 'ONE_TIME'),
+                       SUM(p.purchase_type = 'SUBSCRIPTION' AND p.is_renewal = 0),
+                       SUM(p.purchase_type = 'SUBSCRIPTION' AND p.is_renewal = 1)
+                FROM purchases p
+                WHERE p.city_id IS NOT NULL
+                  AND p.purchase_date >= :fromDate AND p.purchase_date <= :toDate
+                GROUP BY p.city_id, p.purchase_date
+                ON DUPLICATE KEY UPDATE
+                    one_time_purchases = VALUES(one_time_purchases),
+                    subscriptions = VALUES(subscriptions),
+                    subscription_renewals = VALUES(subscription_renewals)
+            """)
+                    .setParameter("fromDate", fromDate)
+                    .setParameter("toDate", toDate)
+                    .executeUpdate();
+
+            s.getTransaction().commit();
+            statements.addAndGet(3);
+        }
+    }
+
+    /**
+     * Adds one purchase to its city's row for the day, on the connection of
+     * the transaction that inserts the purchase.
+     */
+    public static void countPurchase(Connection connection, int cityId, LocalDate day, boolean subscription,
+                                     boolean renewal) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(COUNT_PURCHASE)) {
+            ps.setInt(1, cityId);
+            ps.setDate(2, Date.valueOf(day));
+            ps.setInt(3, subscription ? 0 : 1);
+            ps.setInt(4, subscription && !renewal ? 1 : 0);
+            ps.setInt(5, subscription && renewal ? 1 : 0);
+            ps.executeUpdate();
+        }
+    }
+
+    // ==================== WATERMARK ====================
+
+    private synchronized void ensureTables() {
+        if (tableChecked) {
+            return;
+        }
+        try (Session s = sf.openSession()) {
+            s.beginTransaction();
+            s.createNativeQuery("""
+                CREATE TABLE IF NOT EXISTS daily_stats_state (
+                    id TINYINT PRIMARY KEY,
+                    sealed_through DATE NOT NULL
+                )
+            """).executeUpdate();
+            s.getTransaction().commit();
+        }
+        tableChecked = true;
+    }
+
+    /**
+     * A stored watermark (row 1: sealed days, row 2: rollups); without one,
+     * the day before the earliest purchase or event, so the first catch-up
+     * covers all history.
+     */
+    static LocalDate readState(SessionFactory sf, int id) {
+        try (Session s = sf.openSession()) {
+            Object stored = s.createNativeQuery("SELECT sealed_through FROM daily_stats_state WHERE id = :id")
+                    .setParameter("id", id)
+                    .getSingleResultOrNull();
+            if (stored != null) {
+                return toLocalDate(stored);
+            }
+            Object earliest = s.createNativeQuery("""
+                SELECT LEAST(
+                    COALESCE((SELECT MIN(purchase_date) FROM purchases), CURRENT_DATE),
+                    COALESCE((SELECT DATE(MIN(viewed_at)) FROM map_view_events), CURRENT_DATE),
+                    COALESCE((SELECT DATE(MIN(downloaded_at)) FROM map_download_events), CURRENT_DATE))
+            """).getSingleResult();
+            return toLocalDate(earliest).minusDays(1);
+        }
+    }
+
+    private void writeWatermark(LocalDate day) {
+        try (Session s = sf.openSession()) {
+            s.beginTransaction();
+            s.createNativeQuery("""
+                INSERT INTO daily_stats_state (id, sealed_through) VALUES (:id, :day)
+                ON DUPLICATE KEY UPDATE sealed_through = VALUES(sealed_through)
+            """)
+                    .setParameter("id", STATE_ID)
+                    .setParameter("day", Date.valueOf(day))
+                    .executeUpdate();
+            s.getTransaction().commit();
+        }
+    }
+
+    private static LocalDate toLocalDate(Object value) {
+        if (value instanceof Date date) return date.toLocalDate();
+        if (value instanceof LocalDate date) return date;
+        return LocalDate.parse(value.toString().substring(0, 10));
+    }
+
+    /** Days sealed since startup. */
+    public long getSealedDayCount() {
+        return sealedDays.get();
+    }
+
+    /** Aggregation statements run since startup. */
+    public long getStatementCount() {
+        return statements.get();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "DailyStatsAggregator [sealedThrough=" + sealedThrough + ", reconciled=" + reconciledDay
+                + ", sealedDays=" + getSealedDayCount() + ", statements=" + getStatementCount() + "]";
+    }
+}
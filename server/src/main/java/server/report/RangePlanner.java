@@ -0,0 +1,98 @@
+package server.report;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a date range into the coarsest buckets that cover it exactly.
+ *
+ * Years are taken first, then months in what is left on either side, then
+ * ISO weeks (Monday to Sunday), and single days for the rest. A bucket is
+ * only used if it lies inside the range and has been rolled up, i.e. ends on
+ * or before the rollup watermark. Consecutive buckets of one granularity are
+ * merged into one {@link Piece}, so a plan has a handful of pieces: days,
+ * weeks, months, years, months, weeks, days, and a few more where the
+ * rollups end before the range does.
+ *
+ * A five-year report therefore reads about five yearly rows per city plus a
+ * few dozen at the edges, instead of some 1800 daily rows.
+ */
+public final class RangePlanner {
+
+    private RangePlanner() {}
+
+    public enum Granularity {
+        DAY, WEEK, MONTH, YEAR;
+
+        /** First day of the bucket holding {@code day}. */
+        public LocalDate startOf(LocalDate day) {
+            return switch (this) {
+                case DAY -> day;
+                case WEEK -> day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case MONTH -> day.withDayOfMonth(1);
+                case YEAR -> day.withDayOfYear(1);
+            };
+        }
+
+        /** Last day of the bucket starting on {@code start}. */
+        public LocalDate endOf(LocalDate start) {
+            return switch (this) {
+                case DAY -> start;
+                case WEEK -> start.plusDays(6);
+                case MONTH -> start.plusMonths(1).minusDays(1);
+                case YEAR -> start.plusYears(1).minusDays(1);
+            };
+        }
+    }
+
+    /**
+     * Buckets of one granularity covering [start, end]; for DAY a run of days,
+     * otherwise the buckets whose first day lies in [start, end].
+     */
+    public record Piece(Granularity granularity, LocalDate start, LocalDate end) {}
+
+    /**
+     * @param rolledThrough last day covered by the rollups, or null if there are none
+     * @return pieces in date order covering [from, to] exactly; empty if from is after to
+     */
+    public static List<Piece> plan(LocalDate from, LocalDate to, LocalDate rolledThrough) {
+        List<Piece> pieces = new ArrayList<>();
+        cover(from, to, rolledThrough, Granularity.YEAR, pieces);
+        return pieces;
+    }
+
+    private static void cover(LocalDate from, LocalDate to, LocalDate rolledThrough, Granularity level,
+                              List<Piece> pieces) {
+        if (from.isAfter(to)) {
+            return;
+        }
+        if (level == Granularity.DAY) {
+            pieces.add(new Piece(Granularity.DAY, from, to));
+            return;
+        }
+        Granularity finer = Granularity.values()[level.ordinal() - 1];
+
+        LocalDate first = level.startOf(from);
+        if (first.isBefore(from)) {
+            first = level.endOf(first).plusDays(1);
+        }
+        // Without rollups no bucket qualifies, so the range is planned as days only
+        LocalDate limit = rolledThrough == null ? from.minusDays(1)
+                : rolledThrough.isAfter(to) ? to : rolledThrough;
+        LocalDate last = null;
+        for (LocalDate start = first; !level.endOf(start).isAfter(limit); start = level.endOf(start).plusDays(1)) {
+            last = start;
+        }
+        if (last == null) {
+            cover(from, to, rolledThrough, finer, pieces);
+            return;
+        }
+
+        cover(from, first.minusDays(1), rolledThrough, finer, pieces);
+        pieces.add(new Piece(level, first, last));
+        cover(level.endOf(last).plusDays(1), to, rolledThrough, finer, pieces);
+    }
+}
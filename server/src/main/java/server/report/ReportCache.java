@@ -0,0 +1,295 @@
+package server.report;
+
+import common.enums.ReportType;
+import common.report.ActivityReport;
+import common.report.PurchasesReport;
+import server.ServerConfig;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generated reports, by report type and parameters.
+ *
+ * A report whose range ended before yesterday only reads sealed days, so it
+ * is kept until the memory budget pushes it out (least recently used first),
+ * unless the compactor replays events of an older day it covers
+ * ({@link #daysChanged}). A report that includes today or yesterday is "live"
+ * (yesterday's last events may still be waiting in the event log): it is
+ * dropped as soon as a purchase of a city it covers is committed, or the
+ * compactor has folded views and downloads of that city into the daily
+ * stats, and at midnight. Reports also show city names and map counts, so
+ * every entry is dropped on a catalog change.
+ *
+ * A report computed while one of its cities changed is returned but not
+ * kept, since it may have missed the change.
+ */
+public class ReportCache {
+
+    /**
+     * What a report's result depends on.
+     *
+     * @param from   first day of the range
+     * @param to     last day of the range
+     * @param cityId the one city covered, or null for all cities
+     */
+    public record Scope(LocalDate from, LocalDate to, Integer cityId) {}
+
+    private record Key(ReportType type, List<Object> params) {}
+
+    private static final class Entry {
+        final Object report;
+        final Scope scope;
+        final LocalDate liveOn;     // the day it was kept on if live, else null
+        final long bytes;
+
+        Entry(Object report, Scope scope, LocalDate liveOn, long bytes) {
+            this.report = report;
+            this.scope = scope;
+            this.liveOn = liveOn;
+            this.bytes = bytes;
+        }
+    }
+
+    private static ReportCache instance;
+
+    private final long budgetBytes;
+
+    /** Access-ordered, eldest first; guarded by this. */
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    /** Live entries by city; entries of all cities are under null. Guarded by this. */
+    private final Map<Integer, Set<Key>> liveByCity = new HashMap<>();
+    private long cachedBytes;
+
+    /** Bumped on every change a report may depend on. */
+    private final AtomicLong changeStamp = new AtomicLong();
+    private volatile int liveEntries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @param budgetBytes estimated size of the reports kept; 0 keeps none
+     */
+    public ReportCache(long budgetBytes) {
+        this.budgetBytes = Math.max(0, budgetBytes);
+    }
+
+    /** The server's cache, sized by {@link ServerConfig#reportCacheMb()}. */
+    public static synchronized ReportCache getInstance() {
+        if (instance == null) {
+            instance = new ReportCache(ServerConfig.reportCacheMb() * 1024L * 1024L);
+        }
+        return instance;
+    }
+
+    /**
+     * A stamp to pass to {@link #put}; take it before generating the report.
+     */
+    public long stamp() {
+        return changeStamp.get();
+    }
+
+    /**
+     * @return the cached report, or null
+     */
+    public synchronized Object get(ReportType type, Object[] params) {
+        Key key = key(type, params);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.liveOn != null && !entry.liveOn.equals(LocalDate.now())) {
+            remove(key);    // the day it was live on is over
+            entry = null;
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.report;
+    }
+
+    /**
+     * Keeps a report generated after {@link #stamp()} returned {@code stamp}.
+     */
+    public synchronized void put(ReportType type, Object[] params, Scope scope, Object report, long stamp) {
+        LocalDate today = LocalDate.now();
+        boolean live = !scope.to().isBefore(today.minusDays(1));
+        if (changeStamp.get() != stamp) {
+            return;     // a city changed while it was being generated
+        }
+        long bytes = estimateBytes(report);
+        if (bytes > budgetBytes) {
+            return;
+        }
+        Key key = key(type, params);
+        remove(key);
+        entries.put(key, new Entry(report, scope, live ? today : null, bytes));
+        cachedBytes += bytes;
+        if (live) {
+            liveByCity.computeIfAbsent(scope.cityId(), city -> new HashSet<>()).add(key);
+            liveEntries++;
+        }
+
+        Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+        while (cachedBytes > budgetBytes && eldest.hasNext()) {
+            Map.Entry<Key, Entry> victim = eldest.next();
+            eldest.remove();
+            forget(victim.getKey(), victim.getValue());
+            evictions.incrementAndGet();
+        }
+    }
+
+    // ==================== INVALIDATION ====================
+
+    /**
+     * New purchases or compacted events of {@code cityId} are in the tables:
+     * drops the live reports of that city and of all cities. Cheap when there are none.
+     */
+    public void cityChanged(int cityId) {
+        changeStamp.incrementAndGet();
+        if (liveEntries == 0) {
+            return;
+        }
+        synchronized (this) {
+            drop(liveByCity.get(cityId));
+            drop(liveByCity.get(null));
+        }
+    }
+
+    /**
+     * Compacted events of {@code cityId} between {@code first} and
+     * {@code last} are in the tables: drops the live reports of that city
+     * and of all cities, and every other report whose range covers any of
+     * those days. Older days only change when the compactor replays a
+     * segment, so the scan of the sealed entries is rare.
+     */
+    public void daysChanged(int cityId, LocalDate first, LocalDate last) {
+        cityChanged(cityId);
+        if (!first.isBefore(LocalDate.now().minusDays(1))) {
+            return;     // only live reports cover these days
+        }
+        synchronized (this) {
+            Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Key, Entry> e = it.next();
+                Scope scope = e.getValue().scope;
+                if ((scope.cityId() == null || scope.cityId() == cityId)
+                        && !scope.from().isAfter(last) && !scope.to().isBefore(first)) {
+                    it.remove();
+                    forget(e.getKey(), e.getValue());
+                    invalidations.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /** Cities, maps or prices changed: drops every report. */
+    public synchronized void catalogChanged() {
+        changeStamp.incrementAndGet();
+        invalidations.addAndGet(entries.size());
+        entries.clear();
+        liveByCity.clear();
+        liveEntries = 0;
+        cachedBytes = 0;
+    }
+
+    private void drop(Set<Key> keys) {
+        if (keys == null) {
+            return;
+        }
+        for (Key key : List.copyOf(keys)) {
+            remove(key);
+            invalidations.incrementAndGet();
+        }
+    }
+
+    private void remove(Key key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            forget(key, entry);
+        }
+    }
+
+    private void forget(Key key, Entry entry) {
+        cachedBytes -= entry.bytes;
+        if (entry.liveOn != null) {
+            Set<Key> keys = liveByCity.get(entry.scope.cityId());
+            if (keys != null && keys.remove(key)) {
+                liveEntries--;
+                if (keys.isEmpty()) {
+                    liveByCity.remove(entry.scope.cityId());
+                }
+            }
+        }
+    }
+
+    private static Key key(ReportType type, Object[] params) {
+        return new Key(type, Arrays.asList(params.clone()));
+    }
+
+    /** Rough heap size of a report: object headers, fields and strings. */
+    static long estimateBytes(Object report) {
+        if (report instanceof ActivityReport activity) {
+            long bytes = 96;
+            for (ActivityReport.CityRow row : activity.rows) {
+                bytes += 72 + 48 + 2L * (row.cityName == null ? 0 : row.cityName.length());
+            }
+            return bytes;
+        }
+        if (report instanceof PurchasesReport purchases) {
+            return 160 + 2L * (purchases.cityName == null ? 0 : purchases.cityName.length());
+        }
+        return 1024;
+    }
+
+    // ==================== METRICS ====================
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /** Reports pushed out by the memory budget. */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /** Reports dropped because their cities or the catalog changed. */
+    public long getInvalidationCount() {
+        return invalidations.get();
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ReportCache [entries=" + entries.size() + " (" + liveEntries + " live)"
+                + ", bytes=" + cachedBytes + "/" + budgetBytes
+                + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+                + ", evictions=" + getEvictionCount()
+                + ", invalidations=" + getInvalidationCount() + "]";
+    }
+}
@@ -0,0 +1,204 @@
+package server.report;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the parts of reports on a small pool of its own, apart from the
+ * request dispatcher's workers.
+ *
+ * Each part holds at most one database connection while it runs, so the
+ * thread count is the most connections reports can take from the Hikari pool
+ * at once, whatever the number of reports in flight; catalog and purchase
+ * requests keep the rest. On top of that only {@code maxConcurrent} reports
+ * may be running at a time: {@link #admit(ReportJob)} turns away the next one
+ * instead of letting a burst queue up behind the pool.
+ *
+ * A report is coordinated on the thread that asked for it (a dispatcher
+ * worker), which only forks parts and merges what they return; parts never
+ * fork themselves, so the pool cannot deadlock on its own queue.
+ */
+public class ReportExecutor {
+
+    private final ThreadPoolExecutor workers;
+    private final Semaphore running;
+    private final int maxConcurrent;
+
+    private final AtomicLong reports = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong parts = new AtomicLong();
+
+    /**
+     * @param threads       report parts run at the same time
+     * @param maxConcurrent reports allowed to run at the same time
+     */
+    public ReportExecutor(int threads, int maxConcurrent) {
+        int size = Math.max(1, threads);
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.running = new Semaphore(this.maxConcurrent);
+        this.workers = new ThreadPoolExecutor(
+                size, size,
+                0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                reportThreads());
+    }
+
+    /**
+     * Takes one of the report slots for {@code job}.
+     *
+     * @return false if {@code maxConcurrent} reports are running already
+     */
+    public boolean admit(ReportJob job) {
+        if (!running.tryAcquire()) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        reports.incrementAndGet();
+        return true;
+    }
+
+    /** Gives back the slot taken by {@link #admit(ReportJob)}. */
+    public void release(ReportJob job) {
+        if (job.isCancelled()) {
+            cancelled.incrementAndGet();
+        }
+        running.release();
+    }
+
+    /**
+     * Runs every part on the pool and waits for all of them.
+     *
+     * @return the parts' results, in the order of {@code tasks}
+     * @throws CancellationException if the job is cancelled before all parts are done
+     */
+    public <T> List<T> invokeAll(ReportJob job, List<? extends Callable<T>> tasks) {
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        try {
+            for (Callable<T> task : tasks) {
+                futures.add(job.track(workers.submit(() -> {
+                    job.checkCancelled();
+                    return task.call();
+                })));
+            }
+            parts.addAndGet(tasks.size());
+
+            List<T> results = new ArrayList<>(futures.size());
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw cancel(futures, "Interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            cancel(futures, null);
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            if (cause instanceof Error error) throw error;
+            throw new IllegalStateException(cause);
+        } catch (RejectedExecutionException e) {
+            throw cancel(futures, "Report executor is shut down");
+        } catch (CancellationException e) {
+            cancel(futures, null);
+            job.checkCancelled();   // says whose report it was
+            throw e;
+        } finally {
+            futures.forEach(job::untrack);
+        }
+    }
+
+    private static CancellationException cancel(List<? extends Future<?>> futures, String reason) {
+        for (Future<?> future : futures) {
+            future.cancel(false);   // a part already talking to MySQL finishes; the rest never start
+        }
+        return new CancellationException(reason);
+    }
+
+    /**
+     * Stops taking parts and waits briefly for the queued ones to finish.
+     */
+    public void shutdown() {
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ==================== METRICS ====================
+
+    /** Reports running right now. */
+    public int getRunningReports() {
+        return maxConcurrent - running.availablePermits();
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int getThreads() {
+        return workers.getMaximumPoolSize();
+    }
+
+    /** Parts waiting for a report thread. */
+    public int getQueueDepth() {
+        return workers.getQueue().size();
+    }
+
+    /** Reports admitted since startup. */
+    public long getReportCount() {
+        return reports.get();
+    }
+
+    /** Reports turned away because {@code maxConcurrent} were running. */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /** Reports abandoned because their client went away. */
+    public long getCancelledCount() {
+        return cancelled.get();
+    }
+
+    /** Parts forked since startup. */
+    public long getPartCount() {
+        return parts.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ReportExecutor [running=" + getRunningReports() + "/" + maxConcurrent
+                + ", threads=" + getThreads()
+                + ", queue=" + getQueueDepth()
+                + ", reports=" + getReportCount()
+                + ", parts=" + getPartCount()
+                + ", rejected=" + getRejectedCount()
+                + ", cancelled=" + getCancelledCount() + "]";
+    }
+
+    private static ThreadFactory reportThreads() {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, "ReportWorker-" + count.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
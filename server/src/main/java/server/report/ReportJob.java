@@ -0,0 +1,61 @@
+package server.report;
+
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+
+/**
+ * One report being generated, and the handle to abandon it.
+ *
+ * {@link #cancel()} stops parts that have not started yet and makes the
+ * coordinating thread give up waiting; a part already running its query
+ * finishes, but its result is thrown away.
+ */
+public class ReportJob {
+
+    private final Object requester;
+    private final Set<Future<?>> parts = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled;
+
+    /**
+     * @param requester who asked for the report (the client connection), or null
+     */
+    public ReportJob(Object requester) {
+        this.requester = requester;
+    }
+
+    public Object getRequester() {
+        return requester;
+    }
+
+    public void cancel() {
+        cancelled = true;
+        for (Future<?> part : parts) {
+            part.cancel(false);
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /** Throws if the report was cancelled; for parts and services between steps. */
+    public void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException("Report cancelled for " + requester);
+        }
+    }
+
+    <T> Future<T> track(Future<T> part) {
+        parts.add(part);
+        if (cancelled) {
+            part.cancel(false);
+        }
+        return part;
+    }
+
+    void untrack(Future<?> part) {
+        parts.remove(part);
+    }
+}
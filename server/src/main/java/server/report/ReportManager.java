@@ -2,22 +2,53 @@ package server.report;
 
 import common.enums.ReportType;
 import org.hibernate.SessionFactory;
+import server.ServerConfig;
 import server.report.services.ActivityReportService;
 import server.report.services.ClientsReportService;
 import server.report.services.PurchasesReportService;
 
+import java.util.ArrayList;
 import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
+/**
+ * Generates reports with their registered services.
+ *
+ * A report is coordinated on the calling thread and forks its queries onto
+ * the {@link ReportExecutor}, which also caps how many reports run at once.
+ * Reports are tracked per requester (set with {@link #onBehalfOf}), so
+ * {@link #cancel(Object)} can abandon them when the client disconnects.
+ *
+ * Results of services that name a {@link ReportCache.Scope} are answered
+ * from the {@link ReportCache} when possible, without taking a report slot.
+ */
 public class ReportManager
 {
 
+    private static final ThreadLocal<Object> REQUESTER = new ThreadLocal<>();
+
     private final Map<ReportType, ParamAwareReportService> services = new EnumMap<>(ReportType.class);
+    private final ReportExecutor executor;
+    private final ReportCache cache;
     private final ReportRequestContext ctx;
+    private final Map<Object, Set<ReportJob>> jobs = new ConcurrentHashMap<>();
 
     public ReportManager(SessionFactory sf)
     {
-        this.ctx = new ReportRequestContext(sf);
+        this(sf, new ReportExecutor(ServerConfig.reportThreads(), ServerConfig.reportMaxConcurrent()),
+                ReportCache.getInstance());
+    }
+
+    public ReportManager(SessionFactory sf, ReportExecutor executor, ReportCache cache)
+    {
+        this.executor = executor;
+        this.cache = cache;
+        this.ctx = new ReportRequestContext(sf, executor);
 
         // 🔥 one place to rule them all
         register(new ActivityReportService());
@@ -29,29 +60,115 @@ public class ReportManager
         services.put(service.getType(), service);
     }
 
+    /**
+     * @throws IllegalStateException if too many reports are running already
+     * @throws java.util.concurrent.CancellationException if the requester disconnected meanwhile
+     */
     public <T> T generate(ReportType type, Class<T> expectedClass, Object... params) {
         ParamAwareReportService service = services.get(type);
         if (service == null)
             throw new IllegalArgumentException("Unknown report type: " + type);
 
-        Object out = service.generate(ctx, params);
-        return expectedClass.cast(out);
+        ReportCache.Scope scope = service.cacheScope(params);
+        long stamp = cache.stamp();
+        if (scope != null) {
+            Object cached = cache.get(type, params);
+            if (cached != null) {
+                return expectedClass.cast(cached);
+            }
+        }
+
+        ReportJob job = new ReportJob(REQUESTER.get());
+        if (!executor.admit(job))
+            throw new IllegalStateException("Too many reports are being generated, please try again in a moment.");
+
+        Object requester = job.getRequester();
+        if (requester != null) {
+            jobs.computeIfAbsent(requester, key -> ConcurrentHashMap.newKeySet()).add(job);
+        }
+        try {
+            Object out = service.generate(ctx.forJob(job), params);
+            job.checkCancelled();
+            if (scope != null) {
+                cache.put(type, params, scope, out, stamp);
+            }
+            return expectedClass.cast(out);
+        } finally {
+            if (requester != null) {
+                jobs.computeIfPresent(requester, (key, running) -> {
+                    running.remove(job);
+                    return running.isEmpty() ? null : running;
+                });
+            }
+            executor.release(job);
+        }
     }
 
+    /**
+     * Runs {@code work} with reports it generates attributed to {@code requester}.
+     */
+    public static <T> T onBehalfOf(Object requester, Supplier<T> work) {
+        Object previous = REQUESTER.get();
+        REQUESTER.set(requester);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) REQUESTER.remove();
+            else REQUESTER.set(previous);
+        }
+    }
+
+    /**
+     * Abandons every report generated for {@code requester}.
+     *
+     * @return reports cancelled
+     */
+    public int cancel(Object requester) {
+        Set<ReportJob> running = jobs.remove(requester);
+        if (running == null) {
+            return 0;
+        }
+        running.forEach(ReportJob::cancel);
+        return running.size();
+    }
+
+    /** Refreshes all services at once on the report threads. */
     public void refreshDailyReports() {
+        List<Callable<Void>> refreshes = new ArrayList<>();
         for (ParamAwareReportService s : services.values()) {
-            try {
-                s.refreshDaily(ctx); // all services refresh
-            } catch (Exception e) {
-                System.err.println("[ReportManager] refreshDaily failed for " + s.getType());
-                e.printStackTrace();
-            }
+            refreshes.add(() -> {
+                try {
+                    s.refreshDaily(ctx); // all services refresh
+                } catch (Exception e) {
+                    System.err.println("[ReportManager] refreshDaily failed for " + s.getType());
+                    e.printStackTrace();
+                }
+                return null;
+            });
         }
+        ctx.fork(refreshes);
+    }
+
+    public ReportExecutor getExecutor() {
+        return executor;
+    }
+
+    public ReportCache getCache() {
+        return cache;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
     }
 
 
     // internal helper
     public interface ParamAwareReportService extends ReportService {
         Object generate(ReportRequestContext ctx, Object... params);
+
+        /** What a result depends on, or null if results must not be cached. */
+        default ReportCache.Scope cacheScope(Object... params) {
+            return null;
+        }
     }
 }
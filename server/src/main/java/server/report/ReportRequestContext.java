@@ -2,18 +2,66 @@ package server.report;
 
 import org.hibernate.SessionFactory;
 
+import java.util.List;
+import java.util.concurrent.Callable;
+
 public class ReportRequestContext
 {
 
     private final SessionFactory sessionFactory;
+    private final DailyStatsAggregator statsAggregator;
+    private final ReportExecutor executor;
+    private final ReportJob job;
 
-    public ReportRequestContext(SessionFactory sessionFactory)
+    public ReportRequestContext(SessionFactory sessionFactory, ReportExecutor executor)
+    {
+        this(sessionFactory, new DailyStatsAggregator(sessionFactory), executor, new ReportJob(null));
+    }
+
+    private ReportRequestContext(SessionFactory sessionFactory, DailyStatsAggregator statsAggregator,
+                                 ReportExecutor executor, ReportJob job)
     {
         this.sessionFactory = sessionFactory;
+        this.statsAggregator = statsAggregator;
+        this.executor = executor;
+        this.job = job;
+    }
+
+    /** The same shared state, for one report. */
+    public ReportRequestContext forJob(ReportJob job)
+    {
+        return new ReportRequestContext(sessionFactory, statsAggregator, executor, job);
     }
 
     public SessionFactory getSessionFactory()
     {
         return sessionFactory;
     }
+
+    public DailyStatsAggregator getStatsAggregator()
+    {
+        return statsAggregator;
+    }
+
+    public ReportJob getJob()
+    {
+        return job;
+    }
+
+    /** Parts worth forking per report: one per report thread. */
+    public int getParallelism()
+    {
+        return executor.getThreads();
+    }
+
+    /**
+     * Runs the parts of this report on the report threads and waits for them.
+     * Each part should open its own session.
+     *
+     * @return the parts' results, in order
+     */
+    public <T> List<T> fork(List<? extends Callable<T>> parts)
+    {
+        return executor.invokeAll(job, parts);
+    }
 }
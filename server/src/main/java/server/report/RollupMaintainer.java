@@ -0,0 +1,310 @@
+package server.report;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.query.NativeQuery;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Weekly, monthly and yearly totals per city, kept in city_activity_rollups
+ * next to daily_city_activity_stats, and the range queries that read them.
+ *
+ * A bucket is written once, when its last day has been sealed
+ * ({@link #catchUp(LocalDate)}): one grouped INSERT ... SELECT over the daily
+ * rows per granularity. The rollup watermark (row 2 of daily_stats_state)
+ * is the last day whose buckets are all written. Views and downloads that
+ * the event log compactor adds to an already sealed day are added to the
+ * day's written buckets in the same transaction ({@link #addEvents}),
+ * creating the bucket row when the city had no other activity in it. Both
+ * sides lock the watermark row first, so a bucket is never written between
+ * the compactor reading the watermark and committing.
+ *
+ * {@link #sum} plans a range with {@link RangePlanner} and reads each piece
+ * from the daily or the rollup table in one UNION ALL query.
+ */
+public class RollupMaintainer {
+
+    static final int STATE_ID = 2;
+
+    private static final RangePlanner.Granularity[] ROLLED = {
+            RangePlanner.Granularity.WEEK, RangePlanner.Granularity.MONTH, RangePlanner.Granularity.YEAR
+    };
+
+    private static final String ADD_EVENTS = """
+            INSERT INTO city_activity_rollups (granularity, city_id, period_start, views, downloads)
+            SELECT ?, c.id, ?, ?, ? FROM cities c WHERE c.id = ?
+            ON DUPLICATE KEY UPDATE
+                views = views + VALUES(views),
+                downloads = downloads + VALUES(downloads)
+            """;
+
+    private static final String LOCK_STATE =
+            "SELECT sealed_through FROM daily_stats_state WHERE id = ? FOR UPDATE";
+
+    private static final String COLUMNS =
+            "one_time_purchases, subscriptions, subscription_renewals, views, downloads";
+
+    private final SessionFactory sf;
+
+    /** Last day whose buckets are written; null until read; guarded by this. */
+    private LocalDate rolledThrough;
+    private boolean tableChecked;
+
+    private final AtomicLong builds = new AtomicLong();
+    private final AtomicLong queries = new AtomicLong();
+
+    public RollupMaintainer(SessionFactory sf) {
+        this.sf = sf;
+    }
+
+    // ==================== MAINTENANCE ====================
+
+    /**
+     * Writes every bucket that ends after the rollup watermark and on or
+     * before {@code sealedThrough}, then moves the watermark there.
+     */
+    public synchronized void catchUp(LocalDate sealedThrough) {
+        LocalDate rolled = getRolledThrough();
+        if (!rolled.isBefore(sealedThrough)) {
+            return;
+        }
+        try (Session s = sf.openSession()) {
+            s.beginTransaction();
+            s.doWork(RollupMaintainer::lockRolledThrough);
+            for (RangePlanner.Granularity granularity : ROLLED) {
+                LocalDate first = granularity.startOf(rolled.plusDays(1));
+                LocalDate last = granularity.startOf(sealedThrough);
+                if (granularity.endOf(last).isAfter(sealedThrough)) {
+                    last = granularity.startOf(last.minusDays(1));  // the bucket holding sealedThrough is not complete
+                }
+                if (last.isBefore(first)) {
+                    continue;
+                }
+                s.createNativeQuery("""
+                    INSERT INTO city_activity_rollups (granularity, city_id, period_start, %s)
+                    SELECT :granularity, d.city_id, %s,
+                           SUM(d.one_time_purchases), SUM(d.subscriptions), SUM(d.subscription_renewals),
+                           SUM(d.views), SUM(d.downloads)
+                    FROM daily_city_activity_stats d
+                    WHERE d.stat_date >= :fromDate AND d.stat_date <= :toDate
+                    GROUP BY d.city_id, %s
+                    ON DUPLICATE KEY UPDATE
+                        one_time_purchases = VALUES(one_time_purchases),
+                        subscriptions = VALUES(subscriptions),
+                        subscription_renewals = VALUES(subscription_renewals),
+                        views = VALUES(views),
+                        downloads = VALUES(downloads)
+                """.formatted(COLUMNS, bucketStart(granularity), bucketStart(granularity)))
+                        .setParameter("granularity", granularity.name())
+                        .setParameter("fromDate", Date.valueOf(first))
+                        .setParameter("toDate", Date.valueOf(granularity.endOf(last)))
+                        .executeUpdate();
+            }
+            s.createNativeQuery("""
+                INSERT INTO daily_stats_state (id, sealed_through) VALUES (:id, :day)
+                ON DUPLICATE KEY UPDATE sealed_through = VALUES(sealed_through)
+            """)
+                    .setParameter("id", STATE_ID)
+                    .setParameter("day", Date.valueOf(sealedThrough))
+                    .executeUpdate();
+            s.getTransaction().commit();
+        }
+        rolledThrough = sealedThrough;
+        builds.incrementAndGet();
+    }
+
+    /** Last day whose buckets are written, read from the database on first use. */
+    public synchronized LocalDate getRolledThrough() {
+        if (rolledThrough == null) {
+            ensureTable();
+            rolledThrough = DailyStatsAggregator.readState(sf, STATE_ID);
+        }
+        return rolledThrough;
+    }
+
+    /**
+     * Reads the rollup watermark in the caller's transaction and locks it
+     * until commit, so that {@link #catchUp} cannot write buckets meanwhile.
+     *
+     * @return the last day whose buckets are written, or null if none are
+     */
+    public static LocalDate lockRolledThrough(Connection connection) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(LOCK_STATE)) {
+            ps.setInt(1, STATE_ID);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getDate(1).toLocalDate() : null;
+            }
+        }
+    }
+
+    /**
+     * The statement {@link #addEvents} batches into, on the compactor's connection.
+     */
+    public static PreparedStatement prepareAddEvents(Connection connection) throws SQLException {
+        return connection.prepareStatement(ADD_EVENTS);
+    }
+
+    /**
+     * Adds views and downloads of one city and day to the buckets holding the
+     * day that are written already, i.e. end on or before {@code rolledThrough}
+     * as read by {@link #lockRolledThrough}; the caller executes the batch.
+     */
+    public static void addEvents(PreparedStatement ps, int cityId, LocalDate day, int views, int downloads,
+                                 LocalDate rolledThrough) throws SQLException {
+        if (rolledThrough == null) {
+            return;
+        }
+        for (RangePlanner.Granularity granularity : ROLLED) {
+            LocalDate start = granularity.startOf(day);
+            if (granularity.endOf(start).isAfter(rolledThrough)) {
+                continue;   // written by catchUp from the daily rows, events included
+            }
+            ps.setString(1, granularity.name());
+            ps.setDate(2, Date.valueOf(start));
+            ps.setInt(3, views);
+            ps.setInt(4, downloads);
+            ps.setInt(5, cityId);
+            ps.addBatch();
+        }
+    }
+
+    /** SQL for the first day of the bucket holding d.stat_date. */
+    private static String bucketStart(RangePlanner.Granularity granularity) {
+        return switch (granularity) {
+            case WEEK -> "DATE_SUB(d.stat_date, INTERVAL WEEKDAY(d.stat_date) DAY)";
+            case MONTH -> "DATE_SUB(d.stat_date, INTERVAL DAYOFMONTH(d.stat_date) - 1 DAY)";
+            case YEAR -> "MAKEDATE(YEAR(d.stat_date), 1)";
+            case DAY -> "d.stat_date";
+        };
+    }
+
+    private void ensureTable() {
+        if (tableChecked) {
+            return;
+        }
+        try (Session s = sf.openSession()) {
+            s.beginTransaction();
+            s.createNativeQuery("""
+                CREATE TABLE IF NOT EXISTS city_activity_rollups (
+                    granularity VARCHAR(5) NOT NULL,
+                    city_id INT NOT NULL,
+                    period_start DATE NOT NULL,
+                    one_time_purchases INT NOT NULL DEFAULT 0,
+                    subscriptions INT NOT NULL DEFAULT 0,
+                    subscription_renewals INT NOT NULL DEFAULT 0,
+                    views INT NOT NULL DEFAULT 0,
+                    downloads INT NOT NULL DEFAULT 0,
+                    PRIMARY KEY (granularity, city_id, period_start)
+                )
+            """).executeUpdate();
+            s.getTransaction().commit();
+        }
+        tableChecked = true;
+    }
+
+    // ==================== QUERIES ====================
+
+    /** The pieces {@link #sum} reads for [from, to], given the rollups written so far. */
+    public List<RangePlanner.Piece> plan(LocalDate from, LocalDate to) {
+        return RangePlanner.plan(from, to, getRolledThrough());
+    }
+
+    /**
+     * Totals of every city with activity in [from, to]; a null cityId means all cities.
+     *
+     * @return city ID -> {one-time purchases, subscriptions, renewals, views, downloads}
+     */
+    public Map<Integer, long[]> sum(Session s, LocalDate from, LocalDate to, Integer cityId) {
+        return sum(s, plan(from, to), cityId, cityId);
+    }
+
+    /**
+     * Totals over some pieces of a plan, of the cities with IDs in
+     * [fromCityId, toCityId]; a null bound is open. Lets a report split one
+     * range into parts by date and by city.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<Integer, long[]> sum(Session s, List<RangePlanner.Piece> pieces, Integer fromCityId,
+                                    Integer toCityId) {
+        Map<Integer, long[]> totals = new LinkedHashMap<>();
+        if (pieces.isEmpty()) {
+            return totals;
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT x.city_id");
+        for (String column : COLUMNS.split(", ")) {
+            sql.append(", SUM(x.").append(column).append(')');
+        }
+        sql.append(" FROM (");
+        for (int i = 0; i < pieces.size(); i++) {
+            RangePlanner.Piece piece = pieces.get(i);
+            if (i > 0) {
+                sql.append(" UNION ALL ");
+            }
+            sql.append("SELECT city_id, ").append(COLUMNS);
+            if (piece.granularity() == RangePlanner.Granularity.DAY) {
+                sql.append(" FROM daily_city_activity_stats WHERE stat_date");
+            } else {
+                sql.append(" FROM city_activity_rollups WHERE granularity = '")
+                   .append(piece.granularity().name()).append("' AND period_start");
+            }
+            sql.append(" BETWEEN :s").append(i).append(" AND :e").append(i)
+               .append(" AND (:fromCity IS NULL OR city_id >= :fromCity)")
+               .append(" AND (:toCity IS NULL OR city_id <= :toCity)");
+        }
+        sql.append(") x GROUP BY x.city_id");
+
+        NativeQuery<?> query = s.createNativeQuery(sql.toString());
+        for (int i = 0; i < pieces.size(); i++) {
+            query.setParameter("s" + i, Date.valueOf(pieces.get(i).start()));
+            query.setParameter("e" + i, Date.valueOf(pieces.get(i).end()));
+        }
+        query.setParameter("fromCity", fromCityId);
+        query.setParameter("toCity", toCityId);
+        for (Object[] row : (List<Object[]>) query.getResultList()) {
+            long[] values = new long[5];
+            for (int c = 0; c < values.length; c++) {
+                values[c] = row[c + 1] == null ? 0 : ((Number) row[c + 1]).longValue();
+            }
+            totals.put(((Number) row[0]).intValue(), values);
+        }
+        queries.incrementAndGet();
+        return totals;
+    }
+
+    /** Adds the totals of {@code part} to {@code totals}. */
+    public static void addTo(Map<Integer, long[]> totals, Map<Integer, long[]> part) {
+        for (Map.Entry<Integer, long[]> entry : part.entrySet()) {
+            long[] sum = totals.computeIfAbsent(entry.getKey(), key -> new long[5]);
+            for (int c = 0; c < sum.length; c++) {
+                sum[c] += entry.getValue()[c];
+            }
+        }
+    }
+
+    /** Catch-ups that wrote buckets since startup. */
+    public long getBuildCount() {
+        return builds.get();
+    }
+
+    /** Range queries since startup. */
+    public long getQueryCount() {
+        return queries.get();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "RollupMaintainer [rolledThrough=" + rolledThrough + ", builds=" + getBuildCount()
+                + ", queries=" + getQueryCount() + "]";
+    }
+}
@@ -3,12 +3,16 @@ package server.report.services;
 import common.report.ActivityReport;
 import common.enums.ReportType;
 import org.hibernate.Session;
-import server.report.ActivityStatsScheduler;
+import server.events.EventCompactor;
+import server.report.RangePlanner;
+import server.report.ReportCache;
 import server.report.ReportManager;
 import server.report.ReportRequestContext;
+import server.report.RollupMaintainer;
 
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 public class ActivityReportService implements ReportManager.ParamAwareReportService {
 
@@ -24,37 +28,32 @@ public class ActivityReportService implements ReportManager.ParamAwareReportServ
         LocalDate to = (LocalDate) params[1];
         Integer cityId = (Integer) params[2];
 
-        LocalDate day = from;
-        while (!day.isAfter(to)) {
-            server.report.ActivityStatsScheduler.aggregateDay(ctx.getSessionFactory(), day);
-            day = day.plusDays(1);
+        // past days are sealed once; today is kept current as purchases happen
+        ctx.getStatsAggregator().prepare(to);
+
+        // today's views and downloads may still be in the open log segment
+        if (!to.isBefore(LocalDate.now())) {
+            try {
+                EventCompactor.getInstance().compact();
+            } catch (Exception e) {
+                System.err.println("[ActivityReport] Event log not compacted: " + e.getMessage());
+            }
         }
 
+        List<Object[]> cities;
+        Map<Integer, Integer> mapsCount = new HashMap<>();
         try (Session s = ctx.getSessionFactory().openSession()) {
             s.beginTransaction();
 
-            List<Object[]> stats = s.createNativeQuery("""
-                SELECT c.id, c.name,
-                       COALESCE(SUM(d.one_time_purchases),0),
-                       COALESCE(SUM(d.subscriptions),0),
-                       COALESCE(SUM(d.subscription_renewals),0),
-                       COALESCE(SUM(d.views),0),
-                       COALESCE(SUM(d.downloads),0)
+            cities = s.createNativeQuery("""
+                SELECT c.id, c.name
                 FROM cities c
-                LEFT JOIN daily_city_activity_stats d
-                       ON d.city_id = c.id
-                      AND d.stat_date >= :fromDate
-                      AND d.stat_date <= :toDate
                 WHERE (:cityId IS NULL OR c.id = :cityId)
-                GROUP BY c.id, c.name
                 ORDER BY c.name
             """)
-                    .setParameter("fromDate", java.sql.Date.valueOf(from))
-                    .setParameter("toDate", java.sql.Date.valueOf(to))
                     .setParameter("cityId", cityId)
                     .getResultList();
 
-            Map<Integer, Integer> mapsCount = new HashMap<>();
             List<Object[]> maps = s.createNativeQuery("""
                 SELECT m.city_id, COUNT(*)
                 FROM maps m
@@ -65,23 +64,74 @@ public class ActivityReportService implements ReportManager.ParamAwareReportServ
                 mapsCount.put(((Number) r[0]).intValue(), ((Number) r[1]).intValue());
             }
 
-            List<ActivityReport.CityRow> rows = new ArrayList<>();
-            for (Object[] r : stats) {
-                int cid = ((Number) r[0]).intValue();
-                String cname = (String) r[1];
-                int oneTime = ((Number) r[2]).intValue();
-                int subs = ((Number) r[3]).intValue();
-                int renew = ((Number) r[4]).intValue();
-                int views = ((Number) r[5]).intValue();
-                int downloads = ((Number) r[6]).intValue();
-                int mapsN = mapsCount.getOrDefault(cid, 0);
-
-                rows.add(new ActivityReport.CityRow(cid, cname, mapsN, oneTime, subs, renew, views, downloads));
+            s.getTransaction().commit();
+        }
+        ctx.getJob().checkCancelled();
+
+        // yearly, monthly and weekly rollups where they cover the range, days at the edges
+        Map<Integer, long[]> totals = sumInParts(ctx, from, to, cityId, cities);
+
+        List<ActivityReport.CityRow> rows = new ArrayList<>();
+        long[] none = new long[5];
+        for (Object[] r : cities) {
+            int cid = ((Number) r[0]).intValue();
+            String cname = (String) r[1];
+            long[] t = totals.getOrDefault(cid, none);
+            int oneTime = (int) t[0];
+            int subs = (int) t[1];
+            int renew = (int) t[2];
+            int views = (int) t[3];
+            int downloads = (int) t[4];
+            int mapsN = mapsCount.getOrDefault(cid, 0);
+
+            rows.add(new ActivityReport.CityRow(cid, cname, mapsN, oneTime, subs, renew, views, downloads));
+        }
+
+        return new ActivityReport(from, to, rows);
+    }
+
+    /**
+     * Sums the range on the report threads: one part per piece of the range
+     * plan (yearly, monthly, weekly and daily rows) and per slice of the city
+     * IDs, about one part per report thread in all, merged here.
+     */
+    private Map<Integer, long[]> sumInParts(ReportRequestContext ctx, LocalDate from, LocalDate to,
+                                            Integer cityId, List<Object[]> cities) {
+        RollupMaintainer rollups = ctx.getStatsAggregator().getRollups();
+        List<RangePlanner.Piece> pieces = rollups.plan(from, to);
+
+        List<Integer> ids = new ArrayList<>();
+        for (Object[] r : cities) ids.add(((Number) r[0]).intValue());
+        Collections.sort(ids);
+        int slices = cityId != null || ids.isEmpty() ? 1
+                : Math.min(ids.size(), Math.max(1, ctx.getParallelism() / Math.max(1, pieces.size())));
+
+        List<Callable<Map<Integer, long[]>>> parts = new ArrayList<>();
+        for (RangePlanner.Piece piece : pieces) {
+            for (int i = 0; i < slices; i++) {
+                // city slices are contiguous ID ranges; the outer ones are open so no city is missed
+                Integer low = cityId != null ? cityId : i == 0 ? null : ids.get(i * ids.size() / slices);
+                Integer high = cityId != null ? cityId
+                        : i == slices - 1 ? null : ids.get((i + 1) * ids.size() / slices) - 1;
+                parts.add(() -> {
+                    try (Session s = ctx.getSessionFactory().openSession()) {
+                        return rollups.sum(s, List.of(piece), low, high);
+                    }
+                });
             }
+        }
 
-            s.getTransaction().commit();
-            return new ActivityReport(from, to, rows);
+        Map<Integer, long[]> totals = new HashMap<>();
+        for (Map<Integer, long[]> part : ctx.fork(parts)) {
+            RollupMaintainer.addTo(totals, part);
         }
+        return totals;
+    }
+
+    /** params: from, to, cityId */
+    @Override
+    public ReportCache.Scope cacheScope(Object... params) {
+        return new ReportCache.Scope((LocalDate) params[0], (LocalDate) params[1], (Integer) params[2]);
     }
 
     @Override
@@ -91,11 +141,11 @@ public class ActivityReportService implements ReportManager.ParamAwareReportServ
 
     @Override
     public void refreshDaily(ReportRequestContext ctx) {
-        // aggregate stats for "today" into daily_city_activity_stats
+        // seal yesterday, so the first report of the day finds nothing to do
         try {
-            java.time.LocalDate today = java.time.LocalDate.now();
-            ActivityStatsScheduler.aggregateDay(ctx.getSessionFactory(), today);
-            System.out.println("[ReportManager] Activity daily stats aggregated for " + today);
+            java.time.LocalDate yesterday = java.time.LocalDate.now().minusDays(1);
+            ctx.getStatsAggregator().sealThrough(yesterday);
+            System.out.println("[ReportManager] Activity daily stats sealed through " + yesterday);
         } catch (Exception e) {
             System.err.println("[ReportManager] Activity daily aggregation FAILED");
             e.printStackTrace();
@@ -3,9 +3,9 @@ package server.report.services;
 import common.enums.ReportType;
 import common.report.PurchasesReport;
 import org.hibernate.Session;
+import server.report.ReportCache;
 import server.report.ReportManager;
 import server.report.ReportRequestContext;
-import server.report.ActivityStatsScheduler;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -25,34 +25,19 @@ public class PurchasesReportService implements ReportManager.ParamAwareReportSer
         LocalDate to = (LocalDate) params[1];
         Integer cityId = (Integer) params[2];
 
-        LocalDate day = from;
-        while (!day.isAfter(to)) {
-            server.report.ActivityStatsScheduler.aggregateDay(ctx.getSessionFactory(), day);
-            day = day.plusDays(1);
-        }
+        // past days are sealed once; today is kept current as purchases happen
+        ctx.getStatsAggregator().prepare(to);
 
         try (Session s = ctx.getSessionFactory().openSession()) {
             s.beginTransaction();
 
-            // totals in range
-            Object[] row = (Object[]) s.createNativeQuery("""
-                SELECT
-                    COALESCE(SUM(d.one_time_purchases),0) AS one_time,
-                    COALESCE(SUM(d.subscriptions),0) AS subs,
-                    COALESCE(SUM(d.subscription_renewals),0) AS renewals
-                FROM daily_city_activity_stats d
-                WHERE d.city_id = :cityId
-                  AND d.stat_date >= :fromDate
-                  AND d.stat_date <= :toDate
-            """)
-                    .setParameter("cityId", cityId)
-                    .setParameter("fromDate", java.sql.Date.valueOf(from))
-                    .setParameter("toDate", java.sql.Date.valueOf(to))
-                    .getSingleResult();
+            // totals in range, from the coarsest rollups that cover it
+            long[] row = ctx.getStatsAggregator().getRollups().sum(s, from, to, cityId)
+                    .getOrDefault(cityId, new long[5]);
 
-            int oneTime = ((Number) row[0]).intValue();
-            int subs = ((Number) row[1]).intValue();
-            int renew = ((Number) row[2]).intValue();
+            int oneTime = (int) row[0];
+            int subs = (int) row[1];
+            int renew = (int) row[2];
 
             // city name
             String cityName = (String) s.createNativeQuery("""
@@ -67,6 +52,12 @@ public class PurchasesReportService implements ReportManager.ParamAwareReportSer
         }
     }
 
+    /** params: from, to, cityId */
+    @Override
+    public ReportCache.Scope cacheScope(Object... params) {
+        return new ReportCache.Scope((LocalDate) params[0], (LocalDate) params[1], (Integer) params[2]);
+    }
+
     @Override
     public boolean supportsDailyRefresh() {
         return false; // uses already aggregated table; no special daily job
@@ -2,9 +2,17 @@ package server.repository;
 
 import org.hibernate.Session;
 import org.hibernate.Transaction;
+import org.hibernate.jpa.SpecHints;
+import org.hibernate.query.Query;
 import server.HibernateUtil;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -18,6 +26,9 @@ import java.util.function.Function;
  */
 public abstract class BaseRepository<T, ID> {
 
+    /** Most keys bound to one IN list; longer key lists are split into several queries. */
+    static final int IN_CHUNK = 500;
+
     protected final Class<T> entityClass;
 
     protected BaseRepository(Class<T> entityClass) {
@@ -134,4 +145,147 @@ public abstract class BaseRepository<T, ID> {
     public boolean existsById(ID id) {
         return findById(id).isPresent();
     }
+
+    // ==================== FETCH PLANS ====================
+
+    /**
+     * Find entity by ID with the associations of a fetch plan loaded.
+     */
+    public Optional<T> findById(ID id, FetchPlan plan) {
+        return executeQuery(session -> fetch(session,
+                session.createQuery("FROM " + entityClass.getSimpleName() + " e WHERE e.id = :id", entityClass)
+                       .setParameter("id", id),
+                plan).stream().findFirst());
+    }
+
+    /**
+     * Run a query and load the associations of a fetch plan on its results.
+     *
+     * The query runs under the plan's first graph; each further graph reloads
+     * the results by ID in the same session, which initializes the remaining
+     * collections on the same instances. The query must not JOIN FETCH itself.
+     */
+    protected List<T> fetch(Session session, Query<T> query, FetchPlan plan) {
+        if (plan.getRoot() != entityClass) {
+            throw new IllegalArgumentException(plan + " is a plan for " + plan.getRoot().getSimpleName()
+                    + ", not " + entityClass.getSimpleName());
+        }
+        List<String> graphs = plan.getGraphs();
+        List<T> roots = query.setHint(SpecHints.HINT_SPEC_FETCH_GRAPH, session.getEntityGraph(graphs.get(0)))
+                             .getResultList();
+        if (roots.isEmpty() || graphs.size() == 1) {
+            return roots;
+        }
+
+        List<Object> ids = roots.stream().map(session::getIdentifier).distinct().toList();
+        for (String graph : graphs.subList(1, graphs.size())) {
+            session.createQuery("FROM " + entityClass.getSimpleName() + " e WHERE e.id IN :ids", entityClass)
+                   .setParameterList("ids", ids)
+                   .setHint(SpecHints.HINT_SPEC_FETCH_GRAPH, session.getEntityGraph(graph))
+                   .getResultList();
+        }
+        return roots;
+    }
+
+    // ==================== BATCH LOADING ====================
+
+    /**
+     * Find the entities with the given IDs, in one query per {@value #IN_CHUNK} IDs.
+     *
+     * @return entity by ID, in the order of the IDs; IDs without an entity are left out
+     */
+    public Map<ID, T> findAllByIds(Collection<ID> ids) {
+        return findAllByIds(ids, null);
+    }
+
+    /**
+     * Find the entities with the given IDs with the associations of a fetch plan
+     * loaded; the plan's graphs apply to every chunk of IDs.
+     *
+     * @param plan the fetch plan, or null for the entities' own columns only
+     * @return entity by ID, in the order of the IDs; IDs without an entity are left out
+     */
+    @SuppressWarnings("unchecked")
+    public Map<ID, T> findAllByIds(Collection<ID> ids, FetchPlan plan) {
+        List<ID> keys = new ArrayList<>(new LinkedHashSet<>(ids));
+        if (keys.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        Map<ID, T> found = new HashMap<>();
+        executeQuery(session -> {
+            for (List<ID> chunk : chunks(keys)) {
+                Query<T> query = session.createQuery(
+                        "FROM " + entityClass.getSimpleName() + " e WHERE e.id IN :ids", entityClass)
+                        .setParameterList("ids", chunk);
+                for (T entity : plan == null ? query.getResultList() : fetch(session, query, plan)) {
+                    found.put((ID) session.getIdentifier(entity), entity);
+                }
+            }
+            return null;
+        });
+
+        Map<ID, T> ordered = new LinkedHashMap<>();
+        for (ID id : keys) {
+            T entity = found.get(id);
+            if (entity != null) {
+                ordered.put(id, entity);
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * A per-request loader that collects IDs and fetches them together; see {@link BatchLoader}.
+     */
+    public BatchLoader<ID, T> batchLoader() {
+        return new BatchLoader<>(ids -> findAllByIds(ids));
+    }
+
+    /**
+     * A per-request loader whose batches load the associations of a fetch plan.
+     */
+    public BatchLoader<ID, T> batchLoader(FetchPlan plan) {
+        return new BatchLoader<>(ids -> findAllByIds(ids, plan));
+    }
+
+    /**
+     * Run a child lookup for many parents at once and group the rows by parent.
+     *
+     * The query selects the parent key as its first column and restricts it
+     * with {@code IN :keys}; it runs once per {@value #IN_CHUNK} keys. The
+     * remaining columns of each row are turned into a value by {@code row}.
+     *
+     * @return values by key in the order of the keys; every key is present,
+     *         with an empty list if it has no rows
+     */
+    @SuppressWarnings("unchecked")
+    protected <K, R> Map<K, List<R>> findGrouped(String hql, Collection<K> keys, Function<Object[], R> row) {
+        Map<K, List<R>> grouped = new LinkedHashMap<>();
+        for (K key : keys) {
+            grouped.putIfAbsent(key, new ArrayList<>());
+        }
+        if (grouped.isEmpty()) {
+            return grouped;
+        }
+        executeQuery(session -> {
+            for (List<K> chunk : chunks(new ArrayList<>(grouped.keySet()))) {
+                List<Object[]> rows = session.createQuery(hql, Object[].class)
+                        .setParameterList("keys", chunk)
+                        .getResultList();
+                for (Object[] columns : rows) {
+                    grouped.get((K) columns[0]).add(row.apply(columns));
+                }
+            }
+            return null;
+        });
+        return grouped;
+    }
+
+    private static <K> List<List<K>> chunks(List<K> keys) {
+        List<List<K>> chunks = new ArrayList<>();
+        for (int from = 0; from < keys.size(); from += IN_CHUNK) {
+            chunks.add(keys.subList(from, Math.min(keys.size(), from + IN_CHUNK)));
+        }
+        return chunks;
+    }
 }
@@ -0,0 +1,104 @@
+package server.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Collects lookups by key and resolves them together, DataLoader style.
+ *
+ * A handler first announces every key it will need with {@link #load}, then
+ * reads the values through the returned suppliers. The first read resolves
+ * all keys announced so far with one call of the batch function, typically
+ * one {@code IN (...)} query ({@link BaseRepository#batchLoader()}). Values
+ * are cached, so a key asked for twice is fetched once; a key without a
+ * value resolves to empty.
+ *
+ * A loader belongs to one request and is not thread-safe.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public final class BatchLoader<K, V> {
+
+    private final Function<Collection<K>, Map<K, V>> batch;
+    private final Map<K, V> resolved = new HashMap<>();
+    private final Set<K> pending = new LinkedHashSet<>();
+    private int batches;
+
+    /**
+     * @param batch loads the values of many keys; keys without a value are left out of its result
+     */
+    public BatchLoader(Function<Collection<K>, Map<K, V>> batch) {
+        this.batch = batch;
+    }
+
+    /**
+     * Announces a key. The value is fetched, with every other pending key,
+     * when the supplier (or any other supplier of this loader) is first read.
+     */
+    public Supplier<Optional<V>> load(K key) {
+        if (!resolved.containsKey(key)) {
+            pending.add(key);
+        }
+        return () -> get(key);
+    }
+
+    /**
+     * Announces several keys at once.
+     */
+    public void loadAll(Collection<K> keys) {
+        for (K key : keys) {
+            load(key);
+        }
+    }
+
+    /**
+     * The value of a key, dispatching the pending keys if it is not resolved yet.
+     */
+    public Optional<V> get(K key) {
+        if (!resolved.containsKey(key)) {
+            pending.add(key);
+            dispatch();
+        }
+        return Optional.ofNullable(resolved.get(key));
+    }
+
+    /**
+     * Resolves every pending key with one call of the batch function.
+     */
+    public void dispatch() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Collection<K> keys = new ArrayList<>(pending);
+        pending.clear();
+        Map<K, V> values = batch.apply(keys);
+        for (K key : keys) {
+            resolved.put(key, values.get(key));
+        }
+        batches++;
+    }
+
+    /** Calls of the batch function so far. */
+    public int getBatchCount() {
+        return batches;
+    }
+
+    /** Keys resolved so far. */
+    public int getResolvedCount() {
+        return resolved.size();
+    }
+
+    @Override
+    public String toString() {
+        return "BatchLoader [resolved=" + resolved.size() + ", pending=" + pending.size()
+                + ", batches=" + batches + "]";
+    }
+}
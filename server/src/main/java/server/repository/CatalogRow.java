@@ -0,0 +1,31 @@
+package server.repository;
+
+import common.enums.MapStatus;
+
+/**
+ * One catalog entry: the map columns the catalog page shows, and the few
+ * columns of its city it needs. Read straight from the maps and cities
+ * tables by {@link MapRepository#findCatalogRows}, without loading entities.
+ */
+public record CatalogRow(int mapId, String name, String description, String version, double price,
+                         MapStatus status, String imagePath, int cityId, String cityName, double cityPriceSub) {
+
+    /** Column list of the projection, in constructor order; the map is aliased m, its city c. */
+    static final String SELECT =
+            "SELECT m.id, m.name, m.description, m.version, m.price, m.status, m.imagePath, " +
+            "c.id, c.name, c.priceSub ";
+
+    static CatalogRow of(Object[] columns) {
+        return new CatalogRow(
+                (Integer) columns[0],
+                (String) columns[1],
+                (String) columns[2],
+                (String) columns[3],
+                (Double) columns[4],
+                (MapStatus) columns[5],
+                (String) columns[6],
+                (Integer) columns[7],
+                (String) columns[8],
+                (Double) columns[9]);
+    }
+}
@@ -3,7 +3,11 @@ package server.repository;
 import common.content.City;
 import common.enums.MapStatus;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -78,34 +82,6 @@ public class CityRepository extends BaseRepository<City, Integer> {
         );
     }
 
-    /**
-     * Get city with all its maps loaded (eager fetch).
-     */
-    public Optional<City> findByIdWithMaps(int cityId) {
-        return executeQuery(session ->
-            session.createQuery(
-                "FROM City c LEFT JOIN FETCH c.maps WHERE c.id = :id", City.class)
-                   .setParameter("id", cityId)
-                   .uniqueResultOptional()
-        );
-    }
-
-    /**
-     * Get city with all relationships loaded.
-     */
-    public Optional<City> findByIdWithAll(int cityId) {
-        return executeQuery(session ->
-            session.createQuery(
-                "FROM City c " +
-                "LEFT JOIN FETCH c.maps " +
-                "LEFT JOIN FETCH c.sites " +
-                "LEFT JOIN FETCH c.tours " +
-                "WHERE c.id = :id", City.class)
-                   .setParameter("id", cityId)
-                   .uniqueResultOptional()
-        );
-    }
-
     /**
      * Search cities with counts - returns Object[] containing:
      * [0] = City, [1] = mapCount (Long), [2] = siteCount (Long), [3] = tourCount (Long)
@@ -138,6 +114,62 @@ public class CityRepository extends BaseRepository<City, Integer> {
         });
     }
 
+    /**
+     * Load the searchable text of some cities, or of all cities: each city's
+     * own columns plus the names and descriptions of its sites, tours and
+     * catalog maps (priced, not EXTERNAL). Four statements regardless of the
+     * number of cities; no entity is loaded.
+     *
+     * @param cityIds the cities to read, or null for all
+     */
+    public List<CitySearchRow> findSearchRows(Collection<Integer> cityIds) {
+        if (cityIds != null && cityIds.isEmpty()) {
+            return List.of();
+        }
+        return executeQuery(session -> {
+            String cityFilter = cityIds != null ? " AND c.id IN :cityIds" : "";
+            Map<Integer, CitySearchRow> rows = new LinkedHashMap<>();
+
+            var cities = session.createQuery(
+                "SELECT c.id, c.name, c.description, c.priceSub, c.imagePath FROM City c WHERE 1=1" + cityFilter,
+                Object[].class);
+            if (cityIds != null) cities.setParameterList("cityIds", cityIds);
+            for (Object[] c : cities.getResultList()) {
+                rows.put((Integer) c[0], new CitySearchRow((Integer) c[0], (String) c[1], (String) c[2],
+                        (Double) c[3], (String) c[4], new ArrayList<>(), new ArrayList<>(), new ArrayList<>()));
+            }
+
+            var maps = session.createQuery(
+                "SELECT c.id, m.name, m.description FROM GCMMap m JOIN m.city c " +
+                "WHERE m.status != :extStatus AND m.price > 0" + cityFilter, Object[].class)
+                .setParameter("extStatus", MapStatus.EXTERNAL);
+            var sites = session.createQuery(
+                "SELECT c.id, s.name, s.description FROM Site s JOIN s.city c WHERE 1=1" + cityFilter,
+                Object[].class);
+            var tours = session.createQuery(
+                "SELECT c.id, t.name, t.description FROM Tour t JOIN t.city c WHERE 1=1" + cityFilter,
+                Object[].class);
+            if (cityIds != null) {
+                maps.setParameterList("cityIds", cityIds);
+                sites.setParameterList("cityIds", cityIds);
+                tours.setParameterList("cityIds", cityIds);
+            }
+            for (Object[] m : maps.getResultList()) {
+                CitySearchRow row = rows.get((Integer) m[0]);
+                if (row != null) row.maps().add(new CitySearchRow.Text((String) m[1], (String) m[2]));
+            }
+            for (Object[] st : sites.getResultList()) {
+                CitySearchRow row = rows.get((Integer) st[0]);
+                if (row != null) row.sites().add(new CitySearchRow.Text((String) st[1], (String) st[2]));
+            }
+            for (Object[] t : tours.getResultList()) {
+                CitySearchRow row = rows.get((Integer) t[0]);
+                if (row != null) row.tours().add(new CitySearchRow.Text((String) t[1], (String) t[2]));
+            }
+            return new ArrayList<>(rows.values());
+        });
+    }
+
     /**
      * Lightweight query to get city name and subscription price without loading
      * the full entity graph (maps, sites, tours).
@@ -157,11 +189,16 @@ public class CityRepository extends BaseRepository<City, Integer> {
      * Get map descriptions for a given city.
      */
     public List<String> getMapDescriptionsForCity(int cityId) {
-        return executeQuery(session -> {
-            String hql = "SELECT m.description FROM GCMMap m WHERE m.city.id = :cityId";
-            return session.createQuery(hql, String.class)
-                .setParameter("cityId", cityId)
-                .getResultList();
-        });
+        return getMapDescriptionsForCities(List.of(cityId)).get(cityId);
+    }
+
+    /**
+     * Get map descriptions for many cities in one query per chunk of IDs.
+     *
+     * @return descriptions by city ID; every requested city is present
+     */
+    public Map<Integer, List<String>> getMapDescriptionsForCities(Collection<Integer> cityIds) {
+        return findGrouped("SELECT m.city.id, m.description FROM GCMMap m WHERE m.city.id IN :keys",
+                cityIds, row -> (String) row[1]);
     }
 }
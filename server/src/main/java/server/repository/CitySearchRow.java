@@ -0,0 +1,15 @@
+package server.repository;
+
+import java.util.List;
+
+/**
+ * The searchable text of one city, read by {@link CityRepository#findSearchRows}:
+ * the city's own columns and the name and description of each of its sites,
+ * tours and catalog maps.
+ */
+public record CitySearchRow(int cityId, String name, String description, double priceSub, String imagePath,
+                            List<Text> maps, List<Text> sites, List<Text> tours) {
+
+    /** Name and description of a map, site or tour. */
+    public record Text(String name, String description) {}
+}
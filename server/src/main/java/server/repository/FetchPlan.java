@@ -0,0 +1,77 @@
+package server.repository;
+
+import common.content.City;
+import common.content.GCMMap;
+import common.content.Site;
+import common.content.Tour;
+import common.workflow.PendingPriceUpdate;
+
+import java.util.List;
+
+/**
+ * What a use case loads beyond an entity's own columns.
+ *
+ * Content associations are all lazy, so a handler that sends a map, a city or
+ * a pending update to the client asks for the associations it reads with one
+ * of these plans (see {@link BaseRepository#findById(Object, FetchPlan)}).
+ *
+ * A plan is a list of JPA entity graphs declared on its root entity. The
+ * first graph is applied to the query that finds the roots; each further
+ * graph reloads the same roots in the same session, which fills in more
+ * collections on the instances already loaded. Fetching the city's maps, sites
+ * and tours in separate steps keeps Hibernate from multiplying their rows
+ * (and from throwing MultipleBagFetchException); map and tour sites are
+ * ordered lists and can be joined along with their owner.
+ */
+public enum FetchPlan {
+
+    // ==================== MAPS ====================
+
+    /** External maps and purchases: the map and its city, no collections. */
+    MAP_CATALOG(GCMMap.class, "GCMMap.city"),
+
+    /** Map content popup: the map's sites, its city and the city's tours with their sites. */
+    MAP_DETAIL(GCMMap.class, "GCMMap.sites", "GCMMap.cityTours"),
+
+    // ==================== CITIES ====================
+
+    /** City page: the city's maps. */
+    CITY_DETAIL(City.class, "City.maps"),
+
+    /** Subscription maps: maps with their sites, tours with their sites. */
+    CITY_SUBSCRIPTION(City.class, "City.mapSites", "City.tourSites"),
+
+    /** Edit mode: everything CITY_SUBSCRIPTION loads, plus sites that are on no map. */
+    CITY_EDIT(City.class, "City.sites", "City.mapSites", "City.tourSites"),
+
+    // ==================== SITES & TOURS ====================
+
+    /** Site lists of the content editor, showing each site's city. */
+    SITE_LIST(Site.class, "Site.city"),
+
+    /** Tour lists of the content editor, with the tour's sites in order. */
+    TOUR_LIST(Tour.class, "Tour.citySites"),
+
+    // ==================== APPROVAL ====================
+
+    /** Pending price updates: the map and its city. */
+    PRICE_APPROVAL(PendingPriceUpdate.class, "PendingPriceUpdate.mapCity");
+
+    private final Class<?> root;
+    private final List<String> graphs;
+
+    FetchPlan(Class<?> root, String... graphs) {
+        this.root = root;
+        this.graphs = List.of(graphs);
+    }
+
+    /** The entity the plan's graphs are declared on. */
+    public Class<?> getRoot() {
+        return root;
+    }
+
+    /** Names of the entity graphs, in the order they are applied. */
+    public List<String> getGraphs() {
+        return graphs;
+    }
+}
@@ -3,6 +3,7 @@ package server.repository;
 import common.content.GCMMap;
 import common.enums.MapStatus;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -63,41 +64,29 @@ public class MapRepository extends BaseRepository<GCMMap, Integer> {
     }
 
     /**
-     * Find maps by criteria (city, name, version).
-     * Filters out EXTERNAL maps and maps with price=0 (not yet priced).
-     * This replaces DBController.getCatalogRows() - returns actual entities!
+     * Find the catalog rows of some cities, or of all cities, in one statement.
+     * Filters out EXTERNAL maps and maps with price=0 (not yet priced), but not
+     * cities without a subscription price; the caller decides what to show.
+     * Only the displayed columns are read; no entity is loaded.
+     *
+     * @param cityIds the cities to read, or null for all
      */
-    public List<GCMMap> findByCriteria(String cityName, String mapName, String version) {
+    public List<CatalogRow> findCatalogRows(Collection<Integer> cityIds) {
+        if (cityIds != null && cityIds.isEmpty()) {
+            return List.of();
+        }
         return executeQuery(session -> {
-            StringBuilder hql = new StringBuilder("FROM GCMMap m JOIN FETCH m.city WHERE 1=1");
-            hql.append(" AND m.status != :extStatus AND m.price > 0");
-            hql.append(" AND m.city.priceSub > 0");
-
-            if (cityName != null && !cityName.isBlank()) {
-                hql.append(" AND m.city.name = :cityName");
-            }
-            if (mapName != null && !mapName.isBlank()) {
-                hql.append(" AND m.name = :mapName");
-            }
-            if (version != null && !version.isBlank()) {
-                hql.append(" AND m.version = :version");
-            }
-            hql.append(" ORDER BY m.city.name, m.name, m.version");
+            String hql = CatalogRow.SELECT + "FROM GCMMap m JOIN m.city c " +
+                    "WHERE m.status != :extStatus AND m.price > 0" +
+                    (cityIds != null ? " AND c.id IN :cityIds" : "") +
+                    " ORDER BY c.name, m.name, m.version";
 
-            var query = session.createQuery(hql.toString(), GCMMap.class);
+            var query = session.createQuery(hql, Object[].class);
             query.setParameter("extStatus", MapStatus.EXTERNAL);
-
-            if (cityName != null && !cityName.isBlank()) {
-                query.setParameter("cityName", cityName);
+            if (cityIds != null) {
+                query.setParameterList("cityIds", cityIds);
             }
-            if (mapName != null && !mapName.isBlank()) {
-                query.setParameter("mapName", mapName);
-            }
-            if (version != null && !version.isBlank()) {
-                query.setParameter("version", version);
-            }
-
-            return query.getResultList();
+            return query.getResultList().stream().map(CatalogRow::of).toList();
         });
     }
 
@@ -118,19 +107,6 @@ public class MapRepository extends BaseRepository<GCMMap, Integer> {
         );
     }
 
-    /**
-     * Get map with sites loaded.
-     */
-    public Optional<GCMMap> findByIdWithSites(int mapId) {
-        return executeQuery(session ->
-            session.createQuery(
-                "FROM GCMMap m LEFT JOIN FETCH m.sites WHERE m.id = :id",
-                GCMMap.class)
-                   .setParameter("id", mapId)
-                   .uniqueResultOptional()
-        );
-    }
-
     /**
      * Update map price.
      */
@@ -149,12 +125,12 @@ public class MapRepository extends BaseRepository<GCMMap, Integer> {
      */
     public List<GCMMap> findExternalMaps() {
         return executeQuery(session ->
-            session.createQuery(
-                "FROM GCMMap m JOIN FETCH m.city WHERE m.status = :extStatus " +
+            fetch(session, session.createQuery(
+                "FROM GCMMap m WHERE m.status = :extStatus " +
                 "ORDER BY m.city.name, m.name",
                 GCMMap.class)
-                   .setParameter("extStatus", MapStatus.EXTERNAL)
-                   .getResultList()
+                   .setParameter("extStatus", MapStatus.EXTERNAL),
+                FetchPlan.MAP_CATALOG)
         );
     }
 }
@@ -4,11 +4,14 @@ import common.content.City;
 import common.content.GCMMap;
 import common.content.Site;
 import common.content.Tour;
+import common.dto.CatalogChange;
 import common.enums.*;
 import common.user.User;
 import common.workflow.PendingContentRequest;
 import org.hibernate.Session;
+import server.blob.MapImages;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -95,6 +98,15 @@ public class PendingContentRequestRepository extends BaseRepository<PendingConte
      * Approve a pending request. Returns null on success, or an error message string on failure.
      */
     public String approveWithError(int pendingId, User approver)
+    {
+        return approveWithError(pendingId, approver, new CatalogChange());
+    }
+
+    /**
+     * Approve a pending request and record the cities and maps it touched in
+     * {@code change}. Returns null on success, or an error message string on failure.
+     */
+    public String approveWithError(int pendingId, User approver, CatalogChange change)
     {
         try {
             executeInTransaction(session -> {
@@ -105,7 +117,7 @@ public class PendingContentRequestRepository extends BaseRepository<PendingConte
                 }
 
                 // Apply the actual change based on action type
-                applyContentChange(session, pending);
+                applyContentChange(session, pending, change);
 
                 // Mark as approved
                 pending.setStatus(RequestStatus.APPROVED);
@@ -148,49 +160,49 @@ public class PendingContentRequestRepository extends BaseRepository<PendingConte
     /**
      * Apply the actual content change when approved.
      */
-    private void applyContentChange(org.hibernate.Session session, PendingContentRequest pending)
+    private void applyContentChange(org.hibernate.Session session, PendingContentRequest pending, CatalogChange change)
     {
         ContentType contentType = pending.getContentType();
         
         switch (contentType) {
             case MAP:
-                applyMapChange(session, pending);
+                applyMapChange(session, pending, change);
                 break;
             case SITE:
-                applySiteChange(session, pending);
+                applySiteChange(session, pending, change);
                 break;
             case TOUR:
-                applyTourChange(session, pending);
+                applyTourChange(session, pending, change);
                 break;
             case CITY:
-                applyCityChanges(session, pending);
+                applyCityChanges(session, pending, change);
                 break;
         }
     }
 
-    private void applyMapChange(org.hibernate.Session session, PendingContentRequest pending)
+    private void applyMapChange(org.hibernate.Session session, PendingContentRequest pending, CatalogChange change)
     {
         String json = pending.getContentDetails();
         
         switch (pending.getActionType()) {
             case ADD:
-                createNewMap(session, json);
+                createNewMap(session, json, change);
                 break;
             case EDIT:
-                updateExistingMap(session, pending.getTargetId(), json);
+                updateExistingMap(session, pending.getTargetId(), json, change);
                 break;
             case DELETE:
-                deleteMap(session, pending.getTargetId());
+                deleteMap(session, pending.getTargetId(), change);
                 break;
         }
     }
 
-    private void createNewMap(org.hibernate.Session session, String json)
+    private void createNewMap(org.hibernate.Session session, String json, CatalogChange change)
     {
         // Check if this is an import from external repository
         String externalMapIdStr = extractJsonValue(json, "externalMapId");
         if (externalMapIdStr != null && !externalMapIdStr.isEmpty()) {
-            importExternalMap(session, Integer.parseInt(externalMapIdStr));
+            importExternalMap(session, Integer.parseInt(externalMapIdStr), change);
             return;
         }
 
@@ -222,6 +234,7 @@ public class PendingContentRequestRepository extends BaseRepository<PendingConte
         newMap.setCity(city);
 
         session.persist(newMap);
+        recordMap(change, newMap);
         System.out.println("Created new map: " + mapName + " in city: " + cityName);
     }
 
@@ -229,7 +242,7 @@ public class PendingContentRequestRepository extends BaseRepository<PendingConte
      * Import a map from the external repository into GCM.
      * Changes status from EXTERNAL to PUBLISHED (price remains 0, set via Price Update).
      */
-    private void importExternalMap(org.hibernate.Session session, int externalMapId) {
+    private void importExternalMap(org.hibernate.Session session, int externalMapId, CatalogChange change) {
         GCMMap map = session.get(GCMMap.class, externalMapId);
         if (map == null) {
             throw new RuntimeException("External map not found with ID: " + externalMapId);
@@ -240,10 +253,11 @@ public class PendingContentRequestRepository extends BaseRepository<PendingConte
 
         map.setStatus(MapStatus.PUBLISHED);
         session.merge(map);
+        recordMap(change, map);
         System.out.println("Imported external map: " + map.getName() + " (ID: " + externalMapId + ") -> PUBLISHED");
     }
 
-    private void updateExistingMap(org.hibernate.Session session, Integer mapId, String json)
+    private void updateExistingMap(org.hibernate.Session session, Integer mapId, String json, CatalogChange change)
     {
         if (mapId == null) {
             throw new RuntimeException("Cannot update map: targetId is null");
@@ -276,7 +290,11 @@ public class PendingContentRequestRepository extends BaseRepository<PendingConte
         String mapImageBase64 = extractJsonValue(json, "mapImage");
         if (mapImageBase64 != null && !mapImageBase64.isEmpty()) {
             byte[] imageBytes = java.util.Base64.getDecoder().decode(mapImageBase64);
-            map.setMapImage(imageBytes);
+            try {
+                MapImages.store(map, imageBytes);
+            } catch (IOException e) {
+                throw new RuntimeException("Could not store map image: " + e.getMessage(), e);
+            }
             contentChanged = true;
             System.out.println("Updated map image for: " + map.getName() + " (" + imageBytes.length + " bytes)");
         }
@@ -315,6 +333,7 @@ public class PendingContentRequestRepository extends BaseRepository<PendingConte
         }
 
         session.merge(map);
+        recordMap(change, map);
         System.out.println("Map update applied for ID: " + mapId);
     }
 
@@ -322,7 +341,7 @@ public class PendingContentRequestRepository extends BaseRepository<PendingConte
      * Revert a map back to the external repository instead of hard-deleting.
      * Clears GCM-specific data (sites, markers, price) but keeps raw data (name, description, image, city).
      */
-    private void deleteMap(org.hibernate.Session session, Integer mapId)
+    private void deleteMap(org.hibernate.Session session, Integer mapId, CatalogChange change)
     {
         if (mapId == null) {
             throw new RuntimeException("Cannot delete map: targetId is null");
@@ -339,28 +358,29 @@ public class PendingContentRequestRepository extends BaseRepository<PendingConte
             map.setStatus(MapStatus.EXTERNAL);
             // Keep: name, description, mapImage, city (the "raw" external data)
             session.merge(map);
+            recordMap(change, map);
             System.out.println("Reverted map to external: " + mapName + " (ID: " + mapId + ")");
         } else {
             System.out.println("Map not found for revert, ID: " + mapId);
         }
     }
 
-    private void applySiteChange(org.hibernate.Session session, PendingContentRequest pending)
+    private void applySiteChange(org.hibernate.Session session, PendingContentRequest pending, CatalogChange change)
     {
         switch (pending.getActionType()) {
             case ADD:
-                createNewSite(session, pending);
+                createNewSite(session, pending, change);
                 break;
             case EDIT:
-                updateExistingSite(session, pending.getTargetId(), pending);
+                updateExistingSite(session, pending.getTargetId(), pending, change);
                 break;
             case DELETE:
-                deleteSite(session, pending.getTargetId(), pending);
+                deleteSite(session, pending.getTargetId(), pending, change);
                 break;
         }
     }
 
-    private void createNewSite(org.hibernate.Session session, PendingContentRequest pending)
+    private void createNewSite(org.hibernate.Session session, PendingContentRequest pending, CatalogChange change)
     {
         String json = pending.getContentDetails();
         CityRepository cp = CityRepository.getInstance();
@@ -382,10 +402,11 @@ public class PendingContentRequestRepository extends BaseRepository<PendingConte
 
         city.addSite(site);
         session.persist(site);
+        change.addCity(city.getId());
         System.out.println("Created new site: " + extractJsonValue(json,"name") + " in city: " + city.getName());
     }
 
-    private void updateExistingSite(org.hibernate.Session session, int siteID, PendingContentRequest pending)
+    private void updateExistingSite(org.hibernate.Session session, int siteID, PendingContentRequest pending, CatalogChange change)
     {
         String json = pending.getContentDetails();
         Site existingSite = session.get(Site.class, siteID);
@@ -400,17 +421,19 @@ public class PendingContentRequestRepository extends BaseRepository<PendingConte
             existingSite.setRecommendedVisitDuration(
                     SiteDuration.fromLabel(extractJsonValue(json, "recommendedVisitDuration"))
             );
+            recordSite(change, existingSite);
             System.out.println("Updated existing site: " + existingSite.getName() + " (ID: " + siteID + ")");
         } else {
             System.err.println("Error: Could not find site with ID " + siteID + " to update.");
         }
     }
 
-    private void deleteSite(org.hibernate.Session session, int siteID, PendingContentRequest pending)
+    private void deleteSite(org.hibernate.Session session, int siteID, PendingContentRequest pending, CatalogChange change)
     {
         Site siteToDelete = session.get(Site.class, siteID);
         if (siteToDelete != null)
         {
+            recordSite(change, siteToDelete);
             City city = siteToDelete.getCity();
             if (city != null) {
                 city.getSites().remove(siteToDelete);
@@ -429,22 +452,22 @@ public class PendingContentRequestRepository extends BaseRepository<PendingConte
         }
     }
 
-    private void applyTourChange(org.hibernate.Session session, PendingContentRequest pending)
+    private void applyTourChange(org.hibernate.Session session, PendingContentRequest pending, CatalogChange change)
     {
         switch (pending.getActionType()) {
             case ADD:
-                createNewTour(session, pending);
+                createNewTour(session, pending, change);
                 break;
             case EDIT:
-                updateExistingTour(session, pending.getTargetId(), pending);
+                updateExistingTour(session, pending.getTargetId(), pending, change);
                 break;
             case DELETE:
-                deleteTour(session, pending.getTargetId(), pending);
+                deleteTour(session, pending.getTargetId(), pending, change);
                 break;
         }
     }
 
-    private void createNewTour(Session session, PendingContentRequest pending)
+    private void createNewTour(Session session, PendingContentRequest pending, CatalogChange change)
     {
         String json = pending.getContentDetails();
         CityRepository cp = CityRepository.getInstance();
@@ -459,6 +482,7 @@ public class PendingContentRequestRepository extends BaseRepository<PendingConte
         tour.setName(extractJsonValue(json, "name"));
         tour.setDescription(extractJsonValue(json, "description"));
         tour.setCity(city);
+        change.addCity(cityId);
         String siteIdsRaw = extractJsonValue(json, "siteIds");
         List<Integer> siteIds = new ArrayList<>();
         if (siteIdsRaw != null && !siteIdsRaw.trim().isEmpty())
@@ -491,7 +515,7 @@ public class PendingContentRequestRepository extends BaseRepository<PendingConte
         System.out.println("Created new site: " + extractJsonValue(json,"name") + " in city: " + city.getName());
     }
 
-    private void updateExistingTour(Session session, Integer targetId, PendingContentRequest pending) {
+    private void updateExistingTour(Session session, Integer targetId, PendingContentRequest pending, CatalogChange change) {
         if (targetId == null)
         {
             System.err.println("Error: Cannot update tour without targetId.");
@@ -534,6 +558,9 @@ public class PendingContentRequestRepository extends BaseRepository<PendingConte
             }
             session.merge(existingTour);
             session.merge(existingTour);
+            if (existingTour.getCity() != null) {
+                change.addCity(existingTour.getCity().getId());
+            }
             System.out.println("Approved Update: Tour " + existingTour.getName() + " (ID: " + targetId + ")");
         }
         else
@@ -542,7 +569,7 @@ public class PendingContentRequestRepository extends BaseRepository<PendingConte
         }
     }
 
-    private void deleteTour(Session session, Integer targetId, PendingContentRequest pending) {
+    private void deleteTour(Session session, Integer targetId, PendingContentRequest pending, CatalogChange change) {
         if (targetId == null)
             return;
         Tour tourToDelete = session.get(Tour.class, targetId);
@@ -551,6 +578,7 @@ public class PendingContentRequestRepository extends BaseRepository<PendingConte
             City city = tourToDelete.getCity();
             if (city != null)
             {
+                change.addCity(city.getId());
                 city.getTours().remove(tourToDelete);
             }
             tourToDelete.getSites().clear();
@@ -561,7 +589,7 @@ public class PendingContentRequestRepository extends BaseRepository<PendingConte
         }
     }
 
-    private void applyCityChanges(org.hibernate.Session session, PendingContentRequest pending) {
+    private void applyCityChanges(org.hibernate.Session session, PendingContentRequest pending, CatalogChange change) {
         if (pending.getActionType() != ContentActionType.EDIT) {
             System.err.println("City changes only support EDIT action type.");
             return;
@@ -594,9 +622,28 @@ public class PendingContentRequestRepository extends BaseRepository<PendingConte
         }
 
         session.merge(city);
+        change.addCity(cityId);
         System.out.println("City update applied for ID: " + cityId);
     }
 
+    /** A map change affects the map's card and its city's card. */
+    private void recordMap(CatalogChange change, GCMMap map) {
+        change.addMap(map.getId());
+        if (map.getCity() != null) {
+            change.addCity(map.getCity().getId());
+        }
+    }
+
+    /** A site change affects its city and every map showing the site. */
+    private void recordSite(CatalogChange change, Site site) {
+        if (site.getCity() != null) {
+            change.addCity(site.getCity().getId());
+        }
+        for (GCMMap map : site.getMaps()) {
+            change.addMap(map.getId());
+        }
+    }
+
     private void bumpMapVersion(GCMMap map) {
         String ver = map.getVersion();
         if (ver == null || ver.isEmpty()) {
@@ -2,6 +2,7 @@ package server.repository;
 
 import common.content.City;
 import common.content.GCMMap;
+import common.dto.CatalogChange;
 import common.workflow.PendingPriceUpdate;
 import common.enums.RequestStatus;
 import common.user.User;
@@ -53,15 +54,13 @@ public class PendingPriceUpdateRepository extends BaseRepository<PendingPriceUpd
      */
     public List<PendingPriceUpdate> findAllPending() {
         return executeQuery(session ->
-            session.createQuery(
+            fetch(session, session.createQuery(
                 "FROM PendingPriceUpdate p " +
-                "LEFT JOIN FETCH p.map m " +
-                "LEFT JOIN FETCH m.city " +
                 "WHERE p.status = :status " +
                 "ORDER BY p.createdAt DESC",
                 PendingPriceUpdate.class)
-                .setParameter("status", RequestStatus.OPEN)
-                .getResultList()
+                .setParameter("status", RequestStatus.OPEN),
+                FetchPlan.PRICE_APPROVAL)
         );
     }
 
@@ -84,6 +83,14 @@ public class PendingPriceUpdateRepository extends BaseRepository<PendingPriceUpd
      * Updates the map's price and marks the request as closed.
      */
     public boolean approve(int pendingId) {
+        return approve(pendingId, new CatalogChange());
+    }
+
+    /**
+     * Approve a pending price update and record the city or map whose price
+     * changed in {@code change}.
+     */
+    public boolean approve(int pendingId, CatalogChange change) {
         try {
             executeInTransaction(session -> {
                 PendingPriceUpdate pending = session.get(PendingPriceUpdate.class, pendingId);
@@ -97,11 +104,16 @@ public class PendingPriceUpdateRepository extends BaseRepository<PendingPriceUpd
                     City city = pending.getMap().getCity();
                     city.setPriceSub(pending.getNewPrice());
                     session.merge(city);
+                    change.addCity(city.getId());
                 } else {
                     // Update the map's price
                     GCMMap map = pending.getMap();
                     map.setPrice(pending.getNewPrice());
                     session.merge(map);
+                    change.addMap(map.getId());
+                    if (map.getCity() != null) {
+                        change.addCity(map.getCity().getId());
+                    }
                 }
 
                 // Mark as closed
@@ -143,15 +155,6 @@ public class PendingPriceUpdateRepository extends BaseRepository<PendingPriceUpd
      * Find pending update by ID with map loaded.
      */
     public Optional<PendingPriceUpdate> findByIdWithMap(int id) {
-        return executeQuery(session ->
-            session.createQuery(
-                "FROM PendingPriceUpdate p " +
-                "LEFT JOIN FETCH p.map m " +
-                "LEFT JOIN FETCH m.city " +
-                "WHERE p.id = :id",
-                PendingPriceUpdate.class)
-                .setParameter("id", id)
-                .uniqueResultOptional()
-        );
+        return findById(id, FetchPlan.PRICE_APPROVAL);
     }
 }
@@ -12,18 +12,20 @@ import server.HibernateUtil;
 import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
 import server.NotificationService;
+import server.notification.NotificationDispatcher;
+import server.report.DailyStatsAggregator;
+import server.report.ReportCache;
 
 import java.sql.Connection;
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
-import static server.NotificationService.sendOneTimePurchaseAlert;
-import static server.NotificationService.sendSubscriptionAlert;
-
 
 /**
  * Repository for Purchase entity operations.
@@ -53,6 +55,9 @@ public class PurchaseRepository extends BaseRepository<Purchase, Integer> {
      */
     public Subscription createSubscription(int userId, int cityId, double monthlyPrice, int months)
     {
+        Contact contact = findContactByUserId(userId);
+        Optional<String> cityName = findCityNameByCityID(cityId);
+
         // Bypass Hibernate session management entirely - use raw JDBC
         // to avoid the persistent "connection is closed" issue
         SessionFactoryImplementor sfi = (SessionFactoryImplementor) HibernateUtil.getSessionFactory();
@@ -109,20 +114,19 @@ public class PurchaseRepository extends BaseRepository<Purchase, Integer> {
                 ps.setBoolean(6, isRenewal);
                 ps.executeUpdate();
             }
+            DailyStatsAggregator.countPurchase(conn, cityId, today, true, isRenewal);
+            NotificationService.queueSubscriptionAlert(conn, contact.email(), contact.phone(), contact.firstName(),
+                    cityName.orElse(null), totalPrice, newExpiration);
 
             conn.commit();
+            ReportCache.getInstance().cityChanged(cityId);
+            NotificationDispatcher.notifyEnqueued();
 
             // Populate returned object for logging
             subscription.setPricePaid(totalPrice);
             subscription.setPurchaseDate(today);
             subscription.setExpirationDate(newExpiration);
             subscription.setRenewal(isRenewal);
-            Optional<String> email = findEmailByUserId(userId);
-            Optional<String> phone = findPhoneByUserId(userId);
-            Optional<String> firstName = findNameByUserId(userId);
-            Optional<String> cityName = findCityNameByCityID(cityId);
-            sendSubscriptionAlert(email.orElse(null),phone.orElse(null),firstName.orElse(null),cityName.orElse(null),totalPrice,newExpiration);
-
         } catch (Exception e) {
             if (conn != null) try { conn.rollback(); } catch (Exception ignored) {}
             throw new RuntimeException("Subscription creation failed: " + e.getMessage(), e);
@@ -132,26 +136,31 @@ public class PurchaseRepository extends BaseRepository<Purchase, Integer> {
         return subscription;
     }
 
-    private Optional<String> findEmailByUserId(int userId)
-    {
-        return executeQuery(session ->
-                session.createQuery("SELECT u.email FROM User u WHERE u.id= :uid", String.class)
-                        .setParameter("uid",userId)
-                        .uniqueResultOptional());
+    /**
+     * What a purchase alert is sent to; phone is null for users that are not clients.
+     */
+    public record Contact(String email, String phone, String firstName) {
+        static final Contact NONE = new Contact(null, null, null);
     }
-    private Optional<String> findPhoneByUserId(int userId)
+
+    /**
+     * Email, phone and first name of many users, one query per chunk of IDs.
+     *
+     * @return contact by user ID; users that do not exist map to empty lists
+     */
+    public Map<Integer, List<Contact>> findContactsByUserIds(Collection<Integer> userIds)
     {
-        return executeQuery(session ->
-                session.createQuery("SELECT u.phoneNumber FROM Client u WHERE u.id= :uid", String.class)
-                        .setParameter("uid",userId)
-                        .uniqueResultOptional());
+        return findGrouped(
+                "SELECT u.id, u.email, c.phoneNumber, u.firstName FROM User u " +
+                "LEFT JOIN Client c ON c.id = u.id WHERE u.id IN :keys",
+                userIds,
+                row -> new Contact((String) row[1], (String) row[2], (String) row[3]));
     }
-    private Optional<String> findNameByUserId(int userId)
+
+    private Contact findContactByUserId(int userId)
     {
-        return executeQuery(session ->
-                session.createQuery("SELECT u.firstName FROM User u WHERE u.id= :uid", String.class)
-                        .setParameter("uid",userId)
-                        .uniqueResultOptional());
+        List<Contact> contacts = findContactsByUserIds(List.of(userId)).get(userId);
+        return contacts.isEmpty() ? Contact.NONE : contacts.get(0);
     }
 
     private Optional<String> findCityNameByCityID(int cityId)
@@ -167,6 +176,7 @@ public class PurchaseRepository extends BaseRepository<Purchase, Integer> {
      */
     public OneTimePurchase createOneTimePurchase(User user, GCMMap map, double price) {
         final OneTimePurchase purchase = new OneTimePurchase();
+        Contact contact = findContactByUserId(user.getId());
         // Use native SQL to avoid Hibernate detached entity / closed connection issues
         executeInTransaction(session -> {
             LocalDate today = LocalDate.now();
@@ -182,6 +192,10 @@ public class PurchaseRepository extends BaseRepository<Purchase, Integer> {
                 .setParameter("purchaseDate", today)
                 .setParameter("version", map.getVersion())
                 .executeUpdate();
+            if (map.getCity() != null) {
+                session.doWork(conn -> DailyStatsAggregator.countPurchase(
+                        conn, map.getCity().getId(), today, false, false));
+            }
 
             // Create snapshot record if user is a Client
             if (user instanceof Client) {
@@ -203,14 +217,14 @@ public class PurchaseRepository extends BaseRepository<Purchase, Integer> {
             purchase.setPricePaid(price);
             purchase.setPurchaseDate(today);
             purchase.setPurchasedVersion(map.getVersion());
-            Optional<String> email = findEmailByUserId(user.getId());
-            Optional<String> phone = findPhoneByUserId(user.getId());
-            Optional<String> firstName = findNameByUserId(user.getId());
-            String cityName = map.getCityName();
-            String mapName = map.getName();
-            String mapVersion = map.getVersion();
-            sendOneTimePurchaseAlert(email.orElse(null),phone.orElse(null),firstName.orElse(null),cityName,price,mapName,mapVersion);
+            session.doWork(conn -> NotificationService.queueOneTimePurchaseAlert(conn,
+                    contact.email(), contact.phone(), contact.firstName(),
+                    map.getCityName(), price, map.getName(), map.getVersion()));
         });
+        if (map.getCity() != null) {
+            ReportCache.getInstance().cityChanged(map.getCity().getId());
+        }
+        NotificationDispatcher.notifyEnqueued();
         return purchase;
     }
 
@@ -342,6 +356,8 @@ public class PurchaseRepository extends BaseRepository<Purchase, Integer> {
     }
     /**
      * סורק את מסד הנתונים ושולח התראות למשתמשים שהמנוי שלהם מסתיים בעוד 3 ימים.
+     * The reminders are queued in the outbox in one transaction and sent by the
+     * notification dispatcher.
      */
     public void checkAndNotifyExpiringSubscriptions()
     {
@@ -360,22 +376,21 @@ public class PurchaseRepository extends BaseRepository<Purchase, Integer> {
                         .getResultList()
         );
 
-        for (Object[] row : results)
-        {
-            String email = (String) row[0];
-            String phone = (String) row[1];
-            String firstName = (String) row[2];
-            String cityName = (String) row[3];
-
-            sendSubscriptionAlert(
-                    email,
-                    phone,
-                    firstName,
-                    3,
-                    cityName
-            );
-            System.out.println("[Notification] Sent 3-day reminder to: " + email + " (Phone: " + phone + ") for city: " + cityName);
+        if (results.isEmpty()) {
+            return;
         }
-
+        executeInTransaction(session -> session.doWork(conn -> {
+            for (Object[] row : results)
+            {
+                String email = (String) row[0];
+                String phone = (String) row[1];
+                String firstName = (String) row[2];
+                String cityName = (String) row[3];
+
+                NotificationService.queueSubscriptionExpiryAlert(conn, email, phone, firstName, 3, cityName);
+            }
+        }));
+        NotificationDispatcher.notifyEnqueued();
+        System.out.println("[Notification] Queued 3-day reminders for " + results.size() + " subscriptions");
     }
 }
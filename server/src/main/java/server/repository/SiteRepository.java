@@ -20,11 +20,11 @@ public class SiteRepository extends BaseRepository<Site, Integer>
     public List<Site> findSitesByCityName(String cityName) {
         System.out.println("DEBUG: Searching for sites in city: " + cityName);
         return executeQuery(session ->
-                session.createQuery(
+                fetch(session, session.createQuery(
                                 "SELECT s FROM Site s JOIN s.city c " +
                                         "WHERE c.name = :cityName", Site.class)
-                        .setParameter("cityName", cityName)
-                        .getResultList()
+                        .setParameter("cityName", cityName),
+                        FetchPlan.SITE_LIST)
         );
     }
 }
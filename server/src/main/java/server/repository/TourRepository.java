@@ -18,11 +18,11 @@ public class TourRepository extends BaseRepository<Tour,Integer>{
     public List<Tour> findToursByCityName(String cityName) {
         System.out.println("DEBUG: Searching for tours sites in city: " + cityName);
         return executeQuery(session ->
-                session.createQuery(
+                fetch(session, session.createQuery(
                                 "SELECT t FROM Tour t JOIN t.city c " +
                                         "WHERE c.name = :cityName", Tour.class)
-                        .setParameter("cityName", cityName)
-                        .getResultList()
+                        .setParameter("cityName", cityName),
+                        FetchPlan.TOUR_LIST)
         );
     }
 }
@@ -5,9 +5,10 @@ import common.user.Client;
 import common.user.User;
 
 import java.util.List;
-import java.util.Optional;
+import server.NotificationService;
+import server.notification.NotificationDispatcher;
 
-import static server.NotificationService.sendRegistrationAlert;
+import java.util.Optional;
 
 /**
  * Repository for User entity operations.
@@ -104,13 +105,11 @@ public class UserRepository extends BaseRepository<User, Integer> {
         client.setPaymentDetails(payment);
 
         try {
-            save(client);
-            try {
-                System.out.println("Notification for: "+email+", "+phone);
-                sendRegistrationAlert(email, phone, firstName);
-            } catch (Exception e) {
-                System.err.println("Warning: User registered but notification failed: " + e.getMessage());
-            }
+            executeInTransaction(session -> {
+                session.persist(client);
+                session.doWork(conn -> NotificationService.queueRegistrationAlert(conn, email, phone, firstName));
+            });
+            NotificationDispatcher.notifyEnqueued();
             return true;
         } catch (Exception e) {
             e.printStackTrace();
@@ -0,0 +1,236 @@
+package server.stream;
+
+import common.content.City;
+import common.content.GCMMap;
+import common.dto.MapImageChunk;
+import common.enums.ActionType;
+import common.messaging.Message;
+import server.blob.MappedImageCache;
+import server.ocsf.ConnectionToClient;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends map images as a sequence of bounded MAP_IMAGE_CHUNK messages instead of
+ * one monolithic response.
+ *
+ * Each image is a transfer with a small credit window: at most {@code window}
+ * chunks are unacknowledged at any time, and every MAP_IMAGE_CHUNK_ACK from the
+ * client releases the next chunk. Chunks are separate frames, so other
+ * responses on the same connection go out between them, and a slow client
+ * holds back only its own transfers.
+ *
+ * Images referenced by blob hash are sliced out of a {@link MappedImageCache}
+ * mapping one chunk at a time, so a transfer never holds the whole image on
+ * the heap. When the client accepts frame bodies the slice is sent as the
+ * body of the chunk frame, and an NIO connection writes it to the socket
+ * straight from the mapping.
+ *
+ * Chunks are never written on the thread that read the ack: an ack only adds
+ * credit, and the transfer's chunks are sent from a virtual thread, one at a
+ * time per transfer. A client slow to read its chunks therefore blocks that
+ * thread, never the reading of its connection (heartbeats included).
+ */
+public class MapImageStreamer {
+
+    private final int chunkBytes;
+    private final int window;
+
+    private final Map<Long, Transfer> transfers = new ConcurrentHashMap<>();
+    private final AtomicLong nextTransferId = new AtomicLong();
+    private final ExecutorService senders =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("MapImageStreamer-", 0).factory());
+
+    /**
+     * @param chunkBytes largest image slice per chunk
+     * @param window     chunks a transfer may have in flight before it waits for an ack
+     */
+    public MapImageStreamer(int chunkBytes, int window) {
+        if (chunkBytes <= 0 || window <= 0) {
+            throw new IllegalArgumentException("chunkBytes and window must be positive");
+        }
+        this.chunkBytes = chunkBytes;
+        this.window = window;
+    }
+
+    /**
+     * Takes the images out of the maps in a response payload (a map or a city
+     * with its maps) so the response itself stays small: inline bytes are
+     * removed, and images still in the blob store are left there. Each map
+     * keeps the image size in {@link GCMMap#getImageLength()}.
+     *
+     * @param payload the response payload
+     * @return the detached images, to be passed to {@link #start} once the response is sent
+     */
+    public List<DetachedImage> detachImages(Object payload) {
+        List<GCMMap> maps = new ArrayList<>();
+        if (payload instanceof GCMMap map) {
+            maps.add(map);
+        } else if (payload instanceof City city && city.getMaps() != null) {
+            maps.addAll(city.getMaps());
+        }
+
+        List<DetachedImage> images = new ArrayList<>();
+        for (GCMMap map : maps) {
+            byte[] image = map.getMapImage();
+            if (image != null && image.length > 0) {
+                images.add(new DetachedImage(map.getId(), image, null, image.length));
+                map.setImageLength(image.length);
+                map.setMapImage(null);
+            } else if (map.getImageHash() != null && map.getImageSize() != null && map.getImageSize() > 0) {
+                images.add(new DetachedImage(map.getId(), null, map.getImageHash(), map.getImageSize()));
+                map.setImageLength(map.getImageSize());
+            }
+        }
+        return images;
+    }
+
+    /**
+     * Starts streaming detached images, one transfer per image, each with
+     * credit for its first window of chunks.
+     *
+     * @param client    the connection that asked for the images
+     * @param requestId the request ID the chunks are tagged with
+     * @param images    the images returned by {@link #detachImages}
+     */
+    public void start(ConnectionToClient client, long requestId, List<DetachedImage> images) {
+        for (DetachedImage image : images) {
+            Transfer transfer = new Transfer(nextTransferId.incrementAndGet(), client, requestId, image);
+            transfers.put(transfer.id, transfer);
+            transfer.credit(window);
+        }
+    }
+
+    /**
+     * Handles MAP_IMAGE_CHUNK_ACK: the client consumed a chunk, so one more may
+     * be sent. Returns without writing anything.
+     */
+    public void acknowledge(ConnectionToClient client, long transferId) {
+        Transfer transfer = transfers.get(transferId);
+        if (transfer != null && transfer.client == client) {
+            transfer.credit(1);
+        }
+    }
+
+    /**
+     * Drops every transfer of a connection that went away.
+     */
+    public void cancel(ConnectionToClient client) {
+        transfers.values().removeIf(transfer -> transfer.client == client);
+    }
+
+    /** @return the number of transfers not yet fully sent */
+    public int getActiveTransfers() {
+        return transfers.size();
+    }
+
+    // ==================== TRANSFER ====================
+
+    /**
+     * An image taken out of a response, waiting to be streamed: either its
+     * bytes, or the hash of its blob in the store.
+     */
+    public record DetachedImage(int mapId, byte[] data, String blobHash, int length) {}
+
+    private final class Transfer {
+        private final long id;
+        private final ConnectionToClient client;
+        private final long requestId;
+        private final DetachedImage image;
+
+        /** Next byte to send; guarded by this. */
+        private int offset;
+
+        /** Chunks allowed but not sent yet. */
+        private final AtomicInteger credits = new AtomicInteger();
+        /** Set while a sender thread is working for this transfer. */
+        private final AtomicBoolean sending = new AtomicBoolean();
+
+        Transfer(long id, ConnectionToClient client, long requestId, DetachedImage image) {
+            this.id = id;
+            this.client = client;
+            this.requestId = requestId;
+            this.image = image;
+        }
+
+        /**
+         * Allows {@code count} more chunks and makes sure a sender thread is
+         * sending them.
+         */
+        void credit(int count) {
+            credits.addAndGet(count);
+            if (sending.compareAndSet(false, true)) {
+                senders.execute(this::send);
+            }
+        }
+
+        private void send() {
+            do {
+                int count;
+                while ((count = credits.getAndSet(0)) > 0) {
+                    pump(count);
+                }
+                sending.set(false);
+                // Credit may have come in after the last getAndSet
+            } while (credits.get() > 0 && sending.compareAndSet(false, true));
+        }
+
+        /**
+         * Sends up to {@code credits} more chunks. Synchronized so that the
+         * chunks stay in order.
+         */
+        private synchronized void pump(int credits) {
+            if (transfers.get(id) != this) {
+                return;     // cancelled, or failed already
+            }
+            int length = image.length();
+            while (credits-- > 0 && offset < length) {
+                int end = Math.min(length, offset + chunkBytes);
+                try {
+                    boolean asBody = image.data() == null && client.acceptsFrameBodies();
+                    MapImageChunk data = new MapImageChunk(id, image.mapId(), offset, length,
+                            asBody ? null : slice(offset, end));
+                    Message chunk = new Message(ActionType.MAP_IMAGE_CHUNK, data);
+                    chunk.setRequestId(requestId);
+                    if (asBody) {
+                        client.sendToClient(chunk, mapped(offset, end));
+                    } else {
+                        client.sendToClient(chunk);
+                    }
+                    offset = end;
+                } catch (IOException e) {
+                    System.err.println("Failed to send image chunk of map " + image.mapId() + ": " + e.getMessage());
+                    transfers.remove(id);
+                    return;
+                }
+            }
+            if (offset >= length) {
+                transfers.remove(id);
+            }
+        }
+
+        private byte[] slice(int from, int to) throws IOException {
+            if (image.data() != null) {
+                return Arrays.copyOfRange(image.data(), from, to);
+            }
+            byte[] bytes = new byte[to - from];
+            mapped(from, to).get(bytes);
+            return bytes;
+        }
+
+        private ByteBuffer mapped(int from, int to) throws IOException {
+            return MappedImageCache.getInstance().slice(image.blobHash(), from, to - from);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package server.bench;
+
+import common.content.City;
+import common.content.GCMMap;
+import common.content.Site;
+import common.content.Tour;
+import common.enums.MapStatus;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import server.HibernateUtil;
+import server.catalog.SearchIndex;
+import server.repository.CityRepository;
+import server.repository.CitySearchRow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares catalog search through {@link SearchIndex} with the
+ * {@code LIKE '%q%'} HQL of {@link CityRepository#searchWithCounts} on a
+ * generated dataset: cities whose names, descriptions, sites, tours and maps
+ * are made of random pseudo-words.
+ *
+ * Without options only the index is measured, on the generated rows in
+ * memory: build time, size, and per-query latency for whole words, prefixes,
+ * word fragments and two-word queries.
+ *
+ * With --db both are measured against the configured database, the index
+ * being built from it. --populate first inserts the generated cities there;
+ * point dbHibernate.cfg.xml at a scratch schema before using it.
+ *
+ * Usage:
+ * <pre>
+ * mvn -q -pl server test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=server.bench.CatalogSearchBenchmark -Dexec.args="[cities] [queries] [--db] [--populate]"
+ * mvn -q -pl server test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=server.bench.CatalogSearchBenchmark -Dexec.args="5000 200"
+ * mvn -q -pl server test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=server.bench.CatalogSearchBenchmark -Dexec.args="5000 50 --db --populate"
+ * </pre>
+ */
+public class CatalogSearchBenchmark {
+
+    private static final String[] SYLLABLES = {
+            "ka", "ri", "mo", "te", "la", "vi", "sa", "no", "be", "ru", "di", "go",
+            "ha", "el", "ya", "sh", "ar", "on", "tz", "me", "li", "da", "ne", "or"
+    };
+    private static final int SITES_PER_CITY = 12;
+    private static final int TOURS_PER_CITY = 4;
+    private static final int MAPS_PER_CITY = 5;
+
+    public static void main(String[] args) {
+        int cities = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        boolean db = List.of(args).contains("--db");
+        boolean populate = List.of(args).contains("--populate");
+
+        Random random = new Random(42);
+        List<String> words = words(random, 50_000);
+        List<CitySearchRow> rows = generate(random, words, cities);
+        List<String> sample = queries(random, words, queries);
+
+        if (!db) {
+            SearchIndex index = build(cityIds -> rows);
+            System.out.printf("%-10s %10s %12s%n", "kind", "queries", "indexUs");
+            measure(sample, index, null);
+            return;
+        }
+
+        HibernateUtil.initialize("dbHibernate.cfg.xml");
+        try {
+            if (populate) {
+                populate(rows);
+            }
+            SearchIndex index = build(CityRepository.getInstance()::findSearchRows);
+            System.out.printf("%-10s %10s %12s %12s %10s%n", "kind", "queries", "indexUs", "hqlUs", "speedup");
+            measure(sample, index, CityRepository.getInstance());
+        } finally {
+            HibernateUtil.shutdown();
+        }
+    }
+
+    private static SearchIndex build(SearchIndex.Loader loader) {
+        SearchIndex index = new SearchIndex(loader);
+        long start = System.nanoTime();
+        index.rebuild();
+        System.out.printf("index of %d cities, %d tokens built in %.1f ms%n",
+                index.getCityCount(), index.getTokenCount(), (System.nanoTime() - start) / 1e6);
+        return index;
+    }
+
+    /** Runs every query kind through the index and, when given, the HQL. */
+    private static void measure(List<String> sample, SearchIndex index, CityRepository hql) {
+        String[] kinds = {"word", "prefix", "fragment", "two words"};
+        for (int kind = 0; kind < kinds.length; kind++) {
+            List<String> kindQueries = new ArrayList<>();
+            for (int i = kind; i < sample.size(); i += kinds.length) {
+                kindQueries.add(sample.get(i));
+            }
+            for (String q : kindQueries) {
+                index.search(q);    // warm up
+            }
+            long start = System.nanoTime();
+            long hits = 0;
+            for (String q : kindQueries) {
+                hits += index.search(q).size();
+            }
+            double indexUs = (System.nanoTime() - start) / 1000.0 / kindQueries.size();
+            if (hql == null) {
+                System.out.printf("%-10s %10d %12.1f   (%d hits)%n", kinds[kind], kindQueries.size(), indexUs, hits);
+                continue;
+            }
+            start = System.nanoTime();
+            for (String q : kindQueries) {
+                hql.searchWithCounts(q);
+            }
+            double hqlUs = (System.nanoTime() - start) / 1000.0 / kindQueries.size();
+            System.out.printf("%-10s %10d %12.1f %12.1f %9.0fx%n", kinds[kind], kindQueries.size(), indexUs,
+                    hqlUs, hqlUs / indexUs);
+        }
+    }
+
+    // ==================== SYNTHETIC DATA ====================
+
+    private static List<String> words(Random random, int count) {
+        List<String> words = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 2 + random.nextInt(3);
+            for (int s = 0; s < syllables; s++) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            words.add(word.toString());
+        }
+        return words;
+    }
+
+    private static String text(Random random, List<String> words, int length) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            if (i > 0) text.append(' ');
+            text.append(words.get(random.nextInt(words.size())));
+        }
+        return text.toString();
+    }
+
+    private static List<CitySearchRow> generate(Random random, List<String> words, int cities) {
+        List<CitySearchRow> rows = new ArrayList<>(cities);
+        for (int c = 1; c <= cities; c++) {
+            String name = Character.toUpperCase(words.get(c % words.size()).charAt(0))
+                    + words.get(c % words.size()).substring(1) + " " + c;
+            CitySearchRow row = new CitySearchRow(c, name, text(random, words, 20), 10 + c % 50, null,
+                    new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+            for (int i = 0; i < MAPS_PER_CITY; i++) {
+                row.maps().add(new CitySearchRow.Text(text(random, words, 2), text(random, words, 12)));
+            }
+            for (int i = 0; i < SITES_PER_CITY; i++) {
+                row.sites().add(new CitySearchRow.Text(text(random, words, 2), text(random, words, 15)));
+            }
+            for (int i = 0; i < TOURS_PER_CITY; i++) {
+                row.tours().add(new CitySearchRow.Text(text(random, words, 3), text(random, words, 15)));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /** Whole words, prefixes, fragments and word pairs, interleaved. */
+    private static List<String> queries(Random random, List<String> words, int count) {
+        List<String> queries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String word = words.get(random.nextInt(words.size()));
+            queries.add(switch (i % 4) {
+                case 0 -> word;
+                case 1 -> word.substring(0, Math.min(word.length(), 3));
+                case 2 -> word.substring(1, Math.min(word.length(), 5));
+                default -> word + " " + words.get(random.nextInt(words.size()));
+            });
+        }
+        return queries;
+    }
+
+    /** Inserts the generated cities, 100 per transaction. */
+    private static void populate(List<CitySearchRow> rows) {
+        long start = System.nanoTime();
+        for (int from = 0; from < rows.size(); from += 100) {
+            Transaction tx = null;
+            try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+                tx = session.beginTransaction();
+                for (CitySearchRow row : rows.subList(from, Math.min(rows.size(), from + 100))) {
+                    session.persist(toEntity(row));
+                }
+                tx.commit();
+            } catch (RuntimeException e) {
+                if (tx != null && tx.isActive()) tx.rollback();
+                throw e;
+            }
+        }
+        System.out.printf("inserted %d cities in %.1f s%n", rows.size(), (System.nanoTime() - start) / 1e9);
+    }
+
+    private static City toEntity(CitySearchRow row) {
+        City city = new City();
+        city.setName(row.name());
+        city.setDescription(row.description());
+        city.setPriceSub(row.priceSub());
+        for (CitySearchRow.Text text : row.maps()) {
+            GCMMap map = new GCMMap();
+            map.setName(text.name());
+            map.setDescription(text.description());
+            map.setVersion("1.0");
+            map.setPrice(10);
+            map.setStatus(MapStatus.PUBLISHED);
+            map.setCity(city);
+            city.getMaps().add(map);
+        }
+        for (CitySearchRow.Text text : row.sites()) {
+            Site site = new Site();
+            site.setName(text.name());
+            site.setDescription(text.description());
+            site.setCity(city);
+            city.getSites().add(site);
+        }
+        for (CitySearchRow.Text text : row.tours()) {
+            Tour tour = new Tour();
+            tour.setName(text.name());
+            tour.setDescription(text.description());
+            tour.setCity(city);
+            city.getTours().add(tour);
+        }
+        return city;
+    }
+}
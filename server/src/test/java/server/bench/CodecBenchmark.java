@@ -0,0 +1,171 @@
+package server.bench;
+
+import common.content.City;
+import common.content.GCMMap;
+import common.content.Site;
+import common.dto.CatalogResponse;
+import common.enums.ActionType;
+import common.enums.MapStatus;
+import common.enums.SiteCategory;
+import common.enums.SiteDuration;
+import common.messaging.Message;
+import common.messaging.codec.BinaryCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares Java serialization with {@link BinaryCodec} on the payloads that
+ * dominate GCM traffic: payload size, encode time and decode time.
+ *
+ * Two payloads are measured: a catalog response (cities with their maps and
+ * sites, linked both ways as Hibernate loads them) and a map details response
+ * carrying the map image. Each codec is warmed up before timing.
+ *
+ * Usage:
+ * <pre>
+ * mvn -q -pl server test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=server.bench.CodecBenchmark -Dexec.args="[cities] [mapsPerCity] [sitesPerCity] [imageKB] [iterations]"
+ * mvn -q -pl server test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=server.bench.CodecBenchmark -Dexec.args="50 6 20 512 2000"
+ * </pre>
+ */
+public class CodecBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 2000;
+
+    public static void main(String[] args) throws Exception {
+        int cities = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int mapsPerCity = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+        int sitesPerCity = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int imageKb = args.length > 3 ? Integer.parseInt(args[3]) : 512;
+        int iterations = args.length > 4 ? Integer.parseInt(args[4]) : 2000;
+
+        Message catalog = new Message(ActionType.GET_CATALOG_RESPONSE,
+                catalog(cities, mapsPerCity, sitesPerCity));
+        Message mapDetails = new Message(ActionType.GET_MAP_DETAILS_RESPONSE,
+                mapDetails(sitesPerCity, imageKb));
+
+        System.out.printf("%-12s %-8s %12s %12s %12s%n", "payload", "codec", "bytes", "encodeUs", "decodeUs");
+        run("catalog", catalog, iterations);
+        run("mapDetails", mapDetails, Math.max(1, iterations / 10));
+    }
+
+    private static void run(String name, Message message, int iterations) throws Exception {
+        for (Codec codec : Codec.values()) {
+            measure(codec, message, WARMUP_ITERATIONS / 10);
+            long[] result = measure(codec, message, iterations);
+            System.out.printf("%-12s %-8s %12d %12.1f %12.1f%n", name, codec.name().toLowerCase(),
+                    result[0], result[1] / 1000.0 / iterations, result[2] / 1000.0 / iterations);
+        }
+    }
+
+    /** @return payload size, total encode nanos, total decode nanos */
+    private static long[] measure(Codec codec, Message message, int iterations) throws Exception {
+        byte[] payload = codec.encode(message);
+        long encodeNanos = 0;
+        long decodeNanos = 0;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            payload = codec.encode(message);
+            long encoded = System.nanoTime();
+            Object decoded = codec.decode(payload);
+            decodeNanos += System.nanoTime() - encoded;
+            encodeNanos += encoded - start;
+            if (!(decoded instanceof Message)) {
+                throw new IllegalStateException(codec + " returned " + decoded);
+            }
+        }
+        return new long[]{payload.length, encodeNanos, decodeNanos};
+    }
+
+    private enum Codec {
+        JAVA {
+            byte[] encode(Object value) throws IOException {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+                try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                    out.writeObject(value);
+                }
+                return bytes.toByteArray();
+            }
+
+            Object decode(byte[] payload) throws Exception {
+                try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+                    return in.readObject();
+                }
+            }
+        },
+        BINARY {
+            byte[] encode(Object value) throws IOException {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+                BinaryCodec.encode(value, bytes);
+                return bytes.toByteArray();
+            }
+
+            Object decode(byte[] payload) throws Exception {
+                return BinaryCodec.decode(payload, 0, payload.length);
+            }
+        };
+
+        abstract byte[] encode(Object value) throws IOException;
+
+        abstract Object decode(byte[] payload) throws Exception;
+    }
+
+    // ==================== SYNTHETIC PAYLOADS ====================
+
+    private static CatalogResponse catalog(int cityCount, int mapsPerCity, int sitesPerCity) {
+        CatalogResponse response = new CatalogResponse();
+        List<GCMMap> allMaps = new ArrayList<>();
+        List<City> cities = new ArrayList<>();
+        List<String> cityNames = new ArrayList<>();
+        for (int c = 0; c < cityCount; c++) {
+            City city = city(c, mapsPerCity, sitesPerCity);
+            cities.add(city);
+            cityNames.add(city.getName());
+            allMaps.addAll(city.getMaps());
+        }
+        response.setMaps(allMaps);
+        response.setCities(cities);
+        response.setAvailableCities(cityNames);
+        response.setAvailableVersions(List.of("1.0", "1.1", "2.0"));
+        return response;
+    }
+
+    private static GCMMap mapDetails(int sitesPerCity, int imageKb) {
+        GCMMap map = city(0, 1, sitesPerCity).getMaps().get(0);
+        byte[] image = new byte[imageKb * 1024];
+        new Random(7).nextBytes(image);
+        map.setMapImage(image);
+        return map;
+    }
+
+    private static City city(int id, int mapCount, int siteCount) {
+        City city = new City(id, "City " + id, "A city with a long enough description " + id, 49.9);
+        List<Site> sites = new ArrayList<>();
+        for (int s = 0; s < siteCount; s++) {
+            sites.add(new Site(id * 1000 + s, "Site " + s, "Description of site " + s, city,
+                    SiteCategory.values()[s % SiteCategory.values().length], s % 2 == 0,
+                    SiteDuration.values()[s % SiteDuration.values().length], "32.79" + s + ",34.98" + s));
+        }
+        List<GCMMap> maps = new ArrayList<>();
+        for (int m = 0; m < mapCount; m++) {
+            GCMMap map = new GCMMap(id * 100 + m, "Map " + m, "Map " + m + " of city " + id, "1." + m,
+                    19.9 + m, MapStatus.PUBLISHED);
+            map.setCity(city);
+            List<Site> mapSites = new ArrayList<>(sites.subList(0, Math.min(sites.size(), 5 + m)));
+            map.setSites(mapSites);
+            maps.add(map);
+        }
+        for (Site site : sites) {
+            site.setMaps(new ArrayList<>(maps.subList(0, 1)));
+        }
+        city.setSites(sites);
+        city.setMaps(maps);
+        return city;
+    }
+}
@@ -0,0 +1,209 @@
+package server.bench;
+
+import server.ocsf.AbstractServer;
+import server.ocsf.ConnectionToClient;
+import server.ocsf.TransportMode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load benchmark for the server transports: how many concurrent sessions each
+ * {@link TransportMode} can hold, and what it costs in threads, heap and latency.
+ *
+ * For every mode an echo server is started whose handler sleeps for a while to
+ * stand in for a Hibernate/JDBC call. Sessions are opened in steps; after each
+ * step every open session sends one request at the same time and the round-trip
+ * latency is measured. The run for a mode ends at the session limit or at the
+ * first step that fails (out of threads, memory or file descriptors).
+ *
+ * Usage:
+ * <pre>
+ * mvn -q -pl server test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=server.bench.ConnectionLoadBenchmark -Dexec.args="[modes] [maxSessions] [step] [handlerMs]"
+ * mvn -q -pl server test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=server.bench.ConnectionLoadBenchmark -Dexec.args="blocking,virtual_threads,nio 10000 1000 20"
+ * </pre>
+ * Raise the file descriptor limit (ulimit -n) above twice maxSessions first.
+ */
+public class ConnectionLoadBenchmark {
+
+    /** Preamble of the framed protocol, see server.ocsf.FrameCodec. */
+    private static final int FRAME_MAGIC = 0x47434D31;
+    private static final int BASE_PORT = 17555;
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        List<TransportMode> modes = new ArrayList<>();
+        String modeList = args.length > 0 ? args[0] : "blocking,virtual_threads,nio";
+        for (String mode : modeList.split(",")) {
+            modes.add(TransportMode.valueOf(mode.trim().toUpperCase().replace('-', '_')));
+        }
+        int maxSessions = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        int step = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+        long handlerMs = args.length > 3 ? Long.parseLong(args[3]) : 20;
+
+        System.out.printf("%-16s %9s %9s %10s %9s %9s %9s%n",
+                "mode", "sessions", "threads", "heapMB", "p50ms", "p99ms", "errors");
+
+        for (TransportMode mode : modes) {
+            run(mode, BASE_PORT + mode.ordinal(), maxSessions, step, handlerMs);
+        }
+    }
+
+    private static void run(TransportMode mode, int port, int maxSessions, int step, long handlerMs)
+            throws Exception {
+        EchoServer server = new EchoServer(port, handlerMs);
+        server.setTransportMode(mode);
+        server.setVirtualHandlers(true);
+        server.listen();
+        Thread.sleep(200);
+
+        List<Session> sessions = new ArrayList<>();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            while (sessions.size() < maxSessions) {
+                try {
+                    for (int i = 0; i < step; i++) {
+                        sessions.add(new Session(port));
+                    }
+                } catch (IOException | OutOfMemoryError e) {
+                    System.out.printf("%-16s stopped opening sessions at %d: %s%n",
+                            mode, sessions.size(), e);
+                    report(mode, sessions.size(), new long[0], 0);
+                    break;
+                }
+                awaitConnections(server, sessions.size());
+
+                List<Future<Long>> rounds = new ArrayList<>(sessions.size());
+                for (Session session : sessions) {
+                    rounds.add(clients.submit(session::roundTrip));
+                }
+                long[] latencies = new long[rounds.size()];
+                int errors = 0;
+                int n = 0;
+                for (Future<Long> round : rounds) {
+                    try {
+                        long latency = round.get(60, TimeUnit.SECONDS);
+                        latencies[n++] = latency;
+                    } catch (Exception e) {
+                        errors++;
+                    }
+                }
+                report(mode, sessions.size(), Arrays.copyOf(latencies, n), errors);
+                if (errors > 0) {
+                    break;
+                }
+            }
+        } finally {
+            for (Session session : sessions) {
+                session.close();
+            }
+            server.close();
+            Thread.sleep(500);
+        }
+    }
+
+    private static void awaitConnections(EchoServer server, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (server.getNumberOfClients() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+
+    private static void report(TransportMode mode, int sessions, long[] latenciesNanos, int errors) {
+        System.gc();
+        Runtime rt = Runtime.getRuntime();
+        long heapMb = (rt.totalMemory() - rt.freeMemory()) / (1024 * 1024);
+        int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+        Arrays.sort(latenciesNanos);
+        System.out.printf("%-16s %9d %9d %10d %9.1f %9.1f %9d%n",
+                mode, sessions, threads, heapMb,
+                percentile(latenciesNanos, 0.50), percentile(latenciesNanos, 0.99), errors);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    /**
+     * Echo server whose handler blocks like a database call would.
+     */
+    private static class EchoServer extends AbstractServer {
+        private final long handlerMs;
+
+        EchoServer(int port, long handlerMs) {
+            super(port);
+            this.handlerMs = handlerMs;
+        }
+
+        @Override
+        protected void handleMessageFromClient(Object msg, ConnectionToClient client) {
+            try {
+                Thread.sleep(handlerMs);
+                client.sendToClient(msg);
+            } catch (Exception e) {
+                // Session closed by the benchmark
+            }
+        }
+    }
+
+    /**
+     * One client session speaking the framed protocol over a plain socket.
+     */
+    private static class Session {
+        private final Socket socket;
+        private final DataOutputStream out;
+        private final DataInputStream in;
+
+        Session(int port) throws IOException {
+            socket = new Socket();
+            socket.connect(new InetSocketAddress("localhost", port), CONNECT_TIMEOUT_MS);
+            out = new DataOutputStream(socket.getOutputStream());
+            in = new DataInputStream(socket.getInputStream());
+            out.writeInt(FRAME_MAGIC);
+            out.flush();
+        }
+
+        long roundTrip() throws Exception {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+                oos.writeObject("ping");
+            }
+            long start = System.nanoTime();
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+            out.flush();
+
+            byte[] reply = new byte[in.readInt()];
+            in.readFully(reply);
+            try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(reply))) {
+                ois.readObject();
+            }
+            return System.nanoTime() - start;
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
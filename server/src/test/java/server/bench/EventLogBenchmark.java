@@ -0,0 +1,115 @@
+package server.bench;
+
+import server.events.EventIngestor;
+import server.events.EventLog;
+import server.events.MapEvent;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Measures the map event log in a temporary directory, without a database:
+ * <ul>
+ * <li>append: one thread writing batches straight to {@link EventLog}, one force per batch</li>
+ * <li>ingest: submitter threads going through {@link EventIngestor}'s queue and writer thread</li>
+ * <li>replay: reading every segment back, as {@link server.events.EventCompactor} does</li>
+ * </ul>
+ * The replay count must equal the number of events written.
+ *
+ * Usage:
+ * <pre>
+ * mvn -q -pl server test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=server.bench.EventLogBenchmark -Dexec.args="[events] [batchSize] [submitters] [sync]"
+ * mvn -q -pl server test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=server.bench.EventLogBenchmark -Dexec.args="2000000 1024 4 true"
+ * </pre>
+ */
+public class EventLogBenchmark {
+
+    private static final int SEGMENT_RECORDS = 128 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        int events = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+        int submitters = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        boolean sync = args.length <= 3 || Boolean.parseBoolean(args[3]);
+
+        Path dir = Files.createTempDirectory("gcm-events");
+        try {
+            System.out.println(events + " events, batches of " + batchSize + ", " + submitters
+                    + " submitters, sync=" + sync + ", in " + dir);
+            System.out.printf("%-8s %12s %14s%n", "phase", "ms", "events/s");
+
+            EventLog log = new EventLog(dir.resolve("append"), SEGMENT_RECORDS);
+            List<MapEvent> batch = new ArrayList<>(batchSize);
+            long start = System.nanoTime();
+            for (int i = 0; i < events; i++) {
+                batch.add(event(i));
+                if (batch.size() == batchSize || i == events - 1) {
+                    log.append(batch);
+                    if (sync) {
+                        log.force();
+                    }
+                    batch.clear();
+                }
+            }
+            log.close();
+            report("append", events, System.nanoTime() - start);
+
+            EventIngestor ingestor = new EventIngestor(new EventLog(dir.resolve("ingest"), SEGMENT_RECORDS),
+                    64 * 1024, batchSize, 50, sync);
+            start = System.nanoTime();
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < submitters; t++) {
+                int from = t;
+                Thread thread = new Thread(() -> {
+                    for (int i = from; i < events; i += submitters) {
+                        while (!ingestor.submit(event(i))) {
+                            Thread.onSpinWait();    // queue full: a server would drop, the benchmark retries
+                        }
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            ingestor.close();
+            report("ingest", events, System.nanoTime() - start);
+            System.out.println("  " + ingestor + ", flush p99 "
+                    + ingestor.getFlushLatency().getPercentileMicros(99) + " us");
+
+            start = System.nanoTime();
+            long[] read = new long[1];
+            for (EventLog.Segment segment : ingestor.getLog().closedSegments()) {
+                read[0] += EventLog.read(segment.path(), event -> {});
+            }
+            report("replay", read[0], System.nanoTime() - start);
+            if (read[0] != events) {
+                System.err.println("Replayed " + read[0] + " events, expected " + events);
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(path);
+                }
+            } catch (IOException e) {
+                System.err.println("Could not remove " + dir + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static MapEvent event(int i) {
+        return new MapEvent(i % 10 == 0 ? MapEvent.Kind.DOWNLOAD : MapEvent.Kind.VIEW,
+                1 + i % 50, 1 + i % 400, i % 3 == 0 ? null : i % 5000,
+                1_700_000_000_000L + i, i % 20 == 0);
+    }
+
+    private static void report(String phase, long events, long nanos) {
+        System.out.printf("%-8s %12.1f %14.0f%n", phase, nanos / 1e6, events / (nanos / 1e9));
+    }
+}
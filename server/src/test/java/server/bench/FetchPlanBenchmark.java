@@ -0,0 +1,118 @@
+package server.bench;
+
+import common.dto.CatalogFilter;
+import common.enums.ActionType;
+import common.enums.MapStatus;
+import common.messaging.Message;
+import common.messaging.codec.BinaryCodec;
+import org.hibernate.Session;
+import server.HibernateUtil;
+import server.handler.HandlerRegistry;
+import server.metrics.SqlStatementCounter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+
+/**
+ * Runs the handlers that load content entities against the configured
+ * database and reports, per request: SQL statements issued, handler time,
+ * and response size under {@link BinaryCodec} and Java serialization.
+ *
+ * Statements are counted by {@link SqlStatementCounter}, which
+ * {@link HibernateUtil} installs on the session factory. Running the tool on
+ * two commits against the same database gives before/after numbers for a
+ * change to the mappings or fetch plans. The response is encoded the way the
+ * server would send it, so uninitialized lazy associations count as null.
+ *
+ * Usage:
+ * <pre>
+ * mvn -q -pl server test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=server.bench.FetchPlanBenchmark -Dexec.args="[cityId] [mapId] [userId] [iterations]"
+ * mvn -q -pl server test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=server.bench.FetchPlanBenchmark -Dexec.args="0 0 1 50"
+ * </pre>
+ * A cityId or mapId of 0 picks the first non-external map and its city.
+ */
+public class FetchPlanBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int cityId = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        int mapId = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        int userId = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        int iterations = args.length > 3 ? Integer.parseInt(args[3]) : 50;
+
+        HibernateUtil.initialize("dbHibernate.cfg.xml");
+        try {
+            String cityName = null;
+            try (Session session = HibernateUtil.getSessionFactory().openSession()) {
+                Object[] sample = session.createQuery(
+                        "SELECT m.city.id, m.city.name, m.id FROM GCMMap m " +
+                        "WHERE m.status != :extStatus AND (:mapId = 0 OR m.id = :mapId) " +
+                        "ORDER BY m.id", Object[].class)
+                        .setParameter("extStatus", MapStatus.EXTERNAL)
+                        .setParameter("mapId", mapId)
+                        .setMaxResults(1)
+                        .uniqueResult();
+                if (sample == null) {
+                    System.err.println("No map to measure");
+                    return;
+                }
+                cityId = cityId > 0 ? cityId : (Integer) sample[0];
+                cityName = (String) sample[1];
+                mapId = (Integer) sample[2];
+            }
+            System.out.println("city " + cityId + " (" + cityName + "), map " + mapId + ", user " + userId
+                    + ", " + iterations + " iterations");
+
+            System.out.printf("%-32s %8s %10s %12s %12s%n", "request", "sql", "handlerUs", "binaryBytes", "javaBytes");
+            run(ActionType.GET_CATALOG_REQUEST, new CatalogFilter(cityName, null, null), iterations);
+            run(ActionType.GET_CITY_DETAILS_REQUEST, cityId, iterations);
+            run(ActionType.GET_MAP_DETAILS_REQUEST, mapId, iterations);
+            run(ActionType.GET_CITY_FULL_DETAILS_REQUEST, cityId, iterations);
+            run(ActionType.GET_SUBSCRIPTION_MAPS_REQUEST, userId, iterations);
+            run(ActionType.GET_CITY_SITES_REQUEST, cityName, iterations);
+            run(ActionType.GET_CITY_TOURS_REQUEST, cityName, iterations);
+            run(ActionType.GET_EXTERNAL_MAPS_REQUEST, null, iterations);
+            run(ActionType.GET_PENDING_APPROVALS_REQUEST, null, iterations);
+        } finally {
+            HibernateUtil.shutdown();
+        }
+    }
+
+    private static void run(ActionType action, Object payload, int iterations) {
+        HandlerRegistry registry = HandlerRegistry.getInstance();
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            registry.handleRequest(new Message(action, payload));
+        }
+
+        Message response = null;
+        long statements = SqlStatementCounter.currentThreadCount();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            response = registry.handleRequest(new Message(action, payload));
+        }
+        long nanos = System.nanoTime() - start;
+        statements = SqlStatementCounter.currentThreadCount() - statements;
+
+        System.out.printf("%-32s %8.1f %10.1f %12s %12s%n", action.name(),
+                (double) statements / iterations, nanos / 1000.0 / iterations,
+                size(response, true), size(response, false));
+    }
+
+    private static String size(Message response, boolean binary) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+            if (binary) {
+                BinaryCodec.encode(response, bytes);
+            } else {
+                try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                    out.writeObject(response);
+                }
+            }
+            return String.valueOf(bytes.size());
+        } catch (IOException | RuntimeException e) {
+            return "failed";
+        }
+    }
+}
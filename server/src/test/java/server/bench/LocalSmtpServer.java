@@ -0,0 +1,165 @@
+package server.bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A stand-in SMTP server on localhost that accepts and drops every message,
+ * for measuring the notification senders without a real mail server.
+ *
+ * It speaks just enough ESMTP for JavaMail: EHLO, AUTH PLAIN/LOGIN (any
+ * credentials), MAIL, RCPT, DATA, RSET, NOOP and QUIT. It does not offer
+ * STARTTLS. Each reply can be held back by a fixed delay, standing in for
+ * the network round trip to a real server.
+ *
+ * Run on its own for a load run of the whole server, with EMAIL_USER and
+ * EMAIL_PASSWORD set to anything:
+ * <pre>
+ * mvn -q -pl server test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=server.bench.LocalSmtpServer -Dexec.args="[port] [replyDelayMs]"
+ * java -Dgcm.notify.smtp.host=localhost -Dgcm.notify.smtp.port=2525 -jar server.jar
+ * </pre>
+ */
+public class LocalSmtpServer implements AutoCloseable {
+
+    private final ServerSocket socket;
+    private final long replyDelayMillis;
+    private final Thread acceptor;
+    private volatile boolean running = true;
+
+    private final AtomicLong connections = new AtomicLong();
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicInteger threads = new AtomicInteger();
+
+    /**
+     * @param port             port to listen on, 0 for any free one
+     * @param replyDelayMillis wait before each reply
+     */
+    public LocalSmtpServer(int port, long replyDelayMillis) throws IOException {
+        this.socket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        this.replyDelayMillis = replyDelayMillis;
+        this.acceptor = new Thread(this::accept, "smtp-standin");
+        this.acceptor.setDaemon(true);
+        this.acceptor.start();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 2525;
+        long delay = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        try (LocalSmtpServer server = new LocalSmtpServer(port, delay)) {
+            System.out.println("Stand-in SMTP server on localhost:" + server.getPort()
+                    + ", " + delay + " ms per reply; Ctrl+C to stop");
+            while (true) {
+                Thread.sleep(10_000);
+                System.out.println(server);
+            }
+        }
+    }
+
+    public int getPort() {
+        return socket.getLocalPort();
+    }
+
+    /** Connections accepted so far. */
+    public long getConnectionCount() {
+        return connections.get();
+    }
+
+    /** Messages accepted so far. */
+    public long getMessageCount() {
+        return messages.get();
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                Socket client = socket.accept();
+                connections.incrementAndGet();
+                Thread t = new Thread(() -> serve(client), "smtp-standin-" + threads.getAndIncrement());
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("[SMTP stand-in] " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket client) {
+        try (client;
+             BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.US_ASCII));
+             OutputStream out = client.getOutputStream()) {
+            reply(out, "220 localhost ESMTP stand-in");
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.length() < 4 ? line.toUpperCase() : line.substring(0, 4).toUpperCase();
+                switch (command) {
+                    case "EHLO" -> reply(out, "250-localhost\r\n250-AUTH PLAIN LOGIN\r\n250 8BITMIME");
+                    case "HELO", "MAIL", "RCPT", "RSET", "NOOP" -> reply(out, "250 OK");
+                    case "AUTH" -> authenticate(line, in, out);
+                    case "DATA" -> {
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            // drop the message
+                        }
+                        messages.incrementAndGet();
+                        reply(out, "250 OK queued");
+                    }
+                    case "QUIT" -> {
+                        reply(out, "221 Bye");
+                        return;
+                    }
+                    default -> reply(out, "502 Command not implemented");
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            // client went away
+        }
+    }
+
+    /** Accepts any AUTH PLAIN or AUTH LOGIN, with or without an initial response. */
+    private void authenticate(String line, BufferedReader in, OutputStream out) throws IOException, InterruptedException {
+        String[] parts = line.split(" ");
+        String mechanism = parts.length > 1 ? parts[1].toUpperCase() : "";
+        if (mechanism.equals("LOGIN")) {
+            if (parts.length < 3) {
+                reply(out, "334 VXNlcm5hbWU6");
+                in.readLine();
+            }
+            reply(out, "334 UGFzc3dvcmQ6");
+            in.readLine();
+        } else if (parts.length < 3) {
+            reply(out, "334 ");
+            in.readLine();
+        }
+        reply(out, "235 Authentication successful");
+    }
+
+    private void reply(OutputStream out, String text) throws IOException, InterruptedException {
+        if (replyDelayMillis > 0) {
+            Thread.sleep(replyDelayMillis);
+        }
+        out.write((text + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        socket.close();
+    }
+
+    @Override
+    public String toString() {
+        return "LocalSmtpServer [port=" + getPort() + ", replyDelayMs=" + replyDelayMillis
+                + ", connections=" + getConnectionCount() + ", messages=" + getMessageCount() + "]";
+    }
+}
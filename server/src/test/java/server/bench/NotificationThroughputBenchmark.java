@@ -0,0 +1,154 @@
+package server.bench;
+
+import server.notification.Notification;
+import server.notification.RateLimiter;
+import server.notification.SmtpTransportPool;
+import server.notification.SmtpTwilioSender;
+
+import javax.mail.Authenticator;
+import javax.mail.PasswordAuthentication;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures email throughput against a {@link LocalSmtpServer} on localhost,
+ * whose replies are delayed to stand in for the round trip to Gmail:
+ * <ul>
+ * <li>per-message: a new Session and connection (connect, AUTH, send, QUIT) for
+ *     every message, as NotificationService did before the outbox</li>
+ * <li>pooled: {@link SmtpTwilioSender} on an {@link SmtpTransportPool} with 1 or
+ *     {@code senders} connections, one message or a batch of 20 per call</li>
+ * </ul>
+ * Every phase sends the same messages from {@code senders} threads, like the
+ * outbox dispatcher's workers, and must report no failures. The connections
+ * column is what the stand-in accepted. The real server adds STARTTLS to
+ * each new connection, so the gap to per-message sends is wider there.
+ *
+ * Last, the SMS rate limiter is checked: 10 acquires at 5 per second should
+ * take about 1.8 s.
+ *
+ * Usage:
+ * <pre>
+ * mvn -q -pl server test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=server.bench.NotificationThroughputBenchmark -Dexec.args="[messages] [replyDelayMs] [senders]"
+ * mvn -q -pl server test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=server.bench.NotificationThroughputBenchmark -Dexec.args="2000 5 4"
+ * </pre>
+ */
+public class NotificationThroughputBenchmark {
+
+    private static final String FROM = "gcm@localhost";
+    private static final int BATCH = 20;
+
+    public static void main(String[] args) throws Exception {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long replyDelay = args.length > 1 ? Long.parseLong(args[1]) : 5;
+        int senders = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+        List<Notification> all = new ArrayList<>(messages);
+        for (int i = 0; i < messages; i++) {
+            all.add(Notification.email("client" + i + "@localhost", "GCM Subscription Expiry Warning",
+                    "Hello client " + i + ",\n\nThis is a reminder that your GCM city subscription"
+                            + " will expire in 3 days.\n\nBest regards,\nGCM Team"));
+        }
+
+        try (LocalSmtpServer smtp = new LocalSmtpServer(0, replyDelay)) {
+            System.out.println(messages + " emails, " + senders + " senders, " + replyDelay
+                    + " ms per SMTP reply, stand-in on port " + smtp.getPort());
+            System.out.printf("%-22s %10s %10s %12s %8s%n", "phase", "ms", "msgs/s", "connections", "failed");
+
+            run("per-message", smtp, senders, all, 1, batch -> {
+                long failed = 0;
+                for (Notification n : batch) {
+                    try {
+                        Transport.send(message(perMessageSession(smtp.getPort()), n));
+                    } catch (Exception e) {
+                        failed++;
+                    }
+                }
+                return failed;
+            });
+
+            for (int connections : new int[]{1, senders}) {
+                for (int batchSize : new int[]{1, BATCH}) {
+                    SmtpTransportPool pool = new SmtpTransportPool("localhost", smtp.getPort(), "gcm", "secret",
+                            false, connections, 100);
+                    try (SmtpTwilioSender sender = new SmtpTwilioSender(pool, FROM,
+                            new RateLimiter(0), new RateLimiter(0))) {
+                        run("pooled c=" + connections + " batch=" + batchSize, smtp, senders, all, batchSize,
+                                batch -> sender.sendAll(batch).stream().filter(e -> e != null).count());
+                    }
+                }
+            }
+        }
+
+        RateLimiter sms = new RateLimiter(5);
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            sms.acquire();
+        }
+        System.out.printf("sms limit %s: 10 acquires in %.2f s%n", sms, (System.nanoTime() - start) / 1e9);
+    }
+
+    private interface BatchSend {
+        /** @return messages that failed */
+        long send(List<Notification> batch) throws Exception;
+    }
+
+    private static void run(String phase, LocalSmtpServer smtp, int senders, List<Notification> all, int batchSize,
+                            BatchSend send) throws Exception {
+        long connectionsBefore = smtp.getConnectionCount();
+        AtomicLong failed = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(senders);
+        try {
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int from = 0; from < all.size(); from += batchSize) {
+                List<Notification> batch = all.subList(from, Math.min(from + batchSize, all.size()));
+                futures.add(pool.submit(() -> {
+                    failed.addAndGet(send.send(batch));
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long nanos = System.nanoTime() - start;
+            System.out.printf("%-22s %10.1f %10.0f %12d %8d%n", phase, nanos / 1e6, all.size() / (nanos / 1e9),
+                    smtp.getConnectionCount() - connectionsBefore, failed.get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** The settings NotificationService.sendEmail used, pointed at the stand-in. */
+    private static Session perMessageSession(int port) {
+        Properties prop = new Properties();
+        prop.put("mail.smtp.host", "localhost");
+        prop.put("mail.smtp.port", String.valueOf(port));
+        prop.put("mail.smtp.auth", "true");
+        prop.put("mail.smtp.starttls.enable", "true");
+        return Session.getInstance(prop, new Authenticator() {
+            @Override
+            protected PasswordAuthentication getPasswordAuthentication() {
+                return new PasswordAuthentication("gcm", "secret");
+            }
+        });
+    }
+
+    private static MimeMessage message(Session session, Notification n) throws Exception {
+        MimeMessage message = new MimeMessage(session);
+        message.setFrom(new InternetAddress(FROM));
+        message.setRecipients(MimeMessage.RecipientType.TO, InternetAddress.parse(n.recipient()));
+        message.setSubject(n.subject());
+        message.setText(n.body());
+        return message;
+    }
+}
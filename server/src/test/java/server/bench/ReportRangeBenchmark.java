@@ -0,0 +1,93 @@
+package server.bench;
+
+import common.enums.ReportType;
+import common.report.ActivityReport;
+import org.hibernate.Session;
+import server.HibernateUtil;
+import server.metrics.SqlStatementCounter;
+import server.report.DailyStatsAggregator;
+import server.report.RangePlanner;
+import server.report.ReportManager;
+
+import java.time.LocalDate;
+
+/**
+ * Activity report latency as a function of range length, against the
+ * configured database.
+ *
+ * For each range ending today the report is generated the way the server
+ * does it, which reads the week/month/year rollups covering the range and
+ * daily rows at its edges ("pieces" is the number of ranges in that plan),
+ * and, for comparison, after re-aggregating every day of the range
+ * one by one as reports did before days were sealed ("per-day"). The first
+ * line shows what sealing and rolling up all history costs once, after the
+ * watermarks in daily_stats_state are reset.
+ *
+ * Usage:
+ * <pre>
+ * mvn -q -pl server test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=server.bench.ReportRangeBenchmark -Dexec.args="[iterations] [cityId]"
+ * mvn -q -pl server test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=server.bench.ReportRangeBenchmark -Dexec.args="20 0"
+ * </pre>
+ * A cityId of 0 reports all cities.
+ */
+public class ReportRangeBenchmark {
+
+    private static final int[] RANGE_DAYS = {1, 7, 30, 90, 365, 730, 1825};
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        Integer cityId = args.length > 1 && Integer.parseInt(args[1]) > 0 ? Integer.parseInt(args[1]) : null;
+
+        HibernateUtil.initialize("dbHibernate.cfg.xml");
+        try {
+            try (Session s = HibernateUtil.getSessionFactory().openSession()) {
+                s.beginTransaction();
+                s.createNativeQuery("DELETE FROM daily_stats_state").executeUpdate();
+                s.getTransaction().commit();
+            } catch (RuntimeException e) {
+                // table not created yet: the first seal creates it
+            }
+            ReportManager reports = new ReportManager(HibernateUtil.getSessionFactory());
+            LocalDate today = LocalDate.now();
+
+            long statements = SqlStatementCounter.currentThreadCount();
+            long start = System.nanoTime();
+            reports.generate(ReportType.ACTIVITY, ActivityReport.class, today.minusDays(1), today, cityId);
+            System.out.printf("first report (seals and rolls up all history): %.1f ms, %d SQL statements%n",
+                    (System.nanoTime() - start) / 1e6, SqlStatementCounter.currentThreadCount() - statements);
+
+            DailyStatsAggregator perDay = new DailyStatsAggregator(HibernateUtil.getSessionFactory());
+            LocalDate rolledThrough = perDay.getRollups().getRolledThrough();
+            System.out.printf("%8s %8s %12s %10s %14s %10s%n", "days", "pieces", "rolledMs", "sql", "perDayMs", "sql");
+            for (int days : RANGE_DAYS) {
+                LocalDate from = today.minusDays(days - 1);
+                int pieces = RangePlanner.plan(from, today, rolledThrough).size();
+
+                statements = SqlStatementCounter.currentThreadCount();
+                start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    reports.generate(ReportType.ACTIVITY, ActivityReport.class, from, today, cityId);
+                }
+                double rolledMs = (System.nanoTime() - start) / 1e6 / iterations;
+                double rolledSql = (double) (SqlStatementCounter.currentThreadCount() - statements) / iterations;
+
+                int perDayIterations = Math.max(1, Math.min(iterations, 3650 / days));
+                statements = SqlStatementCounter.currentThreadCount();
+                start = System.nanoTime();
+                for (int i = 0; i < perDayIterations; i++) {
+                    for (LocalDate day = from; !day.isAfter(today); day = day.plusDays(1)) {
+                        perDay.aggregate(day, day);
+                    }
+                    reports.generate(ReportType.ACTIVITY, ActivityReport.class, from, today, cityId);
+                }
+                double perDayMs = (System.nanoTime() - start) / 1e6 / perDayIterations;
+                double perDaySql = (double) (SqlStatementCounter.currentThreadCount() - statements) / perDayIterations;
+
+                System.out.printf("%8d %8d %12.2f %10.1f %14.2f %10.1f%n",
+                        days, pieces, rolledMs, rolledSql, perDayMs, perDaySql);
+            }
+        } finally {
+            HibernateUtil.shutdown();
+        }
+    }
+}
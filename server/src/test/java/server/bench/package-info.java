@@ -0,0 +1,11 @@
+/**
+ * Benchmarks and load generators, run by hand with {@code exec:java} on the
+ * test classpath so that they stay out of the server jar. The common module
+ * has to be installed once first:
+ * <pre>
+ * mvn -q install -DskipTests
+ * mvn -q -pl server test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=server.bench.CodecBenchmark
+ * </pre>
+ * Each class documents its arguments.
+ */
+package server.bench;
@@ -0,0 +1,103 @@
+package server.dispatch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestDispatcherTest {
+
+    private final RequestDispatcher dispatcher = new RequestDispatcher(4, 8);
+
+    @AfterEach
+    void shutdown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void laneRunsRequestsOneAtATimeInOrder() throws InterruptedException {
+        int lanes = 6;
+        int perLane = 8;
+        List<List<Integer>> seen = new ArrayList<>();
+        AtomicInteger[] running = new AtomicInteger[lanes];
+        AtomicInteger overlaps = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(lanes * perLane);
+        List<RequestDispatcher.Lane> laneList = new ArrayList<>();
+        for (int l = 0; l < lanes; l++) {
+            seen.add(Collections.synchronizedList(new ArrayList<>()));
+            running[l] = new AtomicInteger();
+            laneList.add(new RequestDispatcher.Lane());
+        }
+
+        for (int n = 0; n < perLane; n++) {
+            for (int l = 0; l < lanes; l++) {
+                int lane = l;
+                int request = n;
+                assertTrue(dispatcher.submit(laneList.get(lane), () -> {
+                    if (running[lane].incrementAndGet() > 1) {
+                        overlaps.incrementAndGet();
+                    }
+                    sleep(2);
+                    seen.get(lane).add(request);
+                    running[lane].decrementAndGet();
+                    done.countDown();
+                }));
+            }
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(0, overlaps.get());
+        for (List<Integer> order : seen) {
+            assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7), order);
+        }
+    }
+
+    @Test
+    void laneRefusesRequestsBeyondQueueCapacity() throws InterruptedException {
+        RequestDispatcher.Lane lane = new RequestDispatcher.Lane();
+        CountDownLatch release = new CountDownLatch(1);
+        assertTrue(dispatcher.submit(lane, () -> await(release)));
+        for (int i = 0; i < 8; i++) {
+            assertTrue(dispatcher.submit(lane, () -> {}));
+        }
+        assertFalse(dispatcher.submit(lane, () -> {}));
+        assertEquals(1, dispatcher.getRejectedCount());
+        release.countDown();
+    }
+
+    @Test
+    void failingRequestDoesNotStallItsLane() throws InterruptedException {
+        RequestDispatcher.Lane lane = new RequestDispatcher.Lane();
+        CountDownLatch next = new CountDownLatch(1);
+        dispatcher.submit(lane, () -> {
+            throw new IllegalStateException("handler bug");
+        });
+        dispatcher.submit(lane, next::countDown);
+        assertTrue(next.await(5, TimeUnit.SECONDS));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
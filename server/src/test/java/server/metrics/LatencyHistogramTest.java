@@ -0,0 +1,66 @@
+package server.metrics;
+
+import common.report.ServerMetricsReport;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void emptyHistogramReadsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileMicros(99));
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int us = 1; us <= 4; us++) {
+            histogram.record(us * 1000L);
+        }
+        assertEquals(2, histogram.getPercentileMicros(50));
+        assertEquals(4, histogram.getPercentileMicros(100));
+        assertEquals(4, histogram.getMaxMicros());
+    }
+
+    @Test
+    void percentilesAreWithinOneBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int us = 1; us <= 10_000; us++) {
+            histogram.record(us * 1000L);
+        }
+        ServerMetricsReport.LatencyStats stats = histogram.snapshot();
+        assertEquals(10_000, stats.count);
+        assertWithinBucket(5_000, stats.p50Micros);
+        assertWithinBucket(9_500, stats.p95Micros);
+        assertWithinBucket(9_900, stats.p99Micros);
+        assertEquals(10_000, stats.maxMicros);
+    }
+
+    @Test
+    void bucketsAreContiguous() {
+        for (int index = 1; index < 200; index++) {
+            long lower = LatencyHistogram.bucketUpperBound(index - 1) + 1;
+            assertEquals(index, LatencyHistogram.bucketIndex(lower));
+            assertEquals(index, LatencyHistogram.bucketIndex(LatencyHistogram.bucketUpperBound(index)));
+        }
+    }
+
+    @Test
+    void negativeAndHugeValuesAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(0, histogram.getPercentileMicros(50));
+        assertEquals(Long.MAX_VALUE / 1000, histogram.getMaxMicros());
+    }
+
+    /** A bucket is at most 12.5% wide. */
+    private static void assertWithinBucket(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected * 1.125,
+                "expected about " + expected + " us, got " + actual);
+    }
+}
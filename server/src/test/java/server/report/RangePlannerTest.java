@@ -0,0 +1,57 @@
+package server.report;
+
+import org.junit.jupiter.api.Test;
+import server.report.RangePlanner.Granularity;
+import server.report.RangePlanner.Piece;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RangePlannerTest {
+
+    private static final LocalDate FROM = LocalDate.of(2020, 3, 5);
+    private static final LocalDate TO = LocalDate.of(2024, 7, 9);
+
+    @Test
+    void withoutRollupsPlansDaysOnly() {
+        assertEquals(List.of(new Piece(Granularity.DAY, FROM, TO)), RangePlanner.plan(FROM, TO, null));
+    }
+
+    @Test
+    void emptyWhenFromIsAfterTo() {
+        assertTrue(RangePlanner.plan(TO, FROM, TO).isEmpty());
+    }
+
+    @Test
+    void usesCoarsestRolledBuckets() {
+        List<Piece> plan = RangePlanner.plan(FROM, TO, LocalDate.of(2024, 7, 1));
+
+        assertEquals(List.of(
+                new Piece(Granularity.DAY, FROM, LocalDate.of(2020, 3, 8)),
+                new Piece(Granularity.WEEK, LocalDate.of(2020, 3, 9), LocalDate.of(2020, 3, 23)),
+                new Piece(Granularity.DAY, LocalDate.of(2020, 3, 30), LocalDate.of(2020, 3, 31)),
+                new Piece(Granularity.MONTH, LocalDate.of(2020, 4, 1), LocalDate.of(2020, 12, 1)),
+                new Piece(Granularity.YEAR, LocalDate.of(2021, 1, 1), LocalDate.of(2023, 1, 1)),
+                new Piece(Granularity.MONTH, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 6, 1)),
+                new Piece(Granularity.DAY, LocalDate.of(2024, 7, 1), TO)), plan);
+    }
+
+    /** Every day of the range is covered by exactly one piece, whatever the watermark. */
+    @Test
+    void coversEveryDayExactlyOnce() {
+        for (LocalDate rolled = FROM.minusDays(10); rolled.isBefore(TO.plusDays(10)); rolled = rolled.plusDays(37)) {
+            LocalDate expected = FROM;
+            for (Piece piece : RangePlanner.plan(FROM, TO, rolled)) {
+                assertEquals(expected, piece.start(), "gap or overlap with rollups through " + rolled);
+                LocalDate end = piece.granularity().endOf(piece.granularity().startOf(piece.end()));
+                assertTrue(piece.granularity() == Granularity.DAY || !end.isAfter(rolled),
+                        piece + " is not rolled up through " + rolled);
+                expected = (piece.granularity() == Granularity.DAY ? piece.end() : end).plusDays(1);
+            }
+            assertEquals(TO.plusDays(1), expected);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package server.report;
+
+import common.enums.ReportType;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ReportCacheTest {
+
+    private static final LocalDate TODAY = LocalDate.now();
+
+    private final ReportCache cache = new ReportCache(1 << 20);
+
+    @Test
+    void keepsSealedReports() {
+        Object[] params = put(40, 30, 5);
+        assertNotNull(cache.get(ReportType.ACTIVITY, params));
+        cache.cityChanged(5);
+        assertNotNull(cache.get(ReportType.ACTIVITY, params));
+    }
+
+    @Test
+    void cityChangeDropsLiveReportsOfThatCityAndOfAllCities() {
+        Object[] city = put(7, 0, 5);
+        Object[] all = put(7, 0, null);
+        Object[] other = put(7, 0, 6);
+
+        cache.cityChanged(5);
+
+        assertNull(cache.get(ReportType.ACTIVITY, city));
+        assertNull(cache.get(ReportType.ACTIVITY, all));
+        assertNotNull(cache.get(ReportType.ACTIVITY, other));
+    }
+
+    @Test
+    void replayedDaysDropSealedReportsCoveringThem() {
+        Object[] covering = put(40, 30, 5);
+        Object[] allCities = put(20, 10, null);
+        Object[] otherCity = put(40, 30, 6);
+        Object[] earlier = put(60, 50, 5);
+
+        cache.daysChanged(5, TODAY.minusDays(35), TODAY.minusDays(12));
+
+        assertNull(cache.get(ReportType.ACTIVITY, covering));
+        assertNull(cache.get(ReportType.ACTIVITY, allCities));
+        assertNotNull(cache.get(ReportType.ACTIVITY, otherCity));
+        assertNotNull(cache.get(ReportType.ACTIVITY, earlier));
+        assertEquals(2, cache.getInvalidationCount());
+    }
+
+    @Test
+    void doesNotKeepReportGeneratedDuringChange() {
+        long stamp = cache.stamp();
+        cache.cityChanged(9);
+        Object[] params = {TODAY.minusDays(40), TODAY.minusDays(30), 5};
+        cache.put(ReportType.ACTIVITY, params, scope(params), "report", stamp);
+        assertNull(cache.get(ReportType.ACTIVITY, params));
+    }
+
+    /** Caches a report of {@code fromDaysAgo} through {@code toDaysAgo}. */
+    private Object[] put(int fromDaysAgo, int toDaysAgo, Integer cityId) {
+        Object[] params = {TODAY.minusDays(fromDaysAgo), TODAY.minusDays(toDaysAgo), cityId};
+        cache.put(ReportType.ACTIVITY, params, scope(params), "report", cache.stamp());
+        return params;
+    }
+
+    private static ReportCache.Scope scope(Object[] params) {
+        return new ReportCache.Scope((LocalDate) params[0], (LocalDate) params[1], (Integer) params[2]);
+    }
+}